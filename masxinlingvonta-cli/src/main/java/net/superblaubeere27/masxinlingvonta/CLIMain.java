@@ -10,9 +10,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 import net.superblaubeere27.masxinlingvaj.MLV;
+import net.superblaubeere27.masxinlingvaj.compiler.ArrayPinning;
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.ResolutionStrategy;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerClass;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import net.superblaubeere27.masxinlingvaj.preprocessor.AbstractPreprocessor;
@@ -52,6 +55,9 @@ public class CLIMain {
 
         options.addOption("createNatives", "creates natives in outputDir");
         options.addOption("inJarNativesPath", true, "path to natives");
+        options.addOption("resolution", true, "when classes, method/field ids and strings are resolved: lazy (default), eager or background");
+        options.addOption("precompileLambdas", "generates the classes of lambdas at compile time instead of bootstrapping them at runtime");
+        options.addOption("pinArrays", true, "how the arrays accessed by loops are pinned: none (default), critical or elements");
 
         DefaultParser parser = new DefaultParser();
 
@@ -99,6 +105,10 @@ public class CLIMain {
                         }
 
                         for (CompilerClass aClass : compiler.getIndex().getClasses()) {
+                            // Methods of interfaces must not be native
+                            if ((aClass.getClassNode().access & Opcodes.ACC_INTERFACE) != 0)
+                                continue;
+
                             for (CompilerMethod method : aClass.getMethods()) {
                                 if ((method.getNode().access & (Opcodes.ACC_NATIVE | Opcodes.ACC_ABSTRACT)) != 0)
                                     continue;
@@ -145,6 +155,34 @@ public class CLIMain {
 
         String inJarPath = parse.getOptionValue("inJarNativesPath");
 
+        if (parse.hasOption("resolution")) {
+            try {
+                var resolutionStrategy = ResolutionStrategy.fromString(parse.getOptionValue("resolution"));
+
+                // The warm-up thread is started with pthreads which the Windows binaries don't link against
+                if (resolutionStrategy == ResolutionStrategy.BACKGROUND && getTargetOSs(parse).contains(OS.WINDOWS)) {
+                    System.err.println("The background resolution strategy is only supported on POSIX targets");
+                    return;
+                }
+
+                mlv.setResolutionStrategy(resolutionStrategy);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
+        mlv.setPrecompileLambdas(parse.hasOption("precompileLambdas"));
+
+        if (parse.hasOption("pinArrays")) {
+            try {
+                mlv.setArrayPinning(ArrayPinning.fromString(parse.getOptionValue("pinArrays")));
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
         try {
             System.out.println("Loading input...");
             mlv.loadInput(new File(parse.getOptionValue("inputJar")));
@@ -182,8 +220,7 @@ public class CLIMain {
                     Files.write(Paths.get(irOutput), ir);
 
                 if (parse.getOptionValue("compileFor") != null) {
-                    var oss = Arrays.stream(parse.getOptionValue("compileFor").split(",")).map(OS::fromString).collect(
-                            Collectors.toSet());
+                    var oss = getTargetOSs(parse);
 
                     Map<String, String> env = new HashMap<>();
                     env.put("create", "true");
@@ -320,6 +357,13 @@ public class CLIMain {
         return process.exitValue();
     }
 
+    private static Set<OS> getTargetOSs(CommandLine parse) {
+        if (parse.getOptionValue("compileFor") == null)
+            return Set.of();
+
+        return Arrays.stream(parse.getOptionValue("compileFor").split(",")).map(OS::fromString).collect(Collectors.toSet());
+    }
+
     private static String getFilePath(String basePath, String fileName) {
         if (basePath == null)
             return fileName;
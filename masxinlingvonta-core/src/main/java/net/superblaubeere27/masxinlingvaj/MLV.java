@@ -1,6 +1,8 @@
 package net.superblaubeere27.masxinlingvaj;
 
+import net.superblaubeere27.masxinlingvaj.compiler.ArrayPinning;
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.ResolutionStrategy;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import net.superblaubeere27.masxinlingvaj.io.InputLoader;
 import net.superblaubeere27.masxinlingvaj.io.OutputWriter;
@@ -28,6 +30,9 @@ public class MLV {
     private final CompilerPreprocessor preprocessor;
     private InputLoader.ReadInput input;
     private MLVCompiler compiler;
+    private ResolutionStrategy resolutionStrategy = ResolutionStrategy.LAZY;
+    private boolean precompileLambdas;
+    private ArrayPinning arrayPinning = ArrayPinning.NONE;
 
     public MLV(CompilerPreprocessor preprocessor) {
         this.preprocessor = preprocessor;
@@ -37,9 +42,33 @@ public class MLV {
         this.input = InputLoader.loadFiles(Collections.singletonList(jar.toURI().toURL()), EXECUTOR_SERVICE_FACTORY);
     }
 
+    /**
+     * Selects when the cached JNI handles are resolved, has to be called before {@link #preprocessAndCompile(String)}
+     */
+    public void setResolutionStrategy(ResolutionStrategy resolutionStrategy) {
+        this.resolutionStrategy = resolutionStrategy;
+    }
+
+    /**
+     * Generates the classes of lambdas in compiled methods at compile time instead of bootstrapping them at runtime,
+     * has to be called before {@link #preprocessAndCompile(String)}
+     */
+    public void setPrecompileLambdas(boolean precompileLambdas) {
+        this.precompileLambdas = precompileLambdas;
+    }
+
+    /**
+     * Selects if and how the arrays of loops are pinned, has to be called before {@link #preprocessAndCompile(String)}
+     */
+    public void setArrayPinning(ArrayPinning arrayPinning) {
+        this.arrayPinning = arrayPinning;
+    }
+
     public void preprocessAndCompile(String inJarNativesPath1) throws Exception {
         inJarNativesPath = inJarNativesPath1;
-        this.compiler = new MLVCompiler(this.input.getClassNodes());
+        this.compiler = new MLVCompiler(this.input.getClassNodes(), this.resolutionStrategy);
+        this.compiler.setPrecompileLambdas(this.precompileLambdas);
+        this.compiler.setArrayPinning(this.arrayPinning);
 
         preprocessor.preprocess(compiler);
 
@@ -48,6 +77,8 @@ public class MLV {
         }
 
         new CompilerPostprocessor().postprocess(this.compiler);
+
+        this.compiler.finishModule();
     }
 
     public void writeOutput(File file) throws IOException {
@@ -68,6 +99,9 @@ public class MLV {
 
         LLVMPassManagerBuilderSetOptLevel(passManagerBuilder, lvl);
 
+        // The fast paths of the module-level caches are marked as alwaysinline
+        LLVMAddAlwaysInlinerPass(pass);
+
         LLVMPassManagerBuilderPopulateModulePassManager(passManagerBuilder, pass);
 
         LLVMVerifyModule(module, LLVMAbortProcessAction, error);
@@ -0,0 +1,35 @@
+package net.superblaubeere27.masxinlingvaj.compiler;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Decides if and how the primitive array and String parameters of loops are pinned, so their elements can be accessed
+ * without a JNI call per element.
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays
+ */
+public enum ArrayPinning {
+    /**
+     * Every element access is a JNI call
+     */
+    NONE,
+    /**
+     * The arrays are pinned with <code>GetPrimitiveArrayCritical</code> (<code>GetStringCritical</code>), which usually
+     * doesn't copy them but may stall the garbage collector until they are released
+     */
+    CRITICAL,
+    /**
+     * The arrays are pinned with <code>Get&lt;Type&gt;ArrayElements</code> (<code>GetStringChars</code>), which doesn't
+     * block the garbage collector but might copy the arrays
+     */
+    ELEMENTS;
+
+    public static ArrayPinning fromString(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid array pinning: " + name + ". Supported modes: " + Arrays.toString(values()));
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package net.superblaubeere27.masxinlingvaj.compiler;
+
+import net.superblaubeere27.masxinlingvaj.compiler.cache.MemberIdCache;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JavaVM;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerClass;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the functions the VM calls when the native library is loaded or unloaded
+ */
+class LibraryLifecycle {
+    private static final int JNI_ERR = -1;
+
+    private static final MethodOrFieldIdentifier GET_CLASS_LOADER = new MethodOrFieldIdentifier("java/lang/Class",
+            "getClassLoader",
+            "()Ljava/lang/ClassLoader;");
+
+    private final MLVCompiler compiler;
+
+    LibraryLifecycle(MLVCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Generates <code>jint JNI_OnLoad(JavaVM *vm, void *reserved)</code> which binds the compiled methods with
+     * RegisterNatives, so they don't have to be exported.
+     * <p>
+     * FindClass would initialize the classes. If their static initializer called one of their compiled methods, it
+     * would fail since it isn't registered yet. So the classes are loaded with
+     * <code>Class.forName(name, false, loader)</code> instead. The class loader is taken from a generated empty class
+     * which is safe to initialize.
+     * <p>
+     * Depending on the {@link ResolutionStrategy}, the caches are filled afterwards or on a background thread.
+     */
+    void buildOnLoad(List<TranslatedMethod> translatedMethods) {
+        var jni = this.compiler.getJni();
+        var jniEnv = jni.getJniEnv();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(),
+                "JNI_OnLoad",
+                getLifecycleFunctionType(JNIType.INT.getLLVMType()));
+
+        LLVM.LLVMSetDLLStorageClass(function, LLVM.LLVMDLLExportStorageClass);
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        Runnable fail = () -> LLVM.LLVMBuildRet(builder, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), JNI_ERR, 1));
+
+        var envPtr = buildGetEnv(builder, function, fail);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var methodsByClass = new LinkedHashMap<CompilerClass, ArrayList<TranslatedMethod>>();
+
+        for (TranslatedMethod translatedMethod : translatedMethods) {
+            methodsByClass.computeIfAbsent(translatedMethod.getCompilerMethod().getParent(), e -> new ArrayList<>())
+                    .add(translatedMethod);
+        }
+
+        if (!methodsByClass.isEmpty()) {
+            var anchor = this.compiler.getClassCache().buildGetClass(builder, envPtr, createAnchorClass(methodsByClass.keySet().iterator().next()));
+
+            LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, anchor, ""), fail);
+
+            var getClassLoader = this.compiler.getMethodIdCache().buildGetId(builder, envPtr, GET_CLASS_LOADER, false);
+
+            LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, getClassLoader, ""), fail);
+
+            // The loader might be NULL (bootstrap class loader)
+            var loader = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                    JNIEnv.JNIEnvMethod.CallObjectMethod,
+                    anchor,
+                    getClassLoader);
+
+            buildExceptionCheck(builder, function, functionTable, envPtr, fail);
+
+            if (this.compiler.getResolutionStrategy() != ResolutionStrategy.LAZY) {
+                this.compiler.getClassCache().buildSetClassLoader(builder, functionTable, envPtr, loader);
+            }
+
+            for (var entry : methodsByClass.entrySet()) {
+                var clazz = this.compiler.getClassCache().buildLoadClass(builder, envPtr, loader, entry.getKey().getName());
+
+                LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, clazz, ""), fail);
+
+                var methods = entry.getValue();
+
+                var result = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                        JNIEnv.JNIEnvMethod.RegisterNatives,
+                        clazz,
+                        LLVM.LLVMConstBitCast(buildNativeMethodTable(builder, methods), JNIType.OBJECT.getLLVMType()),
+                        LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), methods.size(), 0));
+
+                LLVMUtils.buildIf(builder,
+                        function,
+                        LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, result, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0), ""),
+                        fail);
+
+                jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, clazz);
+            }
+
+            LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNotNull(builder, loader, ""), () ->
+                    jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, loader));
+
+            switch (this.compiler.getResolutionStrategy()) {
+                case EAGER:
+                    buildWarmUpCall(builder, buildWarmUpFunction(false), envPtr);
+                    break;
+                case BACKGROUND:
+                    buildStartWarmUpThread(builder, function, envPtr);
+                    break;
+            }
+        }
+
+        buildReturnVersion(builder);
+
+        LLVM.LLVMDisposeBuilder(builder);
+    }
+
+    /**
+     * Generates <code>void JNI_OnUnload(JavaVM *vm, void *reserved)</code> which releases the global references held by
+     * the module's caches.
+     * <p>
+     * The cached classes keep the class loader of the library alive, so the VM doesn't call this as long as any class
+     * is cached (see {@link net.superblaubeere27.masxinlingvaj.compiler.cache.ClassCache}).
+     */
+    void buildOnUnload() {
+        var jni = this.compiler.getJni();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(),
+                "JNI_OnUnload",
+                getLifecycleFunctionType(LLVM.LLVMVoidType()));
+
+        LLVM.LLVMSetDLLStorageClass(function, LLVM.LLVMDLLExportStorageClass);
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var envPtr = buildGetEnv(builder, function, () -> LLVM.LLVMBuildRetVoid(builder));
+        var functionTable = jni.getJniEnv().buildFunctionTableLoad(builder, envPtr);
+
+        this.compiler.getStringPool().buildRelease(builder, function, functionTable, envPtr);
+        this.compiler.getBoxCache().buildRelease(builder, function, functionTable, envPtr);
+        this.compiler.getClassCache().buildRelease(builder, function, functionTable, envPtr);
+
+        LLVM.LLVMBuildRetVoid(builder);
+
+        LLVM.LLVMDisposeBuilder(builder);
+    }
+
+    /**
+     * Generates <code>void warm_up(JNIEnv *env)</code> which fills the module's caches.
+     *
+     * @param background if set, ids of members of the input are skipped since looking them up would initialize
+     *                   their classes on the warm-up thread
+     * @see ResolutionStrategy
+     */
+    private LLVMValueRef buildWarmUpFunction(boolean background) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(), "warm_up", LLVM.LLVMFunctionType(
+                LLVM.LLVMVoidType(),
+                new PointerPointer<>(new LLVMTypeRef[]{LLVM.LLVMPointerType(jniEnv.getType(), 0)}),
+                1,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(function, "cold");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(function, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var index = this.compiler.getIndex();
+
+        // The classes come first, so resolving the ids doesn't have to look them up again
+        this.compiler.getClassCache().buildWarmUp(builder, function, functionTable, envPtr);
+
+        for (MemberIdCache cache : List.of(this.compiler.getMethodIdCache(), this.compiler.getFieldIdCache())) {
+            cache.buildWarmUp(builder, function, functionTable, envPtr, identifier ->
+                    !background || index.getCompilerClass(identifier.getOwner()) == null);
+        }
+
+        this.compiler.getStringPool().buildWarmUp(builder, function, functionTable, envPtr);
+        this.compiler.getDirectBufferCache().buildWarmUp(builder, function, functionTable, envPtr);
+
+        LLVM.LLVMBuildRetVoid(builder);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    private static void buildWarmUpCall(LLVMBuilderRef builder, LLVMValueRef warmUp, LLVMValueRef envPtr) {
+        LLVM.LLVMBuildCall(builder, warmUp, new PointerPointer<>(new LLVMValueRef[]{envPtr}), 1, "");
+    }
+
+    /**
+     * Builds code that runs the warm-up on a new detached thread. <code>pthread_create</code> is declared as a weak
+     * symbol, if it isn't available (or fails) the warm-up of {@link ResolutionStrategy#EAGER} runs on the current
+     * thread instead.
+     */
+    private void buildStartWarmUpThread(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef envPtr) {
+        var module = this.compiler.getModule();
+        var voidPtr = JNIType.OBJECT.getLLVMType();
+        var threadType = LLVM.LLVMInt64Type();
+
+        var warmUp = buildWarmUpFunction(true);
+        var threadFunction = buildWarmUpThreadFunction(warmUp);
+
+        var pthreadCreate = LLVM.LLVMAddFunction(module, "pthread_create", LLVM.LLVMFunctionType(
+                LLVM.LLVMInt32Type(),
+                new PointerPointer<>(new LLVMTypeRef[]{
+                        LLVM.LLVMPointerType(threadType, 0),
+                        voidPtr,
+                        LLVM.LLVMTypeOf(threadFunction),
+                        voidPtr
+                }),
+                4,
+                0));
+        var pthreadDetach = LLVM.LLVMAddFunction(module, "pthread_detach", LLVM.LLVMFunctionType(
+                LLVM.LLVMInt32Type(),
+                new PointerPointer<>(new LLVMTypeRef[]{threadType}),
+                1,
+                0));
+
+        LLVM.LLVMSetLinkage(pthreadCreate, LLVM.LLVMExternalWeakLinkage);
+        LLVM.LLVMSetLinkage(pthreadDetach, LLVM.LLVMExternalWeakLinkage);
+
+        // The current thread is the one which loads the library, so it can resolve everything like EAGER does
+        var eagerWarmUp = buildWarmUpFunction(false);
+
+        Runnable warmUpHere = () -> buildWarmUpCall(builder, eagerWarmUp, envPtr);
+
+        var thread = LLVM.LLVMBuildAlloca(builder, threadType, "thread");
+
+        var threadsAvailable = LLVM.LLVMBuildAnd(builder,
+                LLVM.LLVMBuildIsNotNull(builder, pthreadCreate, ""),
+                LLVM.LLVMBuildIsNotNull(builder, pthreadDetach, ""),
+                "");
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildNot(builder, threadsAvailable, ""), () -> {
+            warmUpHere.run();
+
+            buildReturnVersion(builder);
+        });
+
+        var result = LLVM.LLVMBuildCall(builder, pthreadCreate, new PointerPointer<>(new LLVMValueRef[]{
+                thread,
+                LLVM.LLVMConstNull(voidPtr),
+                threadFunction,
+                LLVM.LLVMBuildBitCast(builder, LLVM.LLVMGetParam(function, 0), voidPtr, "")
+        }), 4, "");
+
+        LLVMUtils.buildIf(builder,
+                function,
+                LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, result, LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), 0, 0), ""),
+                () -> {
+                    warmUpHere.run();
+
+                    buildReturnVersion(builder);
+                });
+
+        LLVM.LLVMBuildCall(builder, pthreadDetach, new PointerPointer<>(new LLVMValueRef[]{
+                LLVM.LLVMBuildLoad(builder, thread, "")
+        }), 1, "");
+    }
+
+    /**
+     * Generates <code>void *warm_up_thread(void *vm)</code> which attaches itself as daemon to the VM and runs the
+     * warm-up
+     */
+    private LLVMValueRef buildWarmUpThreadFunction(LLVMValueRef warmUp) {
+        var jni = this.compiler.getJni();
+        var voidPtr = JNIType.OBJECT.getLLVMType();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(), "warm_up_thread", LLVM.LLVMFunctionType(
+                voidPtr,
+                new PointerPointer<>(new LLVMTypeRef[]{voidPtr}),
+                1,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var vmPtr = LLVM.LLVMBuildBitCast(builder,
+                LLVM.LLVMGetParam(function, 0),
+                LLVM.LLVMPointerType(jni.getJavaVM().getType(), 0),
+                "vm");
+
+        var envPtrPtr = LLVM.LLVMBuildAlloca(builder, voidPtr, "env");
+
+        var result = jni.getJavaVM().callVMMethod(builder,
+                vmPtr,
+                JavaVM.JavaVMMethod.AttachCurrentThreadAsDaemon,
+                envPtrPtr,
+                LLVM.LLVMConstNull(voidPtr));
+
+        LLVMUtils.buildIf(builder,
+                function,
+                LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, result, LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), 0, 0), ""),
+                () -> LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(voidPtr)));
+
+        buildWarmUpCall(builder, warmUp, LLVM.LLVMBuildBitCast(builder,
+                LLVM.LLVMBuildLoad(builder, envPtrPtr, ""),
+                LLVM.LLVMPointerType(jni.getJniEnv().getType(), 0),
+                "env_ptr"));
+
+        jni.getJavaVM().callVMMethod(builder, vmPtr, JavaVM.JavaVMMethod.DetachCurrentThread);
+
+        LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(voidPtr));
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    private static void buildReturnVersion(LLVMBuilderRef builder) {
+        LLVM.LLVMBuildRet(builder, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), JavaVM.JNI_VERSION_1_6, 0));
+    }
+
+    /**
+     * <code>(JavaVM *vm, void *reserved)</code>
+     */
+    private LLVMTypeRef getLifecycleFunctionType(LLVMTypeRef returnType) {
+        return LLVM.LLVMFunctionType(returnType,
+                new PointerPointer<>(new LLVMTypeRef[]{
+                        LLVM.LLVMPointerType(this.compiler.getJni().getJavaVM().getType(), 0),
+                        JNIType.OBJECT.getLLVMType()
+                }),
+                2,
+                0);
+    }
+
+    /**
+     * <code>JNIEnv *env; if (vm->GetEnv(&env, JNI_VERSION_1_6) != JNI_OK) fail();</code>
+     */
+    private LLVMValueRef buildGetEnv(LLVMBuilderRef builder, LLVMValueRef function, Runnable fail) {
+        var jni = this.compiler.getJni();
+
+        var envPtrPtr = LLVM.LLVMBuildAlloca(builder, JNIType.OBJECT.getLLVMType(), "env");
+
+        var result = jni.getJavaVM().callVMMethod(builder,
+                LLVM.LLVMGetParam(function, 0),
+                JavaVM.JavaVMMethod.GetEnv,
+                envPtrPtr,
+                LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), JavaVM.JNI_VERSION_1_6, 0));
+
+        LLVMUtils.buildIf(builder,
+                function,
+                LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, result, LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), 0, 0), ""),
+                fail);
+
+        return LLVM.LLVMBuildBitCast(builder,
+                LLVM.LLVMBuildLoad(builder, envPtrPtr, ""),
+                LLVM.LLVMPointerType(jni.getJniEnv().getType(), 0),
+                "env_ptr");
+    }
+
+    private void buildExceptionCheck(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr, Runnable fail) {
+        var exceptionThrown = this.compiler.getJni().getJniEnv().callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.ExceptionCheck);
+
+        LLVMUtils.buildIf(builder,
+                function,
+                LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, exceptionThrown, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(exceptionThrown), 0, 0), ""),
+                fail);
+    }
+
+    /**
+     * Creates a constant <code>JNINativeMethod[]</code> for RegisterNatives
+     */
+    private LLVMValueRef buildNativeMethodTable(LLVMBuilderRef builder, List<TranslatedMethod> methods) {
+        var entries = new LLVMValueRef[methods.size()];
+
+        for (int i = 0; i < entries.length; i++) {
+            var translatedMethod = methods.get(i);
+            var node = translatedMethod.getCompilerMethod().getNode();
+
+            entries[i] = LLVM.LLVMConstStruct(new PointerPointer<>(new LLVMValueRef[]{
+                    LLVM.LLVMBuildGlobalStringPtr(builder, node.name, "native_name"),
+                    LLVM.LLVMBuildGlobalStringPtr(builder, node.desc, "native_sig"),
+                    LLVM.LLVMConstBitCast(translatedMethod.getEntryFunction(), JNIType.OBJECT.getLLVMType())
+            }), 3, 0);
+        }
+
+        var table = LLVM.LLVMConstArray(LLVM.LLVMTypeOf(entries[0]), new PointerPointer<>(entries), entries.length);
+
+        var global = LLVM.LLVMAddGlobal(this.compiler.getModule(), LLVM.LLVMTypeOf(table), "native_methods");
+
+        LLVM.LLVMSetInitializer(global, table);
+        LLVM.LLVMSetGlobalConstant(global, 1);
+        LLVM.LLVMSetLinkage(global, LLVM.LLVMPrivateLinkage);
+
+        return global;
+    }
+
+    /**
+     * Adds an empty class next to the given class. Loading and initializing it has no side effects, so JNI_OnLoad can
+     * use it to find the class loader of the compiled classes.
+     */
+    private String createAnchorClass(CompilerClass neighbour) {
+        var index = this.compiler.getIndex();
+        var takenNames = index.getClasses().stream().map(CompilerClass::getName).collect(Collectors.toSet());
+
+        var name = neighbour.getName() + "$NativeAnchor";
+
+        while (takenNames.contains(name)) {
+            name += "_";
+        }
+
+        var classNode = new ClassNode();
+
+        classNode.visit(neighbour.getClassNode().version,
+                Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+                name,
+                null,
+                "java/lang/Object",
+                null);
+        classNode.visitEnd();
+
+        index.addGeneratedClass(classNode);
+
+        return name;
+    }
+}
@@ -1,26 +1,57 @@
 package net.superblaubeere27.masxinlingvaj.compiler;
 
+import net.superblaubeere27.masxinlingvaj.compiler.cache.BoxCache;
+import net.superblaubeere27.masxinlingvaj.compiler.cache.ClassCache;
+import net.superblaubeere27.masxinlingvaj.compiler.cache.DirectBufferCache;
+import net.superblaubeere27.masxinlingvaj.compiler.cache.MemberIdCache;
+import net.superblaubeere27.masxinlingvaj.compiler.cache.StringPool;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
 import net.superblaubeere27.masxinlingvaj.compiler.code.CodeConverter;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNI;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerIndex;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import org.bytedeco.llvm.LLVM.LLVMModuleRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import static org.bytedeco.llvm.global.LLVM.LLVMModuleCreateWithName;
 
 public class MLVCompiler {
     private final CompilerIndex index;
+    private final ResolutionStrategy resolutionStrategy;
     private JNI jni;
     private LLVMModuleRef module;
+    private ClassCache classCache;
+    private MemberIdCache methodIdCache;
+    private MemberIdCache fieldIdCache;
+    private StringPool stringPool;
+    private BoxCache boxCache;
+    private DirectBufferCache directBufferCache;
+    private boolean precompileLambdas;
+    private ArrayPinning arrayPinning = ArrayPinning.NONE;
+
+    /**
+     * The methods which were compiled so far, they are registered in JNI_OnLoad
+     */
+    private final ArrayList<TranslatedMethod> translatedMethods = new ArrayList<>();
+
+    /**
+     * The native functions of the compiled methods, including the ones which are only declared so far
+     */
+    private final HashMap<CompilerMethod, LLVMValueRef> methodFunctions = new HashMap<>();
 
     public MLVCompiler(ArrayList<ClassNode> classNodes) {
+        this(classNodes, ResolutionStrategy.LAZY);
+    }
+
+    public MLVCompiler(ArrayList<ClassNode> classNodes, ResolutionStrategy resolutionStrategy) {
         this.index = new CompilerIndex(classNodes);
+        this.resolutionStrategy = resolutionStrategy;
 
         this.createModule();
     }
@@ -28,6 +59,12 @@ public class MLVCompiler {
     private void createModule() {
         this.module = LLVMModuleCreateWithName("̳̿\u202E̳̳̳̳̳̳̳̳̿̿̿̿̊̿̿̿̿̊ด้็็็็็้็็็็็้็็็็็้็็็็็้็็็็็้็็็็็้็็็็็ฏ๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎ํํํํํํํํํํํํํํํํํํํํํํํํํํ ̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̿̿̿̿̊̿̿̿̿̊̿̿̿̿̊̿̿̿̿̊̿̿̿ด้็็็็็้็็็็็้็็็็็้็็็็็้็็็็็้็็็็็้็็็็็ฏ๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎๎ํํํํํํํํํํํํํํํํํํํํํํํํํํ ̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̳̿̊̿̿̿̿̊̿̿̿̿̊̿̿̿̿̊̿̿̿̿̊̿̿̿̿̊̿");
         this.jni = new JNI(this.module);
+        this.classCache = new ClassCache(this);
+        this.methodIdCache = new MemberIdCache(this, MemberIdCache.MemberType.METHOD);
+        this.fieldIdCache = new MemberIdCache(this, MemberIdCache.MemberType.FIELD);
+        this.stringPool = new StringPool(this);
+        this.boxCache = new BoxCache(this);
+        this.directBufferCache = new DirectBufferCache(this);
 
         var fltUsedConst = LLVM.LLVMAddGlobal(this.module, LLVM.LLVMInt32Type(), "_fltused");
         LLVM.LLVMSetGlobalConstant(fltUsedConst, 1);
@@ -49,12 +86,67 @@ public class MLVCompiler {
         LLVM.LLVMBuildBr(translatedMethod.getLlvmBuilder(), blocks.get(0).getLlvmBlock());
 
         method.setWasCompiled();
+
+        this.translatedMethods.add(translatedMethod);
+    }
+
+    /**
+     * Generates the module-level functions (JNI_OnLoad, JNI_OnUnload). Has to be called after all methods were compiled.
+     */
+    public void finishModule() {
+        var lifecycle = new LibraryLifecycle(this);
+
+        lifecycle.buildOnLoad(this.translatedMethods);
+        lifecycle.buildOnUnload();
+    }
+
+    /**
+     * Returns the native function of a method which is (or will be) compiled
+     */
+    public LLVMValueRef getMethodFunction(CompilerMethod method) {
+        return this.methodFunctions.computeIfAbsent(method, m -> TranslatedMethod.declareFunction(this, m));
     }
 
     public CompilerIndex getIndex() {
         return index;
     }
 
+    public ResolutionStrategy getResolutionStrategy() {
+        return resolutionStrategy;
+    }
+
+    /**
+     * Are the classes of lambdas in compiled methods generated at compile time?
+     *
+     * @see net.superblaubeere27.masxinlingvaj.preprocessor.LambdaPrecompiler
+     */
+    public boolean isPrecompileLambdas() {
+        return precompileLambdas;
+    }
+
+    /**
+     * Has to be called before the preprocessors run
+     */
+    public void setPrecompileLambdas(boolean precompileLambdas) {
+        this.precompileLambdas = precompileLambdas;
+    }
+
+    /**
+     * How the arrays of loops are pinned
+     *
+     * @see net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays
+     */
+    public ArrayPinning getArrayPinning() {
+        return arrayPinning;
+    }
+
+    /**
+     * Has to be called before the methods are compiled
+     */
+    public void setArrayPinning(ArrayPinning arrayPinning) {
+        this.arrayPinning = arrayPinning;
+    }
+
     public JNI getJni() {
         return jni;
     }
@@ -62,4 +154,28 @@ public class MLVCompiler {
     public LLVMModuleRef getModule() {
         return module;
     }
+
+    public ClassCache getClassCache() {
+        return classCache;
+    }
+
+    public MemberIdCache getMethodIdCache() {
+        return methodIdCache;
+    }
+
+    public MemberIdCache getFieldIdCache() {
+        return fieldIdCache;
+    }
+
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    public BoxCache getBoxCache() {
+        return boxCache;
+    }
+
+    public DirectBufferCache getDirectBufferCache() {
+        return directBufferCache;
+    }
 }
@@ -0,0 +1,38 @@
+package net.superblaubeere27.masxinlingvaj.compiler;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Decides when the module-level caches (classes, method and field ids, string literals) are filled.
+ * <p>
+ * Entries which couldn't be resolved ahead of time are always resolved lazily, so a failing lookup throws at the same
+ * place as with {@link #LAZY}.
+ */
+public enum ResolutionStrategy {
+    /**
+     * Every entry is resolved when a compiled method needs it the first time
+     */
+    LAZY,
+    /**
+     * All entries are resolved in JNI_OnLoad, so no call pays the first-call cost. Looking up method and field ids
+     * initializes their classes, so static initializers may run while the library is loaded.
+     */
+    EAGER,
+    /**
+     * JNI_OnLoad starts a native daemon thread which resolves the entries while the program continues. Ids of members
+     * of the compiled program are left to the lazy path since initializing its classes from a second thread could
+     * deadlock. Falls back to {@link #EAGER} if no thread can be started.
+     * <p>
+     * The thread is started with pthreads, so this is only supported on POSIX targets.
+     */
+    BACKGROUND;
+
+    public static ResolutionStrategy fromString(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid resolution strategy: " + name + ". Supported strategies: " + Arrays.toString(values()));
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package net.superblaubeere27.masxinlingvaj.compiler;
 
-import net.superblaubeere27.masxinlingvaj.compiler.jni.JNI;
-import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.MethodStack;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
 import net.superblaubeere27.masxinlingvaj.utils.Mangle;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
@@ -16,12 +17,21 @@ import org.bytedeco.llvm.global.LLVM;
 import org.objectweb.asm.Type;
 
 import static net.superblaubeere27.masxinlingvaj.utils.TypeUtils.getEffectiveArgumentTypes;
-import static org.bytedeco.llvm.global.LLVM.LLVMBuildLoad;
-import static org.bytedeco.llvm.global.LLVM.LLVMBuildStructGEP;
 
 public class TranslatedMethod {
+    /**
+     * How much stack the compiled methods may use below the last frame whose stack the VM has checked. Compiled methods
+     * which call each other directly bypass the VM's stack overflow check, so a direct call which would exceed this
+     * budget goes through the VM instead.
+     * <p>
+     * The VM makes sure that its shadow zone (at least 7 pages on x86-64) is available below every native method it
+     * enters. The budget leaves most of it to the last callee and the JNI functions it calls.
+     */
+    private static final int STACK_BUDGET = 8 * 1024;
+
     private final MethodStack stack;
     private final LLVMValueRef llvmFunction;
+    private final LLVMValueRef entryFunction;
     private final LLVMBuilderRef llvmBuilder;
     private final CompilerMethod compilerMethod;
 
@@ -30,16 +40,43 @@ public class TranslatedMethod {
      */
     private final LLVMValueRef jniFunctionTable;
 
-    private TranslatedMethod(LLVMValueRef llvmFunction, MethodStack stack, LLVMBuilderRef llvmBuilder, CompilerMethod compilerMethod, LLVMValueRef jniFunctionTable) {
+    /**
+     * The arrays which are pinned while the method runs, <code>null</code> if there are none
+     */
+    private PinnedArrays pinnedArrays;
+
+    private TranslatedMethod(LLVMValueRef llvmFunction, LLVMValueRef entryFunction, MethodStack stack, LLVMBuilderRef llvmBuilder, CompilerMethod compilerMethod, LLVMValueRef jniFunctionTable) {
         this.llvmFunction = llvmFunction;
+        this.entryFunction = entryFunction;
         this.stack = stack;
         this.llvmBuilder = llvmBuilder;
         this.compilerMethod = compilerMethod;
         this.jniFunctionTable = jniFunctionTable;
     }
 
-    static TranslatedMethod createFromCompilerMethod(MLVCompiler compiler, CompilerMethod compilerMethod) {
+    /**
+     * Declares the native function of a compiled method. Compiled methods can call each other directly, so it might
+     * be declared before the method itself is compiled.
+     * <p>
+     * The function takes the JNI arguments followed by the stack limit (see {@link #getStackLimit()}). The VM calls
+     * it through the entry function, see {@link #buildEntryFunction(MLVCompiler, CompilerMethod, LLVMValueRef)}.
+     */
+    static LLVMValueRef declareFunction(MLVCompiler compiler, CompilerMethod compilerMethod) {
         var mangledName = Mangle.mangleMethod(compilerMethod.getIdentifier());
+
+        var method = LLVM.LLVMAddFunction(compiler.getModule(),
+                mangledName + "_impl",
+                createFunctionType(compiler, compilerMethod, true));
+
+        LLVM.LLVMSetLinkage(method, LLVM.LLVMInternalLinkage);
+
+        return method;
+    }
+
+    /**
+     * @param withStackLimit if the <code>i8* stack_limit</code> parameter should be appended
+     */
+    private static LLVMTypeRef createFunctionType(MLVCompiler compiler, CompilerMethod compilerMethod, boolean withStackLimit) {
         var jni = compiler.getJni();
 
         // Get the JVM argument types and return type of the function
@@ -50,7 +87,7 @@ public class TranslatedMethod {
         int paramIdx = compilerMethod.isStatic() ? 2 : 1;
 
         // static methods don't have the *this* parameter
-        LLVMTypeRef[] paramTypes = new LLVMTypeRef[paramIdx + argumentTypes.length];
+        LLVMTypeRef[] paramTypes = new LLVMTypeRef[paramIdx + argumentTypes.length + (withStackLimit ? 1 : 0)];
 
         // param_0 = JNIEnv*
         paramTypes[0] = LLVM.LLVMPointerType(jni.getJniEnv().getType(), 0);
@@ -61,14 +98,69 @@ public class TranslatedMethod {
             paramTypes[paramIdx + i] = jni.toNativeType(argumentTypes[i]).getLLVMType();
         }
 
-        var method = LLVM.LLVMAddFunction(compiler.getModule(),
-                mangledName,
-                LLVM.LLVMFunctionType(jni.toNativeType(returnType).getLLVMType(),
-                        new PointerPointer<>(paramTypes),
-                        paramTypes.length,
-                        0));
+        if (withStackLimit)
+            paramTypes[paramTypes.length - 1] = LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0);
+
+        return LLVM.LLVMFunctionType(jni.toNativeType(returnType).getLLVMType(),
+                new PointerPointer<>(paramTypes),
+                paramTypes.length,
+                0);
+    }
+
+    /**
+     * Builds the function which is registered as the native method. The VM has checked the stack when it calls the
+     * function, so the stack limit is set to {@link #STACK_BUDGET} bytes below its frame.
+     */
+    private static LLVMValueRef buildEntryFunction(MLVCompiler compiler, CompilerMethod compilerMethod, LLVMValueRef method) {
+        var entry = LLVM.LLVMAddFunction(compiler.getModule(),
+                Mangle.mangleMethod(compilerMethod.getIdentifier()),
+                createFunctionType(compiler, compilerMethod, false));
+
+        // The method isn't exported, JNI_OnLoad binds it with RegisterNatives
+        LLVM.LLVMSetLinkage(entry, LLVM.LLVMInternalLinkage);
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(entry, "entry"));
+
+        var paramCount = LLVM.LLVMCountParams(entry);
+        var arguments = new LLVMValueRef[paramCount + 1];
+
+        for (int i = 0; i < paramCount; i++) {
+            arguments[i] = LLVM.LLVMGetParam(entry, i);
+        }
+
+        var frameAddress = LLVMUtils.generateIntrinsicCall(compiler, builder, LLVMIntrinsic.FRAME_ADDRESS,
+                LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), 0, 0));
+
+        // The stack limit isn't an address of an object, so the GEP can't be inbounds
+        arguments[paramCount] = LLVM.LLVMBuildGEP(builder,
+                frameAddress,
+                new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -STACK_BUDGET, 1)}),
+                1,
+                "stack_limit");
+
+        var result = LLVM.LLVMBuildCall(builder, method, new PointerPointer<>(arguments), arguments.length, "");
+
+        if (LLVM.LLVMGetTypeKind(LLVM.LLVMGetReturnType(LLVM.LLVMGetElementType(LLVM.LLVMTypeOf(entry)))) == LLVM.LLVMVoidTypeKind) {
+            LLVM.LLVMBuildRetVoid(builder);
+        } else {
+            LLVM.LLVMBuildRet(builder, result);
+        }
 
-        LLVM.LLVMSetDLLStorageClass(method, LLVM.LLVMDLLExportStorageClass);
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return entry;
+    }
+
+    static TranslatedMethod createFromCompilerMethod(MLVCompiler compiler, CompilerMethod compilerMethod) {
+        var jni = compiler.getJni();
+        var method = compiler.getMethodFunction(compilerMethod);
+
+        var argumentTypes = getEffectiveArgumentTypes(compilerMethod);
+
+        // The index the params given to the method start
+        int paramIdx = compilerMethod.isStatic() ? 2 : 1;
 
         var stack = new MethodStack(compilerMethod, LLVM.LLVMAppendBasicBlock(method, "stack-allocs"));
 
@@ -88,11 +180,9 @@ public class TranslatedMethod {
             paramStackIdx += argumentTypes[i].getSize();
         }
 
-        var functionTable = LLVMBuildLoad(builder,
-                LLVMBuildStructGEP(builder, LLVM.LLVMGetParam(method, 0), 0, ""),
-                "function_table");
+        var functionTable = jni.getJniEnv().buildFunctionTableLoad(builder, LLVM.LLVMGetParam(method, 0));
 
-        return new TranslatedMethod(method, stack, builder, compilerMethod, functionTable);
+        return new TranslatedMethod(method, buildEntryFunction(compiler, compilerMethod, method), stack, builder, compilerMethod, functionTable);
     }
 
     public LLVMBuilderRef getLlvmBuilder() {
@@ -103,6 +193,13 @@ public class TranslatedMethod {
         return llvmFunction;
     }
 
+    /**
+     * The function which is registered as the native method
+     */
+    public LLVMValueRef getEntryFunction() {
+        return entryFunction;
+    }
+
     public MethodStack getStack() {
         return stack;
     }
@@ -115,31 +212,58 @@ public class TranslatedMethod {
         return LLVM.LLVMGetParam(this.getLlvmFunction(), 0);
     }
 
-    public LLVMValueRef buildFindClass(JNI jni, String clazz) {
-        return jni.getJniEnv().callEnvironmentMethod(this,
-                this.getEnvPtr(),
-                JNIEnv.JNIEnvMethod.FindClass,
-                LLVM.LLVMBuildGlobalStringPtr(this.llvmBuilder, clazz, "class"));
+    /**
+     * The lowest address the frames of direct calls may reach before a call has to go through the VM again, which
+     * checks the stack for overflows
+     */
+    public LLVMValueRef getStackLimit() {
+        return LLVM.LLVMGetParam(this.getLlvmFunction(), LLVM.LLVMCountParams(this.getLlvmFunction()) - 1);
+    }
+
+    /**
+     * Returns the class with the given name. The result is NULL if the class couldn't be loaded, an exception is
+     * pending in this case.
+     */
+    public LLVMValueRef buildFindClass(MLVCompiler compiler, String clazz) {
+        // Static methods get their declaring class passed as a parameter
+        if (this.compilerMethod.isStatic() && clazz.equals(this.compilerMethod.getParent().getName())) {
+            return LLVM.LLVMGetParam(this.llvmFunction, 1);
+        }
+
+        return compiler.getClassCache().buildGetClass(this.llvmBuilder, this.getEnvPtr(), clazz);
     }
 
-    public LLVMValueRef buildGetFieldID(JNI jni, MethodOrFieldIdentifier identifier, LLVMValueRef classId, boolean isStatic) {
-        return jni.getJniEnv().callEnvironmentMethod(
-                this, this.getEnvPtr(),
-                isStatic ? JNIEnv.JNIEnvMethod.GetStaticFieldID : JNIEnv.JNIEnvMethod.GetFieldID,
-                classId,
-                LLVM.LLVMBuildGlobalStringPtr(this.llvmBuilder, identifier.getName(), "field_name"),
-                LLVM.LLVMBuildGlobalStringPtr(this.llvmBuilder, identifier.getDesc(), "field_sig")
-        );
+    /**
+     * Returns the (cached) id of the given field. The result is NULL if the field couldn't be resolved, an exception
+     * is pending in this case.
+     */
+    public LLVMValueRef buildGetFieldID(MLVCompiler compiler, MethodOrFieldIdentifier identifier, boolean isStatic) {
+        return compiler.getFieldIdCache().buildGetId(this.llvmBuilder, this.getEnvPtr(), identifier, isStatic);
     }
 
-    public LLVMValueRef buildGetMethodID(JNI jni, MethodOrFieldIdentifier identifier, LLVMValueRef classId, boolean isStatic) {
-        return jni.getJniEnv().callEnvironmentMethod(
-                this, this.getEnvPtr(),
-                isStatic ? JNIEnv.JNIEnvMethod.GetStaticMethodID : JNIEnv.JNIEnvMethod.GetMethodID,
-                classId,
-                LLVM.LLVMBuildGlobalStringPtr(this.llvmBuilder, identifier.getName(), "method_name"),
-                LLVM.LLVMBuildGlobalStringPtr(this.llvmBuilder, identifier.getDesc(), "method_sig")
-        );
+    /**
+     * Returns the (cached) id of the given method. The result is NULL if the method couldn't be resolved, an exception
+     * is pending in this case.
+     */
+    public LLVMValueRef buildGetMethodID(MLVCompiler compiler, MethodOrFieldIdentifier identifier, boolean isStatic) {
+        return compiler.getMethodIdCache().buildGetId(this.llvmBuilder, this.getEnvPtr(), identifier, isStatic);
+    }
+
+    public PinnedArrays getPinnedArrays() {
+        return pinnedArrays;
+    }
+
+    public void setPinnedArrays(PinnedArrays pinnedArrays) {
+        this.pinnedArrays = pinnedArrays;
+    }
+
+    /**
+     * Releases the pinned arrays (if there are any). Has to be called before the method returns or calls a JNI function
+     * which isn't allowed while an array is pinned.
+     */
+    public void buildReleasePinnedArrays(MLVCompiler compiler) {
+        if (this.pinnedArrays != null)
+            this.pinnedArrays.buildRelease(compiler, this);
     }
 
     public LLVMValueRef getJniFunctionTable() {
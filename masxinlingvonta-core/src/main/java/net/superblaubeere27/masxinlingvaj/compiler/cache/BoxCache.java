@@ -0,0 +1,273 @@
+package net.superblaubeere27.masxinlingvaj.compiler.cache;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.BoxType;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.EnumMap;
+import java.util.Locale;
+
+/**
+ * Boxes primitives without calling <code>valueOf</code> over JNI.
+ * <p>
+ * The instances which <code>valueOf</code> is guaranteed to reuse (e.g. -128..127 for <code>Integer</code>) are
+ * looked up once with <code>valueOf</code> and kept as global references in a module-level array, so they keep their
+ * identity. All other values are boxed with <code>NewObject</code>, just like <code>valueOf</code> would do.
+ */
+public class BoxCache extends ModuleCache {
+    private final EnumMap<BoxType, BoxFunctions> functions = new EnumMap<>(BoxType.class);
+
+    public BoxCache(MLVCompiler compiler) {
+        super(compiler);
+    }
+
+    /**
+     * Builds code that boxes the given value.
+     *
+     * @param value the value in its stack storage type
+     * @return the boxed value or NULL if an exception was thrown
+     */
+    public LLVMValueRef buildBox(LLVMBuilderRef builder, LLVMValueRef envPtr, BoxType type, LLVMValueRef value) {
+        var boxFunctions = this.functions.computeIfAbsent(type, this::createBoxFunctions);
+
+        return LLVM.LLVMBuildCall(builder, boxFunctions.accessor, new PointerPointer<>(new LLVMValueRef[]{envPtr, value}), 2, "boxed");
+    }
+
+    /**
+     * Builds code that deletes the global references of all instances which were cached so far
+     */
+    public void buildRelease(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        for (var entry : this.functions.entrySet()) {
+            var cache = entry.getValue().cache;
+
+            if (cache == null)
+                continue;
+
+            var size = entry.getKey().getCacheSize();
+
+            var lastBlock = LLVM.LLVMGetInsertBlock(builder);
+            var headerBlock = LLVM.LLVMAppendBasicBlock(function, "release_boxes");
+            var bodyBlock = LLVM.LLVMAppendBasicBlock(function, "release_box");
+            var exitBlock = LLVM.LLVMAppendBasicBlock(function, "boxes_released");
+
+            LLVM.LLVMBuildBr(builder, headerBlock);
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, headerBlock);
+
+            var index = LLVM.LLVMBuildPhi(builder, JNIType.INT.getLLVMType(), "index");
+
+            LLVM.LLVMBuildCondBr(builder,
+                    LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntULT, index, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), size, 0), ""),
+                    bodyBlock,
+                    exitBlock);
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, bodyBlock);
+
+            buildReleaseGlobalRef(builder, function, functionTable, envPtr, buildEntryPointer(builder, cache, index));
+
+            var nextIndex = LLVM.LLVMBuildAdd(builder, index, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 1, 0), "");
+
+            LLVM.LLVMAddIncoming(index,
+                    new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0), nextIndex}),
+                    new PointerPointer<>(new LLVMBasicBlockRef[]{lastBlock, LLVM.LLVMGetInsertBlock(builder)}),
+                    2);
+
+            LLVM.LLVMBuildBr(builder, headerBlock);
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, exitBlock);
+        }
+    }
+
+    /**
+     * The instances are created on demand, <code>valueOf</code> might initialize classes
+     */
+    @Override
+    public void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+    }
+
+    private BoxFunctions createBoxFunctions(BoxType type) {
+        var name = type.name().toLowerCase(Locale.ROOT);
+        var storageType = type.getPrimitiveType().getStackStorageType();
+
+        // i8* (JNIEnv*, <stack storage type>)
+        var boxFunctionType = LLVM.LLVMFunctionType(JNIType.OBJECT.getLLVMType(),
+                new PointerPointer<>(new LLVMTypeRef[]{
+                        LLVM.LLVMPointerType(this.compiler.getJni().getJniEnv().getType(), 0),
+                        storageType.getLLVMType()
+                }),
+                2,
+                0);
+
+        var newBox = buildNewBoxFunction(type, name, boxFunctionType);
+
+        LLVMValueRef cache = null;
+        LLVMValueRef resolver = null;
+
+        if (type.getCacheSize() > 0) {
+            var cacheType = LLVM.LLVMArrayType(JNIType.OBJECT.getLLVMType(), type.getCacheSize());
+
+            cache = LLVM.LLVMAddGlobal(this.compiler.getModule(), cacheType, name + "_cache");
+
+            LLVM.LLVMSetInitializer(cache, LLVM.LLVMConstNull(cacheType));
+            LLVM.LLVMSetLinkage(cache, LLVM.LLVMInternalLinkage);
+            LLVM.LLVMSetAlignment(cache, 16);
+
+            resolver = buildResolver(type, name, boxFunctionType, cache);
+        }
+
+        return new BoxFunctions(cache, buildAccessor(type, name, boxFunctionType, cache, resolver, newBox));
+    }
+
+    /**
+     * The fast path: Loads the cached instance if the value is in the cache's range, otherwise creates a new one
+     */
+    private LLVMValueRef buildAccessor(BoxType type, String name, LLVMTypeRef functionType, LLVMValueRef cache, LLVMValueRef resolver, LLVMValueRef newBox) {
+        var accessor = LLVM.LLVMAddFunction(this.compiler.getModule(), "box_" + name, functionType);
+
+        LLVM.LLVMSetLinkage(accessor, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(accessor, "alwaysinline");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(accessor, "entry"));
+
+        var params = new LLVMValueRef[]{LLVM.LLVMGetParam(accessor, 0), LLVM.LLVMGetParam(accessor, 1)};
+
+        if (cache != null) {
+            var value = params[1];
+            var index = LLVM.LLVMBuildSub(builder, value, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(value), type.getCacheLow(), 1), "index");
+
+            // Values below the range wrap around to big unsigned indices
+            var cached = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntULT, index, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(value), type.getCacheSize(), 0), "");
+
+            LLVMUtils.buildIf(builder, accessor, cached, () -> {
+                var instance = buildSlotLoad(builder, buildEntryPointer(builder, cache, index), "cached");
+
+                LLVMUtils.buildIf(builder, accessor, LLVM.LLVMBuildIsNull(builder, instance, ""), () ->
+                        LLVM.LLVMBuildRet(builder, LLVM.LLVMBuildCall(builder, resolver, new PointerPointer<>(params), 2, "resolved")));
+
+                LLVM.LLVMBuildRet(builder, instance);
+            });
+        }
+
+        LLVM.LLVMBuildRet(builder, LLVM.LLVMBuildCall(builder, newBox, new PointerPointer<>(params), 2, "new_box"));
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return accessor;
+    }
+
+    /**
+     * The slow path of cached values: Looks up the instance with <code>valueOf</code> and publishes it
+     */
+    private LLVMValueRef buildResolver(BoxType type, String name, LLVMTypeRef functionType, LLVMValueRef cache) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+        var resolver = LLVM.LLVMAddFunction(this.compiler.getModule(), "resolve_boxed_" + name, functionType);
+
+        LLVM.LLVMSetLinkage(resolver, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(resolver, "noinline");
+        LLVMUtils.addFunctionAttribute(resolver, "cold");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(resolver, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(resolver, 0);
+        var value = LLVM.LLVMGetParam(resolver, 1);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var wrapperClass = this.compiler.getClassCache().buildGetClass(builder, envPtr, type.getWrapperClass());
+
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, wrapperClass, ""), () -> LLVM.LLVMBuildRet(builder, wrapperClass));
+
+        var valueOf = this.compiler.getMethodIdCache().buildGetId(builder, envPtr, type.getValueOf(), true);
+
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, valueOf, ""), () -> LLVM.LLVMBuildRet(builder, valueOf));
+
+        var instance = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.CallStaticObjectMethod,
+                wrapperClass,
+                valueOf,
+                value);
+
+        LLVMUtils.buildIf(builder, resolver, buildExceptionThrown(builder, functionTable, envPtr), () -> LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType())));
+
+        var index = LLVM.LLVMBuildSub(builder, value, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(value), type.getCacheLow(), 1), "index");
+
+        buildPublishGlobalRef(builder, resolver, functionTable, envPtr, buildEntryPointer(builder, cache, index), instance);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return resolver;
+    }
+
+    /**
+     * Boxes values which aren't cached with <code>NewObject</code>
+     */
+    private LLVMValueRef buildNewBoxFunction(BoxType type, String name, LLVMTypeRef functionType) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(), "new_boxed_" + name, functionType);
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(function, "noinline");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(function, 0);
+        var value = LLVM.LLVMGetParam(function, 1);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var wrapperClass = this.compiler.getClassCache().buildGetClass(builder, envPtr, type.getWrapperClass());
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, wrapperClass, ""), () -> LLVM.LLVMBuildRet(builder, wrapperClass));
+
+        var constructor = this.compiler.getMethodIdCache().buildGetId(builder, envPtr, type.getConstructor(), false);
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, constructor, ""), () -> LLVM.LLVMBuildRet(builder, constructor));
+
+        // Floats are promoted to double since the function is variadic
+        if (type.getPrimitiveType() == JNIType.FLOAT)
+            value = LLVM.LLVMBuildFPExt(builder, value, JNIType.DOUBLE.getLLVMType(), "");
+
+        // NewObject returns NULL if it has thrown an exception
+        LLVM.LLVMBuildRet(builder, jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.NewObject,
+                wrapperClass,
+                constructor,
+                value));
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    private static LLVMValueRef buildEntryPointer(LLVMBuilderRef builder, LLVMValueRef cache, LLVMValueRef index) {
+        return LLVM.LLVMBuildInBoundsGEP(builder, cache, new PointerPointer<>(new LLVMValueRef[]{
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0),
+                index
+        }), 2, "entry");
+    }
+
+    private static class BoxFunctions {
+        /**
+         * <code>[size x jobject]</code>, <code>null</code> if the wrapper has no cached instances
+         */
+        private final LLVMValueRef cache;
+        private final LLVMValueRef accessor;
+
+        private BoxFunctions(LLVMValueRef cache, LLVMValueRef accessor) {
+            this.cache = cache;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package net.superblaubeere27.masxinlingvaj.compiler.cache;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Caches the classes used by the compiled code in module-level slots.
+ * <p>
+ * Every class name gets exactly one slot. The first lookup resolves the class with FindClass and publishes a global
+ * reference to it, every later lookup is just an atomic load. The references are deleted again in JNI_OnUnload.
+ * <p>
+ * The references are strong on purpose: The {@link MemberIdCache} relies on them to keep its IDs valid and a weak
+ * reference would need a <code>NewLocalRef</code> on every lookup. The downside is that the cached classes pin the
+ * class loader of the library. Since the VM only unloads a library together with its class loader, JNI_OnUnload never
+ * runs while any class is cached. It only releases the references if the library is unloaded in another way, for
+ * example at the shutdown of the VM.
+ * <p>
+ * If the module resolves its caches ahead of time, JNI_OnLoad stores the class loader of the compiled classes with
+ * {@link #buildSetClassLoader(LLVMBuilderRef, LLVMValueRef, LLVMValueRef, LLVMValueRef)}. The warm-up loads the classes
+ * through that loader, so it works on threads without Java frames and doesn't initialize any classes.
+ */
+public class ClassCache extends ModuleCache {
+    private static final MethodOrFieldIdentifier FOR_NAME = new MethodOrFieldIdentifier("java/lang/Class",
+            "forName",
+            "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;");
+
+    private final LinkedHashMap<String, CachedClass> cachedClasses = new LinkedHashMap<>();
+
+    private LLVMValueRef loaderSlot;
+    private LLVMValueRef loadClassFunction;
+    private LLVMValueRef preloadClassFunction;
+
+    public ClassCache(MLVCompiler compiler) {
+        super(compiler);
+    }
+
+    /**
+     * Builds code that returns a global reference to the given class.
+     *
+     * @return the class or NULL if it couldn't be loaded. In this case an exception is pending.
+     */
+    public LLVMValueRef buildGetClass(LLVMBuilderRef builder, LLVMValueRef envPtr, String className) {
+        var cachedClass = this.cachedClasses.computeIfAbsent(className, this::createCachedClass);
+
+        return buildAccessorCall(builder, cachedClass.accessor, envPtr, "class");
+    }
+
+    /**
+     * Builds code that loads a class with <code>Class.forName(name, false, loader)</code>. In contrast to FindClass,
+     * the class isn't initialized and the lookup doesn't depend on the calling Java frame.
+     *
+     * @param loader the class loader, NULL stands for the bootstrap class loader
+     * @return a local reference to the class or NULL if it couldn't be loaded. In this case an exception is pending.
+     */
+    public LLVMValueRef buildLoadClass(LLVMBuilderRef builder, LLVMValueRef envPtr, LLVMValueRef loader, String className) {
+        var dottedName = className.replace('/', '.');
+
+        return LLVM.LLVMBuildCall(builder, getLoadClassFunction(), new PointerPointer<>(new LLVMValueRef[]{
+                envPtr,
+                loader,
+                LLVMUtils.buildUTF16Constant(this.compiler, dottedName),
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), dottedName.length(), 0)
+        }), 4, "loaded_class");
+    }
+
+    /**
+     * Builds code that keeps a global reference to the loader which is used by the warm-up
+     */
+    public void buildSetClassLoader(LLVMBuilderRef builder, LLVMValueRef functionTable, LLVMValueRef envPtr, LLVMValueRef loader) {
+        var globalRef = this.compiler.getJni().getJniEnv().callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.NewGlobalRef,
+                loader);
+
+        buildSlotStore(builder, getLoaderSlot(), globalRef);
+    }
+
+    /**
+     * Loads all classes which were requested so far through the class loader set by
+     * {@link #buildSetClassLoader(LLVMBuilderRef, LLVMValueRef, LLVMValueRef, LLVMValueRef)}
+     */
+    @Override
+    public void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        // Might add java/lang/Class to the cache, so it has to be created before the classes are collected
+        var preloadClass = getPreloadClassFunction();
+
+        for (var entry : new ArrayList<>(this.cachedClasses.entrySet())) {
+            var dottedName = entry.getKey().replace('/', '.');
+
+            LLVM.LLVMBuildCall(builder, preloadClass, new PointerPointer<>(new LLVMValueRef[]{
+                    envPtr,
+                    entry.getValue().slot,
+                    LLVMUtils.buildUTF16Constant(this.compiler, dottedName),
+                    LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), dottedName.length(), 0)
+            }), 4, "");
+        }
+    }
+
+    /**
+     * Builds code that deletes the global references of all classes which were resolved so far
+     */
+    public void buildRelease(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        for (CachedClass cachedClass : this.cachedClasses.values()) {
+            buildReleaseGlobalRef(builder, function, functionTable, envPtr, cachedClass.slot);
+        }
+
+        if (this.loaderSlot != null) {
+            buildReleaseGlobalRef(builder, function, functionTable, envPtr, this.loaderSlot);
+        }
+    }
+
+    private LLVMValueRef getLoaderSlot() {
+        if (this.loaderSlot == null) {
+            this.loaderSlot = createSlot("class_loader");
+        }
+
+        return this.loaderSlot;
+    }
+
+    /**
+     * <code>jclass load_class(JNIEnv *env, jobject loader, const jchar *name, jint length)</code>
+     */
+    private LLVMValueRef getLoadClassFunction() {
+        if (this.loadClassFunction != null) {
+            return this.loadClassFunction;
+        }
+
+        var jniEnv = this.compiler.getJni().getJniEnv();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(), "load_class", LLVM.LLVMFunctionType(
+                JNIType.OBJECT.getLLVMType(),
+                new PointerPointer<>(new LLVMTypeRef[]{
+                        LLVM.LLVMPointerType(jniEnv.getType(), 0),
+                        JNIType.OBJECT.getLLVMType(),
+                        LLVM.LLVMPointerType(JNIType.CHAR.getLLVMType(), 0),
+                        JNIType.INT.getLLVMType()
+                }),
+                4,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(function, "noinline");
+        LLVMUtils.addFunctionAttribute(function, "cold");
+
+        this.loadClassFunction = function;
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(function, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var classClass = buildGetClass(builder, envPtr, "java/lang/Class");
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, classClass, ""), () -> LLVM.LLVMBuildRet(builder, classClass));
+
+        var forName = this.compiler.getMethodIdCache().buildGetId(builder, envPtr, FOR_NAME, true);
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, forName, ""), () -> LLVM.LLVMBuildRet(builder, forName));
+
+        var nameString = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.NewString,
+                LLVM.LLVMGetParam(function, 2),
+                LLVM.LLVMGetParam(function, 3));
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, nameString, ""), () -> LLVM.LLVMBuildRet(builder, nameString));
+
+        // The boolean is promoted to int since the function is variadic
+        var clazz = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.CallStaticObjectMethod,
+                classClass,
+                forName,
+                nameString,
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0),
+                LLVM.LLVMGetParam(function, 1));
+
+        jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, nameString);
+
+        var exceptionThrown = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionCheck);
+
+        LLVMUtils.buildIf(builder,
+                function,
+                LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, exceptionThrown, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(exceptionThrown), 0, 0), ""),
+                () -> LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType())));
+
+        LLVM.LLVMBuildRet(builder, clazz);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    /**
+     * <code>void preload_class(JNIEnv *env, jclass *slot, const jchar *name, jint length)</code>, loads the class
+     * through the stored class loader and publishes it in the slot. Failures are ignored.
+     */
+    private LLVMValueRef getPreloadClassFunction() {
+        if (this.preloadClassFunction != null) {
+            return this.preloadClassFunction;
+        }
+
+        var jniEnv = this.compiler.getJni().getJniEnv();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(), "preload_class", LLVM.LLVMFunctionType(
+                LLVM.LLVMVoidType(),
+                new PointerPointer<>(new LLVMTypeRef[]{
+                        LLVM.LLVMPointerType(jniEnv.getType(), 0),
+                        LLVM.LLVMPointerType(JNIType.OBJECT.getLLVMType(), 0),
+                        LLVM.LLVMPointerType(JNIType.CHAR.getLLVMType(), 0),
+                        JNIType.INT.getLLVMType()
+                }),
+                4,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(function, "noinline");
+
+        this.preloadClassFunction = function;
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(function, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var clazz = LLVM.LLVMBuildCall(builder, getLoadClassFunction(), new PointerPointer<>(new LLVMValueRef[]{
+                envPtr,
+                buildSlotLoad(builder, getLoaderSlot(), "loader"),
+                LLVM.LLVMGetParam(function, 2),
+                LLVM.LLVMGetParam(function, 3)
+        }), 4, "loaded_class");
+
+        // The class is looked up again (and throws) when it is needed
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, clazz, ""), () -> {
+            jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionClear);
+
+            LLVM.LLVMBuildRetVoid(builder);
+        });
+
+        buildExchangeGlobalRef(builder, function, functionTable, envPtr, LLVM.LLVMGetParam(function, 1), clazz);
+
+        LLVM.LLVMBuildRetVoid(builder);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    private CachedClass createCachedClass(String className) {
+        var slot = createSlot("class_slot");
+        var resolver = buildResolver(className, slot);
+
+        return new CachedClass(slot, createAccessor("get_class", slot, resolver));
+    }
+
+    /**
+     * The slow path: Looks up the class and publishes it
+     */
+    private LLVMValueRef buildResolver(String className, LLVMValueRef slot) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+        var resolver = createResolver("resolve_class");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(resolver, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(resolver, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var localRef = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.FindClass,
+                LLVM.LLVMBuildGlobalStringPtr(builder, className, "class"));
+
+        // FindClass returns NULL if it has thrown an exception
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, localRef, ""), () -> LLVM.LLVMBuildRet(builder, localRef));
+
+        buildPublishGlobalRef(builder, resolver, functionTable, envPtr, slot, localRef);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return resolver;
+    }
+
+    private static class CachedClass {
+        private final LLVMValueRef slot;
+        private final LLVMValueRef accessor;
+
+        private CachedClass(LLVMValueRef slot, LLVMValueRef accessor) {
+            this.slot = slot;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package net.superblaubeere27.masxinlingvaj.compiler.cache;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * Decides whether compiled code may access the memory of a <code>ByteBuffer</code> directly.
+ * <p>
+ * That's the case for <code>java.nio.DirectByteBuffer</code>s (and their read-only subclass, as long as nothing is
+ * written) which aren't views of a memory segment. Accesses to segments have to check whether the segment is still
+ * alive, so they are left to the VM. Since Java 16 <code>Buffer</code> has a <code>segment</code> field whose type
+ * depends on the version, the id of that field is resolved once and cached here.
+ */
+public class DirectBufferCache extends ModuleCache {
+    /**
+     * The types of <code>Buffer.segment</code>, Java 16 - 18 and Java 19+
+     */
+    private static final String[] SEGMENT_FIELD_TYPES = {
+            "Ljdk/internal/access/foreign/MemorySegmentProxy;",
+            "Ljava/lang/foreign/MemorySegment;"
+    };
+
+    private LLVMValueRef segmentFieldAccessor;
+    private LLVMValueRef addressFunction;
+
+    public DirectBufferCache(MLVCompiler compiler) {
+        super(compiler);
+    }
+
+    /**
+     * Builds code that returns the address of the buffer's memory.
+     *
+     * @param buffer a non-null <code>ByteBuffer</code>
+     * @param write  is the memory going to be written?
+     * @return the address or NULL if the buffer has to be accessed through the VM. No exception is pending in both cases.
+     */
+    public LLVMValueRef buildGetAddress(LLVMBuilderRef builder, LLVMValueRef envPtr, LLVMValueRef buffer, boolean write) {
+        return LLVM.LLVMBuildCall(builder, getAddressFunction(), new PointerPointer<>(new LLVMValueRef[]{
+                envPtr,
+                buffer,
+                LLVM.LLVMConstInt(JNIType.BOOLEAN.getLLVMType(), write ? 1 : 0, 0)
+        }), 3, "buffer_address");
+    }
+
+    /**
+     * Resolves the id of <code>Buffer.segment</code> if compiled code needs it. Failures are cached as well, the
+     * accessor never calls the resolver twice.
+     */
+    @Override
+    public void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        if (this.segmentFieldAccessor != null) {
+            buildAccessorCall(builder, this.segmentFieldAccessor, envPtr, "warm_up");
+        }
+    }
+
+    /**
+     * <code>void *direct_buffer_address(JNIEnv *env, jobject buffer, jboolean write)</code>
+     */
+    private LLVMValueRef getAddressFunction() {
+        if (this.addressFunction != null) {
+            return this.addressFunction;
+        }
+
+        var jniEnv = this.compiler.getJni().getJniEnv();
+
+        var function = LLVM.LLVMAddFunction(this.compiler.getModule(), "direct_buffer_address", LLVM.LLVMFunctionType(
+                JNIType.OBJECT.getLLVMType(),
+                new PointerPointer<>(new LLVMTypeRef[]{
+                        LLVM.LLVMPointerType(jniEnv.getType(), 0),
+                        JNIType.OBJECT.getLLVMType(),
+                        JNIType.BOOLEAN.getLLVMType()
+                }),
+                3,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(function, "noinline");
+
+        this.addressFunction = function;
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(function, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(function, 0);
+        var buffer = LLVM.LLVMGetParam(function, 1);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+        var noAddress = LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType());
+
+        // NULL for heap buffers, so no IsInstanceOf is needed for them. A ByteBuffer with an address is a
+        // DirectByteBuffer.
+        var address = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.GetDirectBufferAddress, buffer);
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, address, ""), () -> LLVM.LLVMBuildRet(builder, noAddress));
+
+        // Writes to read-only buffers throw
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMGetParam(function, 2), () -> {
+            var readOnlyClass = this.compiler.getClassCache().buildGetClass(builder, envPtr, "java/nio/DirectByteBufferR");
+
+            LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, readOnlyClass, ""), () -> {
+                jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionClear);
+
+                LLVM.LLVMBuildRet(builder, noAddress);
+            });
+
+            var isReadOnly = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.IsInstanceOf, buffer, readOnlyClass);
+
+            LLVMUtils.buildIf(builder, function, isReadOnly, () -> LLVM.LLVMBuildRet(builder, noAddress));
+        });
+
+        var segmentField = buildAccessorCall(builder, getSegmentFieldAccessor(), envPtr, "segment_field");
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, segmentField, buildNoSegmentField(), ""), () -> {
+            var segment = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.GetObjectField, buffer, segmentField);
+
+            LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNotNull(builder, segment, ""), () -> {
+                jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, segment);
+
+                LLVM.LLVMBuildRet(builder, noAddress);
+            });
+        });
+
+        LLVM.LLVMBuildRet(builder, address);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    private LLVMValueRef getSegmentFieldAccessor() {
+        if (this.segmentFieldAccessor == null) {
+            var slot = createSlot("segment_field_slot");
+
+            this.segmentFieldAccessor = createAccessor("get_segment_field", slot, buildSegmentFieldResolver(slot));
+        }
+
+        return this.segmentFieldAccessor;
+    }
+
+    /**
+     * Looks <code>Buffer.segment</code> up with all known types. If the VM has no such field (Java 15 and older), the
+     * slot is filled with {@link #buildNoSegmentField()}.
+     */
+    private LLVMValueRef buildSegmentFieldResolver(LLVMValueRef slot) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+        var resolver = createResolver("resolve_segment_field");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(resolver, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(resolver, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var bufferClass = this.compiler.getClassCache().buildGetClass(builder, envPtr, "java/nio/Buffer");
+
+        // Can't happen, but then there is nothing to check either
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, bufferClass, ""), () -> {
+            jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionClear);
+
+            LLVM.LLVMBuildRet(builder, buildNoSegmentField());
+        });
+
+        for (String type : SEGMENT_FIELD_TYPES) {
+            var field = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                    JNIEnv.JNIEnvMethod.GetFieldID,
+                    bufferClass,
+                    LLVM.LLVMBuildGlobalStringPtr(builder, "segment", "field_name"),
+                    LLVM.LLVMBuildGlobalStringPtr(builder, type, "field_sig"));
+
+            LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNotNull(builder, field, ""), () -> {
+                buildSlotStore(builder, slot, field);
+
+                LLVM.LLVMBuildRet(builder, field);
+            });
+
+            // NoSuchFieldError
+            jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionClear);
+        }
+
+        buildSlotStore(builder, slot, buildNoSegmentField());
+
+        LLVM.LLVMBuildRet(builder, buildNoSegmentField());
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return resolver;
+    }
+
+    /**
+     * Marks that <code>Buffer.segment</code> doesn't exist. Field ids are pointers, so they are never 1.
+     */
+    private static LLVMValueRef buildNoSegmentField() {
+        return LLVM.LLVMConstIntToPtr(LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), 1, 0), JNIType.OBJECT.getLLVMType());
+    }
+}
@@ -0,0 +1,119 @@
+package net.superblaubeere27.masxinlingvaj.compiler.cache;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Caches the jmethodIDs or jfieldIDs used by the compiled code in module-level slots.
+ * <p>
+ * IDs stay valid as long as their class isn't unloaded, which can't happen since the {@link ClassCache} holds a global
+ * reference to it. So every ID is only resolved once and then published with an atomic store. Two threads which
+ * resolve the same ID at the same time get the same result, so there is no need for a compare-and-swap here.
+ */
+public class MemberIdCache extends ModuleCache {
+    private final MemberType memberType;
+    private final HashMap<MethodOrFieldIdentifier, LLVMValueRef> instanceAccessors = new HashMap<>();
+    private final HashMap<MethodOrFieldIdentifier, LLVMValueRef> staticAccessors = new HashMap<>();
+
+    public MemberIdCache(MLVCompiler compiler, MemberType memberType) {
+        super(compiler);
+
+        this.memberType = memberType;
+    }
+
+    /**
+     * Builds code that returns the id of the given member.
+     *
+     * @return the id or NULL if it couldn't be resolved. In this case an exception is pending.
+     */
+    public LLVMValueRef buildGetId(LLVMBuilderRef builder, LLVMValueRef envPtr, MethodOrFieldIdentifier identifier, boolean isStatic) {
+        var accessors = isStatic ? this.staticAccessors : this.instanceAccessors;
+
+        var accessor = accessors.computeIfAbsent(identifier, id -> {
+            var name = this.memberType.name;
+            var slot = createSlot(name + "_id_slot");
+
+            return createAccessor("get_" + name + "_id", slot, buildResolver(id, isStatic, slot));
+        });
+
+        return buildAccessorCall(builder, accessor, envPtr, this.memberType.name + "_id");
+    }
+
+    /**
+     * Resolves all ids. Note that the VM initializes the owner of a member when its id is looked up.
+     */
+    @Override
+    public void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        buildWarmUp(builder, function, functionTable, envPtr, identifier -> true);
+    }
+
+    /**
+     * Resolves the ids of the members which match the filter
+     */
+    public void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr, Predicate<MethodOrFieldIdentifier> filter) {
+        for (var accessors : List.of(this.instanceAccessors, this.staticAccessors)) {
+            for (var entry : new ArrayList<>(accessors.entrySet())) {
+                if (filter.test(entry.getKey())) {
+                    buildWarmUpAccessor(builder, function, functionTable, envPtr, entry.getValue());
+                }
+            }
+        }
+    }
+
+    private LLVMValueRef buildResolver(MethodOrFieldIdentifier identifier, boolean isStatic, LLVMValueRef slot) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+        var resolver = createResolver("resolve_" + this.memberType.name + "_id");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(resolver, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(resolver, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        var classId = this.compiler.getClassCache().buildGetClass(builder, envPtr, identifier.getOwner());
+
+        // The class couldn't be loaded
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, classId, ""), () -> LLVM.LLVMBuildRet(builder, classId));
+
+        var id = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                isStatic ? this.memberType.staticLookup : this.memberType.instanceLookup,
+                classId,
+                LLVM.LLVMBuildGlobalStringPtr(builder, identifier.getName(), this.memberType.name + "_name"),
+                LLVM.LLVMBuildGlobalStringPtr(builder, identifier.getDesc(), this.memberType.name + "_sig"));
+
+        // The lookup functions return NULL if they have thrown an exception, storing NULL doesn't hurt
+        buildSlotStore(builder, slot, id);
+
+        LLVM.LLVMBuildRet(builder, id);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return resolver;
+    }
+
+    public enum MemberType {
+        METHOD("method", JNIEnv.JNIEnvMethod.GetMethodID, JNIEnv.JNIEnvMethod.GetStaticMethodID),
+        FIELD("field", JNIEnv.JNIEnvMethod.GetFieldID, JNIEnv.JNIEnvMethod.GetStaticFieldID);
+
+        private final String name;
+        private final JNIEnv.JNIEnvMethod instanceLookup;
+        private final JNIEnv.JNIEnvMethod staticLookup;
+
+        MemberType(String name, JNIEnv.JNIEnvMethod instanceLookup, JNIEnv.JNIEnvMethod staticLookup) {
+            this.name = name;
+            this.instanceLookup = instanceLookup;
+            this.staticLookup = staticLookup;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package net.superblaubeere27.masxinlingvaj.compiler.cache;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * Base of the caches which keep lazily resolved JNI handles (classes, method ids, ...) in module-level slots.
+ * <p>
+ * Each cached value consists of a global slot, a resolver which does the actual lookup and publishes the result and an
+ * accessor which is inlined into the compiled methods. The accessor just loads the slot and only calls the resolver if
+ * the slot is still empty.
+ */
+public abstract class ModuleCache {
+    protected final MLVCompiler compiler;
+
+    /**
+     * <code>i8* (JNIEnv*)</code>, the type of all accessors and resolvers
+     */
+    protected final LLVMTypeRef functionType;
+
+    protected ModuleCache(MLVCompiler compiler) {
+        this.compiler = compiler;
+        this.functionType = LLVM.LLVMFunctionType(JNIType.OBJECT.getLLVMType(),
+                new PointerPointer<>(new LLVMTypeRef[]{LLVM.LLVMPointerType(compiler.getJni().getJniEnv().getType(), 0)}),
+                1,
+                0);
+    }
+
+    protected LLVMValueRef createSlot(String name) {
+        var slot = LLVM.LLVMAddGlobal(this.compiler.getModule(), JNIType.OBJECT.getLLVMType(), name);
+
+        LLVM.LLVMSetInitializer(slot, LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType()));
+        LLVM.LLVMSetLinkage(slot, LLVM.LLVMInternalLinkage);
+        LLVM.LLVMSetAlignment(slot, 8);
+
+        return slot;
+    }
+
+    /**
+     * Creates an empty resolver. The resolver must return the resolved value or NULL if an exception was thrown.
+     */
+    protected LLVMValueRef createResolver(String name) {
+        var resolver = LLVM.LLVMAddFunction(this.compiler.getModule(), name, this.functionType);
+
+        LLVM.LLVMSetLinkage(resolver, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(resolver, "noinline");
+        LLVMUtils.addFunctionAttribute(resolver, "cold");
+
+        return resolver;
+    }
+
+    /**
+     * Builds an atomic load of the slot which synchronizes with the store of the resolver
+     */
+    protected LLVMValueRef buildSlotLoad(LLVMBuilderRef builder, LLVMValueRef slot, String name) {
+        var load = LLVM.LLVMBuildLoad(builder, slot, name);
+
+        LLVM.LLVMSetOrdering(load, LLVM.LLVMAtomicOrderingAcquire);
+        LLVM.LLVMSetAlignment(load, 8);
+
+        return load;
+    }
+
+    /**
+     * Builds an atomic store which publishes the resolved value
+     */
+    protected void buildSlotStore(LLVMBuilderRef builder, LLVMValueRef slot, LLVMValueRef value) {
+        var store = LLVM.LLVMBuildStore(builder, value, slot);
+
+        LLVM.LLVMSetOrdering(store, LLVM.LLVMAtomicOrderingRelease);
+        LLVM.LLVMSetAlignment(store, 8);
+    }
+
+    /**
+     * Creates the fast path which is inlined into the compiled methods: Load the slot and only call the resolver if it
+     * is empty
+     */
+    protected LLVMValueRef createAccessor(String name, LLVMValueRef slot, LLVMValueRef resolver) {
+        var accessor = LLVM.LLVMAddFunction(this.compiler.getModule(), name, this.functionType);
+
+        LLVM.LLVMSetLinkage(accessor, LLVM.LLVMInternalLinkage);
+        LLVMUtils.addFunctionAttribute(accessor, "alwaysinline");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(accessor, "entry"));
+
+        var cached = buildSlotLoad(builder, slot, "cached");
+
+        LLVMUtils.buildIf(builder, accessor, LLVM.LLVMBuildIsNull(builder, cached, ""), () -> {
+            var resolved = LLVM.LLVMBuildCall(builder,
+                    resolver,
+                    new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMGetParam(accessor, 0)}),
+                    1,
+                    "resolved");
+
+            LLVM.LLVMBuildRet(builder, resolved);
+        });
+
+        LLVM.LLVMBuildRet(builder, cached);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return accessor;
+    }
+
+    /**
+     * Builds code that creates a global reference of <code>localRef</code> and publishes it in the slot. The local
+     * reference is deleted. If another thread was faster, its reference is returned and ours is deleted again.
+     * <p>
+     * Terminates the current block by returning the published reference from <code>resolver</code>.
+     */
+    protected void buildPublishGlobalRef(LLVMBuilderRef builder, LLVMValueRef resolver, LLVMValueRef functionTable, LLVMValueRef envPtr, LLVMValueRef slot, LLVMValueRef localRef) {
+        LLVM.LLVMBuildRet(builder, buildExchangeGlobalRef(builder, resolver, functionTable, envPtr, slot, localRef));
+    }
+
+    /**
+     * Like {@link #buildPublishGlobalRef(LLVMBuilderRef, LLVMValueRef, LLVMValueRef, LLVMValueRef, LLVMValueRef, LLVMValueRef)},
+     * but doesn't terminate the current block.
+     *
+     * @return the reference which is in the slot afterwards
+     */
+    protected LLVMValueRef buildExchangeGlobalRef(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr, LLVMValueRef slot, LLVMValueRef localRef) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+
+        var globalRef = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.NewGlobalRef, localRef);
+
+        jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, localRef);
+
+        var exchange = LLVM.LLVMBuildAtomicCmpXchg(builder,
+                slot,
+                LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType()),
+                globalRef,
+                LLVM.LLVMAtomicOrderingAcquireRelease,
+                LLVM.LLVMAtomicOrderingAcquire,
+                0);
+
+        var published = LLVM.LLVMBuildExtractValue(builder, exchange, 1, "published");
+        var winner = LLVM.LLVMBuildExtractValue(builder, exchange, 0, "winner");
+
+        // Another thread has already filled the slot
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildNot(builder, published, ""), () ->
+                jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteGlobalRef, globalRef));
+
+        return LLVM.LLVMBuildSelect(builder, published, globalRef, winner, "cached_ref");
+    }
+
+    /**
+     * Builds code that deletes the global reference in the slot (if there is one) and clears the slot
+     */
+    protected void buildReleaseGlobalRef(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr, LLVMValueRef slot) {
+        var ref = LLVM.LLVMBuildLoad(builder, slot, "cached_ref");
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNotNull(builder, ref, ""), () -> {
+            this.compiler.getJni().getJniEnv().callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteGlobalRef, ref);
+
+            LLVM.LLVMBuildStore(builder, LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType()), slot);
+        });
+    }
+
+    /**
+     * Builds code that resolves every entry of this cache which can be resolved without side effects on the Java side.
+     * Entries which fail to resolve are skipped and their exception is cleared, they are resolved again (and throw)
+     * when a compiled method needs them.
+     *
+     * @see net.superblaubeere27.masxinlingvaj.compiler.ResolutionStrategy
+     */
+    public abstract void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr);
+
+    /**
+     * Builds a call to the accessor and clears the exception if it fails
+     */
+    protected void buildWarmUpAccessor(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr, LLVMValueRef accessor) {
+        var value = buildAccessorCall(builder, accessor, envPtr, "warm_up");
+
+        LLVMUtils.buildIf(builder, function, LLVM.LLVMBuildIsNull(builder, value, ""), () ->
+                this.compiler.getJni().getJniEnv().callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionClear));
+    }
+
+    /**
+     * Builds an <code>ExceptionCheck</code>. Needed after the <code>Call&lt;Type&gt;Method</code> functions since
+     * their result doesn't tell whether they have thrown.
+     *
+     * @return an <code>i1</code> which is set if an exception is pending
+     */
+    protected LLVMValueRef buildExceptionThrown(LLVMBuilderRef builder, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        var exceptionThrown = this.compiler.getJni().getJniEnv().callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.ExceptionCheck);
+
+        return LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, exceptionThrown, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(exceptionThrown), 0, 0), "exception_thrown");
+    }
+
+    protected static LLVMValueRef buildAccessorCall(LLVMBuilderRef builder, LLVMValueRef accessor, LLVMValueRef envPtr, String name) {
+        return LLVM.LLVMBuildCall(builder, accessor, new PointerPointer<>(new LLVMValueRef[]{envPtr}), 1, name);
+    }
+}
@@ -0,0 +1,119 @@
+package net.superblaubeere27.masxinlingvaj.compiler.cache;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * The string constant pool of the module.
+ * <p>
+ * Every distinct literal is created once, interned with {@link String#intern()} and kept as a global reference. So an
+ * LDC in compiled code yields the same instance as the same LDC in bytecode.
+ */
+public class StringPool extends ModuleCache {
+    private static final MethodOrFieldIdentifier INTERN = new MethodOrFieldIdentifier("java/lang/String",
+            "intern",
+            "()Ljava/lang/String;");
+
+    private final LinkedHashMap<String, PooledString> strings = new LinkedHashMap<>();
+
+    public StringPool(MLVCompiler compiler) {
+        super(compiler);
+    }
+
+    /**
+     * Builds code that returns a global reference to the interned literal.
+     *
+     * @return the string or NULL if it couldn't be created. In this case an exception is pending.
+     */
+    public LLVMValueRef buildGetString(LLVMBuilderRef builder, LLVMValueRef envPtr, String value) {
+        var pooledString = this.strings.computeIfAbsent(value, this::createPooledString);
+
+        return buildAccessorCall(builder, pooledString.accessor, envPtr, "string");
+    }
+
+    /**
+     * Builds code that deletes the global references of all strings which were created so far
+     */
+    public void buildRelease(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        for (PooledString pooledString : this.strings.values()) {
+            buildReleaseGlobalRef(builder, function, functionTable, envPtr, pooledString.slot);
+        }
+    }
+
+    @Override
+    public void buildWarmUp(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef functionTable, LLVMValueRef envPtr) {
+        for (PooledString pooledString : new ArrayList<>(this.strings.values())) {
+            buildWarmUpAccessor(builder, function, functionTable, envPtr, pooledString.accessor);
+        }
+    }
+
+    private PooledString createPooledString(String value) {
+        var slot = createSlot("string_slot");
+
+        return new PooledString(slot, createAccessor("get_string", slot, buildResolver(value, slot)));
+    }
+
+    private LLVMValueRef buildResolver(String value, LLVMValueRef slot) {
+        var jniEnv = this.compiler.getJni().getJniEnv();
+        var resolver = createResolver("resolve_string");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, LLVM.LLVMAppendBasicBlock(resolver, "entry"));
+
+        var envPtr = LLVM.LLVMGetParam(resolver, 0);
+        var functionTable = jniEnv.buildFunctionTableLoad(builder, envPtr);
+
+        // The literal is stored as UTF-16 so it doesn't need to be converted to modified UTF-8
+        var string = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.NewString,
+                LLVMUtils.buildUTF16Constant(this.compiler, value),
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), value.length(), 0));
+
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, string, ""), () -> LLVM.LLVMBuildRet(builder, string));
+
+        var internId = this.compiler.getMethodIdCache().buildGetId(builder, envPtr, INTERN, false);
+
+        LLVMUtils.buildIf(builder, resolver, LLVM.LLVMBuildIsNull(builder, internId, ""), () -> {
+            jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, string);
+
+            LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType()));
+        });
+
+        var interned = jniEnv.callEnvironmentMethod(builder, functionTable, envPtr,
+                JNIEnv.JNIEnvMethod.CallObjectMethod,
+                string,
+                internId);
+
+        var exceptionThrown = buildExceptionThrown(builder, functionTable, envPtr);
+
+        jniEnv.callEnvironmentMethod(builder, functionTable, envPtr, JNIEnv.JNIEnvMethod.DeleteLocalRef, string);
+
+        LLVMUtils.buildIf(builder, resolver, exceptionThrown, () -> LLVM.LLVMBuildRet(builder, LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType())));
+
+        buildPublishGlobalRef(builder, resolver, functionTable, envPtr, slot, interned);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return resolver;
+    }
+
+    private static class PooledString {
+        private final LLVMValueRef slot;
+        private final LLVMValueRef accessor;
+
+        private PooledString(LLVMValueRef slot, LLVMValueRef accessor) {
+            this.slot = slot;
+            this.accessor = accessor;
+        }
+    }
+}
@@ -5,9 +5,14 @@ import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Type;
 
 import java.util.LinkedList;
 
@@ -62,21 +67,31 @@ public class Block {
                 JNIEnv.JNIEnvMethod.ExceptionCheck
         );
 
+        buildExceptionBranch(compiler, translatedMethod, LLVM.LLVMBuildICmp(builder,
+                LLVM.LLVMIntNE,
+                exceptionThrown,
+                LLVM.LLVMConstInt(LLVM.LLVMTypeOf(exceptionThrown), 0, 0),
+                ""));
+    }
+
+    /**
+     * Creates code that handles the pending exception if the given result is NULL. Can be used instead of
+     * {@link #buildExceptionCheck(MLVCompiler, TranslatedMethod)} after JNI functions which return NULL if and only if
+     * they have thrown an exception (e.g. FindClass).
+     */
+    public void buildNullResultCheck(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef result) {
+        buildExceptionBranch(compiler, translatedMethod, LLVM.LLVMBuildIsNull(translatedMethod.getLlvmBuilder(), result, ""));
+    }
+
+    private void buildExceptionBranch(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef exceptionThrown) {
+        var builder = translatedMethod.getLlvmBuilder();
+
         var okBlock = LLVM.LLVMAppendBasicBlock(translatedMethod.getLlvmFunction(), "no_exception");
         var exceptionBlock = getExceptionBlock(compiler, translatedMethod);
 
         LLVM.LLVMMoveBasicBlockAfter(okBlock, LLVM.LLVMGetInsertBlock(translatedMethod.getLlvmBuilder()));
 
-        LLVM.LLVMBuildCondBr(
-                builder,
-                LLVM.LLVMBuildICmp(builder,
-                        LLVM.LLVMIntEQ,
-                        exceptionThrown,
-                        LLVM.LLVMConstInt(LLVM.LLVMTypeOf(exceptionThrown), 0, 0),
-                        ""),
-                okBlock,
-                exceptionBlock
-        );
+        LLVM.LLVMBuildCondBr(builder, exceptionThrown, exceptionBlock, okBlock);
 
         LLVM.LLVMPositionBuilderAtEnd(builder, okBlock);
     }
@@ -101,6 +116,9 @@ public class Block {
 
         ExceptionBuilder:
         {
+            // No JNI function may be called while an array is pinned
+            translatedMethod.buildReleasePinnedArrays(compiler);
+
             var exception = compiler.getJni().getJniEnv().callEnvironmentMethod(
                     translatedMethod, translatedMethod.getEnvPtr(),
                     JNIEnv.JNIEnvMethod.ExceptionOccurred
@@ -126,7 +144,7 @@ public class Block {
                             translatedMethod, translatedMethod.getEnvPtr(),
                             JNIEnv.JNIEnvMethod.IsInstanceOf,
                             exception,
-                            translatedMethod.buildFindClass(compiler.getJni(), exceptionHandler.getType())
+                            translatedMethod.buildFindClass(compiler, exceptionHandler.getType())
                     );
 
                     var ifBlock = LLVM.LLVMAppendBasicBlock(translatedMethod.getLlvmFunction(), "");
@@ -188,17 +206,144 @@ public class Block {
         return llvmBlock;
     }
 
+    /**
+     * Throws a new exception if the condition is met
+     *
+     * @param message the detail message or <code>null</code> if the exception has to be created with its no-arg
+     *                constructor (e.g. <code>BufferOverflowException</code> has no other one)
+     */
     public void throwIf(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef cond, String exceptionClass, String message) {
         buildIf(translatedMethod, cond, () -> {
             var builder = translatedMethod.getLlvmBuilder();
+            var jniEnv = compiler.getJni().getJniEnv();
+
+            translatedMethod.buildReleasePinnedArrays(compiler);
+
+            var classId = translatedMethod.buildFindClass(compiler, exceptionClass);
+
+            if (message != null) {
+                jniEnv.callEnvironmentMethod(
+                        translatedMethod, translatedMethod.getEnvPtr(),
+                        JNIEnv.JNIEnvMethod.ThrowNew,
+                        classId,
+                        LLVM.LLVMBuildGlobalStringPtr(builder, message, "exception_msg")
+                );
+            } else {
+                var constructor = translatedMethod.buildGetMethodID(compiler, new MethodOrFieldIdentifier(exceptionClass, "<init>", "()V"), false);
+
+                // If the lookups fail, their exception is thrown instead
+                buildIf(translatedMethod, LLVM.LLVMBuildAnd(builder, LLVM.LLVMBuildIsNotNull(builder, classId, ""), LLVM.LLVMBuildIsNotNull(builder, constructor, ""), ""), () -> {
+                    var exception = jniEnv.callEnvironmentMethod(
+                            translatedMethod, translatedMethod.getEnvPtr(),
+                            JNIEnv.JNIEnvMethod.NewObject,
+                            classId,
+                            constructor
+                    );
+
+                    buildIf(translatedMethod, LLVM.LLVMBuildIsNotNull(builder, exception, ""), () ->
+                            jniEnv.callEnvironmentMethod(
+                                    translatedMethod, translatedMethod.getEnvPtr(),
+                                    JNIEnv.JNIEnvMethod.Throw,
+                                    exception
+                            ));
+                });
+            }
+
+            LLVM.LLVMBuildBr(builder, getExceptionBlock(compiler, translatedMethod));
+        });
+    }
+
+    /**
+     * Throws a NullPointerException if the receiver of the method is <code>null</code>. The message has the format of
+     * the VM's helpful NullPointerExceptions, e.g. <code>Cannot invoke "java.lang.Integer.intValue()"</code>. The
+     * description of the null value is left out, like the VM does if it can't name it.
+     */
+    public void buildReceiverNullCheck(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef receiver, MethodOrFieldIdentifier method) {
+        var owner = method.getOwner().replace('/', '.');
+        var signature = new StringBuilder(owner.equals("java.lang.Object") || owner.equals("java.lang.String") ? owner.substring("java.lang.".length()) : owner);
+
+        signature.append('.').append(method.getName()).append('(');
+
+        var argumentTypes = Type.getArgumentTypes(method.getDesc());
+
+        for (int i = 0; i < argumentTypes.length; i++) {
+            var argumentType = argumentTypes[i].getClassName();
+
+            if (i != 0)
+                signature.append(", ");
+
+            // The VM shortens the parameter types by prefix, e.g. java.lang.StringBuilder and java.lang.Object[] too
+            if (argumentType.startsWith("java.lang.Object") || argumentType.startsWith("java.lang.String"))
+                argumentType = argumentType.substring("java.lang.".length());
+
+            signature.append(argumentType);
+        }
+
+        throwIf(compiler,
+                translatedMethod,
+                LLVM.LLVMBuildIsNull(translatedMethod.getLlvmBuilder(), receiver, ""),
+                "java/lang/NullPointerException",
+                "Cannot invoke \"" + signature.append(')') + "\"");
+    }
+
+    /**
+     * Throws a new exception if the condition is met. The detail message is built when the exception is thrown: Every
+     * <code>%d</code> in <code>format</code> is replaced by the decimal representation of the next argument (an int
+     * or a long), so the message can match the one the VM would create.
+     */
+    public void throwIf(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef cond, String exceptionClass, String format, LLVMValueRef... arguments) {
+        var parts = format.split("%d", -1);
+
+        if (parts.length != arguments.length + 1)
+            throw new IllegalArgumentException("Format '" + format + "' doesn't take " + arguments.length + " arguments");
+
+        buildIf(translatedMethod, cond, () -> {
+            var builder = translatedMethod.getLlvmBuilder();
+            var stack = translatedMethod.getStack();
+            var bytePointerType = LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0);
+
+            translatedMethod.buildReleasePinnedArrays(compiler);
+
+            var classId = translatedMethod.buildFindClass(compiler, exceptionClass);
+
+            // The parts and the arguments, followed by the null terminator
+            var buffer = stack.acquireScratchSlot(compiler,
+                    builder,
+                    LLVM.LLVMArrayType(LLVM.LLVMInt8Type(), format.length() + arguments.length * LLVMUtils.MAX_DECIMAL_LENGTH + 1));
+
+            var message = LLVM.LLVMBuildBitCast(builder, buffer, bytePointerType, "exception_msg");
+            var position = message;
+
+            for (int i = 0; i < parts.length; i++) {
+                if (!parts[i].isEmpty()) {
+                    var length = LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), parts[i].length(), 0);
+
+                    LLVMUtils.generateIntrinsicCall(compiler,
+                                                    builder,
+                                                    LLVMIntrinsic.MEMCPY,
+                                                    position,
+                                                    LLVM.LLVMBuildGlobalStringPtr(builder, parts[i], "exception_msg_part"),
+                                                    length,
+                                                    LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0));
+
+                    position = LLVM.LLVMBuildInBoundsGEP(builder, position, new PointerPointer<>(new LLVMValueRef[]{length}), 1, "");
+                }
+
+                if (i < arguments.length)
+                    position = LLVMUtils.buildWriteDecimal(compiler, builder, LLVM.LLVMInt8Type(), position, arguments[i]);
+            }
+
+            LLVM.LLVMBuildStore(builder, LLVM.LLVMConstInt(LLVM.LLVMInt8Type(), 0, 0), position);
 
             compiler.getJni().getJniEnv().callEnvironmentMethod(
                     translatedMethod, translatedMethod.getEnvPtr(),
                     JNIEnv.JNIEnvMethod.ThrowNew,
-                    translatedMethod.buildFindClass(compiler.getJni(), exceptionClass),
-                    LLVM.LLVMBuildGlobalStringPtr(builder, message, "exception_msg")
+                    classId,
+                    message
             );
 
+            stack.releaseScratchSlot(compiler, builder, buffer);
+
             LLVM.LLVMBuildBr(builder, getExceptionBlock(compiler, translatedMethod));
         });
     }
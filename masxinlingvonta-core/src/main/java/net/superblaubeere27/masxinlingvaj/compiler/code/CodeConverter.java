@@ -1,5 +1,6 @@
 package net.superblaubeere27.masxinlingvaj.compiler.code;
 
+import net.superblaubeere27.masxinlingvaj.compiler.ArrayPinning;
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.*;
@@ -8,6 +9,9 @@ import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.constants.C
 import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.constants.NullInstruction;
 import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.constants.StringInstruction;
 import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.constants.TypeInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.BoxType;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.PinnedStringEqualsInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.PinnedStringHashCodeInstruction;
 import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.stackmanipulation.*;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
@@ -15,14 +19,19 @@ import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
 import net.superblaubeere27.masxinlingvaj.utils.OpcodeUtils;
 import net.superblaubeere27.masxinlingvaj.utils.TypeUtils;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 import org.objectweb.asm.tree.analysis.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Converts a method body to a list of basic blocks
@@ -33,6 +42,27 @@ public class CodeConverter implements Opcodes {
         var frames = new Analyzer<>(new SourceInterpreter()).analyze(compilerMethod.getParent().getName(),
                                                                      compilerMethod.getNode());
 
+        var allocations = findFusibleAllocations(compiler, compilerMethod, frames);
+
+        // The NEWs and DUPs of the fused allocations are part of the constructor call
+        var fusedInstructions = new HashSet<AbstractInsnNode>();
+
+        for (AbstractInsnNode newInsn : allocations.values()) {
+            fusedInstructions.add(newInsn);
+            fusedInstructions.add(newInsn.getNext());
+        }
+
+        // The element stores of array initializers are part of the NEWARRAY
+        var arrayInitializers = findArrayInitializers(compilerMethod, frames, fusedInstructions);
+
+        // A value which is boxed and unboxed right away stays on the stack as it is
+        findBoxingPairs(compilerMethod, frames, fusedInstructions);
+
+        var intrinsics = Intrinsics.find(compiler, compilerMethod, frames);
+
+        var pinnedArrays = compiler.getArrayPinning() != ArrayPinning.NONE ? PinnedArrays.analyze(compiler, compilerMethod, frames, intrinsics) : null;
+        var ranges = RangeAnalysis.analyze(compilerMethod);
+
         var blocks = new ArrayList<Block>();
 
         var labelMap = new HashMap<AbstractInsnNode, Block>();
@@ -47,6 +77,13 @@ public class CodeConverter implements Opcodes {
         var currentBlock = new Block();
         var nextBlock = new Block();
 
+        // The arrays are pinned before anything else happens. The first block is never a jump target
+        if (pinnedArrays != null) {
+            translatedMethod.setPinnedArrays(pinnedArrays);
+
+            currentBlockInstructions.add(new PinArraysInstruction(pinnedArrays));
+        }
+
         // Was the instruction that terminated the last basic block a terminating instruction?
         // If it wasn't and the following for-loop terminates, the method being translated could run out of instructions
         var wasTerminated = false;
@@ -69,12 +106,29 @@ public class CodeConverter implements Opcodes {
                 continue;
             }
 
-            var convertedInstruction = convertInstruction(compiler,
+            if (fusedInstructions.contains(instruction))
+                continue;
+
+            var frame = frames[compilerMethod.getNode().instructions.indexOf(instruction)];
+
+            Instruction convertedInstruction;
+
+            if (allocations.containsKey(instruction)) {
+                convertedInstruction = convertFusedAllocation(compiler, (MethodInsnNode) instruction, frame);
+            } else if (arrayInitializers.containsKey(instruction)) {
+                convertedInstruction = arrayInitializers.get(instruction);
+            } else if (pinnedArrays != null && pinnedArrays.getAccessedArray(instruction) != null) {
+                convertedInstruction = convertPinnedArrayAccess(instruction, frame, pinnedArrays, ranges.getFacts(instruction));
+            } else if (intrinsics.containsKey(instruction)) {
+                convertedInstruction = intrinsics.get(instruction);
+            } else {
+                convertedInstruction = convertInstruction(compiler,
                                                           instruction,
-                                                          frames[compilerMethod.getNode().instructions.indexOf(
-                                                                  instruction)],
+                                                          frame,
                                                           labelMap,
-                                                          nextBlock);
+                                                          nextBlock,
+                                                          ranges.getFacts(instruction));
+            }
 
             if (convertedInstruction == null)
                 continue;
@@ -113,6 +167,310 @@ public class CodeConverter implements Opcodes {
         return blocks;
     }
 
+    /**
+     * Finds the <code>NEW</code>, <code>DUP</code>, ..., <code>INVOKESPECIAL &lt;init&gt;</code> sequences which can
+     * be compiled to a single <code>NewObject</code> call. The DUP has to follow the NEW directly and the frames have
+     * to show that the constructor's receiver is the duplicated reference of exactly this NEW.
+     * <p>
+     * NEW initializes the class before the arguments are evaluated, NewObject afterwards. So the sequence is only
+     * fused if the class initialization has no side effects or the argument evaluation can't be observed by it.
+     *
+     * @return constructor call -&gt; NEW
+     */
+    private static HashMap<AbstractInsnNode, AbstractInsnNode> findFusibleAllocations(MLVCompiler compiler, CompilerMethod compilerMethod, Frame<SourceValue>[] frames) {
+        var instructions = compilerMethod.getNode().instructions;
+        var allocations = new HashMap<AbstractInsnNode, AbstractInsnNode>();
+
+        for (AbstractInsnNode instruction : instructions) {
+            if (instruction.getOpcode() != INVOKESPECIAL || !((MethodInsnNode) instruction).name.equals("<init>"))
+                continue;
+
+            var methodInsn = (MethodInsnNode) instruction;
+            var frame = frames[instructions.indexOf(methodInsn)];
+
+            // Unreachable
+            if (frame == null)
+                continue;
+
+            var receiverIndex = frame.getStackSize() - Type.getArgumentTypes(methodInsn.desc).length - 1;
+
+            if (receiverIndex < 1)
+                continue;
+
+            var dup = getSingleSource(frame.getStack(receiverIndex));
+            var newInsn = getSingleSource(frame.getStack(receiverIndex - 1));
+
+            if (dup == null || dup.getOpcode() != DUP || newInsn == null || newInsn.getOpcode() != NEW || newInsn.getNext() != dup)
+                continue;
+
+            if (!((TypeInsnNode) newInsn).desc.equals(methodInsn.owner))
+                continue;
+
+            if (compiler.getIndex().getHierarchy().hasTrivialInitialization(methodInsn.owner) || isUnobservable(dup, methodInsn)) {
+                allocations.put(methodInsn, newInsn);
+            }
+        }
+
+        return allocations;
+    }
+
+    /**
+     * Finds the initializers of primitive arrays, i.e. <code>NEWARRAY</code>s with a constant length which are followed
+     * by <code>DUP, &lt;index&gt;, &lt;constant&gt;, xASTORE</code> sequences. javac generates them for array literals
+     * like <code>new int[]{1, 2, 3}</code>.
+     *
+     * @param fusedInstructions the DUPs, indices, constants and stores of the initializers are added to this set
+     * @return NEWARRAY -&gt; the instruction which creates and fills the array
+     */
+    private static HashMap<AbstractInsnNode, ConstantArrayInstruction> findArrayInitializers(CompilerMethod compilerMethod, Frame<SourceValue>[] frames, HashSet<AbstractInsnNode> fusedInstructions) {
+        var instructions = compilerMethod.getNode().instructions;
+        var initializers = new HashMap<AbstractInsnNode, ConstantArrayInstruction>();
+
+        for (AbstractInsnNode instruction : instructions) {
+            if (instruction.getOpcode() != NEWARRAY)
+                continue;
+
+            var frame = frames[instructions.indexOf(instruction)];
+
+            // Unreachable
+            if (frame == null)
+                continue;
+
+            var length = getSingleSource(frame.getStack(frame.getStackSize() - 1));
+            var lengthValue = length == null ? null : OpcodeUtils.getConstantNumber(length);
+
+            if (!(lengthValue instanceof Integer) || (Integer) lengthValue < 0)
+                continue;
+
+            var elementType = OpcodeUtils.getNewArrayType((IntInsnNode) instruction);
+            var storeOpcode = elementType.getOpcode(IASTORE);
+            var values = new Number[(Integer) lengthValue];
+            var sequence = new ArrayList<AbstractInsnNode>();
+            var count = 0;
+
+            var current = nextInstruction(instruction);
+
+            // DUP, index, value, xASTORE
+            while (current != null && current.getOpcode() == DUP) {
+                var index = nextInstruction(current);
+                var value = index == null ? null : nextInstruction(index);
+                var store = value == null ? null : nextInstruction(value);
+
+                if (store == null || store.getOpcode() != storeOpcode)
+                    break;
+
+                var indexValue = OpcodeUtils.getConstantNumber(index);
+                var elementValue = OpcodeUtils.getConstantNumber(value);
+
+                if (!(indexValue instanceof Integer) || (Integer) indexValue < 0 || (Integer) indexValue >= values.length)
+                    break;
+
+                // BASTORE etc. take ints, LDC has to push a value of the element's type
+                if (elementValue == null || !isConstantOfType(elementValue, elementType))
+                    break;
+
+                values[(Integer) indexValue] = elementValue;
+                count = Math.max(count, (Integer) indexValue + 1);
+
+                for (var insn = current; insn != store.getNext(); insn = insn.getNext()) {
+                    sequence.add(insn);
+                }
+
+                current = nextInstruction(store);
+            }
+
+            if (sequence.isEmpty())
+                continue;
+
+            fusedInstructions.addAll(sequence);
+
+            initializers.put(instruction, new ConstantArrayInstruction(elementType,
+                                                                       Arrays.copyOf(values, count),
+                                                                       new StackSlot(JNIType.INT, frame.getStackSize() - 1),
+                                                                       new StackSlot(JNIType.OBJECT, frame.getStackSize() - 1)));
+        }
+
+        return initializers;
+    }
+
+    /**
+     * Finds <code>valueOf</code> calls of the wrapper classes which are directly followed by the <code>xValue()</code>
+     * call of the same wrapper. The frames have to show that the unboxed object is exactly the one of this
+     * <code>valueOf</code>, so the boxed object can't be observed. javac generates these pairs e.g. for
+     * <code>int x = (Integer) i</code>.
+     *
+     * @param fusedInstructions both calls of each pair are added to this set
+     */
+    private static void findBoxingPairs(CompilerMethod compilerMethod, Frame<SourceValue>[] frames, HashSet<AbstractInsnNode> fusedInstructions) {
+        var instructions = compilerMethod.getNode().instructions;
+
+        for (AbstractInsnNode instruction : instructions) {
+            if (instruction.getOpcode() != INVOKESTATIC)
+                continue;
+
+            var boxType = BoxType.ofBoxing((MethodInsnNode) instruction);
+            var unbox = nextInstruction(instruction);
+
+            if (boxType == null || unbox == null || unbox.getOpcode() != INVOKEVIRTUAL || BoxType.ofUnboxing((MethodInsnNode) unbox) != boxType)
+                continue;
+
+            var frame = frames[instructions.indexOf(unbox)];
+
+            // Unreachable
+            if (frame == null || getSingleSource(frame.getStack(frame.getStackSize() - 1)) != instruction)
+                continue;
+
+            fusedInstructions.add(instruction);
+            fusedInstructions.add(unbox);
+        }
+    }
+
+    private static boolean isConstantOfType(Number constant, Type elementType) {
+        switch (elementType.getSort()) {
+            case Type.LONG:
+                return constant instanceof Long;
+            case Type.FLOAT:
+                return constant instanceof Float;
+            case Type.DOUBLE:
+                return constant instanceof Double;
+            default:
+                return constant instanceof Integer;
+        }
+    }
+
+    /**
+     * @return the next instruction after line numbers and frames or <code>null</code> if a label (which might start a
+     * new block) or the end of the method comes first
+     */
+    private static AbstractInsnNode nextInstruction(AbstractInsnNode instruction) {
+        var current = instruction.getNext();
+
+        while (current != null && (current.getType() == AbstractInsnNode.LINE || current.getType() == AbstractInsnNode.FRAME)) {
+            current = current.getNext();
+        }
+
+        return current == null || current.getType() == AbstractInsnNode.LABEL ? null : current;
+    }
+
+    private static AbstractInsnNode getSingleSource(SourceValue value) {
+        return value.insns.size() == 1 ? value.insns.iterator().next() : null;
+    }
+
+    /**
+     * Checks if the instructions between <code>start</code> and <code>end</code> (exclusive) neither throw nor have
+     * effects outside of the method's frame, so they can't be observed by a static initializer.
+     */
+    private static boolean isUnobservable(AbstractInsnNode start, AbstractInsnNode end) {
+        for (var current = start.getNext(); current != end; current = current.getNext()) {
+            if (current == null)
+                return false;
+
+            var opcode = current.getOpcode();
+
+            switch (current.getType()) {
+                case AbstractInsnNode.LABEL:
+                case AbstractInsnNode.LINE:
+                case AbstractInsnNode.FRAME:
+                case AbstractInsnNode.VAR_INSN:
+                case AbstractInsnNode.IINC_INSN:
+                    continue;
+                case AbstractInsnNode.INT_INSN:
+                    // NEWARRAY allocates
+                    if (opcode == NEWARRAY)
+                        return false;
+
+                    continue;
+                case AbstractInsnNode.LDC_INSN: {
+                    var constant = ((LdcInsnNode) current).cst;
+
+                    // Loading a class might run code
+                    if (constant instanceof Type || constant instanceof Handle || constant instanceof ConstantDynamic)
+                        return false;
+
+                    continue;
+                }
+                case AbstractInsnNode.JUMP_INSN:
+                    if (opcode == JSR)
+                        return false;
+
+                    continue;
+                case AbstractInsnNode.INSN:
+                    // Operations which might throw
+                    if (opcode == IDIV || opcode == LDIV || opcode == IREM || opcode == LREM || opcode == ATHROW
+                            || opcode == ARRAYLENGTH || opcode == MONITORENTER || opcode == MONITOREXIT
+                            || (opcode >= IALOAD && opcode <= SALOAD) || (opcode >= IASTORE && opcode <= SASTORE)
+                            || (opcode >= IRETURN && opcode <= RETURN))
+                        return false;
+
+                    continue;
+                default:
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Instruction convertFusedAllocation(MLVCompiler compiler, MethodInsnNode methodInsn, Frame<SourceValue> stackFrame) {
+        var types = Type.getArgumentTypes(methodInsn.desc);
+
+        var params = new StackSlot[types.length];
+        var targetTypes = new JNIType[params.length];
+
+        for (int i = 0; i < types.length; i++) {
+            var type = compiler.getJni().toNativeType(types[i]);
+
+            params[i] = new StackSlot(type.getStackStorageType(), stackFrame.getStackSize() - types.length + i);
+            targetTypes[i] = type;
+        }
+
+        // The object takes the place of the uninitialized reference that NEW has pushed
+        return new NewObjectInstruction(new MethodOrFieldIdentifier(methodInsn),
+                                        params,
+                                        targetTypes,
+                                        new StackSlot(JNIType.OBJECT, stackFrame.getStackSize() - types.length - 2));
+    }
+
+    private static Instruction convertPinnedArrayAccess(AbstractInsnNode instruction, Frame<SourceValue> stackFrame, PinnedArrays pinnedArrays, Set<RangeAnalysis.Fact> facts) {
+        var stackSize = stackFrame.getStackSize();
+        var array = pinnedArrays.getAccessedArray(instruction);
+
+        // Calls of a pinned string, String.charAt is handled like an xALOAD
+        if (instruction.getOpcode() == INVOKEVIRTUAL) {
+            switch (((MethodInsnNode) instruction).name) {
+                case "length":
+                    return new PinnedArrayLenInstruction(array, new StackSlot(JNIType.INT, stackSize - 1));
+                case "hashCode":
+                    return new PinnedStringHashCodeInstruction(array, new StackSlot(JNIType.INT, stackSize - 1));
+                case "equals":
+                    return new PinnedStringEqualsInstruction(array, pinnedArrays.getComparedString(instruction), new StackSlot(JNIType.INT, stackSize - 2));
+            }
+        }
+
+        switch (instruction.getOpcode()) {
+            case ARRAYLENGTH:
+                return new PinnedArrayLenInstruction(array, new StackSlot(JNIType.INT, stackSize - 1));
+            case IASTORE:
+            case LASTORE:
+            case FASTORE:
+            case DASTORE:
+            case BASTORE:
+            case CASTORE:
+            case SASTORE:
+                return new PinnedArrayAccessInstruction(array,
+                                                        new StackSlot(JNIType.INT, stackSize - 2),
+                                                        new StackSlot(array.getElementType().getStackStorageType(), stackSize - 1),
+                                                        true,
+                                                        facts);
+            default:
+                return new PinnedArrayAccessInstruction(array,
+                                                        new StackSlot(JNIType.INT, stackSize - 1),
+                                                        new StackSlot(array.getElementType().getStackStorageType(), stackSize - 2),
+                                                        false,
+                                                        facts);
+        }
+    }
+
     private static void addExceptionHandlers(CompilerMethod compilerMethod, HashMap<AbstractInsnNode, Block> labelMap) {
         for (TryCatchBlockNode tryCatchBlock : compilerMethod.getNode().tryCatchBlocks) {
             var exceptionHandler = new ExceptionHandler(tryCatchBlock,
@@ -134,7 +492,7 @@ public class CodeConverter implements Opcodes {
         }
     }
 
-    private static Instruction convertInstruction(MLVCompiler compiler, AbstractInsnNode instruction, Frame<SourceValue> stackFrame, HashMap<AbstractInsnNode, Block> labelMap, Block nextBlock) {
+    private static Instruction convertInstruction(MLVCompiler compiler, AbstractInsnNode instruction, Frame<SourceValue> stackFrame, HashMap<AbstractInsnNode, Block> labelMap, Block nextBlock, Set<RangeAnalysis.Fact> facts) {
         var opcode = instruction.getOpcode();
 
         switch (opcode) {
@@ -258,13 +616,13 @@ public class CodeConverter implements Opcodes {
             case BALOAD:
             case CALOAD:
             case SALOAD: {
-                var type = OpcodeUtils.getReturnType(instruction);
+                var type = compiler.getJni().toNativeType(OpcodeUtils.getReturnType(instruction));
 
                 return new ArrayModificationInstruction(
                         new StackSlot(JNIType.OBJECT, stackFrame.getStackSize() - 2),
                         new StackSlot(JNIType.INT, stackFrame.getStackSize() - 1),
-                        new StackSlot(compiler.getJni().toNativeType(type).getStackStorageType(),
-                                      stackFrame.getStackSize() - 2),
+                        new StackSlot(type.getStackStorageType(), stackFrame.getStackSize() - 2),
+                        type,
                         false
                 );
             }
@@ -288,13 +646,13 @@ public class CodeConverter implements Opcodes {
             case BASTORE:
             case CASTORE:
             case SASTORE: {
-                var type = OpcodeUtils.getReturnType(instruction);
+                var type = compiler.getJni().toNativeType(OpcodeUtils.getReturnType(instruction));
 
                 return new ArrayModificationInstruction(
                         new StackSlot(JNIType.OBJECT, stackFrame.getStackSize() - 3),
                         new StackSlot(JNIType.INT, stackFrame.getStackSize() - 2),
-                        new StackSlot(compiler.getJni().toNativeType(OpcodeUtils.getReturnType(instruction)).getStackStorageType(),
-                                      stackFrame.getStackSize() - 1),
+                        new StackSlot(type.getStackStorageType(), stackFrame.getStackSize() - 1),
+                        type,
                         true
                 );
             }
@@ -332,12 +690,15 @@ public class CodeConverter implements Opcodes {
             case LXOR: {
                 var type = OpcodeUtils.getReturnType(instruction);
                 var jniType = compiler.getJni().toNativeType(type);
+                var operation = OpcodeUtils.getBinaryOperation(instruction.getOpcode());
 
                 return new BinaryOperationInstruction(
                         new StackSlot(jniType, stackFrame.getStackSize() - 2),
-                        new StackSlot(jniType, stackFrame.getStackSize() - 1),
+                        // The shift distance is an int, even for long shifts
+                        new StackSlot(operation.isShift() ? JNIType.INT : jniType, stackFrame.getStackSize() - 1),
                         new StackSlot(jniType, stackFrame.getStackSize() - 2),
-                        OpcodeUtils.getBinaryOperation(instruction.getOpcode())
+                        operation,
+                        facts
                 );
             }
             case INEG:
@@ -350,11 +711,12 @@ public class CodeConverter implements Opcodes {
                 return new UnaryInstruction(
                         new StackSlot(jniType, stackFrame.getStackSize() - 1),
                         new StackSlot(jniType, stackFrame.getStackSize() - 1),
-                        UnaryInstruction.UnaryOperationType.NEG
+                        UnaryInstruction.UnaryOperationType.NEG,
+                        facts
                 );
             }
             case IINC: // visitIincInsn
-                return new IincInstruction(((IincInsnNode) instruction).var, ((IincInsnNode) instruction).incr);
+                return new IincInstruction(((IincInsnNode) instruction).var, ((IincInsnNode) instruction).incr, facts);
             case I2L: // visitInsn
             case I2F:
             case I2D:
@@ -603,25 +965,23 @@ public class CodeConverter implements Opcodes {
     }
 
     private static JNIType getStackFrameType(MLVCompiler compiler, SourceValue stack) {
-        Type currentType = null;
+        JNIType type = null;
 
         for (AbstractInsnNode insn : stack.insns) {
-            Type t = OpcodeUtils.getReturnType(insn);
+            // Arrays and objects share the same storage type
+            var t = compiler.getJni().toNativeType(OpcodeUtils.getReturnType(insn)).getStackStorageType();
 
-            if (currentType == null || t.getSort() == currentType.getSort()) {
-                currentType = t;
+            if (type == null || t == type) {
+                type = t;
             } else {
                 throw new IllegalArgumentException("Can't merge two types :/");
             }
         }
 
-        JNIType type;
-
         // If there is no instruction leading to this, it is properly an exception handler
-        if (currentType == null)
+        if (type == null)
             type = JNIType.OBJECT;
-        else
-            type = compiler.getJni().toNativeType(currentType).getStackStorageType();
+
         return type;
     }
 
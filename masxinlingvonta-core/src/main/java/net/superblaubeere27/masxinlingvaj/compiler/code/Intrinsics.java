@@ -0,0 +1,695 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ArrayCopyInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ArrayCopyOfInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ArrayFillInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.BitOperationInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.BoxInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.BoxType;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.DirectBufferAccessInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ExactArithmeticInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.FloatingMinMaxInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.MathInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringCharAtInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringConcatInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringHashCodeInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringLengthInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.UnboxInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.InvokeInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.OpcodeUtils;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Finds calls of library methods (and string concatenations) which can be compiled to native code instead of calling
+ * them over JNI
+ */
+public class Intrinsics implements Opcodes {
+    /**
+     * name + descriptor -&gt; intrinsic of the <code>java.lang.Math</code> methods whose results are exactly the
+     * results of the LLVM intrinsics. Transcendental functions are left out, their results may differ from the VM's.
+     * Math.min/max of floats and doubles are {@link FloatingMinMaxInstruction}s.
+     */
+    private static final HashMap<String, LLVMIntrinsic> MATH_INTRINSICS = new HashMap<>();
+    /**
+     * The methods of <code>java.lang.StrictMath</code> which are specified to return the same results as
+     * <code>java.lang.Math</code>. StrictMath.copySign treats NaN signs as positive, so it is missing.
+     */
+    private static final HashMap<String, LLVMIntrinsic> STRICT_MATH_INTRINSICS = new HashMap<>();
+    /**
+     * name + descriptor -&gt; intrinsic of the <code>*Exact</code> methods
+     */
+    private static final HashMap<String, LLVMIntrinsic> EXACT_INTRINSICS = new HashMap<>();
+    /**
+     * name + descriptor -&gt; operation of the bit manipulation methods of <code>Integer</code> and <code>Long</code>
+     * and the bit conversions of <code>Float</code> and <code>Double</code>
+     */
+    private static final HashMap<String, BitOperationInstruction.BitOperationType> BIT_OPERATIONS = new HashMap<>();
+
+    static {
+        MATH_INTRINSICS.put("sqrt(D)D", LLVMIntrinsic.SQRT_DOUBLE);
+        MATH_INTRINSICS.put("floor(D)D", LLVMIntrinsic.FLOOR_DOUBLE);
+        MATH_INTRINSICS.put("ceil(D)D", LLVMIntrinsic.CEIL_DOUBLE);
+        MATH_INTRINSICS.put("rint(D)D", LLVMIntrinsic.RINT_DOUBLE);
+        MATH_INTRINSICS.put("abs(I)I", LLVMIntrinsic.ABS_INT);
+        MATH_INTRINSICS.put("abs(J)J", LLVMIntrinsic.ABS_LONG);
+        MATH_INTRINSICS.put("abs(F)F", LLVMIntrinsic.FABS_FLOAT);
+        MATH_INTRINSICS.put("abs(D)D", LLVMIntrinsic.FABS_DOUBLE);
+        MATH_INTRINSICS.put("min(II)I", LLVMIntrinsic.SMIN_INT);
+        MATH_INTRINSICS.put("min(JJ)J", LLVMIntrinsic.SMIN_LONG);
+        MATH_INTRINSICS.put("max(II)I", LLVMIntrinsic.SMAX_INT);
+        MATH_INTRINSICS.put("max(JJ)J", LLVMIntrinsic.SMAX_LONG);
+        MATH_INTRINSICS.put("fma(FFF)F", LLVMIntrinsic.FMA_FLOAT);
+        MATH_INTRINSICS.put("fma(DDD)D", LLVMIntrinsic.FMA_DOUBLE);
+
+        STRICT_MATH_INTRINSICS.putAll(MATH_INTRINSICS);
+
+        MATH_INTRINSICS.put("copySign(FF)F", LLVMIntrinsic.COPYSIGN_FLOAT);
+        MATH_INTRINSICS.put("copySign(DD)D", LLVMIntrinsic.COPYSIGN_DOUBLE);
+
+        EXACT_INTRINSICS.put("addExact(II)I", LLVMIntrinsic.SADD_WITH_OVERFLOW_INT);
+        EXACT_INTRINSICS.put("addExact(JJ)J", LLVMIntrinsic.SADD_WITH_OVERFLOW_LONG);
+        EXACT_INTRINSICS.put("subtractExact(II)I", LLVMIntrinsic.SSUB_WITH_OVERFLOW_INT);
+        EXACT_INTRINSICS.put("subtractExact(JJ)J", LLVMIntrinsic.SSUB_WITH_OVERFLOW_LONG);
+        EXACT_INTRINSICS.put("multiplyExact(II)I", LLVMIntrinsic.SMUL_WITH_OVERFLOW_INT);
+        EXACT_INTRINSICS.put("multiplyExact(JJ)J", LLVMIntrinsic.SMUL_WITH_OVERFLOW_LONG);
+        EXACT_INTRINSICS.put("incrementExact(I)I", LLVMIntrinsic.SADD_WITH_OVERFLOW_INT);
+        EXACT_INTRINSICS.put("incrementExact(J)J", LLVMIntrinsic.SADD_WITH_OVERFLOW_LONG);
+        EXACT_INTRINSICS.put("decrementExact(I)I", LLVMIntrinsic.SSUB_WITH_OVERFLOW_INT);
+        EXACT_INTRINSICS.put("decrementExact(J)J", LLVMIntrinsic.SSUB_WITH_OVERFLOW_LONG);
+        EXACT_INTRINSICS.put("negateExact(I)I", LLVMIntrinsic.SSUB_WITH_OVERFLOW_INT);
+        EXACT_INTRINSICS.put("negateExact(J)J", LLVMIntrinsic.SSUB_WITH_OVERFLOW_LONG);
+
+        for (String type : new String[]{"I", "J"}) {
+            BIT_OPERATIONS.put("bitCount(" + type + ")I", BitOperationInstruction.BitOperationType.BIT_COUNT);
+            BIT_OPERATIONS.put("numberOfLeadingZeros(" + type + ")I", BitOperationInstruction.BitOperationType.LEADING_ZEROS);
+            BIT_OPERATIONS.put("numberOfTrailingZeros(" + type + ")I", BitOperationInstruction.BitOperationType.TRAILING_ZEROS);
+            BIT_OPERATIONS.put("rotateLeft(" + type + "I)" + type, BitOperationInstruction.BitOperationType.ROTATE_LEFT);
+            BIT_OPERATIONS.put("rotateRight(" + type + "I)" + type, BitOperationInstruction.BitOperationType.ROTATE_RIGHT);
+            BIT_OPERATIONS.put("reverse(" + type + ")" + type, BitOperationInstruction.BitOperationType.REVERSE);
+            BIT_OPERATIONS.put("reverseBytes(" + type + ")" + type, BitOperationInstruction.BitOperationType.REVERSE_BYTES);
+        }
+
+        BIT_OPERATIONS.put("floatToRawIntBits(F)I", BitOperationInstruction.BitOperationType.TO_RAW_BITS);
+        BIT_OPERATIONS.put("floatToIntBits(F)I", BitOperationInstruction.BitOperationType.TO_BITS);
+        BIT_OPERATIONS.put("intBitsToFloat(I)F", BitOperationInstruction.BitOperationType.FROM_BITS);
+        BIT_OPERATIONS.put("doubleToRawLongBits(D)J", BitOperationInstruction.BitOperationType.TO_RAW_BITS);
+        BIT_OPERATIONS.put("doubleToLongBits(D)J", BitOperationInstruction.BitOperationType.TO_BITS);
+        BIT_OPERATIONS.put("longBitsToDouble(J)D", BitOperationInstruction.BitOperationType.FROM_BITS);
+    }
+
+    /**
+     * The element type of the <code>get</code>/<code>put</code> methods of <code>ByteBuffer</code>, by name
+     */
+    private static final HashMap<String, JNIType> BUFFER_ACCESSORS = new HashMap<>();
+
+    static {
+        for (JNIType type : new JNIType[]{JNIType.SHORT, JNIType.CHAR, JNIType.INT, JNIType.LONG, JNIType.FLOAT, JNIType.DOUBLE}) {
+            var name = type.name().charAt(0) + type.name().substring(1).toLowerCase(Locale.ROOT);
+
+            BUFFER_ACCESSORS.put("get" + name, type);
+            BUFFER_ACCESSORS.put("put" + name, type);
+        }
+
+        BUFFER_ACCESSORS.put("get", JNIType.BYTE);
+        BUFFER_ACCESSORS.put("put", JNIType.BYTE);
+    }
+
+    private final CompilerMethod compilerMethod;
+    private final Frame<SourceValue>[] frames;
+    /**
+     * local index -&gt; the region of the <code>ByteBuffer</code> parameter in it
+     */
+    private final HashMap<Integer, DirectBufferAccessInstruction.Region> bufferRegions = new HashMap<>();
+    /**
+     * The locals which are written by the method, see {@link #getBufferRegion(SourceValue)}
+     */
+    private HashSet<Integer> storedLocals;
+    /**
+     * See {@link #isBufferStateStable()}, <code>null</code> until it is needed
+     */
+    private Boolean bufferStateStable;
+    /**
+     * local index -&gt; declared type of the method's parameters
+     */
+    private final HashMap<Integer, Type> parameterTypes = new HashMap<>();
+
+    private Intrinsics(CompilerMethod compilerMethod, Frame<SourceValue>[] frames) {
+        this.compilerMethod = compilerMethod;
+        this.frames = frames;
+
+        int local = compilerMethod.isStatic() ? 0 : 1;
+
+        for (Type argumentType : Type.getArgumentTypes(compilerMethod.getNode().desc)) {
+            this.parameterTypes.put(local, argumentType);
+
+            local += argumentType.getSize();
+        }
+    }
+
+    /**
+     * @return invocation -&gt; the instruction which replaces it
+     */
+    public static HashMap<AbstractInsnNode, Instruction> find(MLVCompiler compiler, CompilerMethod compilerMethod, Frame<SourceValue>[] frames) {
+        var intrinsics = new Intrinsics(compilerMethod, frames);
+        var instructions = compilerMethod.getNode().instructions;
+
+        var replacements = new HashMap<AbstractInsnNode, Instruction>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            // Unreachable
+            if (frames[i] == null)
+                continue;
+
+            Instruction replacement;
+
+            if (instruction.getOpcode() == INVOKESTATIC || instruction.getOpcode() == INVOKEVIRTUAL) {
+                replacement = intrinsics.convertInvocation(compiler, (MethodInsnNode) instruction, frames[i]);
+            } else if (instruction.getOpcode() == INVOKEDYNAMIC) {
+                replacement = convertStringConcatenation(compiler, (InvokeDynamicInsnNode) instruction, frames[i].getStackSize());
+            } else {
+                continue;
+            }
+
+            if (replacement != null)
+                replacements.put(instruction, replacement);
+        }
+
+        return replacements;
+    }
+
+    /**
+     * Checks if the call site is a string concatenation which is compiled by {@link StringConcatInstruction}
+     */
+    public static boolean isStringConcatenation(InvokeDynamicInsnNode invokeDynamic) {
+        return getStringConcatConstants(invokeDynamic) != null;
+    }
+
+    /**
+     * Splits the recipe of a <code>StringConcatFactory</code> call site at its arguments. Constants of the recipe
+     * (<code>\2</code>) are inlined.
+     *
+     * @return the constants before each argument and after the last one, <code>null</code> if the call site isn't a
+     * supported string concatenation
+     */
+    private static String[] getStringConcatConstants(InvokeDynamicInsnNode invokeDynamic) {
+        var bsm = invokeDynamic.bsm;
+
+        if (!bsm.getOwner().equals("java/lang/invoke/StringConcatFactory"))
+            return null;
+
+        var argumentCount = Type.getArgumentTypes(invokeDynamic.desc).length;
+
+        String recipe;
+
+        if (bsm.getName().equals("makeConcat")) {
+            recipe = "\u0001".repeat(argumentCount);
+        } else if (bsm.getName().equals("makeConcatWithConstants") && invokeDynamic.bsmArgs.length != 0 && invokeDynamic.bsmArgs[0] instanceof String) {
+            recipe = (String) invokeDynamic.bsmArgs[0];
+        } else {
+            return null;
+        }
+
+        var constants = new String[argumentCount + 1];
+        var constant = new StringBuilder();
+
+        int argumentIndex = 0;
+        int constantIndex = 1;
+
+        for (char c : recipe.toCharArray()) {
+            if (c == '\u0001') {
+                if (argumentIndex == argumentCount)
+                    return null;
+
+                constants[argumentIndex++] = constant.toString();
+                constant.setLength(0);
+            } else if (c == '\u0002') {
+                // Only strings, the VM's formatting of other constants might differ from the compiler's
+                if (constantIndex == invokeDynamic.bsmArgs.length || !(invokeDynamic.bsmArgs[constantIndex] instanceof String))
+                    return null;
+
+                constant.append((String) invokeDynamic.bsmArgs[constantIndex++]);
+            } else {
+                constant.append(c);
+            }
+        }
+
+        if (argumentIndex != argumentCount)
+            return null;
+
+        constants[argumentCount] = constant.toString();
+
+        return constants;
+    }
+
+    private static Instruction convertStringConcatenation(MLVCompiler compiler, InvokeDynamicInsnNode invokeDynamic, int stackSize) {
+        var constants = getStringConcatConstants(invokeDynamic);
+
+        if (constants == null)
+            return null;
+
+        var argumentTypes = Type.getArgumentTypes(invokeDynamic.desc);
+        var arguments = new StackSlot[argumentTypes.length];
+
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = new StackSlot(compiler.getJni().toNativeType(argumentTypes[i]).getStackStorageType(), stackSize - arguments.length + i);
+        }
+
+        return new StringConcatInstruction(constants, argumentTypes, arguments, new StackSlot(JNIType.OBJECT, stackSize - arguments.length));
+    }
+
+    private Instruction convertInvocation(MLVCompiler compiler, MethodInsnNode methodInsn, Frame<SourceValue> frame) {
+        var stackSize = frame.getStackSize();
+
+        // String and the wrapper classes are final, so their virtual methods can't be overridden
+        if (methodInsn.getOpcode() == INVOKEVIRTUAL) {
+            if (methodInsn.owner.equals("java/lang/String"))
+                return convertStringInvocation(methodInsn, stackSize);
+
+            if (methodInsn.owner.equals("java/nio/ByteBuffer"))
+                return convertBufferAccess(compiler, methodInsn, frame);
+
+            var unboxType = BoxType.ofUnboxing(methodInsn);
+
+            if (unboxType == null)
+                return null;
+
+            return new UnboxInstruction(unboxType,
+                                        new StackSlot(JNIType.OBJECT, stackSize - 1),
+                                        new StackSlot(unboxType.getPrimitiveType().getStackStorageType(), stackSize - 1));
+        }
+
+        var boxType = BoxType.ofBoxing(methodInsn);
+
+        if (boxType != null) {
+            return new BoxInstruction(boxType,
+                                      new StackSlot(boxType.getPrimitiveType().getStackStorageType(), stackSize - 1),
+                                      new StackSlot(JNIType.OBJECT, stackSize - 1));
+        }
+
+        switch (methodInsn.owner) {
+            case "java/lang/System":
+                if (methodInsn.name.equals("arraycopy") && methodInsn.desc.equals("(Ljava/lang/Object;ILjava/lang/Object;II)V")) {
+                    var srcType = getPrimitiveArrayType(frame.getStack(stackSize - 5));
+
+                    // Otherwise the VM would have to do a store check
+                    if (srcType == null || !srcType.equals(getPrimitiveArrayType(frame.getStack(stackSize - 3))))
+                        return null;
+
+                    return new ArrayCopyInstruction(compiler.getJni().toNativeType(srcType.getElementType()),
+                                                    new StackSlot(JNIType.OBJECT, stackSize - 5),
+                                                    new StackSlot(JNIType.INT, stackSize - 4),
+                                                    new StackSlot(JNIType.OBJECT, stackSize - 3),
+                                                    new StackSlot(JNIType.INT, stackSize - 2),
+                                                    new StackSlot(JNIType.INT, stackSize - 1));
+                }
+
+                return null;
+            case "java/util/Arrays":
+                return convertArraysInvocation(compiler, methodInsn, stackSize);
+            case "java/lang/Math":
+                return convertMathInvocation(compiler, methodInsn, stackSize, MATH_INTRINSICS);
+            case "java/lang/StrictMath":
+                return convertMathInvocation(compiler, methodInsn, stackSize, STRICT_MATH_INTRINSICS);
+            case "java/lang/Integer":
+            case "java/lang/Long":
+            case "java/lang/Float":
+            case "java/lang/Double":
+                return convertBitOperation(compiler, methodInsn, stackSize);
+            default:
+                return null;
+        }
+    }
+
+    private Instruction convertArraysInvocation(MLVCompiler compiler, MethodInsnNode methodInsn, int stackSize) {
+        var argumentTypes = Type.getArgumentTypes(methodInsn.desc);
+
+        if (argumentTypes.length == 0 || !isPrimitiveArray(argumentTypes[0]))
+            return null;
+
+        var arrayType = argumentTypes[0];
+        var elementType = arrayType.getElementType();
+        var jniType = compiler.getJni().toNativeType(elementType);
+
+        switch (methodInsn.name) {
+            case "fill":
+                if (methodInsn.desc.equals("(" + arrayType + elementType + ")V")) {
+                    return new ArrayFillInstruction(jniType,
+                                                    new StackSlot(JNIType.OBJECT, stackSize - 2),
+                                                    null,
+                                                    null,
+                                                    new StackSlot(jniType.getStackStorageType(), stackSize - 1));
+                } else if (methodInsn.desc.equals("(" + arrayType + "II" + elementType + ")V")) {
+                    return new ArrayFillInstruction(jniType,
+                                                    new StackSlot(JNIType.OBJECT, stackSize - 4),
+                                                    new StackSlot(JNIType.INT, stackSize - 3),
+                                                    new StackSlot(JNIType.INT, stackSize - 2),
+                                                    new StackSlot(jniType.getStackStorageType(), stackSize - 1));
+                }
+
+                return null;
+            case "copyOf":
+                if (methodInsn.desc.equals("(" + arrayType + "I)" + arrayType)) {
+                    return new ArrayCopyOfInstruction(elementType,
+                                                      new StackSlot(JNIType.OBJECT, stackSize - 2),
+                                                      new StackSlot(JNIType.INT, stackSize - 1),
+                                                      new StackSlot(JNIType.OBJECT, stackSize - 2));
+                }
+
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static Instruction convertMathInvocation(MLVCompiler compiler, MethodInsnNode methodInsn, int stackSize, HashMap<String, LLVMIntrinsic> intrinsics) {
+        var key = methodInsn.name + methodInsn.desc;
+        var argumentTypes = Type.getArgumentTypes(methodInsn.desc);
+        var type = compiler.getJni().toNativeType(Type.getReturnType(methodInsn.desc));
+
+        var arguments = new StackSlot[argumentTypes.length];
+
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = new StackSlot(type, stackSize - arguments.length + i);
+        }
+
+        // The result takes the place of the first argument
+        var output = new StackSlot(type, stackSize - arguments.length);
+
+        if (intrinsics.containsKey(key))
+            return new MathInstruction(intrinsics.get(key), arguments, output);
+
+        // StrictMath.min/max are specified like Math.min/max
+        if ((methodInsn.name.equals("min") || methodInsn.name.equals("max")) && (type == JNIType.FLOAT || type == JNIType.DOUBLE))
+            return new FloatingMinMaxInstruction(methodInsn.name.equals("max"), arguments[0], arguments[1], output);
+
+        if (!EXACT_INTRINSICS.containsKey(key))
+            return null;
+
+        switch (methodInsn.name) {
+            case "negateExact":
+                return new ExactArithmeticInstruction(EXACT_INTRINSICS.get(key), type, null, arguments[0], output);
+            case "incrementExact":
+            case "decrementExact":
+                return new ExactArithmeticInstruction(EXACT_INTRINSICS.get(key), type, arguments[0], null, output);
+            default:
+                return new ExactArithmeticInstruction(EXACT_INTRINSICS.get(key), type, arguments[0], arguments[1], output);
+        }
+    }
+
+    private static Instruction convertStringInvocation(MethodInsnNode methodInsn, int stackSize) {
+        switch (methodInsn.name + methodInsn.desc) {
+            case "length()I":
+                return new StringLengthInstruction(new StackSlot(JNIType.OBJECT, stackSize - 1), new StackSlot(JNIType.INT, stackSize - 1), false);
+            case "isEmpty()Z":
+                return new StringLengthInstruction(new StackSlot(JNIType.OBJECT, stackSize - 1), new StackSlot(JNIType.INT, stackSize - 1), true);
+            case "charAt(I)C":
+                return new StringCharAtInstruction(new StackSlot(JNIType.OBJECT, stackSize - 2),
+                                                   new StackSlot(JNIType.INT, stackSize - 1),
+                                                   new StackSlot(JNIType.INT, stackSize - 2));
+            case "hashCode()I": {
+                var string = new StackSlot(JNIType.OBJECT, stackSize - 1);
+                var output = new StackSlot(JNIType.INT, stackSize - 1);
+
+                return new StringHashCodeInstruction(string,
+                                                     output,
+                                                     new InvokeInstruction(new MethodOrFieldIdentifier(methodInsn), new StackSlot[]{string}, new JNIType[]{JNIType.OBJECT}, output, false, false));
+            }
+            default:
+                return null;
+        }
+    }
+
+    private Instruction convertBufferAccess(MLVCompiler compiler, MethodInsnNode methodInsn, Frame<SourceValue> frame) {
+        var valueType = BUFFER_ACCESSORS.get(methodInsn.name);
+
+        if (valueType == null)
+            return null;
+
+        var write = methodInsn.name.startsWith("put");
+        var descriptor = getDescriptor(valueType);
+        var relativeDesc = write ? "(" + descriptor + ")Ljava/nio/ByteBuffer;" : "()" + descriptor;
+        var absoluteDesc = write ? "(I" + descriptor + ")Ljava/nio/ByteBuffer;" : "(I)" + descriptor;
+
+        if (!methodInsn.desc.equals(relativeDesc) && !methodInsn.desc.equals(absoluteDesc))
+            return null;
+
+        var absolute = methodInsn.desc.equals(absoluteDesc);
+        var argumentCount = (absolute ? 1 : 0) + (write ? 1 : 0);
+        var stackSize = frame.getStackSize();
+        var bufferIndex = stackSize - argumentCount - 1;
+
+        var params = new StackSlot[argumentCount + 1];
+        var targetTypes = new JNIType[params.length];
+
+        params[0] = new StackSlot(JNIType.OBJECT, bufferIndex);
+        targetTypes[0] = JNIType.OBJECT;
+
+        if (absolute) {
+            params[1] = new StackSlot(JNIType.INT, bufferIndex + 1);
+            targetTypes[1] = JNIType.INT;
+        }
+
+        if (write) {
+            params[params.length - 1] = new StackSlot(valueType.getStackStorageType(), stackSize - 1);
+            targetTypes[params.length - 1] = valueType;
+        }
+
+        var output = new StackSlot(write ? JNIType.OBJECT : valueType.getStackStorageType(), bufferIndex);
+        var method = new MethodOrFieldIdentifier(methodInsn);
+        var fallback = new InvokeInstruction(method, params, targetTypes, output, false, false);
+
+        return new DirectBufferAccessInstruction(valueType,
+                                                 write,
+                                                 params[0],
+                                                 absolute ? params[1] : null,
+                                                 write ? params[params.length - 1] : null,
+                                                 output,
+                                                 getBufferRegion(frame.getStack(bufferIndex)),
+                                                 fallback,
+                                                 method);
+    }
+
+    /**
+     * A buffer has a region if it is always the value of the same parameter, which is never overwritten. Then its
+     * address can't change during the invocation.
+     *
+     * @return the region or <code>null</code>
+     */
+    private DirectBufferAccessInstruction.Region getBufferRegion(SourceValue buffer) {
+        Integer local = null;
+
+        for (AbstractInsnNode source : buffer.insns) {
+            if (source.getOpcode() != ALOAD || (local != null && local != ((VarInsnNode) source).var))
+                return null;
+
+            local = ((VarInsnNode) source).var;
+        }
+
+        if (local == null || !this.parameterTypes.containsKey(local))
+            return null;
+
+        if (this.storedLocals == null) {
+            this.storedLocals = new HashSet<>();
+
+            for (AbstractInsnNode instruction : this.compilerMethod.getNode().instructions) {
+                if (instruction.getOpcode() >= ISTORE && instruction.getOpcode() <= ASTORE)
+                    this.storedLocals.add(((VarInsnNode) instruction).var);
+            }
+        }
+
+        if (this.storedLocals.contains(local))
+            return null;
+
+        return this.bufferRegions.computeIfAbsent(local, idx -> new DirectBufferAccessInstruction.Region(isBufferStateStable()));
+    }
+
+    /**
+     * Checks whether the limit and the byte order of the buffers can't change while the method runs. They are only
+     * changed by other code, so the method may only call the accessors of <code>ByteBuffer</code> (which don't touch
+     * them) and mustn't initialize other classes.
+     */
+    private boolean isBufferStateStable() {
+        if (this.bufferStateStable == null)
+            this.bufferStateStable = !mayRunOtherCode(this.compilerMethod);
+
+        return this.bufferStateStable;
+    }
+
+    private static boolean mayRunOtherCode(CompilerMethod compilerMethod) {
+        var owner = compilerMethod.getParent().getName();
+
+        for (AbstractInsnNode instruction : compilerMethod.getNode().instructions) {
+            switch (instruction.getOpcode()) {
+                case INVOKEVIRTUAL:
+                case INVOKESPECIAL:
+                case INVOKESTATIC:
+                case INVOKEINTERFACE: {
+                    var methodInsn = (MethodInsnNode) instruction;
+
+                    if (!methodInsn.owner.equals("java/nio/ByteBuffer") || !BUFFER_ACCESSORS.containsKey(methodInsn.name))
+                        return true;
+
+                    break;
+                }
+                case GETSTATIC:
+                case PUTSTATIC:
+                    if (!((FieldInsnNode) instruction).owner.equals(owner))
+                        return true;
+
+                    break;
+                case INVOKEDYNAMIC:
+                case NEW:
+                case MONITORENTER:
+                    return true;
+                default:
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    private static String getDescriptor(JNIType type) {
+        switch (type) {
+            case BYTE:
+                return "B";
+            case SHORT:
+                return "S";
+            case CHAR:
+                return "C";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            default:
+                throw new IllegalArgumentException("Unexpected value: " + type);
+        }
+    }
+
+    private static Instruction convertBitOperation(MLVCompiler compiler, MethodInsnNode methodInsn, int stackSize) {
+        // The descriptors are unique among Integer, Long, Float and Double, so the owner doesn't matter
+        var operation = BIT_OPERATIONS.get(methodInsn.name + methodInsn.desc);
+
+        if (operation == null)
+            return null;
+
+        var argumentTypes = Type.getArgumentTypes(methodInsn.desc);
+        var operandType = compiler.getJni().toNativeType(argumentTypes[0]);
+        var output = new StackSlot(compiler.getJni().toNativeType(Type.getReturnType(methodInsn.desc)), stackSize - argumentTypes.length);
+
+        if (operation.isRotation()) {
+            return new BitOperationInstruction(operation,
+                                               operandType,
+                                               new StackSlot(operandType, stackSize - 2),
+                                               new StackSlot(JNIType.INT, stackSize - 1),
+                                               output);
+        }
+
+        return new BitOperationInstruction(operation, operandType, new StackSlot(operandType, stackSize - 1), null, output);
+    }
+
+    private static boolean isPrimitiveArray(Type type) {
+        return type.getSort() == Type.ARRAY && type.getDimensions() == 1 && type.getElementType().getSort() != Type.OBJECT;
+    }
+
+    /**
+     * Returns the type of an array reference if every instruction it might come from is known to produce the same
+     * one-dimensional primitive array type. There are no subtypes of primitive arrays, so declared types are exact.
+     *
+     * @return the type or <code>null</code> if it is unknown
+     */
+    private Type getPrimitiveArrayType(SourceValue value) {
+        var types = new HashSet<Type>();
+
+        if (!collectTypes(value, types, new HashSet<>()) || types.size() != 1)
+            return null;
+
+        var type = types.iterator().next();
+
+        return isPrimitiveArray(type) ? type : null;
+    }
+
+    /**
+     * Adds the types of all instructions the value might come from. <code>null</code> constants don't add anything.
+     *
+     * @return <code>false</code> if the type of a source is unknown
+     */
+    private boolean collectTypes(SourceValue value, HashSet<Type> types, HashSet<AbstractInsnNode> visited) {
+        // Exception handlers and parameters
+        if (value.insns.isEmpty())
+            return false;
+
+        var instructions = this.compilerMethod.getNode().instructions;
+
+        for (AbstractInsnNode insn : value.insns) {
+            if (!visited.add(insn))
+                continue;
+
+            var frame = this.frames[instructions.indexOf(insn)];
+
+            switch (insn.getOpcode()) {
+                case ACONST_NULL:
+                    break;
+                case DUP:
+                case ASTORE:
+                    if (!collectTypes(frame.getStack(frame.getStackSize() - 1), types, visited))
+                        return false;
+
+                    break;
+                case ALOAD: {
+                    var local = ((VarInsnNode) insn).var;
+
+                    // The parameter might not have been overwritten on every path
+                    if (this.parameterTypes.containsKey(local))
+                        types.add(this.parameterTypes.get(local));
+
+                    var localValue = frame.getLocal(local);
+
+                    // The SourceValues of locals point to the stores
+                    if (!localValue.insns.isEmpty() && !collectTypes(localValue, types, visited))
+                        return false;
+                    if (localValue.insns.isEmpty() && !this.parameterTypes.containsKey(local))
+                        return false;
+
+                    break;
+                }
+                case CHECKCAST:
+                    types.add(Type.getObjectType(((TypeInsnNode) insn).desc));
+                    break;
+                case NEWARRAY:
+                case GETFIELD:
+                case GETSTATIC:
+                case INVOKEVIRTUAL:
+                case INVOKESPECIAL:
+                case INVOKESTATIC:
+                case INVOKEINTERFACE:
+                    types.add(OpcodeUtils.getReturnType(insn));
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        return true;
+    }
+}
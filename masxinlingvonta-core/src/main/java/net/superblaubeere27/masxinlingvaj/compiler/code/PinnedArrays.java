@@ -0,0 +1,590 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code;
+
+import net.superblaubeere27.masxinlingvaj.compiler.ArrayPinning;
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.BitOperationInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ExactArithmeticInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.FloatingMinMaxInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.MathInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringCharAtInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringLengthInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.buildIf;
+
+/**
+ * Primitive array parameters which are pinned for the whole method, so their elements can be accessed with plain loads
+ * and stores instead of a <code>Get/Set&lt;Type&gt;ArrayRegion</code> call per element. <code>String</code> parameters
+ * are pinned the same way, so <code>charAt</code>, <code>length</code>, <code>hashCode</code> and <code>equals</code>
+ * (if the other string is pinned as well) don't need a JNI call. Only done if enabled
+ * with {@link MLVCompiler#getArrayPinning()}, which also selects the JNI functions used for pinning.
+ * <p>
+ * No JNI function may be called while an array is pinned with <code>GetPrimitiveArrayCritical</code>, so this is only
+ * done for methods which don't do anything but arithmetics and accesses to these arrays (e.g. checksum or codec loops).
+ * The pinned region is always the whole method: the arrays are pinned when it is entered and released before it returns
+ * or throws. Methods with exception handlers aren't pinned, since the handler would have to re-pin the arrays.
+ */
+public class PinnedArrays implements Opcodes {
+    /**
+     * <code>Release&lt;Type&gt;ArrayElements</code>/<code>ReleasePrimitiveArrayCritical</code> mode which frees the copy (if there is one) without writing it back
+     */
+    public static final int JNI_ABORT = 2;
+    private static final Type STRING_TYPE = Type.getType("Ljava/lang/String;");
+
+    private final LinkedHashMap<Integer, PinnedArray> arrays;
+    private final HashMap<AbstractInsnNode, PinnedArray> accesses;
+    /**
+     * <code>String.equals</code> call -&gt; the pinned argument
+     */
+    private final HashMap<AbstractInsnNode, PinnedArray> comparedStrings;
+
+    private PinnedArrays(LinkedHashMap<Integer, PinnedArray> arrays, HashMap<AbstractInsnNode, PinnedArray> accesses, HashMap<AbstractInsnNode, PinnedArray> comparedStrings) {
+        this.arrays = arrays;
+        this.accesses = accesses;
+        this.comparedStrings = comparedStrings;
+    }
+
+    /**
+     * Checks if the array parameters of the method can be pinned. This is the case if the method doesn't contain
+     * instructions which might call a JNI function, all array accesses are done on parameters which are never reassigned
+     * and at least one of them is inside a loop (otherwise pinning is more expensive than accessing the elements).
+     *
+     * @param intrinsics the invocations which are compiled without a JNI call, see {@link Intrinsics}
+     * @return the arrays to pin or <code>null</code> if they can't or shouldn't be pinned
+     */
+    public static PinnedArrays analyze(MLVCompiler compiler, CompilerMethod compilerMethod, Frame<SourceValue>[] frames, HashMap<AbstractInsnNode, Instruction> intrinsics) {
+        var node = compilerMethod.getNode();
+
+        // Exception handlers would have to re-pin the arrays
+        if (node.tryCatchBlocks != null && !node.tryCatchBlocks.isEmpty())
+            return null;
+
+        var parameters = getPinnableParameters(compilerMethod);
+
+        if (parameters.isEmpty())
+            return null;
+
+        var instructions = node.instructions;
+
+        var arrays = new LinkedHashMap<Integer, PinnedArray>();
+        var accesses = new HashMap<AbstractInsnNode, PinnedArray>();
+        var comparedStrings = new HashMap<AbstractInsnNode, PinnedArray>();
+        var reassignedLocals = new HashSet<Integer>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            var frame = frames[i];
+            var opcode = instruction.getOpcode();
+
+            // Unreachable
+            if (frame == null)
+                continue;
+
+            var arrayDepth = getArrayOperandDepth(instruction);
+
+            if (arrayDepth != -1) {
+                var local = getSourceLocal(frame.getStack(frame.getStackSize() - arrayDepth));
+
+                if (local == -1 || !parameters.containsKey(local))
+                    return null;
+
+                var parameterType = parameters.get(local);
+                var string = parameterType.getSort() != Type.ARRAY;
+                var elementType = string ? JNIType.CHAR : compiler.getJni().toNativeType(parameterType.getElementType());
+
+                var array = arrays.computeIfAbsent(local, idx -> new PinnedArray(idx, elementType, string));
+
+                if (opcode >= IASTORE && opcode <= SASTORE)
+                    array.written = true;
+
+                // Both strings of equals have to be pinned
+                if (isStringEquals(instruction)) {
+                    var argument = getSourceLocal(frame.getStack(frame.getStackSize() - 1));
+
+                    if (argument == -1 || !STRING_TYPE.equals(parameters.get(argument)))
+                        return null;
+
+                    comparedStrings.put(instruction, arrays.computeIfAbsent(argument, idx -> new PinnedArray(idx, JNIType.CHAR, true)));
+                }
+
+                accesses.put(instruction, array);
+            } else if (opcode == ASTORE) {
+                reassignedLocals.add(((VarInsnNode) instruction).var);
+            } else if (!isPure(instruction) && !isPureIntrinsic(intrinsics.get(instruction))) {
+                return null;
+            }
+        }
+
+        for (Integer local : reassignedLocals) {
+            if (arrays.containsKey(local))
+                return null;
+        }
+
+        if (!hasAccessInLoop(instructions, accesses.keySet()))
+            return null;
+
+        return new PinnedArrays(arrays, accesses, comparedStrings);
+    }
+
+    /**
+     * @return local index -&gt; type of all one-dimensional primitive array and String parameters
+     */
+    private static HashMap<Integer, Type> getPinnableParameters(CompilerMethod compilerMethod) {
+        var parameters = new HashMap<Integer, Type>();
+
+        int local = compilerMethod.isStatic() ? 0 : 1;
+
+        for (Type argumentType : Type.getArgumentTypes(compilerMethod.getNode().desc)) {
+            var primitiveArray = argumentType.getSort() == Type.ARRAY && argumentType.getDimensions() == 1 && argumentType.getElementType().getSort() != Type.OBJECT;
+
+            if (primitiveArray || argumentType.equals(STRING_TYPE)) {
+                parameters.put(local, argumentType);
+            }
+
+            local += argumentType.getSize();
+        }
+
+        return parameters;
+    }
+
+    /**
+     * @return the position of the array (or string) operand from the top of the stack or -1 if the instruction doesn't
+     * access a primitive array or call <code>String.charAt</code>, <code>length</code>, <code>hashCode</code> or
+     * <code>equals</code>
+     */
+    private static int getArrayOperandDepth(AbstractInsnNode instruction) {
+        var opcode = instruction.getOpcode();
+
+        if (opcode == INVOKEVIRTUAL && ((MethodInsnNode) instruction).owner.equals("java/lang/String")) {
+            var methodInsn = (MethodInsnNode) instruction;
+
+            if (methodInsn.name.equals("charAt") && methodInsn.desc.equals("(I)C"))
+                return 2;
+            if ((methodInsn.name.equals("length") || methodInsn.name.equals("hashCode")) && methodInsn.desc.equals("()I"))
+                return 1;
+            if (isStringEquals(methodInsn))
+                return 2;
+
+            return -1;
+        }
+
+        if (opcode == ARRAYLENGTH)
+            return 1;
+        if (opcode >= IALOAD && opcode <= SALOAD && opcode != AALOAD)
+            return 2;
+        if (opcode >= IASTORE && opcode <= SASTORE && opcode != AASTORE)
+            return 3;
+
+        return -1;
+    }
+
+    private static boolean isStringEquals(AbstractInsnNode instruction) {
+        if (instruction.getOpcode() != INVOKEVIRTUAL)
+            return false;
+
+        var methodInsn = (MethodInsnNode) instruction;
+
+        return methodInsn.owner.equals("java/lang/String") && methodInsn.name.equals("equals") && methodInsn.desc.equals("(Ljava/lang/Object;)Z");
+    }
+
+    /**
+     * @return the local the value was loaded from or -1 if it doesn't come from a single local
+     */
+    private static int getSourceLocal(SourceValue value) {
+        int local = -1;
+
+        for (AbstractInsnNode insn : value.insns) {
+            if (insn.getOpcode() != ALOAD)
+                return -1;
+
+            var var = ((VarInsnNode) insn).var;
+
+            if (local != -1 && local != var)
+                return -1;
+
+            local = var;
+        }
+
+        return local;
+    }
+
+    /**
+     * Checks if the instruction is compiled without calling a JNI function
+     */
+    private static boolean isPure(AbstractInsnNode instruction) {
+        var opcode = instruction.getOpcode();
+
+        // Labels, line numbers and frames
+        if (opcode == -1 || opcode == NOP)
+            return true;
+        // Constants (besides LDC), loads and stores of locals
+        if ((opcode >= ACONST_NULL && opcode <= SIPUSH) || (opcode >= ILOAD && opcode <= ALOAD) || (opcode >= ISTORE && opcode <= ASTORE))
+            return true;
+        // Stack manipulation, arithmetics, conversions, comparisons and branches (besides IF_ACMP, JSR and RET)
+        if ((opcode >= POP && opcode <= IF_ICMPLE) || opcode == GOTO || opcode == IFNULL || opcode == IFNONNULL)
+            return true;
+        if (opcode == TABLESWITCH || opcode == LOOKUPSWITCH || (opcode >= IRETURN && opcode <= RETURN))
+            return true;
+
+        return opcode == LDC && ((LdcInsnNode) instruction).cst instanceof Number;
+    }
+
+    /**
+     * Checks if the intrinsic is compiled without calling a JNI function. Exceptions are fine, pinned arrays are
+     * released before they are thrown.
+     */
+    private static boolean isPureIntrinsic(Instruction intrinsic) {
+        return intrinsic instanceof MathInstruction || intrinsic instanceof FloatingMinMaxInstruction || intrinsic instanceof ExactArithmeticInstruction
+                || intrinsic instanceof BitOperationInstruction;
+    }
+
+    /**
+     * Checks if one of the instructions is between a backwards jump and its target
+     */
+    private static boolean hasAccessInLoop(InsnList instructions, Iterable<AbstractInsnNode> accesses) {
+        var loops = new ArrayList<int[]>();
+
+        for (AbstractInsnNode instruction : instructions) {
+            var end = instructions.indexOf(instruction);
+            var targets = new ArrayList<LabelNode>();
+
+            if (instruction instanceof JumpInsnNode) {
+                targets.add(((JumpInsnNode) instruction).label);
+            } else if (instruction instanceof TableSwitchInsnNode) {
+                targets.add(((TableSwitchInsnNode) instruction).dflt);
+                targets.addAll(((TableSwitchInsnNode) instruction).labels);
+            } else if (instruction instanceof LookupSwitchInsnNode) {
+                targets.add(((LookupSwitchInsnNode) instruction).dflt);
+                targets.addAll(((LookupSwitchInsnNode) instruction).labels);
+            }
+
+            for (LabelNode target : targets) {
+                var start = instructions.indexOf(target);
+
+                if (start <= end)
+                    loops.add(new int[]{start, end});
+            }
+        }
+
+        for (AbstractInsnNode access : accesses) {
+            var idx = instructions.indexOf(access);
+
+            for (int[] loop : loops) {
+                if (idx >= loop[0] && idx <= loop[1])
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the pinned array accessed by the given <code>xALOAD</code>, <code>xASTORE</code>,
+     * <code>ARRAYLENGTH</code> instruction or <code>String</code> call, <code>null</code> if it isn't an access to a
+     * pinned array. For <code>String.equals</code> this is the receiver.
+     */
+    public PinnedArray getAccessedArray(AbstractInsnNode instruction) {
+        return this.accesses.get(instruction);
+    }
+
+    /**
+     * @return the pinned argument of a <code>String.equals</code> call whose receiver is pinned
+     */
+    public PinnedArray getComparedString(AbstractInsnNode instruction) {
+        return this.comparedStrings.get(instruction);
+    }
+
+    /**
+     * Builds code that pins all arrays. Has to be called at the beginning of the method since the arrays are released
+     * at every exit.
+     */
+    public void buildPin(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+        var jniEnv = compiler.getJni().getJniEnv();
+        var critical = compiler.getArrayPinning() == ArrayPinning.CRITICAL;
+
+        for (PinnedArray array : this.arrays.values()) {
+            var elementsType = LLVM.LLVMPointerType(array.getMemoryType(), 0);
+
+            array.elements = stack.buildAllocation(builder, elementsType, "pinned[" + array.local + "]");
+            array.length = stack.buildAllocation(builder, JNIType.INT.getLLVMType(), "pinned_length[" + array.local + "]");
+
+            // Unpinned arrays aren't released
+            LLVM.LLVMBuildStore(builder, LLVM.LLVMConstNull(elementsType), array.elements);
+            LLVM.LLVMBuildStore(builder, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0), array.length);
+        }
+
+        // The lengths have to be queried before the first array is pinned. NULL arrays stay unpinned, accessing them
+        // throws a NullPointerException
+        for (PinnedArray array : this.arrays.values()) {
+            var arrayRef = array.buildArrayLoad(translatedMethod);
+
+            buildIf(translatedMethod, LLVM.LLVMBuildIsNotNull(builder, arrayRef, ""), () -> {
+                var length = jniEnv.callEnvironmentMethod(
+                        translatedMethod, translatedMethod.getEnvPtr(),
+                        array.string ? JNIEnv.JNIEnvMethod.GetStringLength : JNIEnv.JNIEnvMethod.GetArrayLength,
+                        arrayRef
+                );
+
+                LLVM.LLVMBuildStore(builder, length, array.length);
+            });
+        }
+
+        for (PinnedArray array : this.arrays.values()) {
+            var arrayRef = array.buildArrayLoad(translatedMethod);
+
+            buildIf(translatedMethod, LLVM.LLVMBuildIsNotNull(builder, arrayRef, ""), () -> {
+                var elements = jniEnv.callEnvironmentMethod(
+                        translatedMethod, translatedMethod.getEnvPtr(),
+                        array.getPinMethod(critical),
+                        arrayRef,
+                        LLVM.LLVMConstNull(LLVM.LLVMPointerType(JNIType.BOOLEAN.getLLVMType(), 0))
+                );
+
+                // The VM couldn't allocate a copy of the array
+                block.throwIf(compiler,
+                              translatedMethod,
+                              LLVM.LLVMBuildIsNull(builder, elements, ""),
+                              "java/lang/OutOfMemoryError",
+                              "Failed to pin an array");
+
+                LLVM.LLVMBuildStore(builder,
+                                    LLVM.LLVMBuildBitCast(builder, elements, LLVM.LLVMPointerType(array.getMemoryType(), 0), ""),
+                                    array.elements);
+            });
+        }
+    }
+
+    /**
+     * Builds code that releases all arrays which are pinned. Written arrays are copied back if the VM made a copy of
+     * them.
+     */
+    public void buildRelease(MLVCompiler compiler, TranslatedMethod translatedMethod) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var critical = compiler.getArrayPinning() == ArrayPinning.CRITICAL;
+
+        for (PinnedArray array : this.arrays.values()) {
+            var elements = LLVM.LLVMBuildLoad(builder, array.elements, "");
+
+            buildIf(translatedMethod, LLVM.LLVMBuildIsNotNull(builder, elements, ""), () -> {
+                if (array.string) {
+                    compiler.getJni().getJniEnv().callEnvironmentMethod(
+                            translatedMethod, translatedMethod.getEnvPtr(),
+                            critical ? JNIEnv.JNIEnvMethod.ReleaseStringCritical : JNIEnv.JNIEnvMethod.ReleaseStringChars,
+                            array.buildArrayLoad(translatedMethod),
+                            elements
+                    );
+                } else if (!critical) {
+                    compiler.getJni().getJniEnv().callEnvironmentMethod(
+                            translatedMethod, translatedMethod.getEnvPtr(),
+                            array.getReleaseElementsMethod(),
+                            array.buildArrayLoad(translatedMethod),
+                            LLVM.LLVMBuildBitCast(builder, elements, LLVM.LLVMPointerType(array.elementType.getLLVMType(), 0), ""),
+                            LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), array.written ? 0 : JNI_ABORT, 0)
+                    );
+                } else {
+                    compiler.getJni().getJniEnv().callEnvironmentMethod(
+                            translatedMethod, translatedMethod.getEnvPtr(),
+                            JNIEnv.JNIEnvMethod.ReleasePrimitiveArrayCritical,
+                            array.buildArrayLoad(translatedMethod),
+                            LLVM.LLVMBuildBitCast(builder, elements, LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), ""),
+                            LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), array.written ? 0 : JNI_ABORT, 0)
+                    );
+                }
+
+                // Releasing it again (e.g. in the exception handler) would be fatal
+                LLVM.LLVMBuildStore(builder, LLVM.LLVMConstNull(LLVM.LLVMTypeOf(elements)), array.elements);
+            });
+        }
+    }
+
+    public static class PinnedArray {
+        private final int local;
+        private final JNIType elementType;
+        /**
+         * Is this a String parameter? Its chars are the elements
+         */
+        private final boolean string;
+        private boolean written;
+
+        /**
+         * <code>&lt;type&gt;*</code> variable which contains the pinned elements or NULL if the array isn't pinned
+         */
+        private LLVMValueRef elements;
+        private LLVMValueRef length;
+
+        private PinnedArray(int local, JNIType elementType, boolean string) {
+            this.local = local;
+            this.elementType = elementType;
+            this.string = string;
+        }
+
+        public JNIType getElementType() {
+            return elementType;
+        }
+
+        /**
+         * The type of the elements in memory, jboolean is an unsigned char
+         */
+        public LLVMTypeRef getMemoryType() {
+            return this.elementType == JNIType.BOOLEAN ? LLVM.LLVMInt8Type() : this.elementType.getLLVMType();
+        }
+
+        private JNIEnv.JNIEnvMethod getPinMethod(boolean critical) {
+            if (this.string)
+                return critical ? JNIEnv.JNIEnvMethod.GetStringCritical : JNIEnv.JNIEnvMethod.GetStringChars;
+            if (critical)
+                return JNIEnv.JNIEnvMethod.GetPrimitiveArrayCritical;
+
+            switch (this.elementType) {
+                case BOOLEAN:
+                    return JNIEnv.JNIEnvMethod.GetBooleanArrayElements;
+                case CHAR:
+                    return JNIEnv.JNIEnvMethod.GetCharArrayElements;
+                case BYTE:
+                    return JNIEnv.JNIEnvMethod.GetByteArrayElements;
+                case SHORT:
+                    return JNIEnv.JNIEnvMethod.GetShortArrayElements;
+                case INT:
+                    return JNIEnv.JNIEnvMethod.GetIntArrayElements;
+                case LONG:
+                    return JNIEnv.JNIEnvMethod.GetLongArrayElements;
+                case FLOAT:
+                    return JNIEnv.JNIEnvMethod.GetFloatArrayElements;
+                case DOUBLE:
+                    return JNIEnv.JNIEnvMethod.GetDoubleArrayElements;
+                default:
+                    throw new IllegalStateException("Unexpected value: " + this.elementType);
+            }
+        }
+
+        private JNIEnv.JNIEnvMethod getReleaseElementsMethod() {
+            switch (this.elementType) {
+                case BOOLEAN:
+                    return JNIEnv.JNIEnvMethod.ReleaseBooleanArrayElements;
+                case CHAR:
+                    return JNIEnv.JNIEnvMethod.ReleaseCharArrayElements;
+                case BYTE:
+                    return JNIEnv.JNIEnvMethod.ReleaseByteArrayElements;
+                case SHORT:
+                    return JNIEnv.JNIEnvMethod.ReleaseShortArrayElements;
+                case INT:
+                    return JNIEnv.JNIEnvMethod.ReleaseIntArrayElements;
+                case LONG:
+                    return JNIEnv.JNIEnvMethod.ReleaseLongArrayElements;
+                case FLOAT:
+                    return JNIEnv.JNIEnvMethod.ReleaseFloatArrayElements;
+                case DOUBLE:
+                    return JNIEnv.JNIEnvMethod.ReleaseDoubleArrayElements;
+                default:
+                    throw new IllegalStateException("Unexpected value: " + this.elementType);
+            }
+        }
+
+        /**
+         * Returns the pinned elements without checking them, i.e. NULL if the array is NULL
+         */
+        public LLVMValueRef buildElementsLoad(TranslatedMethod translatedMethod) {
+            return LLVM.LLVMBuildLoad(translatedMethod.getLlvmBuilder(), this.elements, "pinned_elements");
+        }
+
+        /**
+         * Returns the length without checking the array, i.e. 0 if the array is NULL
+         */
+        public LLVMValueRef buildLengthLoad(TranslatedMethod translatedMethod) {
+            return LLVM.LLVMBuildLoad(translatedMethod.getLlvmBuilder(), this.length, "pinned_length");
+        }
+
+        private LLVMValueRef buildArrayLoad(TranslatedMethod translatedMethod) {
+            return translatedMethod.getStack().buildLocalLoad(translatedMethod.getLlvmBuilder(), new StackSlot(JNIType.OBJECT, this.local));
+        }
+
+        /**
+         * Returns the length of the array. A NullPointerException is thrown if the array is NULL.
+         */
+        public LLVMValueRef buildLength(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+            var builder = translatedMethod.getLlvmBuilder();
+
+            var elements = LLVM.LLVMBuildLoad(builder, this.elements, "");
+
+            if (this.string) {
+                block.buildReceiverNullCheck(compiler, translatedMethod, elements, StringLengthInstruction.LENGTH);
+            } else {
+                block.throwIf(compiler,
+                              translatedMethod,
+                              LLVM.LLVMBuildIsNull(builder, elements, ""),
+                              "java/lang/NullPointerException",
+                              "Cannot read the array length");
+            }
+
+            return LLVM.LLVMBuildLoad(builder, this.length, "pinned_length");
+        }
+
+        /**
+         * Returns a pointer to the element with the given index. A NullPointerException is thrown if the array is NULL,
+         * an ArrayIndexOutOfBoundsException (StringIndexOutOfBoundsException for strings) if the index is out of
+         * bounds.
+         *
+         * @param checkBounds <code>false</code> if the index is known to be in bounds
+         */
+        public LLVMValueRef buildElementPointer(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef index, boolean store, boolean checkBounds) {
+            var builder = translatedMethod.getLlvmBuilder();
+
+            var elements = LLVM.LLVMBuildLoad(builder, this.elements, "pinned_elements");
+
+            if (this.string) {
+                block.buildReceiverNullCheck(compiler, translatedMethod, elements, StringCharAtInstruction.CHAR_AT);
+            } else {
+                block.throwIf(compiler,
+                              translatedMethod,
+                              LLVM.LLVMBuildIsNull(builder, elements, ""),
+                              "java/lang/NullPointerException",
+                              (store ? "Cannot store to " : "Cannot load from ") + this.elementType.name().toLowerCase(Locale.ROOT) + " array");
+            }
+
+            // Negative indices are big unsigned ints
+            if (checkBounds) {
+                var outOfBounds = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntUGE, index, LLVM.LLVMBuildLoad(builder, this.length, ""), "");
+
+                if (this.string) {
+                    block.throwIf(compiler,
+                                  translatedMethod,
+                                  outOfBounds,
+                                  "java/lang/StringIndexOutOfBoundsException",
+                                  StringCharAtInstruction.INDEX_OUT_OF_RANGE_MESSAGE,
+                                  index);
+                } else {
+                    block.throwIf(compiler,
+                                  translatedMethod,
+                                  outOfBounds,
+                                  "java/lang/ArrayIndexOutOfBoundsException",
+                                  "Index %d out of bounds for length %d",
+                                  index,
+                                  LLVM.LLVMBuildLoad(builder, this.length, ""));
+                }
+            }
+
+            return LLVM.LLVMBuildInBoundsGEP(builder, elements, new PointerPointer<>(new LLVMValueRef[]{index}), 1, "element");
+        }
+    }
+}
@@ -0,0 +1,1146 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code;
+
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Interpreter;
+import org.objectweb.asm.tree.analysis.Value;
+
+import java.util.*;
+
+/**
+ * Value-range analysis of the int and long values of a method.
+ * <p>
+ * Every value is approximated by an interval. Conditional branches narrow the intervals of the compared locals on both
+ * edges, so loop counters are known to be below their bound inside the loop. Besides the interval, a value may be known
+ * to be the length of (or to be smaller than the length of) an array which is stored in a local. This is enough to prove
+ * that <code>for (int i = 0; i &lt; array.length; i++) array[i]</code> stays in bounds.
+ * <p>
+ * The results are {@link Fact}s about single instructions, e.g. that an addition can't overflow.
+ */
+public class RangeAnalysis implements Opcodes {
+    /**
+     * The number of times a value at a loop header may grow until it is widened to the whole range of its type.
+     * Guarantees that loops reach a fixpoint quickly.
+     */
+    private static final int WIDENING_THRESHOLD = 3;
+
+    private static final RangeAnalysis EMPTY = new RangeAnalysis();
+
+    private final HashMap<AbstractInsnNode, EnumSet<Fact>> facts = new HashMap<>();
+
+    /**
+     * Analyzes the method. If the method contains subroutines (<code>JSR</code>/<code>RET</code>), nothing is proven.
+     */
+    public static RangeAnalysis analyze(CompilerMethod compilerMethod) throws AnalyzerException {
+        var node = compilerMethod.getNode();
+
+        for (AbstractInsnNode instruction : node.instructions) {
+            if (instruction.getOpcode() == JSR || instruction.getOpcode() == RET)
+                return EMPTY;
+        }
+
+        var analysis = new RangeAnalysis();
+
+        analysis.collectFacts(node, new Solver(compilerMethod).solve());
+
+        return analysis;
+    }
+
+    /**
+     * @return the facts which were proven for the given instruction
+     */
+    public Set<Fact> getFacts(AbstractInsnNode instruction) {
+        var result = this.facts.get(instruction);
+
+        return result == null ? EnumSet.noneOf(Fact.class) : result;
+    }
+
+    private void addFact(AbstractInsnNode instruction, Fact fact) {
+        this.facts.computeIfAbsent(instruction, insn -> EnumSet.noneOf(Fact.class)).add(fact);
+    }
+
+    private void collectFacts(MethodNode node, Frame<RangeValue>[] frames) {
+        for (int i = 0; i < frames.length; i++) {
+            var frame = frames[i];
+
+            // Unreachable
+            if (frame == null)
+                continue;
+
+            var instruction = node.instructions.get(i);
+            var opcode = instruction.getOpcode();
+            var top = frame.getStackSize() - 1;
+
+            switch (opcode) {
+                case IADD:
+                case LADD:
+                case ISUB:
+                case LSUB:
+                case IMUL:
+                case LMUL: {
+                    var lhs = frame.getStack(top - 1);
+                    var rhs = frame.getStack(top);
+
+                    if (!lhs.isRanged() || !rhs.isRanged())
+                        break;
+
+                    var result = opcode == IADD || opcode == LADD ? exactAdd(lhs, rhs) : opcode == ISUB || opcode == LSUB ? exactSub(lhs, rhs) : exactMul(lhs, rhs);
+
+                    if (result == null || !lhs.fits(result[0], result[1]))
+                        break;
+
+                    addFact(instruction, Fact.NO_SIGNED_WRAP);
+
+                    // Unsigned overflows are only excluded for non-negative values
+                    if (lhs.min >= 0 && rhs.min >= 0 && (opcode == IADD || opcode == LADD || opcode == IMUL || opcode == LMUL || lhs.min >= rhs.max))
+                        addFact(instruction, Fact.NO_UNSIGNED_WRAP);
+
+                    break;
+                }
+                case INEG:
+                case LNEG: {
+                    var value = frame.getStack(top);
+
+                    if (value.isRanged() && value.min > value.getTypeMin())
+                        addFact(instruction, Fact.NO_SIGNED_WRAP);
+
+                    break;
+                }
+                case IINC: {
+                    var iinc = (IincInsnNode) instruction;
+                    var value = frame.getLocal(iinc.var);
+
+                    if (!value.isRanged() || !value.fits(value.min + iinc.incr, value.max + iinc.incr))
+                        break;
+
+                    addFact(instruction, Fact.NO_SIGNED_WRAP);
+
+                    if (value.min >= 0 && iinc.incr >= 0)
+                        addFact(instruction, Fact.NO_UNSIGNED_WRAP);
+
+                    break;
+                }
+                case IDIV:
+                case LDIV:
+                case IREM:
+                case LREM: {
+                    var lhs = frame.getStack(top - 1);
+                    var rhs = frame.getStack(top);
+
+                    if (!lhs.isRanged() || !rhs.isRanged())
+                        break;
+
+                    if (!rhs.contains(0))
+                        addFact(instruction, Fact.NON_ZERO_DIVISOR);
+
+                    // MIN_VALUE / -1 overflows
+                    if (!rhs.contains(-1) || lhs.min > lhs.getTypeMin())
+                        addFact(instruction, Fact.NO_DIVISION_OVERFLOW);
+
+                    break;
+                }
+                case ISHL:
+                case LSHL:
+                case ISHR:
+                case LSHR:
+                case IUSHR:
+                case LUSHR: {
+                    var shift = frame.getStack(top);
+
+                    if (shift.isRanged() && shift.min >= 0 && shift.max < (frame.getStack(top - 1).kind == Kind.LONG ? 64 : 32))
+                        addFact(instruction, Fact.SHIFT_IN_RANGE);
+
+                    break;
+                }
+                case IALOAD:
+                case LALOAD:
+                case FALOAD:
+                case DALOAD:
+                case AALOAD:
+                case BALOAD:
+                case CALOAD:
+                case SALOAD:
+                    if (isInBounds(frame.getStack(top - 1), frame.getStack(top)))
+                        addFact(instruction, Fact.IN_BOUNDS);
+
+                    break;
+                case IASTORE:
+                case LASTORE:
+                case FASTORE:
+                case DASTORE:
+                case AASTORE:
+                case BASTORE:
+                case CASTORE:
+                case SASTORE:
+                    if (isInBounds(frame.getStack(top - 2), frame.getStack(top - 1)))
+                        addFact(instruction, Fact.IN_BOUNDS);
+
+                    break;
+            }
+        }
+    }
+
+    private static boolean isInBounds(RangeValue array, RangeValue index) {
+        return index.isRanged() && index.min >= 0 && array.copyOf != -1 && index.belowLengthOf == array.copyOf;
+    }
+
+    /**
+     * @return the exact result range or <code>null</code> if it doesn't fit into a long
+     */
+    private static long[] exactAdd(RangeValue lhs, RangeValue rhs) {
+        try {
+            return new long[]{Math.addExact(lhs.min, rhs.min), Math.addExact(lhs.max, rhs.max)};
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static long[] exactSub(RangeValue lhs, RangeValue rhs) {
+        try {
+            return new long[]{Math.subtractExact(lhs.min, rhs.max), Math.subtractExact(lhs.max, rhs.min)};
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static long[] exactMul(RangeValue lhs, RangeValue rhs) {
+        try {
+            var a = Math.multiplyExact(lhs.min, rhs.min);
+            var b = Math.multiplyExact(lhs.min, rhs.max);
+            var c = Math.multiplyExact(lhs.max, rhs.min);
+            var d = Math.multiplyExact(lhs.max, rhs.max);
+
+            return new long[]{Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d))};
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    public enum Fact {
+        /**
+         * The addition, subtraction, multiplication, negation or increment doesn't overflow
+         */
+        NO_SIGNED_WRAP,
+        /**
+         * The operands are non-negative and the result doesn't exceed the unsigned range of the type
+         */
+        NO_UNSIGNED_WRAP,
+        /**
+         * The divisor of the division or remainder is never zero
+         */
+        NON_ZERO_DIVISOR,
+        /**
+         * The division or remainder is never <code>MIN_VALUE / -1</code>
+         */
+        NO_DIVISION_OVERFLOW,
+        /**
+         * The shift distance is smaller than the bit width, so it doesn't have to be masked
+         */
+        SHIFT_IN_RANGE,
+        /**
+         * The index of the array access is within the bounds of the array
+         */
+        IN_BOUNDS
+    }
+
+    private enum Kind {
+        INT, LONG, OTHER
+    }
+
+    /**
+     * An abstract value. int and long values have a range, all other values are just placeholders of the right size.
+     */
+    private static final class RangeValue implements Value {
+        private static final RangeValue UNKNOWN = new RangeValue(Kind.OTHER, 1, 0, 0, -1, -1, -1);
+        private static final RangeValue UNKNOWN_WIDE = new RangeValue(Kind.OTHER, 2, 0, 0, -1, -1, -1);
+
+        private final Kind kind;
+        private final int size;
+        private final long min;
+        private final long max;
+
+        /**
+         * The local this value was loaded from if the local wasn't changed since, -1 otherwise
+         */
+        private final int copyOf;
+        /**
+         * The local which contains the array this value is the length of, -1 if unknown
+         */
+        private final int lengthOf;
+        /**
+         * The local which contains an array this value is smaller than the length of, -1 if unknown
+         */
+        private final int belowLengthOf;
+
+        private RangeValue(Kind kind, int size, long min, long max, int copyOf, int lengthOf, int belowLengthOf) {
+            this.kind = kind;
+            this.size = size;
+            this.min = min;
+            this.max = max;
+            this.copyOf = copyOf;
+            this.lengthOf = lengthOf;
+            this.belowLengthOf = belowLengthOf;
+        }
+
+        private static RangeValue ofInt(long min, long max) {
+            if (min < Integer.MIN_VALUE || max > Integer.MAX_VALUE)
+                return fullRange(Kind.INT);
+
+            return new RangeValue(Kind.INT, 1, min, max, -1, -1, -1);
+        }
+
+        private static RangeValue ofLong(long min, long max) {
+            return new RangeValue(Kind.LONG, 2, min, max, -1, -1, -1);
+        }
+
+        private static RangeValue fullRange(Kind kind) {
+            return kind == Kind.LONG ? ofLong(Long.MIN_VALUE, Long.MAX_VALUE) : ofInt(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @return a value of the same kind with the given range, the whole range if it overflows the type
+         */
+        private RangeValue withRange(long min, long max) {
+            return this.kind == Kind.LONG ? ofLong(min, max) : ofInt(min, max);
+        }
+
+        private RangeValue withFacts(int copyOf, int lengthOf, int belowLengthOf) {
+            return new RangeValue(this.kind, this.size, this.min, this.max, copyOf, lengthOf, belowLengthOf);
+        }
+
+        private RangeValue withCopyOf(int copyOf) {
+            return withFacts(copyOf, this.lengthOf, this.belowLengthOf);
+        }
+
+        /**
+         * Removes all facts which refer to the given local
+         */
+        private RangeValue forget(int local) {
+            if (this.copyOf != local && this.lengthOf != local && this.belowLengthOf != local)
+                return this;
+
+            return withFacts(this.copyOf == local ? -1 : this.copyOf,
+                             this.lengthOf == local ? -1 : this.lengthOf,
+                             this.belowLengthOf == local ? -1 : this.belowLengthOf);
+        }
+
+        private boolean isRanged() {
+            return this.kind != Kind.OTHER;
+        }
+
+        /**
+         * Only values on unreachable paths can be empty, see {@link #intersect(RangeValue, long, long, int, int)}
+         */
+        private boolean isEmpty() {
+            return isRanged() && this.min > this.max;
+        }
+
+        private long getTypeMin() {
+            return this.kind == Kind.LONG ? Long.MIN_VALUE : Integer.MIN_VALUE;
+        }
+
+        private long getTypeMax() {
+            return this.kind == Kind.LONG ? Long.MAX_VALUE : Integer.MAX_VALUE;
+        }
+
+        private boolean fits(long min, long max) {
+            return min >= getTypeMin() && max <= getTypeMax();
+        }
+
+        private boolean contains(long value) {
+            return this.min <= value && value <= this.max;
+        }
+
+        /**
+         * @return the largest absolute value or -1 if it doesn't fit into the type
+         */
+        private long getMaxAbs() {
+            if (this.min == getTypeMin())
+                return -1;
+
+            return Math.max(Math.abs(this.min), Math.abs(this.max));
+        }
+
+        @Override
+        public int getSize() {
+            return this.size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof RangeValue))
+                return false;
+
+            var that = (RangeValue) o;
+
+            return this.kind == that.kind && this.size == that.size && this.min == that.min && this.max == that.max
+                    && this.copyOf == that.copyOf && this.lengthOf == that.lengthOf && this.belowLengthOf == that.belowLengthOf;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.kind, this.size, this.min, this.max, this.copyOf, this.lengthOf, this.belowLengthOf);
+        }
+    }
+
+    /**
+     * Computes the abstract frames of a method. The transfer functions are run by {@link Frame#execute}, conditional
+     * branches and the fixpoint iteration are handled here.
+     */
+    private static final class Solver {
+        private final CompilerMethod compilerMethod;
+        private final InsnList instructions;
+        private final Frame<RangeValue>[] frames;
+        private final int[] joins;
+        /**
+         * Instructions which are the target of a backward edge. Every cycle passes one of them, so widening only
+         * happens there.
+         */
+        private final boolean[] loopHeaders;
+        private final RangeInterpreter interpreter = new RangeInterpreter();
+        private final ArrayDeque<Integer> worklist = new ArrayDeque<>();
+        private final boolean[] queued;
+
+        @SuppressWarnings("unchecked")
+        private Solver(CompilerMethod compilerMethod) {
+            this.compilerMethod = compilerMethod;
+            this.instructions = compilerMethod.getNode().instructions;
+            this.frames = (Frame<RangeValue>[]) new Frame<?>[this.instructions.size()];
+            this.joins = new int[this.instructions.size()];
+            this.loopHeaders = new boolean[this.instructions.size()];
+            this.queued = new boolean[this.instructions.size()];
+        }
+
+        private Frame<RangeValue>[] solve() throws AnalyzerException {
+            var node = this.compilerMethod.getNode();
+
+            if (this.instructions.size() == 0)
+                return this.frames;
+
+            var handlers = new ArrayList<ArrayList<TryCatchBlockNode>>();
+
+            for (int i = 0; i < this.instructions.size(); i++) {
+                handlers.add(new ArrayList<>());
+            }
+
+            if (node.tryCatchBlocks != null) {
+                for (TryCatchBlockNode tryCatchBlock : node.tryCatchBlocks) {
+                    var end = this.instructions.indexOf(tryCatchBlock.end);
+
+                    for (int i = this.instructions.indexOf(tryCatchBlock.start); i < end; i++) {
+                        handlers.get(i).add(tryCatchBlock);
+                    }
+
+                    if (this.instructions.indexOf(tryCatchBlock.handler) < end)
+                        this.loopHeaders[this.instructions.indexOf(tryCatchBlock.handler)] = true;
+                }
+            }
+
+            findLoopHeaders();
+
+            propagate(0, createInitialFrame(node));
+
+            while (!this.worklist.isEmpty()) {
+                int idx = this.worklist.poll();
+
+                this.queued[idx] = false;
+
+                var instruction = this.instructions.get(idx);
+                var frame = this.frames[idx];
+
+                if (instruction.getOpcode() == -1) {
+                    propagate(idx + 1, frame);
+
+                    continue;
+                }
+
+                var out = new Frame<>(frame);
+
+                out.execute(instruction, this.interpreter);
+
+                if (instruction instanceof VarInsnNode && instruction.getOpcode() >= ISTORE) {
+                    var local = ((VarInsnNode) instruction).var;
+
+                    forget(out, local);
+
+                    // Wide values overwrite the next local too
+                    if (instruction.getOpcode() == LSTORE || instruction.getOpcode() == DSTORE)
+                        forget(out, local + 1);
+                } else if (instruction instanceof IincInsnNode) {
+                    forget(out, ((IincInsnNode) instruction).var);
+                }
+
+                if (instruction instanceof JumpInsnNode) {
+                    var target = this.instructions.indexOf(((JumpInsnNode) instruction).label);
+
+                    if (instruction.getOpcode() == GOTO) {
+                        propagate(target, out);
+                    } else {
+                        propagate(target, refine(frame, out, instruction.getOpcode(), true));
+                        propagate(idx + 1, refine(frame, out, instruction.getOpcode(), false));
+                    }
+                } else if (instruction instanceof TableSwitchInsnNode) {
+                    var tableSwitch = (TableSwitchInsnNode) instruction;
+
+                    propagate(this.instructions.indexOf(tableSwitch.dflt), out);
+
+                    for (LabelNode label : tableSwitch.labels) {
+                        propagate(this.instructions.indexOf(label), out);
+                    }
+                } else if (instruction instanceof LookupSwitchInsnNode) {
+                    var lookupSwitch = (LookupSwitchInsnNode) instruction;
+
+                    propagate(this.instructions.indexOf(lookupSwitch.dflt), out);
+
+                    for (LabelNode label : lookupSwitch.labels) {
+                        propagate(this.instructions.indexOf(label), out);
+                    }
+                } else if (!(instruction.getOpcode() >= IRETURN && instruction.getOpcode() <= RETURN) && instruction.getOpcode() != ATHROW) {
+                    propagate(idx + 1, out);
+                }
+
+                for (TryCatchBlockNode tryCatchBlock : handlers.get(idx)) {
+                    var handlerFrame = new Frame<>(frame);
+
+                    handlerFrame.clearStack();
+                    handlerFrame.push(RangeValue.UNKNOWN);
+
+                    propagate(this.instructions.indexOf(tryCatchBlock.handler), handlerFrame);
+                }
+            }
+
+            return this.frames;
+        }
+
+        private void findLoopHeaders() {
+            for (int i = 0; i < this.instructions.size(); i++) {
+                var instruction = this.instructions.get(i);
+                var targets = new ArrayList<LabelNode>();
+
+                if (instruction instanceof JumpInsnNode) {
+                    targets.add(((JumpInsnNode) instruction).label);
+                } else if (instruction instanceof TableSwitchInsnNode) {
+                    targets.add(((TableSwitchInsnNode) instruction).dflt);
+                    targets.addAll(((TableSwitchInsnNode) instruction).labels);
+                } else if (instruction instanceof LookupSwitchInsnNode) {
+                    targets.add(((LookupSwitchInsnNode) instruction).dflt);
+                    targets.addAll(((LookupSwitchInsnNode) instruction).labels);
+                }
+
+                for (LabelNode target : targets) {
+                    var targetIdx = this.instructions.indexOf(target);
+
+                    if (targetIdx <= i)
+                        this.loopHeaders[targetIdx] = true;
+                }
+            }
+        }
+
+        private Frame<RangeValue> createInitialFrame(MethodNode node) {
+            var frame = new Frame<RangeValue>(node.maxLocals, node.maxStack);
+            var local = 0;
+
+            if (!this.compilerMethod.isStatic())
+                frame.setLocal(local++, RangeValue.UNKNOWN);
+
+            for (Type argumentType : Type.getArgumentTypes(node.desc)) {
+                frame.setLocal(local++, this.interpreter.newValue(argumentType));
+
+                if (argumentType.getSize() == 2)
+                    frame.setLocal(local++, RangeValue.UNKNOWN);
+            }
+
+            while (local < node.maxLocals) {
+                frame.setLocal(local++, RangeValue.UNKNOWN);
+            }
+
+            return frame;
+        }
+
+        private void propagate(int idx, Frame<RangeValue> frame) throws AnalyzerException {
+            // The edge can't be taken or the method ends
+            if (frame == null || idx >= this.frames.length)
+                return;
+
+            if (this.frames[idx] == null) {
+                this.frames[idx] = new Frame<>(frame);
+            } else {
+                this.interpreter.widen = this.loopHeaders[idx] && ++this.joins[idx] > WIDENING_THRESHOLD;
+
+                if (!this.frames[idx].merge(frame, this.interpreter))
+                    return;
+            }
+
+            if (!this.queued[idx]) {
+                this.queued[idx] = true;
+                this.worklist.add(idx);
+            }
+        }
+
+        /**
+         * Removes the facts about a local which was overwritten
+         */
+        private static void forget(Frame<RangeValue> frame, int local) {
+            for (int i = 0; i < frame.getLocals(); i++) {
+                frame.setLocal(i, frame.getLocal(i).forget(local));
+            }
+
+            for (int i = 0; i < frame.getStackSize(); i++) {
+                frame.setStack(i, frame.getStack(i).forget(local));
+            }
+        }
+
+        /**
+         * Narrows the compared values for one edge of a conditional branch
+         *
+         * @param in    the frame before the branch, it still contains the operands
+         * @param out   the frame after the branch
+         * @param taken <code>true</code> for the edge to the branch target
+         * @return the narrowed frame or <code>null</code> if the edge can't be taken
+         */
+        private static Frame<RangeValue> refine(Frame<RangeValue> in, Frame<RangeValue> out, int opcode, boolean taken) {
+            var top = in.getStackSize() - 1;
+
+            RangeValue lhs;
+            RangeValue rhs;
+            int condition;
+
+            if (opcode >= IFEQ && opcode <= IFLE) {
+                lhs = in.getStack(top);
+                rhs = RangeValue.ofInt(0, 0);
+                condition = opcode - IFEQ;
+            } else if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE) {
+                lhs = in.getStack(top - 1);
+                rhs = in.getStack(top);
+                condition = opcode - IF_ICMPEQ;
+            } else {
+                return out;
+            }
+
+            if (!lhs.isRanged() || !rhs.isRanged())
+                return out;
+
+            // EQ, NE, LT, GE, GT, LE; negated by flipping the lowest bit
+            if (!taken)
+                condition ^= 1;
+
+            RangeValue newLhs;
+            RangeValue newRhs;
+
+            switch (condition) {
+                case 0: // ==
+                    newLhs = intersect(lhs, rhs.min, rhs.max, rhs.lengthOf, rhs.belowLengthOf);
+                    newRhs = intersect(rhs, lhs.min, lhs.max, lhs.lengthOf, lhs.belowLengthOf);
+                    break;
+                case 1: // !=
+                    newLhs = excludeBound(lhs, rhs);
+                    newRhs = excludeBound(rhs, lhs);
+                    break;
+                case 2: // <
+                    newLhs = lessThan(lhs, rhs);
+                    newRhs = greaterThan(rhs, lhs);
+                    break;
+                case 3: // >=
+                    newLhs = atLeast(lhs, rhs);
+                    newRhs = atMost(rhs, lhs);
+                    break;
+                case 4: // >
+                    newLhs = greaterThan(lhs, rhs);
+                    newRhs = lessThan(rhs, lhs);
+                    break;
+                case 5: // <=
+                    newLhs = atMost(lhs, rhs);
+                    newRhs = atLeast(rhs, lhs);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected value: " + condition);
+            }
+
+            if (newLhs.min > newLhs.max || newRhs.min > newRhs.max)
+                return null;
+
+            var result = new Frame<>(out);
+
+            narrowLocal(result, lhs.copyOf, newLhs);
+            narrowLocal(result, rhs.copyOf, newRhs);
+
+            return result;
+        }
+
+        private static void narrowLocal(Frame<RangeValue> frame, int local, RangeValue value) {
+            if (local == -1)
+                return;
+
+            var current = frame.getLocal(local);
+
+            frame.setLocal(local, intersect(current, value.min, value.max, value.lengthOf, value.belowLengthOf));
+
+            // Copies of the local on the stack are narrowed too
+            for (int i = 0; i < frame.getStackSize(); i++) {
+                var stackValue = frame.getStack(i);
+
+                if (stackValue.copyOf == local)
+                    frame.setStack(i, intersect(stackValue, value.min, value.max, value.lengthOf, value.belowLengthOf));
+            }
+        }
+
+        private static RangeValue intersect(RangeValue value, long min, long max, int lengthOf, int belowLengthOf) {
+            return new RangeValue(value.kind,
+                                  value.size,
+                                  Math.max(value.min, min),
+                                  Math.min(value.max, max),
+                                  value.copyOf,
+                                  value.lengthOf != -1 ? value.lengthOf : lengthOf,
+                                  value.belowLengthOf != -1 ? value.belowLengthOf : belowLengthOf);
+        }
+
+        private static RangeValue lessThan(RangeValue value, RangeValue bound) {
+            // value < length or value < x < length
+            var belowLengthOf = bound.lengthOf != -1 ? bound.lengthOf : bound.belowLengthOf;
+
+            return intersect(value, Long.MIN_VALUE, bound.max - 1, -1, belowLengthOf);
+        }
+
+        private static RangeValue atMost(RangeValue value, RangeValue bound) {
+            return intersect(value, Long.MIN_VALUE, bound.max, -1, bound.belowLengthOf);
+        }
+
+        private static RangeValue greaterThan(RangeValue value, RangeValue bound) {
+            return intersect(value, bound.min + 1, Long.MAX_VALUE, -1, -1);
+        }
+
+        private static RangeValue atLeast(RangeValue value, RangeValue bound) {
+            return intersect(value, bound.min, Long.MAX_VALUE, -1, -1);
+        }
+
+        private static RangeValue excludeBound(RangeValue value, RangeValue excluded) {
+            if (excluded.min != excluded.max)
+                return value;
+
+            if (value.min == excluded.min)
+                return intersect(value, value.min + 1, Long.MAX_VALUE, -1, -1);
+            if (value.max == excluded.min)
+                return intersect(value, Long.MIN_VALUE, value.max - 1, -1, -1);
+
+            return value;
+        }
+    }
+
+    /**
+     * The transfer functions of the instructions
+     */
+    private static final class RangeInterpreter extends Interpreter<RangeValue> {
+        /**
+         * Set by the solver if the next merge is at a join point which was visited too often
+         */
+        private boolean widen;
+
+        private RangeInterpreter() {
+            super(ASM9);
+        }
+
+        @Override
+        public RangeValue newValue(Type type) {
+            if (type == null)
+                return RangeValue.UNKNOWN;
+
+            switch (type.getSort()) {
+                case Type.VOID:
+                    return null;
+                case Type.BOOLEAN:
+                    return RangeValue.ofInt(0, 1);
+                case Type.CHAR:
+                    return RangeValue.ofInt(Character.MIN_VALUE, Character.MAX_VALUE);
+                case Type.BYTE:
+                    return RangeValue.ofInt(Byte.MIN_VALUE, Byte.MAX_VALUE);
+                case Type.SHORT:
+                    return RangeValue.ofInt(Short.MIN_VALUE, Short.MAX_VALUE);
+                case Type.INT:
+                    return RangeValue.fullRange(Kind.INT);
+                case Type.LONG:
+                    return RangeValue.fullRange(Kind.LONG);
+                case Type.DOUBLE:
+                    return RangeValue.UNKNOWN_WIDE;
+                default:
+                    return RangeValue.UNKNOWN;
+            }
+        }
+
+        @Override
+        public RangeValue newOperation(AbstractInsnNode insn) {
+            switch (insn.getOpcode()) {
+                case ICONST_M1:
+                case ICONST_0:
+                case ICONST_1:
+                case ICONST_2:
+                case ICONST_3:
+                case ICONST_4:
+                case ICONST_5:
+                    return RangeValue.ofInt(insn.getOpcode() - ICONST_0, insn.getOpcode() - ICONST_0);
+                case LCONST_0:
+                case LCONST_1:
+                    return RangeValue.ofLong(insn.getOpcode() - LCONST_0, insn.getOpcode() - LCONST_0);
+                case BIPUSH:
+                case SIPUSH:
+                    return RangeValue.ofInt(((IntInsnNode) insn).operand, ((IntInsnNode) insn).operand);
+                case LDC: {
+                    var cst = ((LdcInsnNode) insn).cst;
+
+                    if (cst instanceof Integer)
+                        return RangeValue.ofInt((Integer) cst, (Integer) cst);
+                    if (cst instanceof Long)
+                        return RangeValue.ofLong((Long) cst, (Long) cst);
+                    if (cst instanceof Double)
+                        return RangeValue.UNKNOWN_WIDE;
+
+                    return RangeValue.UNKNOWN;
+                }
+                case DCONST_0:
+                case DCONST_1:
+                    return RangeValue.UNKNOWN_WIDE;
+                case GETSTATIC:
+                    return newValue(Type.getType(((FieldInsnNode) insn).desc));
+                default:
+                    return RangeValue.UNKNOWN;
+            }
+        }
+
+        @Override
+        public RangeValue copyOperation(AbstractInsnNode insn, RangeValue value) {
+            switch (insn.getOpcode()) {
+                case ILOAD:
+                case LLOAD:
+                case ALOAD:
+                    return value.withCopyOf(((VarInsnNode) insn).var);
+                case ISTORE:
+                case LSTORE:
+                case ASTORE:
+                    return value.withCopyOf(-1);
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        public RangeValue unaryOperation(AbstractInsnNode insn, RangeValue value) {
+            return checkTransfer(insn, unaryTransfer(insn, value), value);
+        }
+
+        @Override
+        public RangeValue binaryOperation(AbstractInsnNode insn, RangeValue value1, RangeValue value2) {
+            return checkTransfer(insn, binaryTransfer(insn, value1, value2), value1, value2);
+        }
+
+        /**
+         * A transfer function must not produce an empty range from non-empty operands. Every value would be outside of
+         * it, so facts like {@link Fact#NON_ZERO_DIVISOR} would be derived for any value.
+         */
+        private static RangeValue checkTransfer(AbstractInsnNode insn, RangeValue result, RangeValue... operands) {
+            if (result == null || !result.isEmpty())
+                return result;
+
+            for (RangeValue operand : operands) {
+                if (operand.isEmpty())
+                    return result;
+            }
+
+            throw new IllegalStateException("Empty range [" + result.min + ", " + result.max + "] for opcode " + insn.getOpcode());
+        }
+
+        private RangeValue unaryTransfer(AbstractInsnNode insn, RangeValue value) {
+            switch (insn.getOpcode()) {
+                case INEG:
+                case LNEG:
+                    if (value.min == value.getTypeMin())
+                        return RangeValue.fullRange(value.kind);
+
+                    return value.withRange(-value.max, -value.min);
+                case IINC: {
+                    var incr = ((IincInsnNode) insn).incr;
+                    var result = RangeValue.ofInt(value.min + incr, value.max + incr);
+
+                    // i - k < length if i < length (or i == length and k > 0) and it doesn't underflow
+                    if (incr <= 0 && result.min > Integer.MIN_VALUE) {
+                        var belowLengthOf = value.belowLengthOf;
+
+                        if (belowLengthOf == -1 && incr < 0)
+                            belowLengthOf = value.lengthOf;
+
+                        return result.withFacts(-1, -1, belowLengthOf);
+                    }
+
+                    return result;
+                }
+                case I2L:
+                    return RangeValue.ofLong(value.min, value.max);
+                case L2I:
+                    return RangeValue.ofInt(value.min, value.max);
+                case I2B:
+                    return clamp(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+                case I2C:
+                    return clamp(value, Character.MIN_VALUE, Character.MAX_VALUE);
+                case I2S:
+                    return clamp(value, Short.MIN_VALUE, Short.MAX_VALUE);
+                case F2I:
+                case D2I:
+                    return RangeValue.fullRange(Kind.INT);
+                case F2L:
+                case D2L:
+                    return RangeValue.fullRange(Kind.LONG);
+                case I2D:
+                case L2D:
+                case F2D:
+                case DNEG:
+                    return RangeValue.UNKNOWN_WIDE;
+                case GETFIELD:
+                    return newValue(Type.getType(((FieldInsnNode) insn).desc));
+                case ARRAYLENGTH:
+                    return RangeValue.ofInt(0, Integer.MAX_VALUE).withFacts(-1, value.copyOf, -1);
+                case INSTANCEOF:
+                    return RangeValue.ofInt(0, 1);
+                case IFEQ:
+                case IFNE:
+                case IFLT:
+                case IFGE:
+                case IFGT:
+                case IFLE:
+                case TABLESWITCH:
+                case LOOKUPSWITCH:
+                case IRETURN:
+                case LRETURN:
+                case FRETURN:
+                case DRETURN:
+                case ARETURN:
+                case PUTSTATIC:
+                case ATHROW:
+                case MONITORENTER:
+                case MONITOREXIT:
+                case IFNULL:
+                case IFNONNULL:
+                    return null;
+                default:
+                    return RangeValue.UNKNOWN;
+            }
+        }
+
+        /**
+         * The value if it is in the range of the narrower type, the range of the type otherwise
+         */
+        private static RangeValue clamp(RangeValue value, long min, long max) {
+            if (value.min >= min && value.max <= max)
+                return RangeValue.ofInt(value.min, value.max);
+
+            return RangeValue.ofInt(min, max);
+        }
+
+        private RangeValue binaryTransfer(AbstractInsnNode insn, RangeValue value1, RangeValue value2) {
+            switch (insn.getOpcode()) {
+                case IADD:
+                case LADD:
+                    return fromExact(value1, exactAdd(value1, value2));
+                case ISUB:
+                case LSUB: {
+                    var result = fromExact(value1, exactSub(value1, value2));
+
+                    // length - k or i - k with i < length stay below the length if they don't underflow
+                    if (value2.min >= 0 && result.min > result.getTypeMin() && (value1.belowLengthOf != -1 || (value1.lengthOf != -1 && value2.min > 0)))
+                        return result.withFacts(-1, -1, value1.belowLengthOf != -1 ? value1.belowLengthOf : value1.lengthOf);
+
+                    return result;
+                }
+                case IMUL:
+                case LMUL:
+                    return fromExact(value1, exactMul(value1, value2));
+                case IDIV:
+                case LDIV: {
+                    // |a / b| <= |a|
+                    var maxAbs = value1.getMaxAbs();
+
+                    if (maxAbs == -1)
+                        return RangeValue.fullRange(value1.kind);
+
+                    return value1.withRange(value1.min >= 0 ? 0 : -maxAbs, value1.max <= 0 ? 0 : maxAbs);
+                }
+                case IREM:
+                case LREM: {
+                    // |a % b| <= |a| and |a % b| < |b|, the result has the sign of a
+                    var maxAbs = value1.getMaxAbs();
+                    var divisorMaxAbs = value2.getMaxAbs();
+
+                    if (maxAbs == -1)
+                        maxAbs = value1.getTypeMax();
+                    if (divisorMaxAbs > 0)
+                        maxAbs = Math.min(maxAbs, divisorMaxAbs - 1);
+
+                    return value1.withRange(value1.min >= 0 ? 0 : -maxAbs, value1.max <= 0 ? 0 : maxAbs);
+                }
+                case IAND:
+                case LAND:
+                    if (value1.min >= 0 && value2.min >= 0)
+                        return value1.withRange(0, Math.min(value1.max, value2.max));
+                    if (value1.min >= 0)
+                        return value1.withRange(0, value1.max);
+                    if (value2.min >= 0)
+                        return value1.withRange(0, value2.max);
+
+                    return RangeValue.fullRange(value1.kind);
+                case IOR:
+                case LOR:
+                case IXOR:
+                case LXOR:
+                    if (value1.min >= 0 && value2.min >= 0) {
+                        var highestBit = Long.highestOneBit(Math.max(value1.max, value2.max));
+
+                        // 0 | 0 and 0 ^ 0
+                        if (highestBit == 0)
+                            return value1.withRange(0, 0);
+
+                        // The highest bit can't be exceeded; guard against shifting into the sign bit
+                        return value1.withRange(0, highestBit > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : highestBit * 2 - 1);
+                    }
+
+                    return RangeValue.fullRange(value1.kind);
+                case ISHL:
+                case LSHL:
+                case ISHR:
+                case LSHR:
+                case IUSHR:
+                case LUSHR:
+                    return shift(insn.getOpcode(), value1, value2);
+                case LCMP:
+                case FCMPL:
+                case FCMPG:
+                case DCMPL:
+                case DCMPG:
+                    return RangeValue.ofInt(-1, 1);
+                case BALOAD:
+                    return RangeValue.ofInt(Byte.MIN_VALUE, Byte.MAX_VALUE);
+                case CALOAD:
+                    return RangeValue.ofInt(Character.MIN_VALUE, Character.MAX_VALUE);
+                case SALOAD:
+                    return RangeValue.ofInt(Short.MIN_VALUE, Short.MAX_VALUE);
+                case IALOAD:
+                    return RangeValue.fullRange(Kind.INT);
+                case LALOAD:
+                    return RangeValue.fullRange(Kind.LONG);
+                case DALOAD:
+                case DADD:
+                case DSUB:
+                case DMUL:
+                case DDIV:
+                case DREM:
+                    return RangeValue.UNKNOWN_WIDE;
+                case IF_ICMPEQ:
+                case IF_ICMPNE:
+                case IF_ICMPLT:
+                case IF_ICMPGE:
+                case IF_ICMPGT:
+                case IF_ICMPLE:
+                case IF_ACMPEQ:
+                case IF_ACMPNE:
+                case PUTFIELD:
+                    return null;
+                default:
+                    return RangeValue.UNKNOWN;
+            }
+        }
+
+        private static RangeValue fromExact(RangeValue type, long[] range) {
+            if (range == null)
+                return RangeValue.fullRange(type.kind);
+
+            return type.withRange(range[0], range[1]);
+        }
+
+        private static RangeValue shift(int opcode, RangeValue value, RangeValue distance) {
+            var bits = value.kind == Kind.LONG ? 64 : 32;
+
+            // The VM masks the distance
+            if (distance.min != distance.max) {
+                if (opcode == ISHL || opcode == LSHL || (value.min < 0 && (opcode == IUSHR || opcode == LUSHR)))
+                    return RangeValue.fullRange(value.kind);
+
+                // Arithmetic shifts move the value towards 0 or -1
+                return value.withRange(value.min < 0 ? value.min : 0, value.max < 0 ? -1 : value.max);
+            }
+
+            var amount = (int) (distance.min & (bits - 1));
+
+            switch (opcode) {
+                case ISHL:
+                case LSHL:
+                    if (value.min >= 0 && value.max <= value.getTypeMax() >> amount)
+                        return value.withRange(value.min << amount, value.max << amount);
+
+                    return RangeValue.fullRange(value.kind);
+                case IUSHR:
+                case LUSHR:
+                    if (value.min < 0) {
+                        if (amount == 0)
+                            return RangeValue.fullRange(value.kind);
+
+                        // The sign bit is shifted out
+                        return value.withRange(0, (value.kind == Kind.LONG ? -1L : 0xFFFFFFFFL) >>> amount);
+                    }
+
+                    // Same as a signed shift for non-negative values
+                default:
+                    return value.withRange(value.min >> amount, value.max >> amount);
+            }
+        }
+
+        @Override
+        public RangeValue ternaryOperation(AbstractInsnNode insn, RangeValue value1, RangeValue value2, RangeValue value3) {
+            return null;
+        }
+
+        @Override
+        public RangeValue naryOperation(AbstractInsnNode insn, List<? extends RangeValue> values) {
+            switch (insn.getOpcode()) {
+                case MULTIANEWARRAY:
+                    return RangeValue.UNKNOWN;
+                case INVOKEDYNAMIC:
+                    return newValue(Type.getReturnType(((InvokeDynamicInsnNode) insn).desc));
+                default:
+                    return newValue(Type.getReturnType(((MethodInsnNode) insn).desc));
+            }
+        }
+
+        @Override
+        public void returnOperation(AbstractInsnNode insn, RangeValue value, RangeValue expected) {
+        }
+
+        @Override
+        public RangeValue merge(RangeValue value1, RangeValue value2) {
+            if (value1.equals(value2))
+                return value1;
+
+            if (value1.kind != value2.kind || !value1.isRanged())
+                return value1.size == value2.size ? (value1.size == 2 ? RangeValue.UNKNOWN_WIDE : RangeValue.UNKNOWN) : RangeValue.UNKNOWN;
+
+            var min = Math.min(value1.min, value2.min);
+            var max = Math.max(value1.max, value2.max);
+
+            if (this.widen) {
+                if (min < value1.min)
+                    min = value1.getTypeMin();
+                if (max > value1.max)
+                    max = value1.getTypeMax();
+            }
+
+            return new RangeValue(value1.kind,
+                                  value1.size,
+                                  min,
+                                  max,
+                                  value1.copyOf == value2.copyOf ? value1.copyOf : -1,
+                                  value1.lengthOf == value2.lengthOf ? value1.lengthOf : -1,
+                                  value1.belowLengthOf == value2.belowLengthOf ? value1.belowLengthOf : -1);
+        }
+    }
+}
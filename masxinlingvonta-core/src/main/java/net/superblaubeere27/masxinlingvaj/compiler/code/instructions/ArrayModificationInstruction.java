@@ -8,8 +8,6 @@ import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.MethodStack;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
-import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
-import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
 import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
@@ -18,15 +16,17 @@ public class ArrayModificationInstruction extends Instruction {
     private final StackSlot arraySlot;
     private final StackSlot indexSlot;
     private final StackSlot valueSlot;
+    private final JNIType elementType;
     private final boolean store;
 
-    public ArrayModificationInstruction(StackSlot arraySlot, StackSlot indexSlot, StackSlot valueSlot, boolean store) {
+    public ArrayModificationInstruction(StackSlot arraySlot, StackSlot indexSlot, StackSlot valueSlot, JNIType elementType, boolean store) {
         if (indexSlot.getType() != JNIType.INT)
             throw new IllegalStateException("An array index has to be an int.");
 
         this.arraySlot = arraySlot;
         this.indexSlot = indexSlot;
         this.valueSlot = valueSlot;
+        this.elementType = elementType;
         this.store = store;
     }
 
@@ -43,12 +43,10 @@ public class ArrayModificationInstruction extends Instruction {
         var array = stack.buildStackLoad(builder, this.arraySlot);
         var index = stack.buildStackLoad(builder, this.indexSlot);
 
-        var valueType = this.valueSlot.getType();
-
         if (this.store) {
-            buildArrayStore(compiler, translatedMethod, block, builder, stack, array, index, valueType);
+            buildArrayStore(compiler, translatedMethod, block, builder, stack, array, index, this.elementType);
         } else {
-            buildArrayLoad(compiler, translatedMethod, block, builder, stack, array, index, valueType);
+            buildArrayLoad(compiler, translatedMethod, block, builder, stack, array, index, this.elementType);
         }
 
         // Did an exception occur?
@@ -70,26 +68,13 @@ public class ArrayModificationInstruction extends Instruction {
         } else {
             var jniMethod = getJNIMethod(valueType, true);
 
-            // j<Type> outputValue;
-            var inputValue = LLVM.LLVMBuildAlloca(builder, valueType.getLLVMType(), "stackAlloc");
-            var bitCastedOutputValue = LLVM.LLVMBuildBitCast(builder,
-                    inputValue,
-                    LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0),
-                    "");
-
-            // Call the llvm.lifetime.start intrinsic
-            LLVMUtils.generateIntrinsicCall(
-                    compiler,
-                    builder,
-                    LLVMIntrinsic.LIFETIME_START,
-                    LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1),
-                    bitCastedOutputValue
-            );
+            // j<Type> inputValue;
+            var inputValue = stack.acquireScratchSlot(compiler, builder, valueType.getLLVMType());
 
-            // Store the value in the allocated space
-            LLVM.LLVMBuildStore(builder, value, inputValue);
+            // Store the value in the allocated space, byte, char and short elements are truncated
+            LLVM.LLVMBuildStore(builder, LLVM.LLVMBuildTrunc(builder, value, valueType.getLLVMType(), ""), inputValue);
 
-            // Call the Get<PrimitiveType>ArrayRegion method
+            // Call the Set<PrimitiveType>ArrayRegion method
             compiler.getJni().getJniEnv().callEnvironmentMethod(
                     translatedMethod, translatedMethod.getEnvPtr(),
                     jniMethod,
@@ -99,14 +84,7 @@ public class ArrayModificationInstruction extends Instruction {
                     inputValue
             );
 
-            // Call the llvm.lifetime.end intrinsic
-            LLVMUtils.generateIntrinsicCall(
-                    compiler,
-                    builder,
-                    LLVMIntrinsic.LIFETIME_END,
-                    LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1),
-                    bitCastedOutputValue
-            );
+            stack.releaseScratchSlot(compiler, builder, inputValue);
         }
     }
 
@@ -125,20 +103,7 @@ public class ArrayModificationInstruction extends Instruction {
             var jniMethod = getJNIMethod(valueType, false);
 
             // j<Type> outputValue;
-            var outputValue = LLVM.LLVMBuildAlloca(builder, valueType.getLLVMType(), "stackAlloc");
-            var bitCastedOutputValue = LLVM.LLVMBuildBitCast(builder,
-                    outputValue,
-                    LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0),
-                    "");
-
-            // Call the llvm.lifetime.start intrinsic
-            LLVMUtils.generateIntrinsicCall(
-                    compiler,
-                    builder,
-                    LLVMIntrinsic.LIFETIME_START,
-                    LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1),
-                    bitCastedOutputValue
-            );
+            var outputValue = stack.acquireScratchSlot(compiler, builder, valueType.getLLVMType());
 
             // Call the Get<PrimitiveType>ArrayRegion method
             compiler.getJni().getJniEnv().callEnvironmentMethod(
@@ -152,23 +117,32 @@ public class ArrayModificationInstruction extends Instruction {
 
             var retrievedObject = LLVM.LLVMBuildLoad(builder, outputValue, "");
 
-            // Call the llvm.lifetime.end intrinsic
-            LLVMUtils.generateIntrinsicCall(
-                    compiler,
-                    builder,
-                    LLVMIntrinsic.LIFETIME_END,
-                    LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1),
-                    bitCastedOutputValue
-            );
+            stack.releaseScratchSlot(compiler, builder, outputValue);
 
-            stack.buildStackStore(builder, this.valueSlot, retrievedObject, true);
+            stack.buildStackStore(builder, this.valueSlot, extendToStackType(builder, retrievedObject, valueType));
+        }
+    }
+
+    /**
+     * Extends a loaded byte, char or short element to an int like the VM does, i.e. bytes and shorts are sign-extended
+     */
+    public static LLVMValueRef extendToStackType(LLVMBuilderRef builder, LLVMValueRef value, JNIType type) {
+        switch (type) {
+            case BYTE:
+            case SHORT:
+                return LLVM.LLVMBuildSExt(builder, value, JNIType.INT.getLLVMType(), "");
+            case BOOLEAN:
+            case CHAR:
+                return LLVM.LLVMBuildZExt(builder, value, JNIType.INT.getLLVMType(), "");
+            default:
+                return value;
         }
     }
 
     /**
      * Determine which JNI method should be used to access the array elements
      */
-    private JNIEnv.JNIEnvMethod getJNIMethod(JNIType type, boolean store) {
+    static JNIEnv.JNIEnvMethod getJNIMethod(JNIType type, boolean store) {
         if (store) {
             switch (type) {
                 case BOOLEAN:
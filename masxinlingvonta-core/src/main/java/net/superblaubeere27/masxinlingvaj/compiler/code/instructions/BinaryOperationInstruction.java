@@ -4,25 +4,39 @@ import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.RangeAnalysis;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
 
+import java.util.Set;
+
 public class BinaryOperationInstruction extends Instruction {
     private final StackSlot lhs;
     private final StackSlot rhs;
     private final StackSlot output;
     private final BinaryOperationType type;
+    private final Set<RangeAnalysis.Fact> facts;
+
+    /**
+     * @param facts the facts the range analysis proved for this instruction, used to omit checks and to add
+     *              <code>nsw</code>/<code>nuw</code> flags
+     */
+    public BinaryOperationInstruction(StackSlot lhs, StackSlot rhs, StackSlot output, BinaryOperationType type, Set<RangeAnalysis.Fact> facts) {
+        if (lhs.getType() != output.getType())
+            throw new IllegalStateException("lhs and output have to have the same type");
 
-    public BinaryOperationInstruction(StackSlot lhs, StackSlot rhs, StackSlot output, BinaryOperationType type) {
-        if (lhs.getType() != rhs.getType() || output.getType() != rhs.getType())
-            throw new IllegalStateException("lhs, rhs and output have to have the same type");
+        // The shift distance is always an int
+        if (rhs.getType() != (type.isShift() ? JNIType.INT : lhs.getType()))
+            throw new IllegalStateException("Invalid type of rhs: " + rhs.getType());
 
         this.lhs = lhs;
         this.rhs = rhs;
         this.output = output;
         this.type = type;
+        this.facts = facts;
     }
 
     @Override
@@ -63,42 +77,66 @@ public class BinaryOperationInstruction extends Instruction {
         } else {
             switch (this.type) {
                 case ADD:
-                    resultValue = LLVM.LLVMBuildNSWAdd(builder, lhsOperand, rhsOperand, "add");
+                    if (this.facts.contains(RangeAnalysis.Fact.NO_SIGNED_WRAP))
+                        resultValue = LLVM.LLVMBuildNSWAdd(builder, lhsOperand, rhsOperand, "add");
+                    else if (this.facts.contains(RangeAnalysis.Fact.NO_UNSIGNED_WRAP))
+                        resultValue = LLVM.LLVMBuildNUWAdd(builder, lhsOperand, rhsOperand, "add");
+                    else
+                        resultValue = LLVM.LLVMBuildAdd(builder, lhsOperand, rhsOperand, "add");
                     break;
                 case SUB:
-                    resultValue = LLVM.LLVMBuildNSWSub(builder, lhsOperand, rhsOperand, "sub");
+                    if (this.facts.contains(RangeAnalysis.Fact.NO_SIGNED_WRAP))
+                        resultValue = LLVM.LLVMBuildNSWSub(builder, lhsOperand, rhsOperand, "sub");
+                    else if (this.facts.contains(RangeAnalysis.Fact.NO_UNSIGNED_WRAP))
+                        resultValue = LLVM.LLVMBuildNUWSub(builder, lhsOperand, rhsOperand, "sub");
+                    else
+                        resultValue = LLVM.LLVMBuildSub(builder, lhsOperand, rhsOperand, "sub");
                     break;
                 case MUL:
-                    resultValue = LLVM.LLVMBuildNSWMul(builder, lhsOperand, rhsOperand, "mul");
+                    if (this.facts.contains(RangeAnalysis.Fact.NO_SIGNED_WRAP))
+                        resultValue = LLVM.LLVMBuildNSWMul(builder, lhsOperand, rhsOperand, "mul");
+                    else if (this.facts.contains(RangeAnalysis.Fact.NO_UNSIGNED_WRAP))
+                        resultValue = LLVM.LLVMBuildNUWMul(builder, lhsOperand, rhsOperand, "mul");
+                    else
+                        resultValue = LLVM.LLVMBuildMul(builder, lhsOperand, rhsOperand, "mul");
                     break;
-                case DIV: {
+                case DIV:
+                case REM: {
+                    var operandType = LLVM.LLVMTypeOf(rhsOperand);
+
                     // Throw an arithmetics exception if the divider is zero
-                    block.throwIf(
-                            compiler,
-                            translatedMethod,
-                            LLVM.LLVMBuildICmp(builder,
-                                    LLVM.LLVMIntEQ,
-                                    rhsOperand,
-                                    LLVM.LLVMConstInt(LLVM.LLVMTypeOf(rhsOperand), 0, 0),
-                                    ""),
-                            "java/lang/ArithmeticException",
-                            "/ by zero"
-                    );
-
-                    resultValue = LLVM.LLVMBuildSDiv(builder, lhsOperand, rhsOperand, "div");
+                    if (!this.facts.contains(RangeAnalysis.Fact.NON_ZERO_DIVISOR)) {
+                        block.throwIf(
+                                compiler,
+                                translatedMethod,
+                                LLVM.LLVMBuildICmp(builder,
+                                        LLVM.LLVMIntEQ,
+                                        rhsOperand,
+                                        LLVM.LLVMConstInt(operandType, 0, 0),
+                                        ""),
+                                "java/lang/ArithmeticException",
+                                "/ by zero"
+                        );
+                    }
+
+                    if (this.facts.contains(RangeAnalysis.Fact.NO_DIVISION_OVERFLOW)) {
+                        resultValue = this.type == BinaryOperationType.DIV
+                                ? LLVM.LLVMBuildSDiv(builder, lhsOperand, rhsOperand, "div")
+                                : LLVM.LLVMBuildSRem(builder, lhsOperand, rhsOperand, "rem");
+                    } else {
+                        resultValue = buildCheckedDivision(builder, lhsOperand, rhsOperand);
+                    }
+
                     break;
                 }
-                case REM:
-                    resultValue = LLVM.LLVMBuildSRem(builder, lhsOperand, rhsOperand, "rem");
-                    break;
                 case SHL:
-                    resultValue = LLVM.LLVMBuildShl(builder, lhsOperand, rhsOperand, "shl");
+                    resultValue = LLVM.LLVMBuildShl(builder, lhsOperand, buildShiftDistance(builder, rhsOperand, lhsOperand), "shl");
                     break;
                 case SHR:
-                    resultValue = LLVM.LLVMBuildAShr(builder, lhsOperand, rhsOperand, "shr");
+                    resultValue = LLVM.LLVMBuildAShr(builder, lhsOperand, buildShiftDistance(builder, rhsOperand, lhsOperand), "shr");
                     break;
                 case USHR:
-                    resultValue = LLVM.LLVMBuildLShr(builder, lhsOperand, rhsOperand, "ushr");
+                    resultValue = LLVM.LLVMBuildLShr(builder, lhsOperand, buildShiftDistance(builder, rhsOperand, lhsOperand), "ushr");
                     break;
                 case AND:
                     resultValue = LLVM.LLVMBuildAnd(builder, lhsOperand, rhsOperand, "and");
@@ -117,7 +155,51 @@ public class BinaryOperationInstruction extends Instruction {
         translatedMethod.getStack().buildStackStore(builder, this.output, resultValue);
     }
 
+    /**
+     * <code>MIN_VALUE / -1</code> is undefined behaviour in LLVM while Java defines it as <code>MIN_VALUE</code>
+     * (and <code>MIN_VALUE % -1</code> as 0). A divisor of -1 is replaced by 1 and the result is negated instead.
+     */
+    private LLVMValueRef buildCheckedDivision(LLVMBuilderRef builder, LLVMValueRef lhsOperand, LLVMValueRef rhsOperand) {
+        var operandType = LLVM.LLVMTypeOf(rhsOperand);
+
+        var isMinusOne = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, rhsOperand, LLVM.LLVMConstInt(operandType, -1, 1), "");
+        var safeDivisor = LLVM.LLVMBuildSelect(builder, isMinusOne, LLVM.LLVMConstInt(operandType, 1, 0), rhsOperand, "");
+
+        if (this.type == BinaryOperationType.REM) {
+            // x % 1 == x % -1 == 0
+            return LLVM.LLVMBuildSRem(builder, lhsOperand, safeDivisor, "rem");
+        }
+
+        var quotient = LLVM.LLVMBuildSDiv(builder, lhsOperand, safeDivisor, "div");
+
+        return LLVM.LLVMBuildSelect(builder, isMinusOne, LLVM.LLVMBuildNeg(builder, lhsOperand, ""), quotient, "");
+    }
+
+    /**
+     * Java only uses the lowest 5 (or 6 for longs) bits of the distance, LLVM returns poison for larger distances
+     */
+    private LLVMValueRef buildShiftDistance(LLVMBuilderRef builder, LLVMValueRef distance, LLVMValueRef value) {
+        var valueType = LLVM.LLVMTypeOf(value);
+
+        if (!this.facts.contains(RangeAnalysis.Fact.SHIFT_IN_RANGE)) {
+            distance = LLVM.LLVMBuildAnd(builder,
+                                         distance,
+                                         LLVM.LLVMConstInt(LLVM.LLVMTypeOf(distance), LLVM.LLVMGetIntTypeWidth(valueType) - 1, 0),
+                                         "");
+        }
+
+        // Long shifts take an int distance
+        if (LLVM.LLVMGetIntTypeWidth(valueType) != LLVM.LLVMGetIntTypeWidth(LLVM.LLVMTypeOf(distance)))
+            distance = LLVM.LLVMBuildZExt(builder, distance, valueType, "");
+
+        return distance;
+    }
+
     public enum BinaryOperationType {
-        ADD, SUB, MUL, DIV, REM, SHL, SHR, USHR, AND, OR, XOR
+        ADD, SUB, MUL, DIV, REM, SHL, SHR, USHR, AND, OR, XOR;
+
+        public boolean isShift() {
+            return this == SHL || this == SHR || this == USHR;
+        }
     }
 }
@@ -6,6 +6,7 @@ import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
 import org.bytedeco.llvm.global.LLVM;
 
 public class CheckCastInstruction extends Instruction {
@@ -29,25 +30,42 @@ public class CheckCastInstruction extends Instruction {
         var builder = translatedMethod.getLlvmBuilder();
         var operand = translatedMethod.getStack().buildStackLoad(builder, this.input);
 
-        var instanceOfResult = compiler.getJni().getJniEnv().callEnvironmentMethod(
-                translatedMethod, translatedMethod.getEnvPtr(),
-                JNIEnv.JNIEnvMethod.IsInstanceOf,
-                operand,
-                translatedMethod.buildFindClass(compiler.getJni(), this.type)
-        );
-
-        block.throwIf(
-                compiler,
-                translatedMethod,
-                LLVM.LLVMBuildICmp(builder,
-                        LLVM.LLVMIntEQ,
-                        instanceOfResult,
-                        LLVM.LLVMConstInt(LLVM.LLVMTypeOf(instanceOfResult), 0, 0),
-                        ""),
-                "java/lang/ClassCastException",
-                "??? is not assignable from ???"
-        );
+        if (!isAlwaysInstance(this.type)) {
+            // null can be cast to every type, the VM doesn't need to be asked
+            LLVMUtils.buildIf(translatedMethod, LLVM.LLVMBuildIsNotNull(builder, operand, ""), () -> {
+                var classId = translatedMethod.buildFindClass(compiler, this.type);
+
+                // Did an exception occur?
+                block.buildNullResultCheck(compiler, translatedMethod, classId);
+
+                var instanceOfResult = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                        translatedMethod, translatedMethod.getEnvPtr(),
+                        JNIEnv.JNIEnvMethod.IsInstanceOf,
+                        operand,
+                        classId
+                );
+
+                block.throwIf(
+                        compiler,
+                        translatedMethod,
+                        LLVM.LLVMBuildICmp(builder,
+                                LLVM.LLVMIntEQ,
+                                instanceOfResult,
+                                LLVM.LLVMConstInt(LLVM.LLVMTypeOf(instanceOfResult), 0, 0),
+                                ""),
+                        "java/lang/ClassCastException",
+                        "??? is not assignable from ???"
+                );
+            });
+        }
 
         translatedMethod.getStack().buildStackStore(builder, this.output, operand);
     }
+
+    /**
+     * Every object is an instance of Object, so checks against it always pass (apart from null for INSTANCEOF)
+     */
+    static boolean isAlwaysInstance(String type) {
+        return type.equals("java/lang/Object");
+    }
 }
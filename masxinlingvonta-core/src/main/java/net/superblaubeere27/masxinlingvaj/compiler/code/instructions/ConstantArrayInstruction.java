@@ -0,0 +1,113 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Type;
+
+/**
+ * A <code>NEWARRAY</code> and the constant element stores of its initializer. The elements are stored in a constant
+ * global and copied into the new array with a single <code>Set&lt;Type&gt;ArrayRegion</code> call.
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.CodeConverter
+ */
+public class ConstantArrayInstruction extends Instruction {
+    private final Type elementType;
+    /**
+     * The initial elements, <code>null</code> for elements which aren't initialized. Elements after the last
+     * initialized one are omitted.
+     */
+    private final Number[] values;
+    private final StackSlot length;
+    private final StackSlot output;
+
+    public ConstantArrayInstruction(Type elementType, Number[] values, StackSlot length, StackSlot output) {
+        this.elementType = elementType;
+        this.values = values;
+        this.length = length;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+        var jniEnv = compiler.getJni().getJniEnv();
+
+        var array = jniEnv.callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                NewArrayInstruction.getJNIMethod(this.elementType),
+                stack.buildStackLoad(builder, this.length)
+        );
+
+        // Did an exception occur?
+        block.buildExceptionCheck(compiler, translatedMethod);
+
+        var jniType = compiler.getJni().toNativeType(this.elementType);
+
+        // The indices are constant and in bounds, this can't throw
+        jniEnv.callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                ArrayModificationInstruction.getJNIMethod(jniType, true),
+                array,
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0),
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), this.values.length, 0),
+                LLVM.LLVMConstBitCast(buildData(compiler, jniType), LLVM.LLVMPointerType(jniType.getLLVMType(), 0))
+        );
+
+        stack.buildStackStore(builder, this.output, array);
+    }
+
+    /**
+     * Creates the constant global which contains the elements
+     */
+    private LLVMValueRef buildData(MLVCompiler compiler, JNIType jniType) {
+        // jboolean is an unsigned char
+        var memoryType = jniType == JNIType.BOOLEAN ? LLVM.LLVMInt8Type() : jniType.getLLVMType();
+
+        var elements = new LLVMValueRef[this.values.length];
+
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = buildElement(memoryType, this.values[i] == null ? 0 : this.values[i]);
+        }
+
+        var arrayType = LLVM.LLVMArrayType(memoryType, elements.length);
+        var data = LLVM.LLVMAddGlobal(compiler.getModule(), arrayType, "array_initializer");
+
+        LLVM.LLVMSetInitializer(data, LLVM.LLVMConstArray(memoryType, new PointerPointer<>(elements), elements.length));
+        LLVM.LLVMSetGlobalConstant(data, 1);
+        LLVM.LLVMSetLinkage(data, LLVM.LLVMPrivateLinkage);
+        LLVM.LLVMSetUnnamedAddress(data, LLVM.LLVMGlobalUnnamedAddr);
+
+        return data;
+    }
+
+    private LLVMValueRef buildElement(LLVMTypeRef memoryType, Number value) {
+        switch (this.elementType.getSort()) {
+            // The bits are used directly, so NaNs keep their payload
+            case Type.FLOAT:
+                return LLVM.LLVMConstBitCast(LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), Float.floatToRawIntBits(value.floatValue()), 0), memoryType);
+            case Type.DOUBLE:
+                return LLVM.LLVMConstBitCast(LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), Double.doubleToRawLongBits(value.doubleValue()), 0), memoryType);
+            case Type.BOOLEAN:
+                // BASTORE only stores the lowest bit into boolean arrays
+                return LLVM.LLVMConstInt(memoryType, value.longValue() & 1, 0);
+            default:
+                // byte, char and short elements are truncated
+                return LLVM.LLVMConstInt(memoryType, value.longValue(), 1);
+        }
+    }
+}
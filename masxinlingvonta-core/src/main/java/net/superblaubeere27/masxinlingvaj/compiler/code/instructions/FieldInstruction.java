@@ -82,15 +82,10 @@ public class FieldInstruction extends Instruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
-        var classId = translatedMethod.buildFindClass(compiler.getJni(), this.target.getOwner());
+        var field = translatedMethod.buildGetFieldID(compiler, this.target, false);
 
         // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
-
-        var field = translatedMethod.buildGetFieldID(compiler.getJni(), this.target, classId, false);
-
-        // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
+        block.buildNullResultCheck(compiler, translatedMethod, field);
 
         var jniMethod = getJNIMethod(compiler.getJni().toNativeType(Type.getType(this.target.getDesc())), this.store);
 
@@ -117,8 +112,5 @@ public class FieldInstruction extends Instruction {
                     retrievedField,
                     true);
         }
-
-        // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
     }
 }
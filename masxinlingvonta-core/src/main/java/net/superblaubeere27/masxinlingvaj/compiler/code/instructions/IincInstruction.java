@@ -4,17 +4,23 @@ import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.RangeAnalysis;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
 
+import java.util.Set;
+
 public class IincInstruction extends Instruction {
     private final int idx;
     private final int value;
+    private final Set<RangeAnalysis.Fact> facts;
 
-    public IincInstruction(int idx, int value) {
+    public IincInstruction(int idx, int value, Set<RangeAnalysis.Fact> facts) {
         this.idx = idx;
         this.value = value;
+        this.facts = facts;
     }
 
     @Override
@@ -28,10 +34,18 @@ public class IincInstruction extends Instruction {
 
         var stackSlot = new StackSlot(JNIType.INT, this.idx);
 
-        var increased = LLVM.LLVMBuildAdd(builder,
-                translatedMethod.getStack().buildLocalLoad(builder, stackSlot),
-                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), this.value, 1),
-                "iinc");
+        var oldValue = translatedMethod.getStack().buildLocalLoad(builder, stackSlot);
+        var increment = LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), this.value, 1);
+
+        LLVMValueRef increased;
+
+        // Loop counters usually can't overflow, the flag allows LLVM to widen them
+        if (this.facts.contains(RangeAnalysis.Fact.NO_SIGNED_WRAP))
+            increased = LLVM.LLVMBuildNSWAdd(builder, oldValue, increment, "iinc");
+        else if (this.facts.contains(RangeAnalysis.Fact.NO_UNSIGNED_WRAP))
+            increased = LLVM.LLVMBuildNUWAdd(builder, oldValue, increment, "iinc");
+        else
+            increased = LLVM.LLVMBuildAdd(builder, oldValue, increment, "iinc");
 
         translatedMethod.getStack().buildLocalStore(builder, stackSlot, increased);
     }
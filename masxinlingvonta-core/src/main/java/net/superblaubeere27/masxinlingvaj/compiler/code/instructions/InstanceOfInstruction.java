@@ -38,11 +38,24 @@ public class InstanceOfInstruction extends Instruction {
                         this.output,
                         LLVM.LLVMConstInt(this.output.getType().getLLVMType(), 0, 0)),
                 () -> {
+                    if (CheckCastInstruction.isAlwaysInstance(this.type)) {
+                        translatedMethod.getStack().buildStackStore(builder,
+                                this.output,
+                                LLVM.LLVMConstInt(this.output.getType().getLLVMType(), 1, 0));
+
+                        return;
+                    }
+
+                    var classId = translatedMethod.buildFindClass(compiler, this.type);
+
+                    // Did an exception occur?
+                    block.buildNullResultCheck(compiler, translatedMethod, classId);
+
                     var instanceofResult = compiler.getJni().getJniEnv().callEnvironmentMethod(
                             translatedMethod, translatedMethod.getEnvPtr(),
                             JNIEnv.JNIEnvMethod.IsInstanceOf,
                             operand,
-                            translatedMethod.buildFindClass(compiler.getJni(), this.type)
+                            classId
                     );
 
                     translatedMethod.getStack().buildStackStore(builder, this.output, instanceofResult, true);
@@ -7,9 +7,20 @@ import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerIndex;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+import java.util.Map;
 
 public class InvokeInstruction extends Instruction {
     private final MethodOrFieldIdentifier target;
@@ -19,6 +30,11 @@ public class InvokeInstruction extends Instruction {
     private final boolean isStatic;
     private final boolean isNonVirtual;
 
+    /**
+     * The maximum count of receiver classes a devirtualized call checks for before it falls back to a virtual call
+     */
+    private static final int MAX_GUARDED_RECEIVERS = 2;
+
     public InvokeInstruction(MethodOrFieldIdentifier target, StackSlot[] params, JNIType[] targetTypes, StackSlot resultTarget, boolean isStatic, boolean isNonVirtual) {
         if (params.length == 0 && !isStatic) {
             throw new IllegalArgumentException("No instance parameter?");
@@ -39,61 +55,132 @@ public class InvokeInstruction extends Instruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
-        var classId = translatedMethod.buildFindClass(compiler.getJni(), this.target.getOwner());
+        var directTarget = getDirectCallTarget(compiler, translatedMethod);
+
+        if (directTarget != null) {
+            LLVMUtils.buildIfElse(translatedMethod,
+                    buildStackLimitReached(compiler, translatedMethod),
+                    () -> buildVMCall(compiler, translatedMethod, block),
+                    () -> buildDirectCall(compiler, translatedMethod, block, directTarget));
+        } else {
+            buildVMCall(compiler, translatedMethod, block);
+        }
 
         // Did an exception occur?
         block.buildExceptionCheck(compiler, translatedMethod);
+    }
+
+    private void buildVMCall(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        if (this.isStatic || this.isNonVirtual) {
+            buildJNICall(compiler, translatedMethod, block, this.target, this.isStatic, this.isNonVirtual);
+        } else {
+            buildVirtualCall(compiler, translatedMethod, block);
+        }
+    }
+
+    /**
+     * Devirtualizes the call if the class hierarchy allows it. Otherwise the VM looks the method up in the receiver's
+     * vtable/itable.
+     */
+    private void buildVirtualCall(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var exactTarget = getExactVirtualTarget(compiler.getIndex());
+
+        if (exactTarget != null) {
+            // The method can't be overridden, so the VM doesn't need to look it up
+            buildJNICall(compiler, translatedMethod, block, exactTarget.getIdentifier(), false, true);
+
+            return;
+        }
+
+        var receivers = getGuardedReceivers(compiler.getIndex());
+
+        if (receivers == null) {
+            buildJNICall(compiler, translatedMethod, block, this.target, false, false);
+
+            return;
+        }
+
+        var builder = translatedMethod.getLlvmBuilder();
+        var jniEnv = compiler.getJni().getJniEnv();
+
+        var receiver = translatedMethod.getStack().buildStackLoad(builder, this.params[0]);
+
+        // The VM would throw before entering the method
+        block.buildReceiverNullCheck(compiler, translatedMethod, receiver, this.target);
+
+        var receiverClass = jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetObjectClass,
+                receiver);
+
+        LLVMValueRef matches = null;
+
+        // Classes which are loaded at runtime might override the method, so the receiver's class has to match exactly
+        for (String receiverName : receivers.keySet()) {
+            var expectedClass = translatedMethod.buildFindClass(compiler, receiverName);
+
+            // Did an exception occur?
+            block.buildNullResultCheck(compiler, translatedMethod, expectedClass);
+
+            var isSame = jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                    JNIEnv.JNIEnvMethod.IsSameObject,
+                    receiverClass,
+                    expectedClass);
+
+            matches = matches == null ? isSame : LLVM.LLVMBuildOr(builder, matches, isSame, "");
+        }
+
+        jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.DeleteLocalRef,
+                receiverClass);
+
+        var target = receivers.values().iterator().next();
+
+        LLVMUtils.buildIfElse(translatedMethod,
+                LLVM.LLVMBuildAnd(builder, matches, LLVM.LLVMBuildNot(builder, buildStackLimitReached(compiler, translatedMethod), ""), ""),
+                () -> buildDirectCall(compiler, translatedMethod, block, target),
+                () -> buildJNICall(compiler, translatedMethod, block, this.target, false, false));
+    }
 
-        var method = translatedMethod.buildGetMethodID(compiler.getJni(), this.target, classId, this.isStatic);
+    /**
+     * Calls the method through JNI's <code>Call[Static|Nonvirtual]&lt;Type&gt;MethodA</code> functions
+     */
+    private void buildJNICall(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, MethodOrFieldIdentifier target, boolean isStatic, boolean isNonVirtual) {
+        LLVMValueRef classId = null;
+
+        // Virtual calls only need the method id
+        if (isStatic || isNonVirtual) {
+            classId = translatedMethod.buildFindClass(compiler, target.getOwner());
+
+            // Did an exception occur?
+            block.buildNullResultCheck(compiler, translatedMethod, classId);
+        }
+
+        var method = translatedMethod.buildGetMethodID(compiler, target, isStatic);
 
         // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
+        block.buildNullResultCheck(compiler, translatedMethod, method);
 
-        var returnType = compiler.getJni().toNativeType(Type.getReturnType(this.target.getDesc()));
+        var returnType = compiler.getJni().toNativeType(Type.getReturnType(target.getDesc()));
 
-        var jniMethod = getJNIMethod(returnType, this.isStatic, this.isNonVirtual);
+        var jniMethod = getJNIMethod(returnType, isStatic, isNonVirtual);
 
-        // There is instance object for static methods
-        var parameterValues = new LLVMValueRef[2 + this.params.length - (isStatic ? 0 : (isNonVirtual ? 0 : 1))];
+        var stack = translatedMethod.getStack();
+        var builder = translatedMethod.getLlvmBuilder();
 
+        LLVMValueRef[] parameterValues;
+
+        // The arguments are passed in a jvalue array, so the call doesn't need vararg promotions
         if (isStatic) {
-            parameterValues[0] = classId;
-            // methodID in params[1]
-            parameterValues[1] = method;
-
-            for (int i = 0; i < this.params.length; i++) {
-                parameterValues[2 + i] = translatedMethod.getStack().buildStackTypeFixedStackLoad(translatedMethod.getLlvmBuilder(),
-                                                                                                  this.params[i],
-                                                                                                  this.targetTypes[i],
-                                                                                                  true);
-            }
-        } else if (isNonVirtual) {
-            parameterValues[0] = translatedMethod.getStack().buildStackTypeFixedStackLoad(translatedMethod.getLlvmBuilder(),
-                                                                                          this.params[0],
-                                                                                          this.targetTypes[0], false);
-            parameterValues[1] = classId;
-            // methodID in params[3]
-            parameterValues[2] = method;
-
-            for (int i = 0; i < this.params.length - 1; i++) {
-                parameterValues[3 + i] = translatedMethod.getStack().buildStackTypeFixedStackLoad(translatedMethod.getLlvmBuilder(),
-                                                                                                  this.params[i + 1],
-                                                                                                  this.targetTypes[i + 1],
-                                                                                                  true);
-            }
+            parameterValues = new LLVMValueRef[]{
+                    classId,
+                    method,
+                    stack.buildArgumentArray(builder, this.params, this.targetTypes, 0)
+            };
         } else {
-            parameterValues[0] = translatedMethod.getStack().buildStackTypeFixedStackLoad(translatedMethod.getLlvmBuilder(),
-                                                                                          this.params[0],
-                                                                                          this.targetTypes[0], false);
-            // methodID in params[1]
-            parameterValues[1] = method;
-
-            for (int i = 0; i < this.params.length - 1; i++) {
-                parameterValues[2 + i] = translatedMethod.getStack().buildStackTypeFixedStackLoad(translatedMethod.getLlvmBuilder(),
-                                                                                                  this.params[i + 1],
-                                                                                                  this.targetTypes[i + 1],
-                                                                                                  true);
-            }
+            var instance = stack.buildStackTypeFixedStackLoad(builder, this.params[0], this.targetTypes[0], false);
+            var arguments = stack.buildArgumentArray(builder, this.params, this.targetTypes, 1);
+
+            parameterValues = isNonVirtual ? new LLVMValueRef[]{instance, classId, method, arguments} : new LLVMValueRef[]{instance, method, arguments};
         }
 
         var returnValue = compiler.getJni().getJniEnv().callEnvironmentMethod(
@@ -108,84 +195,345 @@ public class InvokeInstruction extends Instruction {
                     returnValue,
                     true);
         }
+    }
 
-        // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
+    /**
+     * Checks if the frame of this method has reached the stack limit. Direct calls aren't allowed in this case since
+     * only the VM can check whether the stack has space for another frame.
+     *
+     * @see TranslatedMethod#getStackLimit()
+     */
+    private LLVMValueRef buildStackLimitReached(MLVCompiler compiler, TranslatedMethod translatedMethod) {
+        var frameAddress = LLVMUtils.generateIntrinsicCall(compiler,
+                translatedMethod.getLlvmBuilder(),
+                LLVMIntrinsic.FRAME_ADDRESS,
+                LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), 0, 0));
+
+        // The stack grows downwards
+        return LLVM.LLVMBuildICmp(translatedMethod.getLlvmBuilder(), LLVM.LLVMIntULT, frameAddress, translatedMethod.getStackLimit(), "stack_limit_reached");
+    }
+
+    /**
+     * Calls the native function of another compiled method without going through the VM. The callee gets the same
+     * JNIEnv and leaves pending exceptions to the caller, just like it does when the VM calls it. The stack limit is
+     * passed on, so the direct calls stop before they could overflow the stack.
+     */
+    private void buildDirectCall(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, CompilerMethod target) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var jniEnv = compiler.getJni().getJniEnv();
+        var stack = translatedMethod.getStack();
+
+        var arguments = new LLVMValueRef[this.params.length + (this.isStatic ? 2 : 1) + 1];
+
+        arguments[0] = translatedMethod.getEnvPtr();
+
+        if (this.isStatic) {
+            var classId = translatedMethod.buildFindClass(compiler, this.target.getOwner());
+
+            // Did an exception occur?
+            block.buildNullResultCheck(compiler, translatedMethod, classId);
+
+            arguments[1] = classId;
+        }
+
+        for (int i = 0; i < this.params.length; i++) {
+            arguments[i + arguments.length - 1 - this.params.length] = stack.buildStackTypeFixedStackLoad(builder,
+                                                                                                        this.params[i],
+                                                                                                        this.targetTypes[i],
+                                                                                                        false);
+        }
+
+        if (!this.isStatic) {
+            block.buildReceiverNullCheck(compiler, translatedMethod, arguments[1], this.target);
+        }
+
+        var localFrame = createsLocalReferences(target);
+
+        if (localFrame) {
+            // The VM frees the callee's local references when it returns, so does this frame
+            var pushResult = jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                    JNIEnv.JNIEnvMethod.PushLocalFrame,
+                    LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 16, 0));
+
+            block.throwIf(compiler,
+                          translatedMethod,
+                          LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntSLT, pushResult, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(pushResult), 0, 0), ""),
+                          "java/lang/OutOfMemoryError",
+                          "Failed to create a local reference frame");
+        }
+
+        arguments[arguments.length - 1] = translatedMethod.getStackLimit();
+
+        var returnValue = LLVM.LLVMBuildCall(builder,
+                                             compiler.getMethodFunction(target),
+                                             new PointerPointer<>(arguments),
+                                             arguments.length,
+                                             "");
+
+        var returnType = compiler.getJni().toNativeType(Type.getReturnType(this.target.getDesc()));
+
+        if (localFrame) {
+            var result = jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                    JNIEnv.JNIEnvMethod.PopLocalFrame,
+                    returnType == JNIType.OBJECT ? returnValue : LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType()));
+
+            // The returned reference has to be moved to the caller's frame
+            if (returnType == JNIType.OBJECT)
+                returnValue = result;
+        }
+
+        if (returnType != JNIType.VOID) {
+            stack.buildStackStore(builder, this.resultTarget, returnValue, true);
+        }
+    }
+
+    /**
+     * Returns the compiled method which is invoked by this instruction if it can be called directly. This is the case
+     * if the call can only have one target and the VM wouldn't do anything observable when calling it.
+     *
+     * @return the method or <code>null</code> if the call has to go through the VM
+     */
+    private CompilerMethod getDirectCallTarget(MLVCompiler compiler, TranslatedMethod translatedMethod) {
+        if (!this.isStatic && !this.isNonVirtual) {
+            var target = getExactVirtualTarget(compiler.getIndex());
+
+            return target != null && isDirectlyCallable(target) ? target : null;
+        }
+
+        var target = compiler.getIndex().getMethod(this.target.getOwner(), this.target.getName(), this.target.getDesc());
+
+        if (target == null || !isDirectlyCallable(target) || target.isStatic() != this.isStatic)
+            return null;
+
+        var caller = translatedMethod.getCompilerMethod().getParent();
+
+        if (this.isStatic) {
+            // Calling a static method initializes its class
+            return target.getParent() == caller || compiler.getIndex().getHierarchy().hasTrivialInitialization(target.getParent().getName()) ? target : null;
+        }
+
+        if ((target.getNode().access & Opcodes.ACC_PRIVATE) != 0)
+            return target;
+
+        // invokespecial selects the method starting at the direct superclass, so the owner has to be that class
+        var ownerName = target.getParent().getName();
+
+        return ownerName.equals(caller.getName()) || ownerName.equals(caller.getClassNode().superName) ? target : null;
+    }
+
+    /**
+     * Resolves the target of a virtual call if it can't be overridden, i.e. if the method is private or final or if
+     * the receiver's class is final.
+     *
+     * @return the method or <code>null</code> if the target depends on the receiver
+     */
+    private CompilerMethod getExactVirtualTarget(CompilerIndex index) {
+        var declared = index.getMethod(this.target.getOwner(), this.target.getName(), this.target.getDesc());
+
+        // Private interface methods are called with invokeinterface
+        if (declared != null && !declared.isStatic() && (declared.getNode().access & Opcodes.ACC_PRIVATE) != 0)
+            return declared;
+
+        var owner = index.getCompilerClass(this.target.getOwner());
+
+        if (owner == null || (owner.getClassNode().access & Opcodes.ACC_INTERFACE) != 0)
+            return null;
+
+        var target = index.getHierarchy().resolveMethod(this.target.getOwner(), this.target.getName(), this.target.getDesc());
+
+        if (target == null || (target.getNode().access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE | Opcodes.ACC_ABSTRACT)) != 0)
+            return null;
+
+        if ((target.getNode().access & Opcodes.ACC_FINAL) != 0
+                || (owner.getClassNode().access & Opcodes.ACC_FINAL) != 0
+                || (target.getParent().getClassNode().access & Opcodes.ACC_FINAL) != 0)
+            return target;
+
+        return null;
+    }
+
+    /**
+     * Uses the class hierarchy to find out if all classes of the input which can be the receiver of this virtual call
+     * select the same compiled method. This is the case for effectively final classes and for methods which aren't
+     * overridden in the subtypes of the call's owner.
+     * <p>
+     * The guard looks every receiver class up with FindClass, which initializes it. So all receivers must be safe to
+     * initialize, otherwise the guard could run static initializers of classes the program hasn't used yet.
+     *
+     * @return receiver class -&gt; target for up to {@link #MAX_GUARDED_RECEIVERS} receivers or <code>null</code> if the
+     * call can't be devirtualized
+     */
+    private Map<String, CompilerMethod> getGuardedReceivers(CompilerIndex index) {
+        var hierarchy = index.getHierarchy();
+
+        var method = index.getMethod(this.target.getOwner(), this.target.getName(), this.target.getDesc());
+
+        if (method == null)
+            method = hierarchy.resolveMethod(this.target.getOwner(), this.target.getName(), this.target.getDesc());
+
+        if (method == null || method.isStatic())
+            return null;
+
+        var owner = this.target.getOwner();
+        Map<String, CompilerMethod> selectedMethods;
+
+        if (hierarchy.isEffectivelyFinal(owner)) {
+            // The input doesn't contain other receivers, the owner selects the resolved method
+            var abstractOwner = (index.getCompilerClass(owner).getClassNode().access & Opcodes.ACC_ABSTRACT) != 0;
+
+            selectedMethods = abstractOwner ? null : Map.of(owner, method);
+        } else {
+            selectedMethods = hierarchy.getSelectedMethods(method);
+
+            // Receivers have to be instances of the owner of the call, subclasses of other branches don't matter
+            if (selectedMethods != null)
+                selectedMethods.keySet().removeIf(receiver -> !hierarchy.isSubtypeOf(receiver, owner));
+        }
+
+        if (selectedMethods == null || selectedMethods.isEmpty() || selectedMethods.size() > MAX_GUARDED_RECEIVERS)
+            return null;
+
+        var target = selectedMethods.values().iterator().next();
+
+        if (!isDirectlyCallable(target) || selectedMethods.values().stream().anyMatch(selected -> selected != target))
+            return null;
+
+        if (!selectedMethods.keySet().stream().allMatch(hierarchy::hasTrivialInitialization))
+            return null;
+
+        return selectedMethods;
+    }
+
+    /**
+     * The VM would lock the monitor of synchronized native methods, so they are always called through the VM
+     */
+    private static boolean isDirectlyCallable(CompilerMethod method) {
+        return method.wasMarkedForCompilation() && (method.getNode().access & (Opcodes.ACC_SYNCHRONIZED | Opcodes.ACC_ABSTRACT)) == 0;
+    }
+
+    /**
+     * Checks if the method might create local references. If it doesn't, the caller can skip creating a local frame
+     * for it which makes simple (e.g. arithmetic) methods fully inlinable.
+     */
+    private static boolean createsLocalReferences(CompilerMethod method) {
+        var node = method.getNode();
+
+        if (!node.tryCatchBlocks.isEmpty())
+            return true;
+
+        for (AbstractInsnNode instruction : node.instructions) {
+            switch (instruction.getType()) {
+                case AbstractInsnNode.METHOD_INSN: {
+                    var methodInsn = (MethodInsnNode) instruction;
+
+                    // Recursive calls don't create references either, unless they return an object: Past the stack
+                    // limit they are called through the VM which returns a local reference
+                    if (!method.getIdentifier().equals(new MethodOrFieldIdentifier(methodInsn)) || returnsReference(methodInsn.desc))
+                        return true;
+
+                    break;
+                }
+                case AbstractInsnNode.FIELD_INSN:
+                case AbstractInsnNode.TYPE_INSN:
+                case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                case AbstractInsnNode.LDC_INSN:
+                    return true;
+                case AbstractInsnNode.INT_INSN:
+                    if (instruction.getOpcode() == Opcodes.NEWARRAY)
+                        return true;
+
+                    break;
+                case AbstractInsnNode.INSN:
+                    if (instruction.getOpcode() == Opcodes.AALOAD || instruction.getOpcode() == Opcodes.ATHROW)
+                        return true;
+
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean returnsReference(String desc) {
+        var sort = Type.getReturnType(desc).getSort();
+
+        return sort == Type.OBJECT || sort == Type.ARRAY;
     }
 
     private JNIEnv.JNIEnvMethod getJNIMethod(JNIType jniType, boolean isStatic, boolean isNonVirtual) {
         if (isStatic) {
             switch (jniType) {
                 case VOID:
-                    return JNIEnv.JNIEnvMethod.CallStaticVoidMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticVoidMethodA;
                 case BOOLEAN:
-                    return JNIEnv.JNIEnvMethod.CallStaticBooleanMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticBooleanMethodA;
                 case CHAR:
-                    return JNIEnv.JNIEnvMethod.CallStaticCharMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticCharMethodA;
                 case BYTE:
-                    return JNIEnv.JNIEnvMethod.CallStaticByteMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticByteMethodA;
                 case SHORT:
-                    return JNIEnv.JNIEnvMethod.CallStaticShortMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticShortMethodA;
                 case INT:
-                    return JNIEnv.JNIEnvMethod.CallStaticIntMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticIntMethodA;
                 case LONG:
-                    return JNIEnv.JNIEnvMethod.CallStaticLongMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticLongMethodA;
                 case FLOAT:
-                    return JNIEnv.JNIEnvMethod.CallStaticFloatMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticFloatMethodA;
                 case DOUBLE:
-                    return JNIEnv.JNIEnvMethod.CallStaticDoubleMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticDoubleMethodA;
                 case OBJECT:
-                    return JNIEnv.JNIEnvMethod.CallStaticObjectMethod;
+                    return JNIEnv.JNIEnvMethod.CallStaticObjectMethodA;
                 default:
                     throw new IllegalStateException("Unexpected value: " + jniType);
             }
         } else if (isNonVirtual) {
             switch (jniType) {
                 case VOID:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualVoidMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualVoidMethodA;
                 case BOOLEAN:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualBooleanMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualBooleanMethodA;
                 case CHAR:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualCharMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualCharMethodA;
                 case BYTE:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualByteMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualByteMethodA;
                 case SHORT:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualShortMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualShortMethodA;
                 case INT:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualIntMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualIntMethodA;
                 case LONG:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualLongMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualLongMethodA;
                 case FLOAT:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualFloatMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualFloatMethodA;
                 case DOUBLE:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualDoubleMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualDoubleMethodA;
                 case OBJECT:
-                    return JNIEnv.JNIEnvMethod.CallNonvirtualObjectMethod;
+                    return JNIEnv.JNIEnvMethod.CallNonvirtualObjectMethodA;
                 default:
                     throw new IllegalStateException("Unexpected value: " + jniType);
             }
         } else {
             switch (jniType) {
                 case VOID:
-                    return JNIEnv.JNIEnvMethod.CallVoidMethod;
+                    return JNIEnv.JNIEnvMethod.CallVoidMethodA;
                 case BOOLEAN:
-                    return JNIEnv.JNIEnvMethod.CallBooleanMethod;
+                    return JNIEnv.JNIEnvMethod.CallBooleanMethodA;
                 case CHAR:
-                    return JNIEnv.JNIEnvMethod.CallCharMethod;
+                    return JNIEnv.JNIEnvMethod.CallCharMethodA;
                 case BYTE:
-                    return JNIEnv.JNIEnvMethod.CallByteMethod;
+                    return JNIEnv.JNIEnvMethod.CallByteMethodA;
                 case SHORT:
-                    return JNIEnv.JNIEnvMethod.CallShortMethod;
+                    return JNIEnv.JNIEnvMethod.CallShortMethodA;
                 case INT:
-                    return JNIEnv.JNIEnvMethod.CallIntMethod;
+                    return JNIEnv.JNIEnvMethod.CallIntMethodA;
                 case LONG:
-                    return JNIEnv.JNIEnvMethod.CallLongMethod;
+                    return JNIEnv.JNIEnvMethod.CallLongMethodA;
                 case FLOAT:
-                    return JNIEnv.JNIEnvMethod.CallFloatMethod;
+                    return JNIEnv.JNIEnvMethod.CallFloatMethodA;
                 case DOUBLE:
-                    return JNIEnv.JNIEnvMethod.CallDoubleMethod;
+                    return JNIEnv.JNIEnvMethod.CallDoubleMethodA;
                 case OBJECT:
-                    return JNIEnv.JNIEnvMethod.CallObjectMethod;
+                    return JNIEnv.JNIEnvMethod.CallObjectMethodA;
                 default:
                     throw new IllegalStateException("Unexpected value: " + jniType);
             }
@@ -43,11 +43,11 @@ public class NewArrayInstruction extends Instruction {
                     translatedMethod, translatedMethod.getEnvPtr(),
                     JNIEnv.JNIEnvMethod.NewObjectArray,
                     length,
-                    translatedMethod.buildFindClass(compiler.getJni(), this.type.getInternalName()),
+                    translatedMethod.buildFindClass(compiler, this.type.getInternalName()),
                     LLVM.LLVMConstNull(JNIType.OBJECT.getLLVMType())
             );
         } else {
-            var jniMethod = getJNIMethod();
+            var jniMethod = getJNIMethod(this.type);
 
             array = compiler.getJni().getJniEnv().callEnvironmentMethod(
                     translatedMethod, translatedMethod.getEnvPtr(),
@@ -63,8 +63,8 @@ public class NewArrayInstruction extends Instruction {
         stack.buildStackStore(builder, this.output, array);
     }
 
-    private JNIEnv.JNIEnvMethod getJNIMethod() {
-        switch (this.type.getSort()) {
+    public static JNIEnv.JNIEnvMethod getJNIMethod(Type type) {
+        switch (type.getSort()) {
             case BOOLEAN:
                 return JNIEnv.JNIEnvMethod.NewBooleanArray;
             case CHAR:
@@ -82,7 +82,7 @@ public class NewArrayInstruction extends Instruction {
             case DOUBLE:
                 return JNIEnv.JNIEnvMethod.NewDoubleArray;
             default:
-                throw new IllegalStateException("Unexpected value: " + this.type.getSort());
+                throw new IllegalStateException("Unexpected value: " + type.getSort());
         }
     }
 }
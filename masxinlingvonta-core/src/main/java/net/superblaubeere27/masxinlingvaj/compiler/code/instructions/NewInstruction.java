@@ -24,10 +24,10 @@ public class NewInstruction extends Instruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
-        var llvmValueRef = translatedMethod.buildFindClass(compiler.getJni(), this.typeName);
+        var llvmValueRef = translatedMethod.buildFindClass(compiler, this.typeName);
 
         // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
+        block.buildNullResultCheck(compiler, translatedMethod, llvmValueRef);
 
         var alloc = compiler.getJni().getJniEnv().callEnvironmentMethod(
                 translatedMethod, translatedMethod.getEnvPtr(),
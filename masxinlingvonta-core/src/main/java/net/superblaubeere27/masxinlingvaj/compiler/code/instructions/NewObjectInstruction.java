@@ -0,0 +1,63 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+
+/**
+ * A <code>NEW</code>, <code>DUP</code> and the <code>INVOKESPECIAL &lt;init&gt;</code> which initializes the object,
+ * fused into a single <code>NewObjectA</code> call.
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.CodeConverter
+ */
+public class NewObjectInstruction extends Instruction {
+    private final MethodOrFieldIdentifier constructor;
+    private final StackSlot[] params;
+    private final JNIType[] targetTypes;
+    private final StackSlot output;
+
+    public NewObjectInstruction(MethodOrFieldIdentifier constructor, StackSlot[] params, JNIType[] targetTypes, StackSlot output) {
+        this.constructor = constructor;
+        this.params = params;
+        this.targetTypes = targetTypes;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        var classId = translatedMethod.buildFindClass(compiler, this.constructor.getOwner());
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, classId);
+
+        var constructorId = translatedMethod.buildGetMethodID(compiler, this.constructor, false);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, constructorId);
+
+        var object = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.NewObjectA,
+                classId,
+                constructorId,
+                translatedMethod.getStack().buildArgumentArray(builder, this.params, this.targetTypes, 0)
+        );
+
+        // NewObject only returns NULL if the allocation or the constructor has thrown an exception
+        block.buildNullResultCheck(compiler, translatedMethod, object);
+
+        translatedMethod.getStack().buildStackStore(builder, this.output, object);
+    }
+}
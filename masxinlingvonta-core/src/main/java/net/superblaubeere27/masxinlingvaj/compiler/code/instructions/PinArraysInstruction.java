@@ -0,0 +1,28 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
+
+/**
+ * Pins the arrays of the method, the first instruction of methods which access pinned arrays
+ */
+public class PinArraysInstruction extends Instruction {
+    private final PinnedArrays pinnedArrays;
+
+    public PinArraysInstruction(PinnedArrays pinnedArrays) {
+        this.pinnedArrays = pinnedArrays;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        this.pinnedArrays.buildPin(compiler, translatedMethod, block);
+    }
+}
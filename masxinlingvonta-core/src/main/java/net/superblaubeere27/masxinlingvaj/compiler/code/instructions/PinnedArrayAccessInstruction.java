@@ -0,0 +1,70 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
+import net.superblaubeere27.masxinlingvaj.compiler.code.RangeAnalysis;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.Set;
+
+/**
+ * A primitive array load or store which accesses the elements of a pinned array directly
+ *
+ * @see PinnedArrays
+ */
+public class PinnedArrayAccessInstruction extends Instruction {
+    private final PinnedArrays.PinnedArray array;
+    private final StackSlot indexSlot;
+    private final StackSlot valueSlot;
+    private final boolean store;
+    private final Set<RangeAnalysis.Fact> facts;
+
+    public PinnedArrayAccessInstruction(PinnedArrays.PinnedArray array, StackSlot indexSlot, StackSlot valueSlot, boolean store, Set<RangeAnalysis.Fact> facts) {
+        if (indexSlot.getType() != JNIType.INT)
+            throw new IllegalStateException("An array index has to be an int.");
+
+        this.array = array;
+        this.indexSlot = indexSlot;
+        this.valueSlot = valueSlot;
+        this.store = store;
+        this.facts = facts;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var index = stack.buildStackLoad(builder, this.indexSlot);
+        var element = this.array.buildElementPointer(compiler,
+                                                        translatedMethod,
+                                                        block,
+                                                        index,
+                                                        this.store,
+                                                        !this.facts.contains(RangeAnalysis.Fact.IN_BOUNDS));
+
+        if (this.store) {
+            var value = stack.buildStackLoad(builder, this.valueSlot);
+
+            // BASTORE only stores the lowest bit into boolean arrays
+            if (this.array.getElementType() == JNIType.BOOLEAN)
+                value = LLVM.LLVMBuildAnd(builder, value, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(value), 1, 0), "");
+
+            LLVM.LLVMBuildStore(builder, LLVM.LLVMBuildTrunc(builder, value, this.array.getMemoryType(), ""), element);
+        } else {
+            var value = LLVM.LLVMBuildLoad(builder, element, "");
+
+            stack.buildStackStore(builder, this.valueSlot, ArrayModificationInstruction.extendToStackType(builder, value, this.array.getElementType()));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+
+/**
+ * The length of a pinned array, queried when the array was pinned
+ *
+ * @see PinnedArrays
+ */
+public class PinnedArrayLenInstruction extends Instruction {
+    private final PinnedArrays.PinnedArray array;
+    private final StackSlot output;
+
+    public PinnedArrayLenInstruction(PinnedArrays.PinnedArray array, StackSlot output) {
+        this.array = array;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        translatedMethod.getStack().buildStackStore(translatedMethod.getLlvmBuilder(),
+                                                    this.output,
+                                                    this.array.buildLength(compiler, translatedMethod, block));
+    }
+}
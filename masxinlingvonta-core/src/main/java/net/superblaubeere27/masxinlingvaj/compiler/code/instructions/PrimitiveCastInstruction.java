@@ -139,6 +139,10 @@ public class PrimitiveCastInstruction extends Instruction implements Opcodes {
         switch (this.castOperation) {
             case INT_CAST:
                 result = LLVM.LLVMBuildIntCast(builder, operand, this.outType.getLLVMType(), "");
+
+                // I2B and I2S produce a sign extended int, the store would zero extend it
+                if (this.outType == JNIType.BYTE || this.outType == JNIType.SHORT)
+                    result = LLVM.LLVMBuildSExt(builder, result, this.outputSlot.getType().getLLVMType(), "");
                 break;
             case FLOAT_CAST:
                 result = LLVM.LLVMBuildFPCast(builder, operand, this.outType.getLLVMType(), "");
@@ -10,7 +10,8 @@ public class ReturnInstruction extends TerminatingInstruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
-        // Not much to do here...
+        translatedMethod.buildReleasePinnedArrays(compiler);
+
         LLVM.LLVMBuildRetVoid(translatedMethod.getLlvmBuilder());
     }
 
@@ -80,15 +80,15 @@ public class StaticFieldInstruction extends Instruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
-        var classId = translatedMethod.buildFindClass(compiler.getJni(), this.target.getOwner());
+        var classId = translatedMethod.buildFindClass(compiler, this.target.getOwner());
 
         // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
+        block.buildNullResultCheck(compiler, translatedMethod, classId);
 
-        var field = translatedMethod.buildGetFieldID(compiler.getJni(), this.target, classId, true);
+        var field = translatedMethod.buildGetFieldID(compiler, this.target, true);
 
         // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
+        block.buildNullResultCheck(compiler, translatedMethod, field);
 
         var jniMethod = getJNIMethod(compiler.getJni().toNativeType(Type.getType(this.target.getDesc())), this.store);
 
@@ -115,9 +115,6 @@ public class StaticFieldInstruction extends Instruction {
                                                         retrievedField,
                                                         true);
         }
-
-        // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
     }
 
 }
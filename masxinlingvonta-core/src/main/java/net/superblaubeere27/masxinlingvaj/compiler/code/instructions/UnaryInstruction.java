@@ -4,19 +4,24 @@ import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.RangeAnalysis;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
 import org.bytedeco.llvm.global.LLVM;
 
+import java.util.Set;
+
 public class UnaryInstruction extends Instruction {
     private final StackSlot inputSlot;
     private final StackSlot outputSlot;
     private final UnaryOperationType type;
+    private final Set<RangeAnalysis.Fact> facts;
 
-    public UnaryInstruction(StackSlot inputSlot, StackSlot outputSlot, UnaryOperationType type) {
+    public UnaryInstruction(StackSlot inputSlot, StackSlot outputSlot, UnaryOperationType type, Set<RangeAnalysis.Fact> facts) {
         this.inputSlot = inputSlot;
         this.outputSlot = outputSlot;
         this.type = type;
+        this.facts = facts;
     }
 
     @Override
@@ -40,7 +45,10 @@ public class UnaryInstruction extends Instruction {
                 translatedMethod.getStack().buildStackStore(
                         builder,
                         this.outputSlot,
-                        LLVM.LLVMBuildNSWNeg(builder, operand, "neg")
+                        // -MIN_VALUE overflows
+                        this.facts.contains(RangeAnalysis.Fact.NO_SIGNED_WRAP)
+                                ? LLVM.LLVMBuildNSWNeg(builder, operand, "neg")
+                                : LLVM.LLVMBuildNeg(builder, operand, "neg")
                 );
             }
         } else {
@@ -29,7 +29,8 @@ public class ValueReturnInstruction extends TerminatingInstruction {
                     "cst");
         }
 
-        // Not much to do here...
+        translatedMethod.buildReleasePinnedArrays(compiler);
+
         LLVM.LLVMBuildRet(translatedMethod.getLlvmBuilder(), value);
     }
 }
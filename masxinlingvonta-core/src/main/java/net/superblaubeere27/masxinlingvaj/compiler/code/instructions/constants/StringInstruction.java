@@ -3,9 +3,7 @@ package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.constants;
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
-import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
 import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
-import org.bytedeco.llvm.global.LLVM;
 
 public class StringInstruction extends ConstantInstruction {
     private final String cst;
@@ -23,14 +21,17 @@ public class StringInstruction extends ConstantInstruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var string = compiler.getStringPool().buildGetString(translatedMethod.getLlvmBuilder(),
+                translatedMethod.getEnvPtr(),
+                this.cst);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, string);
+
         translatedMethod.getStack().buildStackStore(
                 translatedMethod.getLlvmBuilder(),
                 this.outputSlot,
-                compiler.getJni().getJniEnv().callEnvironmentMethod(
-                        translatedMethod, translatedMethod.getEnvPtr(),
-                        JNIEnv.JNIEnvMethod.NewStringUTF,
-                        LLVM.LLVMBuildGlobalStringPtr(translatedMethod.getLlvmBuilder(), this.cst, "ldc")
-                )
+                string
         );
     }
 }
@@ -22,13 +22,15 @@ public class TypeInstruction extends ConstantInstruction {
 
     @Override
     public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var clazz = translatedMethod.buildFindClass(compiler, this.cst.getInternalName());
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, clazz);
+
         translatedMethod.getStack().buildStackStore(
                 translatedMethod.getLlvmBuilder(),
                 this.outputSlot,
-                translatedMethod.buildFindClass(compiler.getJni(), this.cst.getInternalName())
+                clazz
         );
-
-        // Did an exception occur?
-        block.buildExceptionCheck(compiler, translatedMethod);
     }
 }
@@ -0,0 +1,132 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.Locale;
+
+import static net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ArrayIntrinsics.*;
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.buildIf;
+
+/**
+ * <code>System.arraycopy</code> between two arrays which are known to have the same primitive element type, so no
+ * store check is needed. Both arrays are pinned and the elements are copied with a <code>memmove</code>.
+ */
+public class ArrayCopyInstruction extends Instruction {
+    private final JNIType elementType;
+    private final StackSlot src;
+    private final StackSlot srcPos;
+    private final StackSlot dst;
+    private final StackSlot dstPos;
+    private final StackSlot length;
+
+    public ArrayCopyInstruction(JNIType elementType, StackSlot src, StackSlot srcPos, StackSlot dst, StackSlot dstPos, StackSlot length) {
+        this.elementType = elementType;
+        this.src = src;
+        this.srcPos = srcPos;
+        this.dst = dst;
+        this.dstPos = dstPos;
+        this.length = length;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var src = stack.buildStackLoad(builder, this.src);
+        var srcPos = stack.buildStackLoad(builder, this.srcPos);
+        var dst = stack.buildStackLoad(builder, this.dst);
+        var dstPos = stack.buildStackLoad(builder, this.dstPos);
+        var length = stack.buildStackLoad(builder, this.length);
+
+        // The VM throws these without a message
+        buildNullCheck(compiler, translatedMethod, block, src, null);
+        buildNullCheck(compiler, translatedMethod, block, dst, null);
+
+        var srcLength = buildArrayLength(compiler, translatedMethod, src);
+        var dstLength = buildArrayLength(compiler, translatedMethod, dst);
+
+        // Same checks and messages as TypeArrayKlass::copy_array
+        var arrayType = this.elementType.name().toLowerCase(Locale.ROOT);
+
+        block.throwIf(compiler,
+                      translatedMethod,
+                      buildLess(translatedMethod, srcPos, constInt(0)),
+                      "java/lang/ArrayIndexOutOfBoundsException",
+                      "arraycopy: source index %d out of bounds for " + arrayType + "[%d]",
+                      srcPos,
+                      srcLength);
+        block.throwIf(compiler,
+                      translatedMethod,
+                      buildLess(translatedMethod, dstPos, constInt(0)),
+                      "java/lang/ArrayIndexOutOfBoundsException",
+                      "arraycopy: destination index %d out of bounds for " + arrayType + "[%d]",
+                      dstPos,
+                      dstLength);
+        block.throwIf(compiler,
+                      translatedMethod,
+                      buildLess(translatedMethod, length, constInt(0)),
+                      "java/lang/ArrayIndexOutOfBoundsException",
+                      "arraycopy: length %d is negative",
+                      length);
+
+        // Nothing is negative anymore, so the last indices don't overflow as i64
+        var lastSrcIndex = buildLastIndex(translatedMethod, srcPos, length);
+        var lastDstIndex = buildLastIndex(translatedMethod, dstPos, length);
+
+        block.throwIf(compiler,
+                      translatedMethod,
+                      buildLess(translatedMethod, LLVM.LLVMBuildZExt(builder, srcLength, LLVM.LLVMInt64Type(), ""), lastSrcIndex),
+                      "java/lang/ArrayIndexOutOfBoundsException",
+                      "arraycopy: last source index %d out of bounds for " + arrayType + "[%d]",
+                      lastSrcIndex,
+                      srcLength);
+        block.throwIf(compiler,
+                      translatedMethod,
+                      buildLess(translatedMethod, LLVM.LLVMBuildZExt(builder, dstLength, LLVM.LLVMInt64Type(), ""), lastDstIndex),
+                      "java/lang/ArrayIndexOutOfBoundsException",
+                      "arraycopy: last destination index %d out of bounds for " + arrayType + "[%d]",
+                      lastDstIndex,
+                      dstLength);
+
+        // Empty copies don't need to pin anything
+        buildIf(translatedMethod, buildLess(translatedMethod, constInt(0), length), () -> {
+            var srcElements = buildPin(compiler, translatedMethod, block, src);
+            var dstElements = buildPin(compiler, translatedMethod, block, dst, src, srcElements);
+
+            // src and dst might be the same array
+            buildMemmove(compiler,
+                         translatedMethod,
+                         buildElementPointer(translatedMethod, dstElements, dstPos, this.elementType),
+                         buildElementPointer(translatedMethod, srcElements, srcPos, this.elementType),
+                         buildByteCount(translatedMethod, length, this.elementType));
+
+            buildUnpin(compiler, translatedMethod, dst, dstElements, true);
+            buildUnpin(compiler, translatedMethod, src, srcElements, false);
+        });
+    }
+
+    /**
+     * <code>position + length</code> as <code>i64</code>, both have to be non-negative
+     */
+    private static LLVMValueRef buildLastIndex(TranslatedMethod translatedMethod, LLVMValueRef position, LLVMValueRef length) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        return LLVM.LLVMBuildNUWAdd(builder,
+                                    LLVM.LLVMBuildZExt(builder, position, LLVM.LLVMInt64Type(), ""),
+                                    LLVM.LLVMBuildZExt(builder, length, LLVM.LLVMInt64Type(), ""),
+                                    "");
+    }
+}
@@ -0,0 +1,83 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.instructions.NewArrayInstruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Type;
+
+import static net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ArrayIntrinsics.*;
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.buildIf;
+
+/**
+ * <code>Arrays.copyOf</code> for primitive arrays. The new array is allocated with
+ * <code>New&lt;Type&gt;Array</code>, the elements are copied with a <code>memcpy</code> between the pinned arrays.
+ */
+public class ArrayCopyOfInstruction extends Instruction {
+    private final Type elementType;
+    private final StackSlot original;
+    private final StackSlot newLength;
+    private final StackSlot output;
+
+    public ArrayCopyOfInstruction(Type elementType, StackSlot original, StackSlot newLength, StackSlot output) {
+        this.elementType = elementType;
+        this.original = original;
+        this.newLength = newLength;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+        var jniType = compiler.getJni().toNativeType(this.elementType);
+
+        var original = stack.buildStackLoad(builder, this.original);
+        var newLength = stack.buildStackLoad(builder, this.newLength);
+
+        // Throws a NegativeArraySizeException for negative lengths, before the original is accessed
+        var copy = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                NewArrayInstruction.getJNIMethod(this.elementType),
+                newLength
+        );
+
+        // Did an exception occur?
+        block.buildExceptionCheck(compiler, translatedMethod);
+
+        buildNullCheck(compiler, translatedMethod, block, original, "Cannot read the array length because \"original\" is null");
+
+        var length = buildArrayLength(compiler, translatedMethod, original);
+        var count = LLVM.LLVMBuildSelect(builder, buildLess(translatedMethod, length, newLength), length, newLength, "");
+
+        // The rest of the new array is already zeroed
+        buildIf(translatedMethod, buildLess(translatedMethod, constInt(0), count), () -> {
+            var originalElements = buildPin(compiler, translatedMethod, block, original);
+            var copyElements = buildPin(compiler, translatedMethod, block, copy, original, originalElements);
+
+            LLVMUtils.generateIntrinsicCall(compiler,
+                                            builder,
+                                            LLVMIntrinsic.MEMCPY,
+                                            copyElements,
+                                            originalElements,
+                                            buildByteCount(translatedMethod, count, jniType),
+                                            LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0));
+
+            buildUnpin(compiler, translatedMethod, copy, copyElements, true);
+            buildUnpin(compiler, translatedMethod, original, originalElements, false);
+        });
+
+        stack.buildStackStore(builder, this.output, copy);
+    }
+}
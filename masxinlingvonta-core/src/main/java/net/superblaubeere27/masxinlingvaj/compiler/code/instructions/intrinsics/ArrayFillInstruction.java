@@ -0,0 +1,154 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import static net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.ArrayIntrinsics.*;
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.buildIf;
+
+/**
+ * <code>Arrays.fill</code> for primitive arrays. The array is pinned and filled with a <code>memset</code> (for
+ * <code>byte</code> and <code>boolean</code> arrays) or a loop.
+ */
+public class ArrayFillInstruction extends Instruction {
+    private final JNIType elementType;
+    private final StackSlot array;
+    /**
+     * <code>null</code> if the whole array is filled
+     */
+    private final StackSlot fromIndex;
+    private final StackSlot toIndex;
+    private final StackSlot value;
+
+    public ArrayFillInstruction(JNIType elementType, StackSlot array, StackSlot fromIndex, StackSlot toIndex, StackSlot value) {
+        this.elementType = elementType;
+        this.array = array;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.value = value;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var array = stack.buildStackLoad(builder, this.array);
+        var value = stack.buildStackTypeFixedStackLoad(builder, this.value, this.elementType, false);
+
+        // jboolean is an unsigned char
+        if (this.elementType == JNIType.BOOLEAN)
+            value = LLVM.LLVMBuildZExt(builder, value, getMemoryType(this.elementType), "");
+
+        buildNullCheck(compiler, translatedMethod, block, array, "Cannot read the array length because \"a\" is null");
+
+        var length = buildArrayLength(compiler, translatedMethod, array);
+
+        LLVMValueRef fromIndex;
+        LLVMValueRef toIndex;
+
+        if (this.fromIndex != null) {
+            fromIndex = stack.buildStackLoad(builder, this.fromIndex);
+            toIndex = stack.buildStackLoad(builder, this.toIndex);
+
+            // Same order and messages as Arrays.rangeCheck
+            block.throwIf(compiler,
+                          translatedMethod,
+                          buildLess(translatedMethod, toIndex, fromIndex),
+                          "java/lang/IllegalArgumentException",
+                          "fromIndex(%d) > toIndex(%d)",
+                          fromIndex,
+                          toIndex);
+            block.throwIf(compiler,
+                          translatedMethod,
+                          buildLess(translatedMethod, fromIndex, constInt(0)),
+                          "java/lang/ArrayIndexOutOfBoundsException",
+                          "Array index out of range: %d",
+                          fromIndex);
+            block.throwIf(compiler,
+                          translatedMethod,
+                          buildLess(translatedMethod, length, toIndex),
+                          "java/lang/ArrayIndexOutOfBoundsException",
+                          "Array index out of range: %d",
+                          toIndex);
+        } else {
+            fromIndex = constInt(0);
+            toIndex = length;
+        }
+
+        var finalValue = value;
+
+        // Empty ranges don't need to pin anything
+        buildIf(translatedMethod, buildLess(translatedMethod, fromIndex, toIndex), () -> {
+            var elements = buildPin(compiler, translatedMethod, block, array);
+
+            if (getElementSize(this.elementType) == 1) {
+                LLVMUtils.generateIntrinsicCall(compiler,
+                                                builder,
+                                                LLVMIntrinsic.MEMSET,
+                                                buildElementPointer(translatedMethod, elements, fromIndex, this.elementType),
+                                                finalValue,
+                                                buildByteCount(translatedMethod, LLVM.LLVMBuildNUWSub(builder, toIndex, fromIndex, ""), this.elementType),
+                                                LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0));
+            } else {
+                buildFillLoop(translatedMethod,
+                              LLVM.LLVMBuildBitCast(builder, elements, LLVM.LLVMPointerType(getMemoryType(this.elementType), 0), ""),
+                              fromIndex,
+                              toIndex,
+                              finalValue);
+            }
+
+            buildUnpin(compiler, translatedMethod, array, elements, true);
+        });
+    }
+
+    /**
+     * Stores the value into the elements <code>fromIndex</code> to <code>toIndex - 1</code>. The range must not be
+     * empty.
+     */
+    private static void buildFillLoop(TranslatedMethod translatedMethod, LLVMValueRef elements, LLVMValueRef fromIndex, LLVMValueRef toIndex, LLVMValueRef value) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        var entryBlock = LLVM.LLVMGetInsertBlock(builder);
+        var loopBlock = LLVM.LLVMAppendBasicBlock(translatedMethod.getLlvmFunction(), "fill_loop");
+        var exitBlock = LLVM.LLVMAppendBasicBlock(translatedMethod.getLlvmFunction(), "fill_exit");
+
+        LLVM.LLVMMoveBasicBlockAfter(loopBlock, entryBlock);
+        LLVM.LLVMMoveBasicBlockAfter(exitBlock, loopBlock);
+
+        LLVM.LLVMBuildBr(builder, loopBlock);
+        LLVM.LLVMPositionBuilderAtEnd(builder, loopBlock);
+
+        var index = LLVM.LLVMBuildPhi(builder, JNIType.INT.getLLVMType(), "fill_index");
+
+        LLVM.LLVMBuildStore(builder,
+                            value,
+                            LLVM.LLVMBuildInBoundsGEP(builder, elements, new PointerPointer<>(new LLVMValueRef[]{index}), 1, ""));
+
+        // The index stays below toIndex
+        var nextIndex = LLVM.LLVMBuildNSWAdd(builder, index, constInt(1), "");
+
+        LLVM.LLVMAddIncoming(index,
+                             new PointerPointer<>(new LLVMValueRef[]{fromIndex, nextIndex}),
+                             new PointerPointer<>(new LLVMBasicBlockRef[]{entryBlock, loopBlock}),
+                             2);
+
+        LLVM.LLVMBuildCondBr(builder, buildLess(translatedMethod, nextIndex, toIndex), loopBlock, exitBlock);
+        LLVM.LLVMPositionBuilderAtEnd(builder, exitBlock);
+    }
+}
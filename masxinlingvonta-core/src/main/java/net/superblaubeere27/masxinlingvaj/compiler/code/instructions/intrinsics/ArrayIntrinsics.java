@@ -0,0 +1,163 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * Code shared by the intrinsics of <code>System.arraycopy</code> and <code>java.util.Arrays</code>. The arrays are
+ * accessed with <code>GetPrimitiveArrayCritical</code>, so no JNI function may be called between
+ * {@link #buildPin(MLVCompiler, TranslatedMethod, Block, LLVMValueRef, LLVMValueRef...)} and
+ * {@link #buildUnpin(MLVCompiler, TranslatedMethod, LLVMValueRef, LLVMValueRef, boolean)}.
+ */
+final class ArrayIntrinsics {
+    private ArrayIntrinsics() {
+    }
+
+    static int getElementSize(JNIType elementType) {
+        switch (elementType) {
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+            case CHAR:
+            case SHORT:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            default:
+                throw new IllegalStateException("Unexpected value: " + elementType);
+        }
+    }
+
+    /**
+     * The type of the elements in memory, <code>jboolean</code> is an unsigned char
+     */
+    static LLVMTypeRef getMemoryType(JNIType elementType) {
+        return elementType == JNIType.BOOLEAN ? LLVM.LLVMInt8Type() : elementType.getLLVMType();
+    }
+
+    static void buildNullCheck(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef array, String message) {
+        block.throwIf(compiler,
+                      translatedMethod,
+                      LLVM.LLVMBuildIsNull(translatedMethod.getLlvmBuilder(), array, ""),
+                      "java/lang/NullPointerException",
+                      message);
+    }
+
+    static LLVMValueRef buildArrayLength(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef array) {
+        return compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetArrayLength,
+                array
+        );
+    }
+
+    /**
+     * Pins an array with <code>GetPrimitiveArrayCritical</code>. If that fails, the arrays in
+     * <code>alreadyPinned</code> (pairs of array and elements) are released and an OutOfMemoryError is thrown.
+     *
+     * @return the elements as <code>i8*</code>
+     */
+    static LLVMValueRef buildPin(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef array, LLVMValueRef... alreadyPinned) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        var elements = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetPrimitiveArrayCritical,
+                array,
+                LLVM.LLVMConstNull(LLVM.LLVMPointerType(JNIType.BOOLEAN.getLLVMType(), 0))
+        );
+
+        var failed = LLVM.LLVMBuildIsNull(builder, elements, "");
+
+        // No JNI function (e.g. ThrowNew) may be called while an array is pinned
+        if (alreadyPinned.length != 0) {
+            LLVMUtils.buildIf(translatedMethod, failed, () -> {
+                for (int i = 0; i < alreadyPinned.length; i += 2) {
+                    buildUnpin(compiler, translatedMethod, alreadyPinned[i], alreadyPinned[i + 1], false);
+                }
+            });
+        }
+
+        // The VM couldn't allocate a copy of the array
+        block.throwIf(compiler, translatedMethod, failed, "java/lang/OutOfMemoryError", "Failed to pin an array");
+
+        return elements;
+    }
+
+    /**
+     * @param written if the elements have to be copied back in case the VM made a copy of the array
+     */
+    static void buildUnpin(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef array, LLVMValueRef elements, boolean written) {
+        compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.ReleasePrimitiveArrayCritical,
+                array,
+                elements,
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), written ? 0 : PinnedArrays.JNI_ABORT, 0)
+        );
+    }
+
+    /**
+     * @return a pointer to the element with the given index, as <code>i8*</code>
+     */
+    static LLVMValueRef buildElementPointer(TranslatedMethod translatedMethod, LLVMValueRef elements, LLVMValueRef index, JNIType elementType) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        var offset = LLVM.LLVMBuildMul(builder,
+                                       LLVM.LLVMBuildZExt(builder, index, LLVM.LLVMInt64Type(), ""),
+                                       LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), getElementSize(elementType), 0),
+                                       "");
+
+        return LLVM.LLVMBuildInBoundsGEP(builder, elements, new PointerPointer<>(new LLVMValueRef[]{offset}), 1, "");
+    }
+
+    /**
+     * @return the size of <code>count</code> elements in bytes, as <code>i64</code>
+     */
+    static LLVMValueRef buildByteCount(TranslatedMethod translatedMethod, LLVMValueRef count, JNIType elementType) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        return LLVM.LLVMBuildMul(builder,
+                                 LLVM.LLVMBuildZExt(builder, count, LLVM.LLVMInt64Type(), ""),
+                                 LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), getElementSize(elementType), 0),
+                                 "");
+    }
+
+    /**
+     * Copies <code>bytes</code> bytes, the regions may overlap
+     */
+    static void buildMemmove(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef dst, LLVMValueRef src, LLVMValueRef bytes) {
+        LLVMUtils.generateIntrinsicCall(compiler,
+                                        translatedMethod.getLlvmBuilder(),
+                                        LLVMIntrinsic.MEMMOVE,
+                                        dst,
+                                        src,
+                                        bytes,
+                                        LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0));
+    }
+
+    /**
+     * <code>a &lt; b</code> for signed integers
+     */
+    static LLVMValueRef buildLess(TranslatedMethod translatedMethod, LLVMValueRef a, LLVMValueRef b) {
+        return LLVM.LLVMBuildICmp(translatedMethod.getLlvmBuilder(), LLVM.LLVMIntSLT, a, b, "");
+    }
+
+    static LLVMValueRef constInt(int value) {
+        return LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), value, 1);
+    }
+}
@@ -0,0 +1,131 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.generateIntrinsicCall;
+
+/**
+ * The bit manipulation methods of <code>Integer</code> and <code>Long</code> and the conversions between floating
+ * point numbers and their bits
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.Intrinsics
+ */
+public class BitOperationInstruction extends Instruction {
+    private final BitOperationType type;
+    /**
+     * The type of the operand, {@link JNIType#INT} or {@link JNIType#LONG} for the conversions from bits
+     */
+    private final JNIType operandType;
+    private final StackSlot operand;
+    /**
+     * The distance of rotations, <code>null</code> otherwise
+     */
+    private final StackSlot distance;
+    private final StackSlot output;
+
+    public BitOperationInstruction(BitOperationType type, JNIType operandType, StackSlot operand, StackSlot distance, StackSlot output) {
+        if ((distance != null) != type.isRotation())
+            throw new IllegalStateException("Only rotations have a distance");
+
+        this.type = type;
+        this.operandType = operandType;
+        this.operand = operand;
+        this.distance = distance;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var operand = stack.buildStackLoad(builder, this.operand);
+        var isLong = this.operandType == JNIType.LONG || this.operandType == JNIType.DOUBLE;
+        var zeroIsPoison = LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0);
+
+        LLVMValueRef result;
+
+        switch (this.type) {
+            case BIT_COUNT:
+                result = generateIntrinsicCall(compiler, builder, isLong ? LLVMIntrinsic.CTPOP_LONG : LLVMIntrinsic.CTPOP_INT, operand);
+                break;
+            case LEADING_ZEROS:
+                // 0 has 32/64 leading zeros
+                result = generateIntrinsicCall(compiler, builder, isLong ? LLVMIntrinsic.CTLZ_LONG : LLVMIntrinsic.CTLZ_INT, operand, zeroIsPoison);
+                break;
+            case TRAILING_ZEROS:
+                result = generateIntrinsicCall(compiler, builder, isLong ? LLVMIntrinsic.CTTZ_LONG : LLVMIntrinsic.CTTZ_INT, operand, zeroIsPoison);
+                break;
+            case ROTATE_LEFT:
+            case ROTATE_RIGHT: {
+                // A funnel shift of a value with itself is a rotation. The distance is taken modulo the bit width, like in Java
+                var distance = stack.buildStackLoad(builder, this.distance);
+
+                if (isLong)
+                    distance = LLVM.LLVMBuildZExt(builder, distance, LLVM.LLVMInt64Type(), "");
+
+                LLVMIntrinsic intrinsic;
+
+                if (this.type == BitOperationType.ROTATE_LEFT)
+                    intrinsic = isLong ? LLVMIntrinsic.FSHL_LONG : LLVMIntrinsic.FSHL_INT;
+                else
+                    intrinsic = isLong ? LLVMIntrinsic.FSHR_LONG : LLVMIntrinsic.FSHR_INT;
+
+                result = generateIntrinsicCall(compiler, builder, intrinsic, operand, operand, distance);
+                break;
+            }
+            case REVERSE:
+                result = generateIntrinsicCall(compiler, builder, isLong ? LLVMIntrinsic.BITREVERSE_LONG : LLVMIntrinsic.BITREVERSE_INT, operand);
+                break;
+            case REVERSE_BYTES:
+                result = generateIntrinsicCall(compiler, builder, isLong ? LLVMIntrinsic.BSWAP_LONG : LLVMIntrinsic.BSWAP_INT, operand);
+                break;
+            case TO_RAW_BITS:
+                result = LLVM.LLVMBuildBitCast(builder, operand, isLong ? LLVM.LLVMInt64Type() : LLVM.LLVMInt32Type(), "");
+                break;
+            case TO_BITS: {
+                var bits = LLVM.LLVMBuildBitCast(builder, operand, isLong ? LLVM.LLVMInt64Type() : LLVM.LLVMInt32Type(), "");
+
+                // All NaNs are collapsed to the canonical one
+                result = LLVM.LLVMBuildSelect(builder,
+                                              LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealUNO, operand, operand, ""),
+                                              isLong ? LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), 0x7ff8000000000000L, 0) : LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), 0x7fc00000, 0),
+                                              bits,
+                                              "");
+                break;
+            }
+            case FROM_BITS:
+                result = LLVM.LLVMBuildBitCast(builder, operand, isLong ? JNIType.DOUBLE.getLLVMType() : JNIType.FLOAT.getLLVMType(), "");
+                break;
+            default:
+                throw new IllegalStateException("Unexpected value: " + this.type);
+        }
+
+        // Long.bitCount and friends return ints
+        if (isLong && this.output.getType() == JNIType.INT)
+            result = LLVM.LLVMBuildTrunc(builder, result, JNIType.INT.getLLVMType(), "");
+
+        stack.buildStackStore(builder, this.output, result);
+    }
+
+    public enum BitOperationType {
+        BIT_COUNT, LEADING_ZEROS, TRAILING_ZEROS, ROTATE_LEFT, ROTATE_RIGHT, REVERSE, REVERSE_BYTES, TO_RAW_BITS, TO_BITS, FROM_BITS;
+
+        public boolean isRotation() {
+            return this == ROTATE_LEFT || this == ROTATE_RIGHT;
+        }
+    }
+}
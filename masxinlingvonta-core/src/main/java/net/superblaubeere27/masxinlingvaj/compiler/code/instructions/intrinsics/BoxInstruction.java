@@ -0,0 +1,53 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * <code>valueOf</code> of the wrapper classes, see {@link net.superblaubeere27.masxinlingvaj.compiler.cache.BoxCache}
+ */
+public class BoxInstruction extends Instruction {
+    private final BoxType type;
+    private final StackSlot value;
+    private final StackSlot output;
+
+    public BoxInstruction(BoxType type, StackSlot value, StackSlot output) {
+        this.type = type;
+        this.value = value;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var primitiveType = this.type.getPrimitiveType();
+        var storageType = primitiveType.getStackStorageType().getLLVMType();
+        var value = stack.buildStackTypeFixedStackLoad(builder, this.value, primitiveType, false);
+
+        // The upper bits of the slot aren't necessarily the sign extension of a byte or short
+        if (primitiveType == JNIType.BYTE || primitiveType == JNIType.SHORT) {
+            value = LLVM.LLVMBuildSExt(builder, value, storageType, "");
+        } else if (primitiveType == JNIType.BOOLEAN || primitiveType == JNIType.CHAR) {
+            value = LLVM.LLVMBuildZExt(builder, value, storageType, "");
+        }
+
+        var boxed = compiler.getBoxCache().buildBox(builder, translatedMethod.getEnvPtr(), this.type, value);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, boxed);
+
+        stack.buildStackStore(builder, this.output, boxed);
+    }
+}
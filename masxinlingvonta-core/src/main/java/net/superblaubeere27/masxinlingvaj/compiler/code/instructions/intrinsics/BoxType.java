@@ -0,0 +1,116 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * The wrapper classes of the primitive types. All of them are final, so their <code>xValue()</code> methods can't be
+ * overridden.
+ */
+public enum BoxType {
+    BOOLEAN("java/lang/Boolean", JNIType.BOOLEAN, "Z", "booleanValue", JNIEnv.JNIEnvMethod.GetBooleanField, 0, 1),
+    BYTE("java/lang/Byte", JNIType.BYTE, "B", "byteValue", JNIEnv.JNIEnvMethod.GetByteField, -128, 127),
+    CHARACTER("java/lang/Character", JNIType.CHAR, "C", "charValue", JNIEnv.JNIEnvMethod.GetCharField, 0, 127),
+    SHORT("java/lang/Short", JNIType.SHORT, "S", "shortValue", JNIEnv.JNIEnvMethod.GetShortField, -128, 127),
+    INTEGER("java/lang/Integer", JNIType.INT, "I", "intValue", JNIEnv.JNIEnvMethod.GetIntField, -128, 127),
+    LONG("java/lang/Long", JNIType.LONG, "J", "longValue", JNIEnv.JNIEnvMethod.GetLongField, -128, 127),
+    FLOAT("java/lang/Float", JNIType.FLOAT, "F", "floatValue", JNIEnv.JNIEnvMethod.GetFloatField, 0, -1),
+    DOUBLE("java/lang/Double", JNIType.DOUBLE, "D", "doubleValue", JNIEnv.JNIEnvMethod.GetDoubleField, 0, -1);
+
+    private final String wrapperClass;
+    private final JNIType primitiveType;
+    private final String primitiveDesc;
+    private final String unboxMethod;
+    private final JNIEnv.JNIEnvMethod getter;
+    /**
+     * The range of values for which <code>valueOf</code> is guaranteed to return the same instance. Empty if there is
+     * none.
+     */
+    private final int cacheLow;
+    private final int cacheHigh;
+
+    BoxType(String wrapperClass, JNIType primitiveType, String primitiveDesc, String unboxMethod, JNIEnv.JNIEnvMethod getter, int cacheLow, int cacheHigh) {
+        this.wrapperClass = wrapperClass;
+        this.primitiveType = primitiveType;
+        this.primitiveDesc = primitiveDesc;
+        this.unboxMethod = unboxMethod;
+        this.getter = getter;
+        this.cacheLow = cacheLow;
+        this.cacheHigh = cacheHigh;
+    }
+
+    /**
+     * @return the wrapper whose <code>valueOf</code> of its primitive type is called or <code>null</code>
+     */
+    public static BoxType ofBoxing(MethodInsnNode methodInsn) {
+        if (methodInsn.getOpcode() != Opcodes.INVOKESTATIC || !methodInsn.name.equals("valueOf"))
+            return null;
+
+        for (BoxType type : values()) {
+            if (methodInsn.owner.equals(type.wrapperClass) && methodInsn.desc.equals(type.getValueOf().getDesc()))
+                return type;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the wrapper whose <code>xValue()</code> method of its own primitive type is called or <code>null</code>
+     */
+    public static BoxType ofUnboxing(MethodInsnNode methodInsn) {
+        if (methodInsn.getOpcode() != Opcodes.INVOKEVIRTUAL)
+            return null;
+
+        for (BoxType type : values()) {
+            if (methodInsn.owner.equals(type.wrapperClass) && methodInsn.name.equals(type.unboxMethod) && methodInsn.desc.equals("()" + type.primitiveDesc))
+                return type;
+        }
+
+        return null;
+    }
+
+    public String getWrapperClass() {
+        return wrapperClass;
+    }
+
+    public JNIType getPrimitiveType() {
+        return primitiveType;
+    }
+
+    public MethodOrFieldIdentifier getUnbox() {
+        return new MethodOrFieldIdentifier(this.wrapperClass, this.unboxMethod, "()" + this.primitiveDesc);
+    }
+
+    /**
+     * The <code>Get&lt;Type&gt;Field</code> function which reads the <code>value</code> field
+     */
+    public JNIEnv.JNIEnvMethod getGetter() {
+        return getter;
+    }
+
+    public MethodOrFieldIdentifier getValueOf() {
+        return new MethodOrFieldIdentifier(this.wrapperClass, "valueOf", "(" + this.primitiveDesc + ")L" + this.wrapperClass + ";");
+    }
+
+    public MethodOrFieldIdentifier getConstructor() {
+        return new MethodOrFieldIdentifier(this.wrapperClass, "<init>", "(" + this.primitiveDesc + ")V");
+    }
+
+    public MethodOrFieldIdentifier getValueField() {
+        return new MethodOrFieldIdentifier(this.wrapperClass, "value", this.primitiveDesc);
+    }
+
+    public int getCacheLow() {
+        return cacheLow;
+    }
+
+    /**
+     * @return the count of cached instances, 0 if <code>valueOf</code> always creates a new instance
+     */
+    public int getCacheSize() {
+        return this.cacheHigh - this.cacheLow + 1;
+    }
+}
@@ -0,0 +1,388 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.function.Supplier;
+
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.generateIntrinsicCall;
+
+/**
+ * The absolute and relative <code>get</code>/<code>put</code> methods of <code>ByteBuffer</code>. If the buffer is
+ * direct, its memory is accessed without calling into the VM. Position, limit and byte order are read from the
+ * buffer's fields (limit and byte order only once per invocation if the buffer has a {@link Region} which caches
+ * them), the exceptions are the ones the buffer would throw. All other buffers are accessed with a normal call.
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.cache.DirectBufferCache
+ */
+public class DirectBufferAccessInstruction extends Instruction {
+    private static final MethodOrFieldIdentifier POSITION = new MethodOrFieldIdentifier("java/nio/Buffer", "position", "I");
+    private static final MethodOrFieldIdentifier LIMIT = new MethodOrFieldIdentifier("java/nio/Buffer", "limit", "I");
+    private static final MethodOrFieldIdentifier NATIVE_BYTE_ORDER = new MethodOrFieldIdentifier("java/nio/ByteBuffer", "nativeByteOrder", "Z");
+
+    private final JNIType valueType;
+    private final boolean write;
+    private final StackSlot buffer;
+    /**
+     * <code>null</code> for the relative methods
+     */
+    private final StackSlot index;
+    /**
+     * The value which is written, <code>null</code> for reads
+     */
+    private final StackSlot value;
+    /**
+     * The read value or the buffer which <code>put</code> returns
+     */
+    private final StackSlot output;
+    /**
+     * Caches the buffer's address if it is always the same, may be <code>null</code>
+     */
+    private final Region region;
+    /**
+     * The call which is used if the buffer isn't direct
+     */
+    private final Instruction fallback;
+    /**
+     * The accessor which is called, it is named in the message of a NullPointerException
+     */
+    private final MethodOrFieldIdentifier method;
+
+    public DirectBufferAccessInstruction(JNIType valueType, boolean write, StackSlot buffer, StackSlot index, StackSlot value, StackSlot output, Region region, Instruction fallback, MethodOrFieldIdentifier method) {
+        this.valueType = valueType;
+        this.write = write;
+        this.buffer = buffer;
+        this.index = index;
+        this.value = value;
+        this.output = output;
+        this.region = region;
+        this.fallback = fallback;
+        this.method = method;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        var buffer = translatedMethod.getStack().buildStackLoad(builder, this.buffer);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, buffer, this.method);
+
+        LLVMValueRef address;
+
+        if (this.region != null) {
+            address = this.region.buildGetAddress(compiler, translatedMethod, buffer, this.write);
+        } else {
+            address = compiler.getDirectBufferCache().buildGetAddress(builder, translatedMethod.getEnvPtr(), buffer, this.write);
+        }
+
+        LLVMUtils.buildIfElse(translatedMethod,
+                LLVM.LLVMBuildIsNull(builder, address, ""),
+                () -> buildFallback(compiler, translatedMethod, block),
+                () -> buildDirectAccess(compiler, translatedMethod, block, buffer, address));
+    }
+
+    private void buildFallback(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        this.fallback.compile(compiler, translatedMethod, block);
+
+        // Calls zero extend their byte and short results, the direct access sign extends them
+        if (!this.write && (this.valueType == JNIType.BYTE || this.valueType == JNIType.SHORT)) {
+            var builder = translatedMethod.getLlvmBuilder();
+            var stack = translatedMethod.getStack();
+
+            var result = stack.buildStackTypeFixedStackLoad(builder, this.output, this.valueType, false);
+
+            stack.buildStackStore(builder, this.output, LLVM.LLVMBuildSExt(builder, result, this.output.getType().getLLVMType(), ""));
+        }
+    }
+
+    private void buildDirectAccess(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef buffer, LLVMValueRef address) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+        var size = getSize(this.valueType);
+        var bitsType = LLVM.LLVMIntType(size * 8);
+
+        var stateCached = this.region != null && this.region.isStateCached();
+
+        var limit = stateCached
+                ? this.region.buildGetLimit(compiler, translatedMethod, block, buffer)
+                : buildGetIntField(compiler, translatedMethod, block, buffer, LIMIT);
+
+        LLVMValueRef offset;
+        LLVMValueRef positionField = null;
+
+        if (this.index != null) {
+            offset = stack.buildStackLoad(builder, this.index);
+
+            // The limit isn't negative, so limit - size can't overflow. The exception has no message, like the one
+            // the interpreted checkIndex throws
+            block.throwIf(compiler,
+                          translatedMethod,
+                          LLVM.LLVMBuildOr(builder,
+                                           LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntSLT, offset, constInt(0), ""),
+                                           LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntSGT, offset, LLVM.LLVMBuildSub(builder, limit, constInt(size), ""), ""),
+                                           ""),
+                          "java/lang/IndexOutOfBoundsException",
+                          null);
+        } else {
+            positionField = buildGetFieldId(compiler, translatedMethod, block, POSITION);
+
+            offset = compiler.getJni().getJniEnv().callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                    JNIEnv.JNIEnvMethod.GetIntField,
+                    buffer,
+                    positionField);
+
+            // The exceptions have no message
+            block.throwIf(compiler,
+                          translatedMethod,
+                          LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntSLT, LLVM.LLVMBuildSub(builder, limit, offset, ""), constInt(size), ""),
+                          this.write ? "java/nio/BufferOverflowException" : "java/nio/BufferUnderflowException",
+                          null);
+        }
+
+        var pointer = LLVM.LLVMBuildInBoundsGEP(builder,
+                address,
+                new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMBuildSExt(builder, offset, LLVM.LLVMInt64Type(), "")}),
+                1,
+                "");
+
+        pointer = LLVM.LLVMBuildBitCast(builder, pointer, LLVM.LLVMPointerType(bitsType, 0), "");
+
+        LLVMValueRef nativeByteOrder = null;
+
+        if (size > 1) {
+            nativeByteOrder = stateCached
+                    ? this.region.buildGetNativeByteOrder(compiler, translatedMethod, block, buffer)
+                    : buildGetNativeByteOrderField(compiler, translatedMethod, block, buffer);
+        }
+
+        if (this.write) {
+            var bits = stack.buildStackTypeFixedStackLoad(builder, this.value, this.valueType, false);
+
+            if (this.valueType.isFloatingPoint())
+                bits = LLVM.LLVMBuildBitCast(builder, bits, bitsType, "");
+
+            var store = LLVM.LLVMBuildStore(builder, buildByteOrderFix(compiler, builder, bits, nativeByteOrder, size), pointer);
+
+            LLVM.LLVMSetAlignment(store, 1);
+        } else {
+            var load = LLVM.LLVMBuildLoad(builder, pointer, "");
+
+            LLVM.LLVMSetAlignment(load, 1);
+
+            var result = buildByteOrderFix(compiler, builder, load, nativeByteOrder, size);
+
+            switch (this.valueType) {
+                case BYTE:
+                case SHORT:
+                    result = LLVM.LLVMBuildSExt(builder, result, this.output.getType().getLLVMType(), "");
+                    break;
+                case CHAR:
+                    result = LLVM.LLVMBuildZExt(builder, result, this.output.getType().getLLVMType(), "");
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    result = LLVM.LLVMBuildBitCast(builder, result, this.valueType.getLLVMType(), "");
+                    break;
+                default:
+                    break;
+            }
+
+            stack.buildStackStore(builder, this.output, result);
+        }
+
+        if (positionField != null) {
+            compiler.getJni().getJniEnv().callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                    JNIEnv.JNIEnvMethod.SetIntField,
+                    buffer,
+                    positionField,
+                    LLVM.LLVMBuildAdd(builder, offset, constInt(size), ""));
+        }
+
+        // put returns the buffer itself
+        if (this.write) {
+            stack.buildStackStore(builder, this.output, buffer);
+        }
+    }
+
+    private static LLVMValueRef buildByteOrderFix(MLVCompiler compiler, LLVMBuilderRef builder, LLVMValueRef bits, LLVMValueRef nativeByteOrder, int size) {
+        if (size == 1)
+            return bits;
+
+        var intrinsic = size == 2 ? LLVMIntrinsic.BSWAP_SHORT : size == 4 ? LLVMIntrinsic.BSWAP_INT : LLVMIntrinsic.BSWAP_LONG;
+
+        return LLVM.LLVMBuildSelect(builder, nativeByteOrder, bits, generateIntrinsicCall(compiler, builder, intrinsic, bits), "");
+    }
+
+    private static LLVMValueRef buildGetFieldId(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, MethodOrFieldIdentifier field) {
+        var fieldId = translatedMethod.buildGetFieldID(compiler, field, false);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, fieldId);
+
+        return fieldId;
+    }
+
+    private static LLVMValueRef buildGetIntField(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef buffer, MethodOrFieldIdentifier field) {
+        return compiler.getJni().getJniEnv().callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetIntField,
+                buffer,
+                buildGetFieldId(compiler, translatedMethod, block, field));
+    }
+
+    private static LLVMValueRef buildGetNativeByteOrderField(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef buffer) {
+        return compiler.getJni().getJniEnv().callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetBooleanField,
+                buffer,
+                buildGetFieldId(compiler, translatedMethod, block, NATIVE_BYTE_ORDER));
+    }
+
+    private static LLVMValueRef constInt(int value) {
+        return LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), value, 1);
+    }
+
+    /**
+     * @return the size of the type in bytes
+     */
+    private static int getSize(JNIType type) {
+        switch (type) {
+            case BYTE:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case LONG:
+            case DOUBLE:
+                return 8;
+            default:
+                throw new IllegalArgumentException("Unexpected value: " + type);
+        }
+    }
+
+    /**
+     * A buffer which is accessed several times in a method, i.e. a parameter which is never reassigned. Its address
+     * is looked up on the first access and then kept for the rest of the invocation. If nothing in the method can
+     * change the buffer's limit and byte order, they are kept as well.
+     */
+    public static class Region {
+        private final boolean stateCached;
+        /**
+         * The address for reads and for writes, they differ for read-only buffers
+         */
+        private final LLVMValueRef[] addressSlots = new LLVMValueRef[2];
+        private LLVMValueRef limitSlot;
+        /**
+         * <code>nativeByteOrder</code> as an int, a jboolean has no spare value which could mark it as unresolved
+         */
+        private LLVMValueRef nativeByteOrderSlot;
+
+        /**
+         * @param stateCached can't the limit and the byte order change during the invocation?
+         */
+        public Region(boolean stateCached) {
+            this.stateCached = stateCached;
+        }
+
+        boolean isStateCached() {
+            return this.stateCached;
+        }
+
+        LLVMValueRef buildGetAddress(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef buffer, boolean write) {
+            var slotIndex = write ? 1 : 0;
+            var unresolved = LLVM.LLVMConstIntToPtr(LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1), JNIType.OBJECT.getLLVMType());
+
+            if (this.addressSlots[slotIndex] == null)
+                this.addressSlots[slotIndex] = buildSlot(translatedMethod, unresolved, "buffer_address");
+
+            return buildCachedLoad(translatedMethod,
+                                   this.addressSlots[slotIndex],
+                                   unresolved,
+                                   () -> compiler.getDirectBufferCache().buildGetAddress(translatedMethod.getLlvmBuilder(), translatedMethod.getEnvPtr(), buffer, write));
+        }
+
+        /**
+         * May only be called if {@link #isStateCached()}
+         */
+        LLVMValueRef buildGetLimit(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef buffer) {
+            // The limit is never negative
+            if (this.limitSlot == null)
+                this.limitSlot = buildSlot(translatedMethod, constInt(-1), "buffer_limit");
+
+            return buildCachedLoad(translatedMethod,
+                                   this.limitSlot,
+                                   constInt(-1),
+                                   () -> buildGetIntField(compiler, translatedMethod, block, buffer, LIMIT));
+        }
+
+        /**
+         * May only be called if {@link #isStateCached()}
+         */
+        LLVMValueRef buildGetNativeByteOrder(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, LLVMValueRef buffer) {
+            var builder = translatedMethod.getLlvmBuilder();
+
+            if (this.nativeByteOrderSlot == null)
+                this.nativeByteOrderSlot = buildSlot(translatedMethod, constInt(-1), "buffer_native_byte_order");
+
+            var nativeByteOrder = buildCachedLoad(translatedMethod,
+                                                  this.nativeByteOrderSlot,
+                                                  constInt(-1),
+                                                  () -> LLVM.LLVMBuildZExt(builder,
+                                                                           buildGetNativeByteOrderField(compiler, translatedMethod, block, buffer),
+                                                                           JNIType.INT.getLLVMType(),
+                                                                           ""));
+
+            return LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, nativeByteOrder, constInt(0), "");
+        }
+
+        /**
+         * Allocates a slot which holds <code>unresolved</code> when the method is entered
+         */
+        private static LLVMValueRef buildSlot(TranslatedMethod translatedMethod, LLVMValueRef unresolved, String name) {
+            var builder = translatedMethod.getLlvmBuilder();
+            var stack = translatedMethod.getStack();
+
+            var slot = stack.buildAllocation(builder, LLVM.LLVMTypeOf(unresolved), name);
+            var currentBlock = LLVM.LLVMGetInsertBlock(builder);
+
+            // The allocations block runs once when the method is entered
+            LLVM.LLVMPositionBuilderAtEnd(builder, stack.getAllocationsBlock());
+            LLVM.LLVMBuildStore(builder, unresolved, slot);
+            LLVM.LLVMPositionBuilderAtEnd(builder, currentBlock);
+
+            return slot;
+        }
+
+        /**
+         * Loads the slot's value, it is resolved first if the slot still holds <code>unresolved</code>
+         */
+        private static LLVMValueRef buildCachedLoad(TranslatedMethod translatedMethod, LLVMValueRef slot, LLVMValueRef unresolved, Supplier<LLVMValueRef> resolver) {
+            var builder = translatedMethod.getLlvmBuilder();
+
+            LLVMUtils.buildIf(translatedMethod,
+                    LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, LLVM.LLVMBuildLoad(builder, slot, ""), unresolved, ""),
+                    () -> LLVM.LLVMBuildStore(builder, resolver.get(), slot));
+
+            return LLVM.LLVMBuildLoad(builder, slot, "");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * The <code>*Exact</code> methods of <code>java.lang.Math</code>. The operation is done with an
+ * <code>llvm.*.with.overflow</code> intrinsic, an ArithmeticException is thrown if it overflows.
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.Intrinsics
+ */
+public class ExactArithmeticInstruction extends Instruction {
+    private final LLVMIntrinsic intrinsic;
+    private final JNIType type;
+    /**
+     * <code>null</code> for <code>negateExact</code>, the operand is 0 then
+     */
+    private final StackSlot lhs;
+    /**
+     * <code>null</code> for <code>incrementExact</code> and <code>decrementExact</code>, the operand is 1 then
+     */
+    private final StackSlot rhs;
+    private final StackSlot output;
+
+    public ExactArithmeticInstruction(LLVMIntrinsic intrinsic, JNIType type, StackSlot lhs, StackSlot rhs, StackSlot output) {
+        this.intrinsic = intrinsic;
+        this.type = type;
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var lhs = this.lhs == null ? LLVM.LLVMConstInt(this.type.getLLVMType(), 0, 0) : stack.buildStackLoad(builder, this.lhs);
+        var rhs = this.rhs == null ? LLVM.LLVMConstInt(this.type.getLLVMType(), 1, 0) : stack.buildStackLoad(builder, this.rhs);
+
+        var result = LLVMUtils.generateIntrinsicCall(compiler, builder, this.intrinsic, lhs, rhs);
+
+        block.throwIf(compiler,
+                      translatedMethod,
+                      LLVM.LLVMBuildExtractValue(builder, result, 1, "overflow"),
+                      "java/lang/ArithmeticException",
+                      this.type == JNIType.INT ? "integer overflow" : "long overflow");
+
+        stack.buildStackStore(builder, this.output, LLVM.LLVMBuildExtractValue(builder, result, 0, ""));
+    }
+}
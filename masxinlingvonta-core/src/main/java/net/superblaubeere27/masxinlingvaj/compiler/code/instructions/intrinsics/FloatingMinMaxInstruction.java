@@ -0,0 +1,73 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * <code>Math.min</code> and <code>Math.max</code> for floats and doubles. NaNs are propagated and -0.0 is smaller
+ * than 0.0. This would be <code>llvm.minimum</code>/<code>llvm.maximum</code>, but LLVM can't select them for x86,
+ * so they are built from compares and selects.
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.Intrinsics
+ */
+public class FloatingMinMaxInstruction extends Instruction {
+    private final boolean max;
+    private final StackSlot lhs;
+    private final StackSlot rhs;
+    private final StackSlot output;
+
+    public FloatingMinMaxInstruction(boolean max, StackSlot lhs, StackSlot rhs, StackSlot output) {
+        this.max = max;
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var lhs = stack.buildStackLoad(builder, this.lhs);
+        var rhs = stack.buildStackLoad(builder, this.rhs);
+
+        var type = LLVM.LLVMTypeOf(lhs);
+        var bitsType = LLVM.LLVMIntType(LLVM.LLVMGetTypeKind(type) == LLVM.LLVMFloatTypeKind ? 32 : 64);
+
+        // Equal values have the same bits, besides 0.0 and -0.0. Or-ing the bits prefers -0.0, and-ing them 0.0
+        var lhsBits = LLVM.LLVMBuildBitCast(builder, lhs, bitsType, "");
+        var rhsBits = LLVM.LLVMBuildBitCast(builder, rhs, bitsType, "");
+        var equalResult = LLVM.LLVMBuildBitCast(builder,
+                                                this.max ? LLVM.LLVMBuildAnd(builder, lhsBits, rhsBits, "") : LLVM.LLVMBuildOr(builder, lhsBits, rhsBits, ""),
+                                                type,
+                                                "");
+
+        var lhsChosen = LLVM.LLVMBuildFCmp(builder, this.max ? LLVM.LLVMRealOGT : LLVM.LLVMRealOLT, lhs, rhs, "");
+
+        var orderedResult = LLVM.LLVMBuildSelect(builder,
+                                                 LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealOEQ, lhs, rhs, ""),
+                                                 equalResult,
+                                                 LLVM.LLVMBuildSelect(builder, lhsChosen, lhs, rhs, ""),
+                                                 "");
+
+        // If lhs is NaN, it is returned, otherwise rhs is the NaN
+        var nanResult = LLVM.LLVMBuildSelect(builder, LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealUNO, lhs, lhs, ""), lhs, rhs, "");
+
+        stack.buildStackStore(builder,
+                              this.output,
+                              LLVM.LLVMBuildSelect(builder,
+                                                   LLVM.LLVMBuildFCmp(builder, LLVM.LLVMRealUNO, lhs, rhs, ""),
+                                                   nanResult,
+                                                   orderedResult,
+                                                   ""));
+    }
+}
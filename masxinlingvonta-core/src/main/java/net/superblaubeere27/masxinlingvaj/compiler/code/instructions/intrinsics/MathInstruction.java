@@ -0,0 +1,52 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * A <code>java.lang.Math</code> method which is implemented by an LLVM intrinsic with exactly the same semantics
+ *
+ * @see net.superblaubeere27.masxinlingvaj.compiler.code.Intrinsics
+ */
+public class MathInstruction extends Instruction {
+    private final LLVMIntrinsic intrinsic;
+    private final StackSlot[] arguments;
+    private final StackSlot output;
+
+    public MathInstruction(LLVMIntrinsic intrinsic, StackSlot[] arguments, StackSlot output) {
+        this.intrinsic = intrinsic;
+        this.arguments = arguments;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var isAbs = this.intrinsic == LLVMIntrinsic.ABS_INT || this.intrinsic == LLVMIntrinsic.ABS_LONG;
+        var values = new LLVMValueRef[this.arguments.length + (isAbs ? 1 : 0)];
+
+        for (int i = 0; i < this.arguments.length; i++) {
+            values[i] = stack.buildStackLoad(builder, this.arguments[i]);
+        }
+
+        // Math.abs(MIN_VALUE) is MIN_VALUE, so it must not be poison
+        if (isAbs)
+            values[this.arguments.length] = LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0);
+
+        stack.buildStackStore(builder, this.output, LLVMUtils.generateIntrinsicCall(compiler, builder, this.intrinsic, values));
+    }
+}
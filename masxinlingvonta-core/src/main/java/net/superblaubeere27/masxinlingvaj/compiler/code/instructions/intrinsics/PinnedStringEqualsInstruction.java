@@ -0,0 +1,64 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import org.bytedeco.llvm.global.LLVM;
+
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.buildIf;
+
+/**
+ * <code>String.equals</code> of two pinned strings, which are equal if they have the same length and chars
+ *
+ * @see PinnedArrays
+ */
+public class PinnedStringEqualsInstruction extends Instruction {
+    private static final MethodOrFieldIdentifier EQUALS = new MethodOrFieldIdentifier("java/lang/String", "equals", "(Ljava/lang/Object;)Z");
+
+    private final PinnedArrays.PinnedArray string;
+    private final PinnedArrays.PinnedArray other;
+    private final StackSlot output;
+
+    public PinnedStringEqualsInstruction(PinnedArrays.PinnedArray string, PinnedArrays.PinnedArray other, StackSlot output) {
+        this.string = string;
+        this.other = other;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var chars = this.string.buildElementsLoad(translatedMethod);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, chars, EQUALS);
+
+        var otherChars = this.other.buildElementsLoad(translatedMethod);
+        var length = this.string.buildLengthLoad(translatedMethod);
+
+        stack.buildStackStore(builder, this.output, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0));
+
+        // A NULL argument isn't pinned, so its length is 0
+        var comparable = LLVM.LLVMBuildAnd(builder,
+                                           LLVM.LLVMBuildIsNotNull(builder, otherChars, ""),
+                                           LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, length, this.other.buildLengthLoad(translatedMethod), ""),
+                                           "");
+
+        buildIf(translatedMethod, comparable, () -> {
+            var equal = StringIntrinsics.buildCharsEqual(compiler, translatedMethod, chars, otherChars, length);
+
+            stack.buildStackStore(builder, this.output, LLVM.LLVMBuildZExt(builder, equal, JNIType.INT.getLLVMType(), ""));
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+
+/**
+ * <code>String.hashCode</code> of a pinned string, computed from its chars. The hash isn't written to the string's
+ * cache, this would need a JNI call.
+ *
+ * @see PinnedArrays
+ */
+public class PinnedStringHashCodeInstruction extends Instruction {
+    private final PinnedArrays.PinnedArray string;
+    private final StackSlot output;
+
+    public PinnedStringHashCodeInstruction(PinnedArrays.PinnedArray string, StackSlot output) {
+        this.string = string;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var chars = this.string.buildElementsLoad(translatedMethod);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, chars, StringHashCodeInstruction.HASH_CODE);
+
+        var hash = StringIntrinsics.buildHashCode(compiler, translatedMethod, chars, this.string.buildLengthLoad(translatedMethod));
+
+        translatedMethod.getStack().buildStackStore(translatedMethod.getLlvmBuilder(), this.output, hash);
+    }
+}
@@ -0,0 +1,85 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * <code>String.charAt</code> with <code>GetStringRegion</code>, which throws a StringIndexOutOfBoundsException for
+ * invalid indices like <code>charAt</code> does. Strings which are accessed in loops are usually pinned instead, see
+ * {@link net.superblaubeere27.masxinlingvaj.compiler.code.PinnedArrays}.
+ */
+public class StringCharAtInstruction extends Instruction {
+    /**
+     * The message of the StringIndexOutOfBoundsException <code>charAt</code> throws. Since JDK 9 strings which need
+     * UTF-16 get <code>"index %d, length %d"</code> instead, but JNI can't tell them apart from Latin-1 strings.
+     */
+    public static final String INDEX_OUT_OF_RANGE_MESSAGE = "String index out of range: %d";
+    public static final MethodOrFieldIdentifier CHAR_AT = new MethodOrFieldIdentifier("java/lang/String", "charAt", "(I)C");
+
+    private final StackSlot string;
+    private final StackSlot index;
+    private final StackSlot output;
+
+    public StringCharAtInstruction(StackSlot string, StackSlot index, StackSlot output) {
+        this.string = string;
+        this.index = index;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var string = stack.buildStackLoad(builder, this.string);
+        var index = stack.buildStackLoad(builder, this.index);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, string, CHAR_AT);
+
+        // jchar outputValue;
+        var outputValue = stack.acquireScratchSlot(compiler, builder, JNIType.CHAR.getLLVMType());
+
+        compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetStringRegion,
+                string,
+                index,
+                LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 1, 0),
+                outputValue
+        );
+
+        var value = LLVM.LLVMBuildLoad(builder, outputValue, "");
+
+        stack.releaseScratchSlot(compiler, builder, outputValue);
+
+        var exceptionThrown = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.ExceptionCheck
+        );
+
+        var outOfBounds = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, exceptionThrown, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(exceptionThrown), 0, 0), "");
+
+        // The exception of GetStringRegion doesn't have a message, so it is replaced by the one charAt would throw
+        LLVMUtils.buildIf(translatedMethod, outOfBounds, () -> compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.ExceptionClear
+        ));
+
+        block.throwIf(compiler, translatedMethod, outOfBounds, "java/lang/StringIndexOutOfBoundsException", INDEX_OUT_OF_RANGE_MESSAGE, index);
+
+        stack.buildStackStore(builder, this.output, LLVM.LLVMBuildZExt(builder, value, JNIType.INT.getLLVMType(), ""));
+    }
+}
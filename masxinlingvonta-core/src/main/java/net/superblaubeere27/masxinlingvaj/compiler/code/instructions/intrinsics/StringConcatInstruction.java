@@ -0,0 +1,317 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+
+/**
+ * String concatenation of a <code>StringConcatFactory</code> call site. Primitives are formatted natively, other
+ * objects are converted with <code>String.valueOf</code>. The chars of all parts are copied into one buffer which is
+ * turned into the result with a single <code>NewString</code> call.
+ */
+public class StringConcatInstruction extends Instruction {
+    /**
+     * Results with up to this many chars are built on the native stack, longer ones in a <code>malloc</code>ed buffer
+     */
+    private static final int STACK_BUFFER_LENGTH = 256;
+
+    /**
+     * <code>constants[i]</code> precedes <code>arguments[i]</code>, the last constant follows the last argument
+     */
+    private final String[] constants;
+    private final Type[] argumentTypes;
+    private final StackSlot[] arguments;
+    private final StackSlot output;
+
+    public StringConcatInstruction(String[] constants, Type[] argumentTypes, StackSlot[] arguments, StackSlot output) {
+        if (constants.length != arguments.length + 1 || argumentTypes.length != arguments.length)
+            throw new IllegalArgumentException("Expected one constant more than arguments");
+
+        this.constants = constants;
+        this.argumentTypes = argumentTypes;
+        this.arguments = arguments;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+        var jniEnv = compiler.getJni().getJniEnv();
+        var intType = JNIType.INT.getLLVMType();
+        var charType = JNIType.CHAR.getLLVMType();
+
+        var parts = new ArrayList<Part>();
+        var temporaryStrings = new ArrayList<LLVMValueRef>();
+        var scratchSlots = new ArrayList<LLVMValueRef>();
+
+        LLVMValueRef nullString = null;
+
+        for (int i = 0; i < this.arguments.length; i++) {
+            addConstant(compiler, parts, this.constants[i]);
+
+            var type = this.argumentTypes[i];
+            var slot = this.arguments[i];
+
+            switch (type.getSort()) {
+                case Type.BOOLEAN: {
+                    var value = stack.buildStackTypeFixedStackLoad(builder, slot, JNIType.BOOLEAN, false);
+
+                    parts.add(Part.ofChars(LLVM.LLVMBuildSelect(builder, value, LLVMUtils.buildUTF16Constant(compiler, "true"), LLVMUtils.buildUTF16Constant(compiler, "false"), ""),
+                                       LLVM.LLVMBuildSelect(builder, value, LLVM.LLVMConstInt(intType, 4, 0), LLVM.LLVMConstInt(intType, 5, 0), "")));
+                    break;
+                }
+                case Type.CHAR: {
+                    var chars = stack.acquireScratchSlot(compiler, builder, charType);
+
+                    scratchSlots.add(chars);
+
+                    LLVM.LLVMBuildStore(builder, stack.buildStackTypeFixedStackLoad(builder, slot, JNIType.CHAR, false), chars);
+
+                    parts.add(Part.ofChars(chars, LLVM.LLVMConstInt(intType, 1, 0)));
+                    break;
+                }
+                case Type.BYTE:
+                case Type.SHORT:
+                case Type.INT:
+                case Type.LONG: {
+                    var jniType = compiler.getJni().toNativeType(type);
+
+                    // Bytes and shorts are sign extended from their actual width, the stack slot might hold them zero extended
+                    var value = LLVM.LLVMBuildSExtOrBitCast(builder, stack.buildStackTypeFixedStackLoad(builder, slot, jniType, false), LLVM.LLVMInt64Type(), "");
+
+                    var digitsSlot = stack.acquireScratchSlot(compiler, builder, LLVM.LLVMArrayType(charType, LLVMUtils.MAX_DECIMAL_LENGTH));
+
+                    scratchSlots.add(digitsSlot);
+
+                    var digits = LLVM.LLVMBuildBitCast(builder, digitsSlot, LLVM.LLVMPointerType(charType, 0), "");
+                    var end = LLVMUtils.buildWriteDecimal(compiler, builder, charType, digits, value);
+
+                    parts.add(Part.ofChars(digits, LLVM.LLVMBuildTrunc(builder, LLVM.LLVMBuildPtrDiff(builder, end, digits, ""), intType, "")));
+                    break;
+                }
+                default: {
+                    LLVMValueRef string;
+
+                    if (type.getSort() == Type.OBJECT && type.getInternalName().equals("java/lang/String")) {
+                        string = stack.buildStackLoad(builder, slot);
+                    } else {
+                        string = buildValueOf(compiler, translatedMethod, block, type, slot);
+
+                        temporaryStrings.add(string);
+                    }
+
+                    // null and toString() results which are null are appended as "null"
+                    if (nullString == null) {
+                        nullString = compiler.getStringPool().buildGetString(builder, translatedMethod.getEnvPtr(), "null");
+
+                        // Did an exception occur?
+                        block.buildNullResultCheck(compiler, translatedMethod, nullString);
+                    }
+
+                    string = LLVM.LLVMBuildSelect(builder, LLVM.LLVMBuildIsNull(builder, string, ""), nullString, string, "");
+
+                    parts.add(Part.ofString(string, jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                                                                            JNIEnv.JNIEnvMethod.GetStringLength,
+                                                                            string)));
+                    break;
+                }
+            }
+        }
+
+        addConstant(compiler, parts, this.constants[this.constants.length - 1]);
+
+        // The lengths are non-negative ints, so their sum can't overflow a long
+        var totalLength = LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), 0, 0);
+
+        for (Part part : parts) {
+            totalLength = LLVM.LLVMBuildNUWAdd(builder, totalLength, LLVM.LLVMBuildZExt(builder, part.length, LLVM.LLVMInt64Type(), ""), "");
+        }
+
+        block.throwIf(compiler,
+                      translatedMethod,
+                      LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntUGT, totalLength, LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), Integer.MAX_VALUE, 0), ""),
+                      "java/lang/OutOfMemoryError",
+                      "Overflow: String length out of range");
+
+        totalLength = LLVM.LLVMBuildTrunc(builder, totalLength, intType, "");
+
+        var onStack = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntULE, totalLength, LLVM.LLVMConstInt(intType, STACK_BUFFER_LENGTH, 0), "");
+
+        // jchar *buffer = length <= STACK_BUFFER_LENGTH ? stackBuffer : malloc(length * sizeof(jchar));
+        var stackBuffer = stack.acquireScratchSlot(compiler, builder, LLVM.LLVMArrayType(charType, STACK_BUFFER_LENGTH));
+        var bufferSlot = stack.acquireScratchSlot(compiler, builder, LLVM.LLVMPointerType(charType, 0));
+
+        var finalLength = totalLength;
+
+        LLVMUtils.buildIfElse(translatedMethod,
+                              onStack,
+                              () -> LLVM.LLVMBuildStore(builder, LLVM.LLVMBuildBitCast(builder, stackBuffer, LLVM.LLVMPointerType(charType, 0), ""), bufferSlot),
+                              () -> LLVM.LLVMBuildStore(builder, LLVM.LLVMBuildArrayMalloc(builder, charType, finalLength, ""), bufferSlot));
+
+        var buffer = LLVM.LLVMBuildLoad(builder, bufferSlot, "");
+
+        stack.releaseScratchSlot(compiler, builder, bufferSlot);
+
+        block.throwIf(compiler,
+                      translatedMethod,
+                      LLVM.LLVMBuildIsNull(builder, buffer, ""),
+                      "java/lang/OutOfMemoryError",
+                      "Failed to allocate the chars of a string");
+
+        var offset = LLVM.LLVMConstInt(intType, 0, 0);
+
+        for (Part part : parts) {
+            var destination = LLVM.LLVMBuildInBoundsGEP(builder, buffer, new PointerPointer<>(new LLVMValueRef[]{offset}), 1, "");
+
+            if (part.string != null) {
+                jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                                             JNIEnv.JNIEnvMethod.GetStringRegion,
+                                             part.string,
+                                             LLVM.LLVMConstInt(intType, 0, 0),
+                                             part.length,
+                                             destination);
+            } else {
+                var bytePointerType = LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0);
+
+                LLVMUtils.generateIntrinsicCall(compiler,
+                                                builder,
+                                                LLVMIntrinsic.MEMCPY,
+                                                LLVM.LLVMBuildBitCast(builder, destination, bytePointerType, ""),
+                                                LLVM.LLVMBuildBitCast(builder, part.chars, bytePointerType, ""),
+                                                LLVM.LLVMBuildNUWMul(builder,
+                                                                     LLVM.LLVMBuildZExt(builder, part.length, LLVM.LLVMInt64Type(), ""),
+                                                                     LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), 2, 0),
+                                                                     ""),
+                                                LLVM.LLVMConstInt(LLVM.LLVMInt1Type(), 0, 0));
+            }
+
+            offset = LLVM.LLVMBuildNSWAdd(builder, offset, part.length, "");
+        }
+
+        var result = jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                                                  JNIEnv.JNIEnvMethod.NewString,
+                                                  buffer,
+                                                  totalLength);
+
+        LLVMUtils.buildIf(translatedMethod, LLVM.LLVMBuildNot(builder, onStack, ""), () -> LLVM.LLVMBuildFree(builder, buffer));
+
+        stack.releaseScratchSlot(compiler, builder, stackBuffer);
+
+        for (LLVMValueRef scratchSlot : scratchSlots) {
+            stack.releaseScratchSlot(compiler, builder, scratchSlot);
+        }
+
+        // The intermediate strings aren't reachable anymore, concatenations in loops shouldn't fill the local frame
+        for (LLVMValueRef temporaryString : temporaryStrings) {
+            jniEnv.callEnvironmentMethod(translatedMethod, translatedMethod.getEnvPtr(),
+                                         JNIEnv.JNIEnvMethod.DeleteLocalRef,
+                                         temporaryString);
+        }
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, result);
+
+        stack.buildStackStore(builder, this.output, result);
+    }
+
+    private static void addConstant(MLVCompiler compiler, ArrayList<Part> parts, String constant) {
+        if (constant.isEmpty())
+            return;
+
+        parts.add(Part.ofChars(LLVMUtils.buildUTF16Constant(compiler, constant), LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), constant.length(), 0)));
+    }
+
+    /**
+     * Calls <code>String.valueOf</code> for floats, doubles and objects. Java's formatting of floating point numbers
+     * (shortest representation which rounds to the same value) is left to the VM.
+     *
+     * @return the string, a local reference
+     */
+    private static LLVMValueRef buildValueOf(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block, Type type, StackSlot slot) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        JNIType jniType;
+        String desc;
+
+        switch (type.getSort()) {
+            case Type.FLOAT:
+                jniType = JNIType.FLOAT;
+                desc = "(F)Ljava/lang/String;";
+                break;
+            case Type.DOUBLE:
+                jniType = JNIType.DOUBLE;
+                desc = "(D)Ljava/lang/String;";
+                break;
+            default:
+                jniType = JNIType.OBJECT;
+                desc = "(Ljava/lang/Object;)Ljava/lang/String;";
+                break;
+        }
+
+        var stringClass = translatedMethod.buildFindClass(compiler, "java/lang/String");
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, stringClass);
+
+        var method = translatedMethod.buildGetMethodID(compiler, new MethodOrFieldIdentifier("java/lang/String", "valueOf", desc), true);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, method);
+
+        var string = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.CallStaticObjectMethodA,
+                stringClass,
+                method,
+                translatedMethod.getStack().buildArgumentArray(builder, new StackSlot[]{slot}, new JNIType[]{jniType}, 0)
+        );
+
+        // Did toString() throw?
+        block.buildExceptionCheck(compiler, translatedMethod);
+
+        return string;
+    }
+
+    /**
+     * A part of the result. Either <code>chars</code> (<code>jchar*</code>) or <code>string</code> (a non-null
+     * <code>jstring</code>) is set.
+     */
+    private static final class Part {
+        private final LLVMValueRef chars;
+        private final LLVMValueRef string;
+        private final LLVMValueRef length;
+
+        private Part(LLVMValueRef chars, LLVMValueRef string, LLVMValueRef length) {
+            this.chars = chars;
+            this.string = string;
+            this.length = length;
+        }
+
+        private static Part ofChars(LLVMValueRef chars, LLVMValueRef length) {
+            return new Part(chars, null, length);
+        }
+
+        private static Part ofString(LLVMValueRef string, LLVMValueRef length) {
+            return new Part(null, string, length);
+        }
+    }
+}
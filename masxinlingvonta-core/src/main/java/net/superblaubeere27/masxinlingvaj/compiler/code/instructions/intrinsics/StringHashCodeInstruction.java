@@ -0,0 +1,67 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * <code>String.hashCode</code>. Strings cache their hash in the private field <code>hash</code>, so it is read with
+ * <code>GetIntField</code>. Only if it is 0 (not computed yet or actually 0) <code>hashCode</code> is called, which
+ * computes and caches it. Pinned strings are hashed from their chars instead, see
+ * {@link PinnedStringHashCodeInstruction}.
+ */
+public class StringHashCodeInstruction extends Instruction {
+    private static final MethodOrFieldIdentifier HASH = new MethodOrFieldIdentifier("java/lang/String", "hash", "I");
+    static final MethodOrFieldIdentifier HASH_CODE = new MethodOrFieldIdentifier("java/lang/String", "hashCode", "()I");
+
+    private final StackSlot string;
+    private final StackSlot output;
+    /**
+     * The call which is used if the hash isn't cached
+     */
+    private final Instruction fallback;
+
+    public StringHashCodeInstruction(StackSlot string, StackSlot output, Instruction fallback) {
+        this.string = string;
+        this.output = output;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+
+        var string = translatedMethod.getStack().buildStackLoad(builder, this.string);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, string, HASH_CODE);
+
+        var hashId = translatedMethod.buildGetFieldID(compiler, HASH, false);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, hashId);
+
+        var hash = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetIntField,
+                string,
+                hashId
+        );
+
+        LLVMUtils.buildIfElse(translatedMethod,
+                LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, hash, LLVM.LLVMConstInt(JNIType.INT.getLLVMType(), 0, 0), ""),
+                () -> this.fallback.compile(compiler, translatedMethod, block),
+                () -> translatedMethod.getStack().buildStackStore(builder, this.output, hash));
+    }
+}
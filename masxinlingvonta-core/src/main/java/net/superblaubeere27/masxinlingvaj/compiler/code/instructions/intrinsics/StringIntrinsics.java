@@ -0,0 +1,179 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIEnv;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import static net.superblaubeere27.masxinlingvaj.utils.LLVMUtils.addIncoming;
+
+/**
+ * Code shared by the intrinsics of <code>java.lang.String</code>
+ */
+final class StringIntrinsics {
+    private StringIntrinsics() {
+    }
+
+    static LLVMValueRef buildLength(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef string) {
+        return compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                JNIEnv.JNIEnvMethod.GetStringLength,
+                string
+        );
+    }
+
+    /**
+     * Computes the hash of the chars like <code>String.hashCode</code> does: <code>s[0]*31^(n-1) + ... + s[n-1]</code>
+     */
+    static LLVMValueRef buildHashCode(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef chars, LLVMValueRef length) {
+        var function = LLVM.LLVMGetNamedFunction(compiler.getModule(), "string_hash");
+
+        if (function == null)
+            function = createHashCodeFunction(compiler);
+
+        var arguments = new LLVMValueRef[]{chars, length};
+
+        return LLVM.LLVMBuildCall(translatedMethod.getLlvmBuilder(), function, new PointerPointer<>(arguments), arguments.length, "hash");
+    }
+
+    /**
+     * Compares <code>length</code> chars of two strings
+     *
+     * @return an i1 which is true if all chars are equal
+     */
+    static LLVMValueRef buildCharsEqual(MLVCompiler compiler, TranslatedMethod translatedMethod, LLVMValueRef chars, LLVMValueRef otherChars, LLVMValueRef length) {
+        var function = LLVM.LLVMGetNamedFunction(compiler.getModule(), "chars_equal");
+
+        if (function == null)
+            function = createCharsEqualFunction(compiler);
+
+        var arguments = new LLVMValueRef[]{chars, otherChars, length};
+
+        return LLVM.LLVMBuildCall(translatedMethod.getLlvmBuilder(), function, new PointerPointer<>(arguments), arguments.length, "equal");
+    }
+
+    /**
+     * <code>i32 string_hash(i16* chars, i32 length)</code>
+     */
+    private static LLVMValueRef createHashCodeFunction(MLVCompiler compiler) {
+        var i32 = JNIType.INT.getLLVMType();
+        var charPointerType = LLVM.LLVMPointerType(JNIType.CHAR.getLLVMType(), 0);
+
+        var function = LLVM.LLVMAddFunction(compiler.getModule(), "string_hash", LLVM.LLVMFunctionType(i32,
+                new PointerPointer<>(new LLVMTypeRef[]{charPointerType, i32}),
+                2,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        var entryBlock = LLVM.LLVMAppendBasicBlock(function, "entry");
+        var loopBlock = LLVM.LLVMAppendBasicBlock(function, "loop");
+        var endBlock = LLVM.LLVMAppendBasicBlock(function, "end");
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, entryBlock);
+
+        var chars = LLVM.LLVMGetParam(function, 0);
+        var length = LLVM.LLVMGetParam(function, 1);
+        var zero = LLVM.LLVMConstInt(i32, 0, 0);
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, length, zero, ""), endBlock, loopBlock);
+
+        // do { hash = 31 * hash + chars[i]; } while (++i < length);
+        LLVM.LLVMPositionBuilderAtEnd(builder, loopBlock);
+
+        var index = LLVM.LLVMBuildPhi(builder, i32, "index");
+        var hash = LLVM.LLVMBuildPhi(builder, i32, "hash");
+
+        var element = LLVM.LLVMBuildInBoundsGEP(builder, chars, new PointerPointer<>(new LLVMValueRef[]{index}), 1, "");
+        var value = LLVM.LLVMBuildZExt(builder, LLVM.LLVMBuildLoad(builder, element, ""), i32, "");
+
+        // The hash overflows like Java's int arithmetics, so there are no nsw/nuw flags
+        var nextHash = LLVM.LLVMBuildAdd(builder, LLVM.LLVMBuildMul(builder, hash, LLVM.LLVMConstInt(i32, 31, 0), ""), value, "");
+        var nextIndex = LLVM.LLVMBuildNUWAdd(builder, index, LLVM.LLVMConstInt(i32, 1, 0), "");
+
+        addIncoming(index, new LLVMValueRef[]{zero, nextIndex}, new LLVMBasicBlockRef[]{entryBlock, loopBlock});
+        addIncoming(hash, new LLVMValueRef[]{zero, nextHash}, new LLVMBasicBlockRef[]{entryBlock, loopBlock});
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntULT, nextIndex, length, ""), loopBlock, endBlock);
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, endBlock);
+
+        var result = LLVM.LLVMBuildPhi(builder, i32, "result");
+
+        addIncoming(result, new LLVMValueRef[]{zero, nextHash}, new LLVMBasicBlockRef[]{entryBlock, loopBlock});
+
+        LLVM.LLVMBuildRet(builder, result);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    /**
+     * <code>i1 chars_equal(i16* chars, i16* otherChars, i32 length)</code>
+     */
+    private static LLVMValueRef createCharsEqualFunction(MLVCompiler compiler) {
+        var i1 = LLVM.LLVMInt1Type();
+        var i32 = JNIType.INT.getLLVMType();
+        var charPointerType = LLVM.LLVMPointerType(JNIType.CHAR.getLLVMType(), 0);
+
+        var function = LLVM.LLVMAddFunction(compiler.getModule(), "chars_equal", LLVM.LLVMFunctionType(i1,
+                new PointerPointer<>(new LLVMTypeRef[]{charPointerType, charPointerType, i32}),
+                3,
+                0));
+
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        var entryBlock = LLVM.LLVMAppendBasicBlock(function, "entry");
+        var loopBlock = LLVM.LLVMAppendBasicBlock(function, "loop");
+        var nextBlock = LLVM.LLVMAppendBasicBlock(function, "next");
+        var equalBlock = LLVM.LLVMAppendBasicBlock(function, "equal");
+        var differentBlock = LLVM.LLVMAppendBasicBlock(function, "different");
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, entryBlock);
+
+        var chars = LLVM.LLVMGetParam(function, 0);
+        var otherChars = LLVM.LLVMGetParam(function, 1);
+        var length = LLVM.LLVMGetParam(function, 2);
+        var zero = LLVM.LLVMConstInt(i32, 0, 0);
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, length, zero, ""), equalBlock, loopBlock);
+
+        // do { if (chars[i] != otherChars[i]) return false; } while (++i < length);
+        LLVM.LLVMPositionBuilderAtEnd(builder, loopBlock);
+
+        var index = LLVM.LLVMBuildPhi(builder, i32, "index");
+
+        var value = LLVM.LLVMBuildLoad(builder, LLVM.LLVMBuildInBoundsGEP(builder, chars, new PointerPointer<>(new LLVMValueRef[]{index}), 1, ""), "");
+        var otherValue = LLVM.LLVMBuildLoad(builder, LLVM.LLVMBuildInBoundsGEP(builder, otherChars, new PointerPointer<>(new LLVMValueRef[]{index}), 1, ""), "");
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, value, otherValue, ""), nextBlock, differentBlock);
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, nextBlock);
+
+        var nextIndex = LLVM.LLVMBuildNUWAdd(builder, index, LLVM.LLVMConstInt(i32, 1, 0), "");
+
+        addIncoming(index, new LLVMValueRef[]{zero, nextIndex}, new LLVMBasicBlockRef[]{entryBlock, nextBlock});
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntULT, nextIndex, length, ""), loopBlock, equalBlock);
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, equalBlock);
+        LLVM.LLVMBuildRet(builder, LLVM.LLVMConstInt(i1, 1, 0));
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, differentBlock);
+        LLVM.LLVMBuildRet(builder, LLVM.LLVMConstInt(i1, 0, 0));
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+}
@@ -0,0 +1,57 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.MethodOrFieldIdentifier;
+import org.bytedeco.llvm.global.LLVM;
+
+import static net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics.StringIntrinsics.buildLength;
+/**
+ * <code>String.length</code> and <code>String.isEmpty</code> with <code>GetStringLength</code>
+ */
+public class StringLengthInstruction extends Instruction {
+    public static final MethodOrFieldIdentifier LENGTH = new MethodOrFieldIdentifier("java/lang/String", "length", "()I");
+    private static final MethodOrFieldIdentifier IS_EMPTY = new MethodOrFieldIdentifier("java/lang/String", "isEmpty", "()Z");
+
+    private final StackSlot string;
+    private final StackSlot output;
+    /**
+     * Is this <code>isEmpty</code>?
+     */
+    private final boolean isEmpty;
+
+    public StringLengthInstruction(StackSlot string, StackSlot output, boolean isEmpty) {
+        this.string = string;
+        this.output = output;
+        this.isEmpty = isEmpty;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var string = stack.buildStackLoad(builder, this.string);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, string, this.isEmpty ? IS_EMPTY : LENGTH);
+
+        var length = buildLength(compiler, translatedMethod, string);
+
+        if (this.isEmpty) {
+            stack.buildStackStore(builder,
+                                  this.output,
+                                  LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntEQ, length, LLVM.LLVMConstInt(LLVM.LLVMTypeOf(length), 0, 0), ""),
+                                  true);
+        } else {
+            stack.buildStackStore(builder, this.output, length);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package net.superblaubeere27.masxinlingvaj.compiler.code.instructions.intrinsics;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Block;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Instruction;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
+import net.superblaubeere27.masxinlingvaj.compiler.stack.StackSlot;
+import org.bytedeco.llvm.global.LLVM;
+
+/**
+ * The <code>xValue()</code> methods of the wrapper classes, which just read the <code>value</code> field
+ */
+public class UnboxInstruction extends Instruction {
+    private final BoxType type;
+    private final StackSlot object;
+    private final StackSlot output;
+
+    public UnboxInstruction(BoxType type, StackSlot object, StackSlot output) {
+        this.type = type;
+        this.object = object;
+        this.output = output;
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return false;
+    }
+
+    @Override
+    public void compile(MLVCompiler compiler, TranslatedMethod translatedMethod, Block block) {
+        var builder = translatedMethod.getLlvmBuilder();
+        var stack = translatedMethod.getStack();
+
+        var object = stack.buildStackLoad(builder, this.object);
+
+        block.buildReceiverNullCheck(compiler, translatedMethod, object, this.type.getUnbox());
+
+        var field = translatedMethod.buildGetFieldID(compiler, this.type.getValueField(), false);
+
+        // Did an exception occur?
+        block.buildNullResultCheck(compiler, translatedMethod, field);
+
+        var value = compiler.getJni().getJniEnv().callEnvironmentMethod(
+                translatedMethod, translatedMethod.getEnvPtr(),
+                this.type.getGetter(),
+                object,
+                field
+        );
+
+        var primitiveType = this.type.getPrimitiveType();
+
+        // Bytes and shorts are signed, the store would zero extend them
+        if (primitiveType == JNIType.BYTE || primitiveType == JNIType.SHORT)
+            value = LLVM.LLVMBuildSExt(builder, value, this.output.getType().getLLVMType(), "");
+
+        stack.buildStackStore(builder, this.output, value, true);
+    }
+}
@@ -8,16 +8,22 @@ import static org.bytedeco.llvm.global.LLVM.LLVMGetModuleContext;
 public class JNI {
     private final LLVMModuleRef module;
     private final JNIEnv jniEnv;
+    private final JavaVM javaVM;
 
     public JNI(LLVMModuleRef module) {
         this.module = module;
         this.jniEnv = new JNIEnv(LLVMGetModuleContext(module));
+        this.javaVM = new JavaVM(LLVMGetModuleContext(module));
     }
 
     public JNIEnv getJniEnv() {
         return jniEnv;
     }
 
+    public JavaVM getJavaVM() {
+        return javaVM;
+    }
+
     public LLVMModuleRef getModule() {
         return module;
     }
@@ -3,6 +3,7 @@ package net.superblaubeere27.masxinlingvaj.compiler.jni;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMAttributeRef;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
 import org.bytedeco.llvm.LLVM.LLVMContextRef;
 import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
@@ -44,12 +45,26 @@ public class JNIEnv {
         return type;
     }
 
+    /**
+     * Loads the function table of the given JNIEnv*
+     */
+    public LLVMValueRef buildFunctionTableLoad(LLVMBuilderRef builder, LLVMValueRef envPtr) {
+        return LLVMBuildLoad(builder, LLVMBuildStructGEP(builder, envPtr, 0, ""), "function_table");
+    }
+
     public LLVMValueRef callEnvironmentMethod(TranslatedMethod translatedMethod, LLVMValueRef envPtr, JNIEnvMethod method, LLVMValueRef... params) {
-        var builder = translatedMethod.getLlvmBuilder();
+        return callEnvironmentMethod(translatedMethod.getLlvmBuilder(), translatedMethod.getJniFunctionTable(), envPtr, method, params);
+    }
 
+    /**
+     * Calls a JNI function outside of a translated method, e.g. in JNI_OnLoad
+     *
+     * @param functionTable the function table of envPtr, see {@link #buildFunctionTableLoad(LLVMBuilderRef, LLVMValueRef)}
+     */
+    public LLVMValueRef callEnvironmentMethod(LLVMBuilderRef builder, LLVMValueRef functionTable, LLVMValueRef envPtr, JNIEnvMethod method, LLVMValueRef... params) {
         var methodName = method.toString().toLowerCase(Locale.ROOT);
         var function_ptr = LLVMBuildLoad(builder,
-                LLVMBuildStructGEP(builder, translatedMethod.getJniFunctionTable(), method.ordinal(), ""),
+                LLVMBuildStructGEP(builder, functionTable, method.ordinal(), ""),
                 methodName + "*");
 
         var param_array = new LLVMValueRef[params.length + 1];
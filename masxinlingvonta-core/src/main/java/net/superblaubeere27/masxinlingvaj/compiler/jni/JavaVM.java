@@ -0,0 +1,92 @@
+package net.superblaubeere27.masxinlingvaj.compiler.jni;
+
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMContextRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
+import org.bytedeco.llvm.LLVM.LLVMValueRef;
+import org.bytedeco.llvm.global.LLVM;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * The invocation interface (JavaVM*) which is passed to JNI_OnLoad and JNI_OnUnload
+ */
+public class JavaVM {
+    /**
+     * The JNI version the generated code requests from the VM
+     */
+    public static final int JNI_VERSION_1_6 = 0x00010006;
+
+    private final LLVMTypeRef type;
+
+    JavaVM(LLVMContextRef context) {
+        var invokeInterfaceStruct = LLVMStructCreateNamed(context, "struct.JNIInvokeInterface");
+
+        LLVMTypeRef[] array = Arrays.stream(JavaVMMethod.values()).map(x -> x.llvmType).toArray(LLVMTypeRef[]::new);
+
+        LLVMStructSetBody(invokeInterfaceStruct, new PointerPointer<>(array), array.length, 0);
+
+        var vmType = LLVMStructCreateNamed(context, "struct.JavaVM");
+
+        LLVMStructSetBody(vmType,
+                new PointerPointer<>(new LLVMTypeRef[]{LLVMPointerType(invokeInterfaceStruct, 0)}),
+                1,
+                0);
+
+        this.type = vmType;
+    }
+
+    private static LLVMTypeRef functionType(LLVMTypeRef returnType, LLVMTypeRef[] paramTypes) {
+        return LLVMPointerType(LLVM.LLVMFunctionType(returnType,
+                new PointerPointer<>(paramTypes),
+                paramTypes.length,
+                0), 0);
+    }
+
+    public LLVMTypeRef getType() {
+        return type;
+    }
+
+    public LLVMValueRef callVMMethod(LLVMBuilderRef builder, LLVMValueRef vmPtr, JavaVMMethod method, LLVMValueRef... params) {
+        var methodName = method.toString().toLowerCase(Locale.ROOT);
+
+        var functionTable = LLVMBuildLoad(builder, LLVMBuildStructGEP(builder, vmPtr, 0, ""), "invoke_table");
+        var function_ptr = LLVMBuildLoad(builder,
+                LLVMBuildStructGEP(builder, functionTable, method.ordinal(), ""),
+                methodName + "*");
+
+        var param_array = new LLVMValueRef[params.length + 1];
+
+        param_array[0] = LLVMBuildBitCast(builder, vmPtr, JNIType.OBJECT.getLLVMType(), "");
+
+        System.arraycopy(params, 0, param_array, 1, params.length);
+
+        return LLVMBuildCall(builder, function_ptr, new PointerPointer<>(param_array), param_array.length, "call_" + methodName);
+    }
+
+    public enum JavaVMMethod {
+        UNNAMED0(LLVMPointerType(LLVMInt8Type(), 0)),
+        UNNAMED1(LLVMPointerType(LLVMInt8Type(), 0)),
+        UNNAMED2(LLVMPointerType(LLVMInt8Type(), 0)),
+        DestroyJavaVM(functionType(LLVMInt32Type(),
+                new LLVMTypeRef[]{JNIType.OBJECT.getLLVMType()})),
+        AttachCurrentThread(functionType(LLVMInt32Type(),
+                new LLVMTypeRef[]{JNIType.OBJECT.getLLVMType(), LLVMPointerType(JNIType.OBJECT.getLLVMType(), 0), JNIType.OBJECT.getLLVMType()})),
+        DetachCurrentThread(functionType(LLVMInt32Type(),
+                new LLVMTypeRef[]{JNIType.OBJECT.getLLVMType()})),
+        GetEnv(functionType(LLVMInt32Type(),
+                new LLVMTypeRef[]{JNIType.OBJECT.getLLVMType(), LLVMPointerType(JNIType.OBJECT.getLLVMType(), 0), LLVMInt32Type()})),
+        AttachCurrentThreadAsDaemon(functionType(LLVMInt32Type(),
+                new LLVMTypeRef[]{JNIType.OBJECT.getLLVMType(), LLVMPointerType(JNIType.OBJECT.getLLVMType(), 0), JNIType.OBJECT.getLLVMType()}));
+
+        private final LLVMTypeRef llvmType;
+
+        JavaVMMethod(LLVMTypeRef llvmType) {
+            this.llvmType = llvmType;
+        }
+    }
+}
@@ -3,15 +3,20 @@ package net.superblaubeere27.masxinlingvaj.compiler.stack;
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMIntrinsic;
+import net.superblaubeere27.masxinlingvaj.utils.LLVMUtils;
 import net.superblaubeere27.masxinlingvaj.utils.OpcodeUtils;
+import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
 import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
 
 public class MethodStack {
@@ -20,6 +25,19 @@ public class MethodStack {
     private final HashMap<StackSlot, StackEntry> locals = new HashMap<>();
     private final HashMap<StackSlot, StackEntry> stack = new HashMap<>();
 
+    /**
+     * <code>jvalue[]</code> for the arguments of <code>Call&lt;Type&gt;MethodA</code> calls, see
+     * {@link #buildArgumentArray(LLVMBuilderRef, StackSlot[], JNIType[], int)}
+     */
+    private LLVMValueRef argumentArray;
+    private int argumentArraySize;
+
+    /**
+     * Scratch slots which aren't in use at the moment, by type. See
+     * {@link #acquireScratchSlot(MLVCompiler, LLVMBuilderRef, LLVMTypeRef)}
+     */
+    private final HashMap<LLVMTypeRef, ArrayDeque<LLVMValueRef>> freeScratchSlots = new HashMap<>();
+
     public MethodStack(CompilerMethod method, LLVMBasicBlockRef allocationsBlock) {
         this.method = method;
         this.allocationsBlock = allocationsBlock;
@@ -114,6 +132,108 @@ public class MethodStack {
         return value;
     }
 
+    /**
+     * Allocates a variable in the allocations block
+     */
+    public LLVMValueRef buildAllocation(LLVMBuilderRef builder, LLVMTypeRef type, String name) {
+        var currentBB = LLVM.LLVMGetInsertBlock(builder);
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, this.allocationsBlock);
+
+        var allocation = LLVM.LLVMBuildAlloca(builder, type, name);
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, currentBB);
+
+        return allocation;
+    }
+
+    /**
+     * Returns a variable for a temporary value, e.g. the out-parameter of a JNI call. The variable is allocated in the
+     * allocations block, so temporaries in loops don't grow the native stack. Slots are reused by type once they were
+     * released with {@link #releaseScratchSlot(MLVCompiler, LLVMBuilderRef, LLVMValueRef)}.
+     * <p>
+     * The lifetime of the slot starts at the current position of the builder.
+     */
+    public LLVMValueRef acquireScratchSlot(MLVCompiler compiler, LLVMBuilderRef builder, LLVMTypeRef type) {
+        var slot = this.freeScratchSlots.computeIfAbsent(type, t -> new ArrayDeque<>()).poll();
+
+        if (slot == null)
+            slot = buildAllocation(builder, type, "scratch");
+
+        LLVMUtils.generateIntrinsicCall(compiler,
+                                        builder,
+                                        LLVMIntrinsic.LIFETIME_START,
+                                        LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1),
+                                        LLVM.LLVMBuildBitCast(builder, slot, LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), ""));
+
+        return slot;
+    }
+
+    /**
+     * Ends the lifetime of a slot acquired with {@link #acquireScratchSlot(MLVCompiler, LLVMBuilderRef, LLVMTypeRef)}
+     * at the current position of the builder. The slot may be returned by the next call.
+     */
+    public void releaseScratchSlot(MLVCompiler compiler, LLVMBuilderRef builder, LLVMValueRef slot) {
+        LLVMUtils.generateIntrinsicCall(compiler,
+                                        builder,
+                                        LLVMIntrinsic.LIFETIME_END,
+                                        LLVM.LLVMConstInt(LLVM.LLVMInt64Type(), -1, 1),
+                                        LLVM.LLVMBuildBitCast(builder, slot, LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), ""));
+
+        this.freeScratchSlots.get(LLVM.LLVMGetElementType(LLVM.LLVMTypeOf(slot))).add(slot);
+    }
+
+    /**
+     * Copies the values of the given stack slots (starting at <code>offset</code>) into a <code>jvalue</code> array.
+     * All calls of the method share the same array which is allocated once in the allocations block, so it is only
+     * valid until the next call of this method.
+     *
+     * @return a pointer to the array, casted to <code>i8*</code>
+     */
+    public LLVMValueRef buildArgumentArray(LLVMBuilderRef builder, StackSlot[] stackSlots, JNIType[] types, int offset) {
+        var count = Math.max(stackSlots.length - offset, 1);
+
+        if (this.argumentArray == null) {
+            var currentBB = LLVM.LLVMGetInsertBlock(builder);
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, this.allocationsBlock);
+
+            // jvalue is a union of 8 bytes
+            this.argumentArray = LLVM.LLVMBuildArrayAlloca(builder,
+                    LLVM.LLVMInt64Type(),
+                    LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), count, 0),
+                    "jvalues");
+            this.argumentArraySize = count;
+
+            LLVM.LLVMPositionBuilderAtEnd(builder, currentBB);
+        } else if (count > this.argumentArraySize) {
+            // The array is only used by calls, so it can just be grown
+            LLVM.LLVMSetOperand(this.argumentArray, 0, LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), count, 0));
+
+            this.argumentArraySize = count;
+        }
+
+        for (int i = offset; i < stackSlots.length; i++) {
+            var element = LLVM.LLVMBuildInBoundsGEP(builder,
+                    this.argumentArray,
+                    new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMConstInt(LLVM.LLVMInt32Type(), i - offset, 0)}),
+                    1,
+                    "");
+
+            var value = buildStackTypeFixedStackLoad(builder, stackSlots[i], types[i], false);
+
+            // jboolean is an unsigned char
+            if (types[i] == JNIType.BOOLEAN)
+                value = LLVM.LLVMBuildZExt(builder, value, LLVM.LLVMInt8Type(), "");
+
+            LLVM.LLVMBuildStore(builder,
+                    value,
+                    LLVM.LLVMBuildBitCast(builder, element, LLVM.LLVMPointerType(LLVM.LLVMTypeOf(value), 0), ""));
+        }
+
+        return LLVM.LLVMBuildBitCast(builder, this.argumentArray, JNIType.OBJECT.getLLVMType(), "");
+    }
+
     public void buildLocalStore(LLVMBuilderRef builder, StackSlot stackSlot, LLVMValueRef value, boolean fixTypes) {
         if (fixTypes)
             value = fixType(builder, stackSlot, value);
@@ -0,0 +1,338 @@
+package net.superblaubeere27.masxinlingvaj.compiler.tree;
+
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The class hierarchy of the indexed classes, built from {@link org.objectweb.asm.tree.ClassNode#superName} and
+ * {@link org.objectweb.asm.tree.ClassNode#interfaces}.
+ * <p>
+ * Every class is linked to its direct supertypes when it is added, so the hierarchy is built in linear time, independent
+ * of the order the classes are added in. Supertypes which aren't part of the input get a node without a class.
+ * <p>
+ * All answers only consider the input. Classes which are loaded at runtime (e.g. from other jars) might add subtypes
+ * the index doesn't know about, so code generated from these answers has to be guarded.
+ */
+public class ClassHierarchy {
+    private final CompilerIndex index;
+    private final HashMap<String, Node> nodes = new HashMap<>();
+
+    /**
+     * Transitive subtypes which were computed since the last change
+     */
+    private final HashMap<String, Set<String>> subtypeCache = new HashMap<>();
+
+    ClassHierarchy(CompilerIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Adds a class or updates its supertypes if it was already added
+     */
+    void addClass(CompilerClass compilerClass) {
+        var node = getOrCreateNode(compilerClass.getName());
+        var classNode = compilerClass.getClassNode();
+
+        var supertypes = new ArrayList<String>();
+
+        if (classNode.superName != null)
+            supertypes.add(classNode.superName);
+
+        supertypes.addAll(classNode.interfaces);
+
+        if (node.compilerClass != null && node.supertypes.equals(supertypes)) {
+            node.compilerClass = compilerClass;
+
+            return;
+        }
+
+        for (String supertype : node.supertypes) {
+            this.nodes.get(supertype).subtypes.remove(node);
+        }
+
+        node.compilerClass = compilerClass;
+        node.supertypes = supertypes;
+
+        for (String supertype : supertypes) {
+            getOrCreateNode(supertype).subtypes.add(node);
+        }
+
+        this.subtypeCache.clear();
+    }
+
+    private Node getOrCreateNode(String name) {
+        return this.nodes.computeIfAbsent(name, Node::new);
+    }
+
+    /**
+     * @return all classes and interfaces which extend or implement the given type (directly or indirectly), not
+     * including the type itself
+     */
+    public Set<String> getSubtypes(String name) {
+        var cached = this.subtypeCache.get(name);
+
+        if (cached != null)
+            return cached;
+
+        var node = this.nodes.get(name);
+
+        if (node == null)
+            return Collections.emptySet();
+
+        var subtypes = new LinkedHashSet<String>();
+        var queue = new ArrayDeque<>(node.subtypes);
+
+        while (!queue.isEmpty()) {
+            var subtype = queue.poll();
+
+            // Interfaces can be reached on multiple paths
+            if (subtypes.add(subtype.name)) {
+                queue.addAll(subtype.subtypes);
+            }
+        }
+
+        var result = Collections.unmodifiableSet(subtypes);
+
+        this.subtypeCache.put(name, result);
+
+        return result;
+    }
+
+    /**
+     * Checks if <code>subtype</code> is <code>type</code> or one of its subtypes
+     */
+    public boolean isSubtypeOf(String subtype, String type) {
+        return subtype.equals(type) || getSubtypes(type).contains(subtype);
+    }
+
+    /**
+     * A class is effectively final if it is final or if the input contains no subclasses of it. Interfaces and classes
+     * which aren't part of the input are never effectively final.
+     */
+    public boolean isEffectivelyFinal(String name) {
+        var node = this.nodes.get(name);
+
+        if (node == null || node.compilerClass == null)
+            return false;
+
+        var access = node.compilerClass.getClassNode().access;
+
+        if ((access & Opcodes.ACC_INTERFACE) != 0)
+            return false;
+
+        return (access & Opcodes.ACC_FINAL) != 0 || node.subtypes.isEmpty();
+    }
+
+    /**
+     * Checks if initializing the class has no side effects, i.e. neither the class nor its superclasses have a static
+     * initializer. Superclasses which aren't part of the input (besides Object) are assumed to have one.
+     * <p>
+     * Initializing a class also initializes its superinterfaces which declare non-abstract, non-static methods (JVMS
+     * 5.5), so these must not have a static initializer either. Interfaces which aren't part of the input are assumed to
+     * be initialized with side effects.
+     */
+    public boolean hasTrivialInitialization(String name) {
+        var current = this.nodes.get(name);
+        var visitedInterfaces = new HashSet<String>();
+
+        while (current != null && current.compilerClass != null) {
+            if (hasStaticInitializer(current))
+                return false;
+
+            var classNode = current.compilerClass.getClassNode();
+
+            // Initializing an interface doesn't initialize its superinterfaces
+            if ((classNode.access & Opcodes.ACC_INTERFACE) != 0)
+                return true;
+
+            for (String superinterface : classNode.interfaces) {
+                if (!hasTrivialInterfaceInitialization(superinterface, visitedInterfaces))
+                    return false;
+            }
+
+            var superName = classNode.superName;
+
+            if (superName == null || superName.equals("java/lang/Object"))
+                return true;
+
+            current = this.nodes.get(superName);
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if initializing a class doesn't run static initializers of the interface or its superinterfaces
+     */
+    private boolean hasTrivialInterfaceInitialization(String name, Set<String> visited) {
+        // Interfaces can be reached on multiple paths
+        if (!visited.add(name))
+            return true;
+
+        var node = this.nodes.get(name);
+
+        if (node == null || node.compilerClass == null)
+            return false;
+
+        var classNode = node.compilerClass.getClassNode();
+
+        if (hasStaticInitializer(node) && classNode.methods.stream().anyMatch(method -> (method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_STATIC)) == 0))
+            return false;
+
+        for (String superinterface : classNode.interfaces) {
+            if (!hasTrivialInterfaceInitialization(superinterface, visited))
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean hasStaticInitializer(Node node) {
+        return this.index.getMethod(node.name, "<clinit>", "()V") != null;
+    }
+
+    /**
+     * Resolves a method like the VM does for invokevirtual: The method is searched in the class and its superclasses.
+     * Methods declared by interfaces are not considered.
+     *
+     * @return the method or <code>null</code> if it couldn't be found or the search reached a class which isn't part of
+     * the input
+     */
+    public CompilerMethod resolveMethod(String owner, String name, String desc) {
+        var current = this.nodes.get(owner);
+
+        while (current != null && current.compilerClass != null) {
+            var method = this.index.getMethod(current.name, name, desc);
+
+            if (method != null)
+                return method;
+
+            var superName = current.compilerClass.getClassNode().superName;
+
+            current = superName == null ? null : this.nodes.get(superName);
+        }
+
+        return null;
+    }
+
+    /**
+     * Selects the method a virtual call of <code>method</code> ends up in for every concrete class of the input which
+     * can be the receiver of the call.
+     *
+     * @return receiver class name -&gt; selected method or <code>null</code> if the selection can't be determined
+     * since the hierarchy contains classes which aren't part of the input or default methods
+     */
+    public Map<String, CompilerMethod> getSelectedMethods(CompilerMethod method) {
+        var owner = method.getParent().getName();
+        var selectedMethods = new LinkedHashMap<String, CompilerMethod>();
+
+        var candidates = new ArrayList<String>();
+
+        candidates.add(owner);
+        candidates.addAll(getSubtypes(owner));
+
+        for (String candidate : candidates) {
+            var node = this.nodes.get(candidate);
+
+            if (node.compilerClass == null)
+                return null;
+
+            var access = node.compilerClass.getClassNode().access;
+
+            // Only concrete classes can be receivers
+            if ((access & (Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT)) != 0)
+                continue;
+
+            var selected = selectMethod(node, method);
+
+            if (selected == null)
+                return null;
+
+            selectedMethods.put(candidate, selected);
+        }
+
+        return selectedMethods;
+    }
+
+    /**
+     * Selects the method a virtual call of <code>method</code> ends up in if the receiver is an instance of
+     * <code>receiver</code>
+     *
+     * @return the method or <code>null</code> if it can't be determined
+     */
+    private CompilerMethod selectMethod(Node receiver, CompilerMethod method) {
+        var current = receiver;
+        var identifier = method.getIdentifier();
+
+        while (current != null) {
+            if (current.compilerClass == null)
+                return null;
+
+            var declared = this.index.getMethod(current.name, identifier.getName(), identifier.getDesc());
+
+            if (declared == method)
+                return method;
+
+            if (declared != null && overrides(declared, method))
+                return declared;
+
+            var superName = current.compilerClass.getClassNode().superName;
+
+            current = superName == null ? null : this.nodes.get(superName);
+        }
+
+        // Not implemented by a class, a default method would be selected
+        return null;
+    }
+
+    /**
+     * Checks if <code>method</code> overrides <code>overridden</code>, assuming it is declared in a subclass
+     */
+    private static boolean overrides(CompilerMethod method, CompilerMethod overridden) {
+        if ((method.getNode().access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE)) != 0)
+            return false;
+
+        var access = overridden.getNode().access;
+
+        if ((access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE)) != 0)
+            return false;
+
+        // Interface methods are public and might be implemented by any class
+        if ((access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) != 0 || (overridden.getParent().getClassNode().access & Opcodes.ACC_INTERFACE) != 0)
+            return true;
+
+        // Package-private methods can only be overridden in the same package
+        return Objects.equals(getPackage(method.getParent().getName()), getPackage(overridden.getParent().getName()));
+    }
+
+    private static String getPackage(String className) {
+        var idx = className.lastIndexOf('/');
+
+        return idx == -1 ? "" : className.substring(0, idx);
+    }
+
+    private static class Node {
+        private final String name;
+        private final LinkedHashSet<Node> subtypes = new LinkedHashSet<>();
+        private ArrayList<String> supertypes = new ArrayList<>();
+
+        /**
+         * <code>null</code> if the class isn't part of the input
+         */
+        private CompilerClass compilerClass;
+
+        private Node(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -47,6 +49,13 @@ public class CompilerClass {
     }
 
     public String suggestStaticMethodName(String methodDesc) {
+        return suggestStaticMethodName(methodDesc, Collections.emptyList());
+    }
+
+    /**
+     * @param reservedMethods methods which aren't part of the class yet, but will be added later
+     */
+    public String suggestStaticMethodName(String methodDesc, Collection<MethodNode> reservedMethods) {
         var ref = new Object() {
             String currentName;
         };
@@ -57,7 +66,8 @@ public class CompilerClass {
 
         do {
             ref.currentName = xd.toString() + (i++);
-        } while (methods.stream().anyMatch(x -> x.getNode().desc.equals(methodDesc) && x.getNode().name.equals(ref.currentName)));
+        } while (methods.stream().anyMatch(x -> x.getNode().desc.equals(methodDesc) && x.getNode().name.equals(ref.currentName))
+                || reservedMethods.stream().anyMatch(x -> x.desc.equals(methodDesc) && x.name.equals(ref.currentName)));
 
         return ref.currentName;
     }
@@ -16,6 +16,7 @@ public class CompilerIndex {
     private final HashMap<String, CompilerClass> classIndex;
     private final HashMap<MethodOrFieldIdentifier, CompilerMethod> methodIndex = new HashMap<>();
     private final HashMap<MethodOrFieldIdentifier, CompilerField> fieldIndex = new HashMap<>();
+    private final ClassHierarchy hierarchy = new ClassHierarchy(this);
 
     public CompilerIndex(List<ClassNode> classNodes) {
         this.classes = new ArrayList<>(classNodes.size());
@@ -43,6 +44,7 @@ public class CompilerIndex {
 
     public void refreshClass(CompilerClass cc) {
         this.classIndex.put(cc.getName(), cc);
+        this.hierarchy.addClass(cc);
 
         // Insert methods
         for (CompilerMethod method : cc.getMethods()) {
@@ -73,6 +75,17 @@ public class CompilerIndex {
         return this.methodIndex.get(new MethodOrFieldIdentifier(owner, name, desc));
     }
 
+    /**
+     * @return the class or <code>null</code> if it isn't part of the input
+     */
+    public CompilerClass getCompilerClass(String name) {
+        return this.classIndex.get(name);
+    }
+
+    public ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
     public ArrayList<CompilerClass> getClasses() {
         return classes;
     }
@@ -8,19 +8,21 @@ import org.objectweb.asm.tree.MethodNode;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 public class CompilerPreprocessor {
     private static final List<AbstractPreprocessor> PREPROCESSORS = Arrays.asList(
-//            new LambdaPrecompiler(),
+            new LambdaPrecompiler(),
+            new StringBuilderConcatRewriter(),
             new InstructionExtractor()
     );
 
     private final ArrayList<AbstractPreprocessor> preprocessors;
     private final ArrayList<CompilerMethod> methodsToCompile = new ArrayList<>();
 
-    private HashMap<CompilerClass, MethodNode> methodsToAdd;
+    private HashMap<CompilerClass, List<MethodNode>> methodsToAdd;
     private ArrayList<ClassNode> classesToAdd;
 
     public CompilerPreprocessor(AbstractPreprocessor... preprocessors) {
@@ -51,12 +53,16 @@ public class CompilerPreprocessor {
             }
         }
 
-        this.methodsToAdd.forEach((compilerClass, extractedMethod) -> compilerClass.addMethod(compiler,
-                extractedMethod));
+        this.methodsToAdd.forEach((compilerClass, extractedMethods) -> extractedMethods.forEach(
+                extractedMethod -> compilerClass.addMethod(compiler, extractedMethod)));
         this.classesToAdd.forEach(x -> compiler.getIndex().addGeneratedClass(x));
     }
 
     public void markForCompilation(CompilerMethod compilerMethod) {
+        // Methods can be marked by multiple preprocessors, but must only be compiled once
+        if (compilerMethod.wasMarkedForCompilation())
+            return;
+
         this.methodsToCompile.add(compilerMethod);
 
         compilerMethod.markForCompilation(this);
@@ -67,7 +73,15 @@ public class CompilerPreprocessor {
     }
 
     public void addMethod(CompilerClass clazz, MethodNode method) {
-        this.methodsToAdd.put(clazz, method);
+        this.methodsToAdd.computeIfAbsent(clazz, x -> new ArrayList<>()).add(method);
+    }
+
+    /**
+     * Suggests a name for a new static method which neither collides with the methods of the class nor with the
+     * methods which were already scheduled to be added to it by {@link #addMethod(CompilerClass, MethodNode)}
+     */
+    public String suggestStaticMethodName(CompilerClass clazz, String methodDesc) {
+        return clazz.suggestStaticMethodName(methodDesc, this.methodsToAdd.getOrDefault(clazz, Collections.emptyList()));
     }
 
     public void addClass(ClassNode classNode) {
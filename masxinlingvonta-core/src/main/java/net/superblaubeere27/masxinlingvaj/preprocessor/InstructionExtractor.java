@@ -1,6 +1,7 @@
 package net.superblaubeere27.masxinlingvaj.preprocessor;
 
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.code.Intrinsics;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -65,7 +66,7 @@ public class InstructionExtractor extends AbstractPreprocessor implements Opcode
             var argumentTypes = getArgumentTypesOfInstruction(instruction);
             var returnType = getReturnTypeOfInstruction(instruction);
 
-            MethodNode extractedMethod = buildWrapperMethod(method, instruction, argumentTypes, returnType);
+            MethodNode extractedMethod = buildWrapperMethod(preprocessor, method, instruction, argumentTypes, returnType);
 
             // Replace the instruction of the current method
             instructions.insert(instruction,
@@ -78,12 +79,12 @@ public class InstructionExtractor extends AbstractPreprocessor implements Opcode
         }
     }
 
-    private MethodNode buildWrapperMethod(CompilerMethod method, AbstractInsnNode instruction, Type[] argumentTypes, Type returnType) {
+    private MethodNode buildWrapperMethod(CompilerPreprocessor preprocessor, CompilerMethod method, AbstractInsnNode instruction, Type[] argumentTypes, Type returnType) {
         // Build the method descriptor, e.g. (II)J
         String methodDesc = "(" + Arrays.stream(argumentTypes).map(Type::toString).collect(Collectors.joining()) + ")" + returnType.toString();
 
         MethodNode extractedMethod = new MethodNode(ACC_PRIVATE | ACC_STATIC,
-                method.getParent().suggestStaticMethodName(methodDesc),
+                preprocessor.suggestStaticMethodName(method.getParent(), methodDesc),
                 methodDesc,
                 null,
                 new String[0]);
@@ -112,6 +113,10 @@ public class InstructionExtractor extends AbstractPreprocessor implements Opcode
      * Should this instruction be extracted to a method?
      */
     private boolean shouldExtract(AbstractInsnNode instruction) {
-        return instruction.getOpcode() == MULTIANEWARRAY || instruction.getOpcode() == INVOKEDYNAMIC;
+        // String concatenations are compiled natively
+        if (instruction instanceof InvokeDynamicInsnNode)
+            return !Intrinsics.isStringConcatenation((InvokeDynamicInsnNode) instruction);
+
+        return instruction.getOpcode() == MULTIANEWARRAY;
     }
 }
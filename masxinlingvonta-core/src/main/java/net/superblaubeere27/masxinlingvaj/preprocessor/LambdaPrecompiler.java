@@ -1,65 +1,139 @@
 package net.superblaubeere27.masxinlingvaj.preprocessor;
 
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerClass;
 import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
 import net.superblaubeere27.masxinlingvaj.preprocessor.codegen.LambdaCodegen;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.InnerClassNode;
 import org.objectweb.asm.tree.InvokeDynamicInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 
+import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Generates the classes of the lambdas in compiled methods at compile time, so the <code>LambdaMetafactory</code>
+ * doesn't have to spin them at runtime. Only active if {@link MLVCompiler#isPrecompileLambdas()} is set.
+ * <p>
+ * Call sites whose implementation the generated class can't call are left to the metafactory. These are super
+ * calls, protected methods of other packages and private methods of the nest if the class file is older than
+ * Java 11.
+ */
 public class LambdaPrecompiler extends AbstractPreprocessor {
+    private static final String LAMBDA_METAFACTORY = "java/lang/invoke/LambdaMetafactory";
+
+    // See LambdaMetafactory
+    private static final int FLAG_SERIALIZABLE = 1 << 0;
+    private static final int FLAG_MARKERS = 1 << 1;
+    private static final int FLAG_BRIDGES = 1 << 2;
+
     private final AtomicInteger lambdaCounter = new AtomicInteger(0);
+    private MLVCompiler compiler;
 
     @Override
     public void init(MLVCompiler compiler, CompilerPreprocessor preprocessor) throws Exception {
+        this.compiler = compiler;
     }
 
     @Override
     public void preprocess(CompilerMethod method, CompilerPreprocessor preprocessor) throws Exception {
-        for (AbstractInsnNode instruction : method.getNode().instructions) {
+        if (!this.compiler.isPrecompileLambdas() || !method.wasMarkedForCompilation())
+            return;
+
+        var parent = method.getParent();
+
+        for (AbstractInsnNode instruction : method.getNode().instructions.toArray()) {
             if (instruction.getType() != AbstractInsnNode.INVOKE_DYNAMIC_INSN)
                 continue;
 
             InvokeDynamicInsnNode invokeDynamic = (InvokeDynamicInsnNode) instruction;
 
-            if (!invokeDynamic.bsm.getOwner().equals("java/lang/invoke/LambdaMetafactory") || !invokeDynamic.bsm.getName().equals(
-                    "metafactory"))
+            if (!invokeDynamic.bsm.getOwner().equals(LAMBDA_METAFACTORY))
+                continue;
+
+            var bsmArgs = invokeDynamic.bsmArgs;
+
+            var flags = 0;
+            var markerInterfaces = new ArrayList<String>();
+            var additionalBridges = new ArrayList<String>();
+
+            if (invokeDynamic.bsm.getName().equals("altMetafactory")) {
+                flags = (Integer) bsmArgs[3];
+
+                var argIndex = 4;
+
+                if ((flags & FLAG_MARKERS) != 0) {
+                    var markerCount = (Integer) bsmArgs[argIndex++];
+
+                    for (int i = 0; i < markerCount; i++) {
+                        markerInterfaces.add(((Type) bsmArgs[argIndex++]).getInternalName());
+                    }
+                }
+
+                if ((flags & FLAG_BRIDGES) != 0) {
+                    var bridgeCount = (Integer) bsmArgs[argIndex++];
+
+                    for (int i = 0; i < bridgeCount; i++) {
+                        additionalBridges.add(((Type) bsmArgs[argIndex++]).getDescriptor());
+                    }
+                }
+            } else if (!invokeDynamic.bsm.getName().equals("metafactory")) {
+                continue;
+            }
+
+            var implMethod = (Handle) bsmArgs[1];
+
+            if (!canPrecompile(parent, implMethod))
                 continue;
 
-            var lambdaClassName = "Lambda" + this.lambdaCounter.getAndIncrement();
-            var fullLambdaClassName = method.getParent().getName() + "$" + lambdaClassName;
+            var lambdaClassName = suggestLambdaClassName(parent);
+            var fullLambdaClassName = parent.getName() + "$" + lambdaClassName;
 
-            LambdaCodegen codegen = new LambdaCodegen((Handle) invokeDynamic.bsmArgs[1],
+            LambdaCodegen codegen = new LambdaCodegen(parent.getName(),
+                    Math.max(parent.getClassNode().version & 0xFFFF, Opcodes.V1_8),
+                    implMethod,
                     invokeDynamic.name,
-                    ((Type) invokeDynamic.bsmArgs[0]).getDescriptor(),
+                    ((Type) bsmArgs[0]).getDescriptor(),
                     invokeDynamic.desc,
-                    ((Type) invokeDynamic.bsmArgs[2]).getDescriptor(),
-                    fullLambdaClassName,
-                    false);
+                    ((Type) bsmArgs[2]).getDescriptor(),
+                    (flags & FLAG_SERIALIZABLE) != 0,
+                    markerInterfaces.toArray(new String[0]),
+                    additionalBridges.toArray(new String[0]),
+                    fullLambdaClassName);
 
             var innerClass = new InnerClassNode(fullLambdaClassName,
-                    method.getParent().getName(),
+                    parent.getName(),
                     lambdaClassName,
                     Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC);
 
 
             var callSite = codegen.spinInnerClass();
 
-            method.getParent().getClassNode().innerClasses.add(innerClass);
-            method.getParent().getClassNode().nestMembers.add(fullLambdaClassName);
-
+            parent.getClassNode().innerClasses.add(innerClass);
             callSite.getClassNode().innerClasses.add(innerClass);
-            callSite.getClassNode().nestHostClass = method.getParent().getName();
+
+            var nestHost = getNestHost(parent);
+
+            if (nestHost != null) {
+                var nestHostNode = nestHost.getClassNode();
+
+                if (nestHostNode.nestMembers == null)
+                    nestHostNode.nestMembers = new ArrayList<>();
+
+                nestHostNode.nestMembers.add(fullLambdaClassName);
+                callSite.getClassNode().nestHostClass = nestHostNode.name;
+
+                nestHost.setModifiedFlag();
+            }
 
             var handle = callSite.getHandle();
 
-            MethodInsnNode replacement;
+            AbstractInsnNode replacement;
 
             if (handle.getTag() == Opcodes.H_INVOKESTATIC) {
                 replacement = new MethodInsnNode(Opcodes.INVOKESTATIC,
@@ -67,6 +141,11 @@ public class LambdaPrecompiler extends AbstractPreprocessor {
                         handle.getName(),
                         handle.getDesc(),
                         handle.isInterface());
+            } else if (handle.getTag() == Opcodes.H_GETSTATIC) {
+                replacement = new FieldInsnNode(Opcodes.GETSTATIC,
+                        handle.getOwner(),
+                        handle.getName(),
+                        handle.getDesc());
             } else {
                 throw new IllegalStateException("Invalid tag");
             }
@@ -76,8 +155,69 @@ public class LambdaPrecompiler extends AbstractPreprocessor {
 
             preprocessor.addClass(callSite.getClassNode());
 
-            method.getParent().setModifiedFlag();
+            parent.setModifiedFlag();
+        }
+    }
+
+    /**
+     * Checks whether the generated class, which is in the package of <code>caller</code> and joins its nest if
+     * possible, can invoke the implementation method
+     */
+    private boolean canPrecompile(CompilerClass caller, Handle implMethod) {
+        // Super calls are only allowed in subclasses
+        if (implMethod.getTag() == Opcodes.H_INVOKESPECIAL && !implMethod.getOwner().equals(caller.getName()))
+            return false;
+
+        var target = this.compiler.getIndex().getMethod(implMethod.getOwner(), implMethod.getName(), implMethod.getDesc());
+
+        // Not in the index, javac only references accessible methods of libraries
+        if (target == null)
+            return true;
+
+        var access = target.getNode().access;
+
+        if ((access & Opcodes.ACC_PRIVATE) != 0) {
+            var nestHost = getNestHost(caller);
+
+            return nestHost != null && nestHost == getNestHost(target.getParent());
         }
+
+        if ((access & Opcodes.ACC_PROTECTED) != 0)
+            return getPackage(implMethod.getOwner()).equals(getPackage(caller.getName()));
+
+        return true;
+    }
+
+    /**
+     * @return the host of the class's nest or <code>null</code> if its class file doesn't support nests (Java 10 and
+     * older) or the host is unknown
+     */
+    private CompilerClass getNestHost(CompilerClass compilerClass) {
+        var classNode = compilerClass.getClassNode();
+
+        if ((classNode.version & 0xFFFF) < Opcodes.V11)
+            return null;
+
+        return this.compiler.getIndex().getCompilerClass(classNode.nestHostClass != null ? classNode.nestHostClass : classNode.name);
+    }
+
+    /**
+     * Suggests a name for a lambda class of <code>parent</code> which isn't used yet
+     */
+    private String suggestLambdaClassName(CompilerClass parent) {
+        String name;
+
+        do {
+            name = "Lambda" + this.lambdaCounter.getAndIncrement();
+        } while (this.compiler.getIndex().getCompilerClass(parent.getName() + "$" + name) != null);
+
+        return name;
+    }
+
+    private static String getPackage(String internalName) {
+        var lastSlash = internalName.lastIndexOf('/');
+
+        return lastSlash == -1 ? "" : internalName.substring(0, lastSlash);
     }
 
 }
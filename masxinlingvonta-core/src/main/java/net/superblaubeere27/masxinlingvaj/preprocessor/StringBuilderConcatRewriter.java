@@ -0,0 +1,410 @@
+package net.superblaubeere27.masxinlingvaj.preprocessor;
+
+import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
+import net.superblaubeere27.masxinlingvaj.compiler.tree.CompilerMethod;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Rewrites string concatenations of javac 8 (<code>new StringBuilder().append(a).append(b).toString()</code>) to
+ * <code>StringConcatFactory</code> call sites, which are compiled natively. Only chains whose builder doesn't escape
+ * are rewritten.
+ * <p>
+ * <code>append(Object)</code> converts its argument with <code>String.valueOf</code> right away, while the
+ * concatenation converts all arguments after they were evaluated. So chains with objects are only rewritten if the
+ * arguments after the first object can't observe or cause a change of it.
+ */
+public class StringBuilderConcatRewriter extends AbstractPreprocessor implements Opcodes {
+    private static final String STRING_BUILDER = "java/lang/StringBuilder";
+    private static final Handle MAKE_CONCAT_WITH_CONSTANTS = new Handle(H_INVOKESTATIC,
+                                                                        "java/lang/invoke/StringConcatFactory",
+                                                                        "makeConcatWithConstants",
+                                                                        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+                                                                        false);
+    private static final String APPEND_OBJECT = "(Ljava/lang/Object;)Ljava/lang/StringBuilder;";
+    /**
+     * The overloads of <code>StringBuilder.append</code> which append the same as <code>String.valueOf</code> of their
+     * argument. Bytes and shorts are passed as ints. <code>append(CharSequence)</code> copies the chars with
+     * <code>length</code>/<code>charAt</code> instead of calling <code>toString</code>, so it isn't supported.
+     */
+    private static final List<String> SUPPORTED_APPENDS = Arrays.asList(
+            "(Ljava/lang/String;)Ljava/lang/StringBuilder;",
+            APPEND_OBJECT,
+            "(Z)Ljava/lang/StringBuilder;",
+            "(C)Ljava/lang/StringBuilder;",
+            "(I)Ljava/lang/StringBuilder;",
+            "(J)Ljava/lang/StringBuilder;",
+            "(F)Ljava/lang/StringBuilder;",
+            "(D)Ljava/lang/StringBuilder;"
+    );
+    /**
+     * <code>StringConcatFactory</code> accepts at most 200 argument slots
+     */
+    private static final int MAX_ARGUMENT_SLOTS = 200;
+
+    @Override
+    public void init(MLVCompiler compiler, CompilerPreprocessor preprocessor) throws Exception {
+
+    }
+
+    @Override
+    public void preprocess(CompilerMethod method, CompilerPreprocessor preprocessor) throws Exception {
+        if (!method.wasMarkedForCompilation())
+            return;
+
+        var node = method.getNode();
+        var instructions = node.instructions;
+
+        if (Arrays.stream(instructions.toArray()).noneMatch(StringBuilderConcatRewriter::isToString))
+            return;
+
+        var frames = new Analyzer<>(new SourceInterpreter()).analyze(method.getParent().getName(), node);
+
+        var chains = new ArrayList<Chain>();
+
+        for (AbstractInsnNode instruction : instructions) {
+            if (isToString(instruction)) {
+                var chain = findChain(instructions, frames, (MethodInsnNode) instruction);
+
+                if (chain != null)
+                    chains.add(chain);
+            }
+        }
+
+        // The frames are looked up by instruction since rewriting a chain shifts the indices
+        var frameMap = new HashMap<AbstractInsnNode, Frame<SourceValue>>();
+
+        for (int i = 0; i < frames.length; i++) {
+            frameMap.put(instructions.get(i), frames[i]);
+        }
+
+        // Nested chains are part of an argument of the outer chain, rewriting them doesn't change the stack below
+        for (Chain chain : chains) {
+            rewrite(node, frameMap, chain);
+        }
+    }
+
+    private static boolean isToString(AbstractInsnNode instruction) {
+        if (instruction.getOpcode() != INVOKEVIRTUAL)
+            return false;
+
+        var methodInsn = (MethodInsnNode) instruction;
+
+        return methodInsn.owner.equals(STRING_BUILDER) && methodInsn.name.equals("toString") && methodInsn.desc.equals("()Ljava/lang/String;");
+    }
+
+    private static boolean isAppend(AbstractInsnNode instruction) {
+        if (instruction.getOpcode() != INVOKEVIRTUAL)
+            return false;
+
+        var methodInsn = (MethodInsnNode) instruction;
+
+        return methodInsn.owner.equals(STRING_BUILDER) && methodInsn.name.equals("append") && SUPPORTED_APPENDS.contains(methodInsn.desc);
+    }
+
+    /**
+     * Follows the builder from <code>toString</code> back to its allocation
+     *
+     * @return the chain or <code>null</code> if it can't be rewritten
+     */
+    private static Chain findChain(InsnList instructions, Frame<SourceValue>[] frames, MethodInsnNode toString) {
+        var frame = frames[instructions.indexOf(toString)];
+
+        // Unreachable
+        if (frame == null)
+            return null;
+
+        var builderIndex = frame.getStackSize() - 1;
+        var appends = new ArrayDeque<MethodInsnNode>();
+
+        var current = getSingleSource(frame.getStack(builderIndex));
+
+        while (current != null && isAppend(current)) {
+            var appendFrame = frames[instructions.indexOf(current)];
+
+            if (appendFrame.getStackSize() - 2 != builderIndex)
+                return null;
+
+            appends.addFirst((MethodInsnNode) current);
+
+            current = getSingleSource(appendFrame.getStack(builderIndex));
+        }
+
+        if (current == null || current.getOpcode() != NEW || !((TypeInsnNode) current).desc.equals(STRING_BUILDER))
+            return null;
+
+        var dup = getNextInstruction(current);
+        var init = dup == null ? null : getNextInstruction(dup);
+
+        if (dup == null || dup.getOpcode() != DUP || init == null || init.getOpcode() != INVOKESPECIAL)
+            return null;
+
+        var initInsn = (MethodInsnNode) init;
+
+        if (!initInsn.owner.equals(STRING_BUILDER) || !initInsn.name.equals("<init>") || !initInsn.desc.equals("()V"))
+            return null;
+
+        var chain = new Chain((TypeInsnNode) current, dup, initInsn, new ArrayList<>(appends), toString, builderIndex);
+
+        return isBuilderConfined(instructions, frames, chain) && isConversionUnobservable(instructions, chain) ? chain : null;
+    }
+
+    /**
+     * Checks that the arguments after the first <code>append(Object)</code> are evaluated without side effects and
+     * without reading the heap, so it doesn't matter whether <code>toString</code> runs before or after them
+     */
+    private static boolean isConversionUnobservable(InsnList instructions, Chain chain) {
+        var firstObject = chain.appends.stream().filter(append -> append.desc.equals(APPEND_OBJECT)).findFirst();
+
+        if (firstObject.isEmpty())
+            return true;
+
+        var end = instructions.indexOf(chain.toString);
+
+        for (int i = instructions.indexOf(firstObject.get()) + 1; i < end; i++) {
+            var instruction = instructions.get(i);
+
+            if (!chain.appends.contains(instruction) && !isPure(instruction))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return if the instruction only works on locals and the operand stack and can't throw
+     */
+    private static boolean isPure(AbstractInsnNode instruction) {
+        var opcode = instruction.getOpcode();
+
+        switch (opcode) {
+            case -1:
+            case NOP:
+            case BIPUSH:
+            case SIPUSH:
+            case GOTO:
+            case IFNULL:
+            case IFNONNULL:
+                return true;
+            case LDC:
+                var constant = ((LdcInsnNode) instruction).cst;
+
+                return constant instanceof String || constant instanceof Number;
+            case IDIV:
+            case LDIV:
+            case IREM:
+            case LREM:
+                return false;
+            default:
+                return opcode >= ACONST_NULL && opcode <= DCONST_1
+                        || opcode >= ILOAD && opcode <= ALOAD
+                        || opcode >= POP && opcode <= DCMPG
+                        || opcode >= IFEQ && opcode <= IF_ACMPNE;
+        }
+    }
+
+    /**
+     * Checks that the builder is only used by the chain. Between two calls of the chain the builder has to stay at the
+     * same stack position while the next argument is evaluated on top of it.
+     */
+    private static boolean isBuilderConfined(InsnList instructions, Frame<SourceValue>[] frames, Chain chain) {
+        var members = new ArrayList<AbstractInsnNode>();
+
+        members.add(chain.allocation);
+        members.addAll(chain.appends);
+        members.add(chain.toString);
+
+        var start = instructions.indexOf(chain.allocation);
+        var end = instructions.indexOf(chain.toString);
+
+        int previousIndex = start;
+
+        for (int i = 1; i < members.size(); i++) {
+            var index = instructions.indexOf(members.get(i));
+
+            // The arguments are evaluated in order
+            if (index <= previousIndex)
+                return false;
+
+            previousIndex = index;
+        }
+
+        // The string which toString() produces may stay on the stack
+        var builders = new HashSet<>(members.subList(0, members.size() - 1));
+
+        int nextMember = 1;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            var frame = frames[i];
+
+            if (frame == null)
+                continue;
+
+            if (i <= start || i > end) {
+                // Outside of the chain the builder must not be on the stack
+                if (frame.getStackSize() > chain.builderIndex && frame.getStack(chain.builderIndex).insns.stream().anyMatch(builders::contains))
+                    return false;
+
+                continue;
+            }
+
+            if (instruction == members.get(nextMember)) {
+                nextMember++;
+
+                continue;
+            }
+
+            if (instruction == chain.dup || instruction == chain.init)
+                continue;
+
+            // The builder has to be produced by the last call of the chain
+            if (frame.getStackSize() <= chain.builderIndex || !frame.getStack(chain.builderIndex).insns.equals(Collections.singleton(members.get(nextMember - 1))))
+                return false;
+
+            // Stack manipulations must not copy or drop the builder
+            if (frame.getStackSize() - getTouchedStackValues(instruction.getOpcode()) <= chain.builderIndex)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return how many values from the top of the stack the instruction duplicates, swaps or pops without consuming
+     * them as an operand
+     */
+    private static int getTouchedStackValues(int opcode) {
+        switch (opcode) {
+            case POP:
+            case DUP:
+                return 1;
+            case POP2:
+            case DUP_X1:
+            case DUP2:
+            case SWAP:
+                return 2;
+            case DUP_X2:
+            case DUP2_X1:
+                return 3;
+            case DUP2_X2:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static void rewrite(MethodNode node, HashMap<AbstractInsnNode, Frame<SourceValue>> frames, Chain chain) {
+        var instructions = node.instructions;
+        var recipe = new StringBuilder();
+        var constants = new ArrayList<Object>();
+        var argumentTypes = new ArrayList<Type>();
+        var argumentSlots = 0;
+
+        var toRemove = new ArrayList<AbstractInsnNode>();
+
+        toRemove.add(chain.allocation);
+        toRemove.add(chain.dup);
+        toRemove.add(chain.init);
+
+        for (MethodInsnNode append : chain.appends) {
+            var argumentType = Type.getArgumentTypes(append.desc)[0];
+            var frame = frames.get(append);
+            var argumentSource = getSingleSource(frame.getStack(frame.getStackSize() - 1));
+
+            toRemove.add(append);
+
+            // Literals become part of the recipe
+            if (argumentSource != null && argumentSource == getPreviousInstruction(append) && argumentSource.getOpcode() == LDC && ((LdcInsnNode) argumentSource).cst instanceof String) {
+                var literal = (String) ((LdcInsnNode) argumentSource).cst;
+
+                if (literal.indexOf('\u0001') == -1 && literal.indexOf('\u0002') == -1) {
+                    recipe.append(literal);
+                } else {
+                    recipe.append('\u0002');
+                    constants.add(literal);
+                }
+
+                toRemove.add(argumentSource);
+
+                continue;
+            }
+
+            recipe.append('\u0001');
+            argumentTypes.add(argumentType);
+            argumentSlots += argumentType.getSize();
+        }
+
+        if (argumentSlots > MAX_ARGUMENT_SLOTS)
+            return;
+
+        constants.add(0, recipe.toString());
+
+        // The arguments aren't consumed one by one anymore, but stay on the stack until the concatenation
+        node.maxStack += argumentSlots;
+
+        var desc = Type.getMethodDescriptor(Type.getType(String.class), argumentTypes.toArray(new Type[0]));
+
+        instructions.set(chain.toString, new InvokeDynamicInsnNode("makeConcatWithConstants", desc, MAKE_CONCAT_WITH_CONSTANTS, constants.toArray()));
+
+        toRemove.forEach(instructions::remove);
+    }
+
+    private static AbstractInsnNode getSingleSource(SourceValue value) {
+        return value.insns.size() == 1 ? value.insns.iterator().next() : null;
+    }
+
+    /**
+     * @return the next instruction which isn't a label, line number or frame
+     */
+    private static AbstractInsnNode getNextInstruction(AbstractInsnNode instruction) {
+        do {
+            instruction = instruction.getNext();
+        } while (instruction != null && instruction.getOpcode() == -1);
+
+        return instruction;
+    }
+
+    private static AbstractInsnNode getPreviousInstruction(AbstractInsnNode instruction) {
+        do {
+            instruction = instruction.getPrevious();
+        } while (instruction != null && instruction.getOpcode() == -1);
+
+        return instruction;
+    }
+
+    private static class Chain {
+        private final TypeInsnNode allocation;
+        private final AbstractInsnNode dup;
+        private final MethodInsnNode init;
+        private final List<MethodInsnNode> appends;
+        private final MethodInsnNode toString;
+        /**
+         * The stack position of the builder
+         */
+        private final int builderIndex;
+
+        private Chain(TypeInsnNode allocation, AbstractInsnNode dup, MethodInsnNode init, List<MethodInsnNode> appends, MethodInsnNode toString, int builderIndex) {
+            this.allocation = allocation;
+            this.dup = dup;
+            this.init = init;
+            this.appends = appends;
+            this.toString = toString;
+            this.builderIndex = builderIndex;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.objectweb.asm.tree.ClassNode;
 
 import java.lang.invoke.LambdaConversionException;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -39,14 +40,16 @@ import static java.lang.invoke.MethodHandleInfo.*;
  * Java's Lamba metafactory, ported to ASM
  */
 public final class LambdaCodegen implements Opcodes {
-    private static final int CLASSFILE_VERSION = V1_8;
     private static final String METHOD_DESCRIPTOR_VOID = "()V";
     private static final String JAVA_LANG_OBJECT = "java/lang/Object";
     private static final String NAME_CTOR = "<init>";
+    private static final String NAME_CLINIT = "<clinit>";
     private static final String NAME_FACTORY = "get$Lambda";
+    private static final String NAME_INSTANCE = "INSTANCE";
 
     //Serialization support
     private static final String NAME_SERIALIZED_LAMBDA = "java/lang/invoke/SerializedLambda";
+    private static final String NAME_SERIALIZABLE = "java/io/Serializable";
     private static final String NAME_NOT_SERIALIZABLE_EXCEPTION = "java/io/NotSerializableException";
     private static final String DESCR_METHOD_WRITE_REPLACE = "()Ljava/lang/Object;";
     private static final String DESCR_METHOD_WRITE_OBJECT = "(Ljava/io/ObjectOutputStream;)V";
@@ -72,6 +75,9 @@ public final class LambdaCodegen implements Opcodes {
     private static final AtomicInteger counter = new AtomicInteger(0);
 
     // See context values in AbstractValidatingLambdaMetafactory
+    private final String targetClass;      // The class which contains the invokedynamic instruction
+    private final int classVersion;
+    private final Handle implInfo;         // The implementation as referenced by the call site
     private final String implClass;        // Name of type containing implementation "CC"
     private final String implMethodName;             // Name of implementation method "impl"
     private final String implMethodDesc;             // Type descriptor for implementation methods "(I)Ljava/lang/String;"
@@ -88,33 +94,51 @@ public final class LambdaCodegen implements Opcodes {
     private final String samMethodName;
     private final String samMethodDesc;
     private final String instantiatedMethodType;
+    private final boolean isSerializable;
+    private final String[] markerInterfaces;
+    private final String[] additionalBridges;
 
-    public LambdaCodegen(Handle implInfo, String invokedName, String samMethodDesc, String invokedType, String instantiatedMethodType, String lambdaClassName, boolean isInterface) {
-        this.implMethodType = implInfo.getDesc();
+    /**
+     * @param targetClass       the class which contains the call site, the generated class is placed in its package
+     * @param classVersion      the class file version of the generated class
+     * @param isSerializable    was <code>FLAG_SERIALIZABLE</code> passed to <code>altMetafactory</code>?
+     * @param markerInterfaces  additional interfaces the lambda class implements
+     * @param additionalBridges descriptors of additional methods which forward to the implementation
+     */
+    public LambdaCodegen(String targetClass, int classVersion, Handle implInfo, String invokedName, String samMethodDesc, String invokedType, String instantiatedMethodType, boolean isSerializable, String[] markerInterfaces, String[] additionalBridges, String lambdaClassName) {
+        this.targetClass = targetClass;
+        this.classVersion = classVersion;
+        this.implInfo = implInfo;
         this.invokedType = invokedType;
-        this.isInterface = isInterface;
+        this.isInterface = implInfo.isInterface();
+        this.isSerializable = isSerializable;
+        this.markerInterfaces = markerInterfaces;
+        this.additionalBridges = additionalBridges;
 
         switch (implInfo.getTag()) {
             case H_INVOKEVIRTUAL:
             case H_INVOKEINTERFACE:
-                this.implClass = Type.getArgumentTypes(invokedType)[0].getInternalName();
-                // reference kind reported by implInfo may not match implMethodType's first param
-                // Example: implMethodType is (Cloneable)String, implInfo is for Object.toString
-                this.implKind = isInterface ? H_INVOKEINTERFACE : H_INVOKEVIRTUAL;
-                boolean implIsInstanceMethod = true;
+                this.implClass = implInfo.getOwner();
+                this.implKind = implInfo.getTag();
+                this.implMethodType = withReceiver(implInfo);
                 break;
-            case REF_invokeSpecial:
-                // JDK-8172817: should use referenced class here, but we don't know what it was
+            case H_INVOKESPECIAL:
+                // A private method of the nest, those are invoked virtually since Java 11. The caller has to make sure
+                // that it isn't a super call.
                 this.implClass = implInfo.getOwner();
-                this.implKind = REF_invokeSpecial;
-                implIsInstanceMethod = true;
+                this.implKind = this.isInterface ? H_INVOKEINTERFACE : H_INVOKEVIRTUAL;
+                this.implMethodType = withReceiver(implInfo);
+                break;
+            case H_INVOKESTATIC:
+                this.implClass = implInfo.getOwner();
+                this.implKind = implInfo.getTag();
+                this.implMethodType = implInfo.getDesc();
                 break;
-            case REF_invokeStatic:
-            case REF_newInvokeSpecial:
-                // JDK-8172817: should use referenced class here for invokestatic, but we don't know what it was
+            case H_NEWINVOKESPECIAL:
                 this.implClass = implInfo.getOwner();
                 this.implKind = implInfo.getTag();
-                implIsInstanceMethod = false;
+                // The constructor returns the new instance
+                this.implMethodType = methodType(Type.getArgumentTypes(implInfo.getDesc()), Type.getObjectType(this.implClass));
                 break;
             default:
                 throw new IllegalArgumentException(String.format("Unsupported MethodHandle kind: %s", implInfo));
@@ -149,10 +173,17 @@ public final class LambdaCodegen implements Opcodes {
         return t.getSort() < Type.ARRAY;
     }
 
-    private String methodType(Type[] argumentTypes, Type returnType) {
+    private static String methodType(Type[] argumentTypes, Type returnType) {
         return "(" + Arrays.stream(argumentTypes).map(Type::getDescriptor).collect(Collectors.joining()) + ")" + returnType;
     }
 
+    /**
+     * @return the type of the handle's method with the receiver as first parameter
+     */
+    private static String withReceiver(Handle handle) {
+        return "(" + Type.getObjectType(handle.getOwner()).getDescriptor() + handle.getDesc().substring(1);
+    }
+
     /**
      * Generate a class file which implements the functional
      * interface, define and return the class.
@@ -168,11 +199,17 @@ public final class LambdaCodegen implements Opcodes {
      * objects.
      */
     public PreGeneratedCallSite spinInnerClass() throws LambdaConversionException {
-        String[] interfaces = new String[]{this.samBase};
+        var interfaces = new LinkedHashSet<String>();
+
+        interfaces.add(this.samBase);
+        interfaces.addAll(Arrays.asList(this.markerInterfaces));
+
+        if (this.isSerializable)
+            interfaces.add(NAME_SERIALIZABLE);
 
-        cw.visit(CLASSFILE_VERSION, ACC_SUPER + ACC_FINAL,
+        cw.visit(this.classVersion, ACC_SUPER + ACC_FINAL + ACC_SYNTHETIC,
                 lambdaClassName, null,
-                JAVA_LANG_OBJECT, interfaces);
+                JAVA_LANG_OBJECT, interfaces.toArray(EMPTY_STRING_ARRAY));
 
         // Generate final fields to be filled in by constructor
         for (int i = 0; i < argDescs.length; i++) {
@@ -185,7 +222,26 @@ public final class LambdaCodegen implements Opcodes {
 
         generateConstructor();
 
-        generateFactory();
+        Handle callSite;
+
+        if (argDescs.length == 0) {
+            // Non-capturing lambdas are singletons, like the ones of the metafactory
+            generateInstance();
+
+            callSite = new Handle(H_GETSTATIC,
+                    this.lambdaClassName,
+                    NAME_INSTANCE,
+                    Type.getObjectType(this.samBase).getDescriptor(),
+                    false);
+        } else {
+            generateFactory();
+
+            callSite = new Handle(H_INVOKESTATIC,
+                    this.lambdaClassName,
+                    NAME_FACTORY,
+                    this.invokedType,
+                    false);
+        }
 
         // Forward the SAM method
         MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, this.samMethodName,
@@ -195,22 +251,56 @@ public final class LambdaCodegen implements Opcodes {
 
         new ForwardingMethodGenerator(mv).generate(samMethodDesc);
 
-        generateSerializationHostileMethods();
+        // Forward the bridges
+        for (String bridge : new LinkedHashSet<>(Arrays.asList(this.additionalBridges))) {
+            if (bridge.equals(samMethodDesc))
+                continue;
+
+            mv = cw.visitMethod(ACC_PUBLIC, this.samMethodName, bridge, null, null);
+
+            mv.visitAnnotation("Ljava/lang/invoke/LambdaForm$Hidden;", true);
+
+            new ForwardingMethodGenerator(mv).generate(bridge);
+        }
+
+        if (this.isSerializable) {
+            generateSerializationFriendlyMethods();
+        } else {
+            generateSerializationHostileMethods();
+        }
 
         cw.visitEnd();
 
-        return new PreGeneratedCallSite(new Handle(H_INVOKESTATIC,
-                this.lambdaClassName,
-                NAME_FACTORY,
-                this.invokedType,
-                false), cw);
+        return new PreGeneratedCallSite(callSite, cw);
+    }
+
+    /**
+     * Generate the field which holds the only instance of a non-capturing lambda
+     */
+    private void generateInstance() {
+        FieldVisitor fv = cw.visitField(ACC_STATIC + ACC_FINAL + ACC_SYNTHETIC,
+                NAME_INSTANCE,
+                Type.getObjectType(this.samBase).getDescriptor(),
+                null, null);
+        fv.visitEnd();
+
+        MethodVisitor m = cw.visitMethod(ACC_STATIC, NAME_CLINIT, METHOD_DESCRIPTOR_VOID, null, null);
+        m.visitCode();
+        m.visitTypeInsn(NEW, lambdaClassName);
+        m.visitInsn(Opcodes.DUP);
+        m.visitMethodInsn(INVOKESPECIAL, lambdaClassName, NAME_CTOR, constructorType, false);
+        m.visitFieldInsn(PUTSTATIC, lambdaClassName, NAME_INSTANCE, Type.getObjectType(this.samBase).getDescriptor());
+        m.visitInsn(RETURN);
+        m.visitMaxs(-1, -1);
+        m.visitEnd();
     }
 
     /**
      * Generate the factory method for the class
      */
     private void generateFactory() {
-        MethodVisitor m = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, NAME_FACTORY, invokedType, null, null);
+        // Not private, the target class has to call it even if it isn't a nestmate
+        MethodVisitor m = cw.visitMethod(ACC_STATIC | ACC_SYNTHETIC, NAME_FACTORY, invokedType, null, null);
         m.visitCode();
         m.visitTypeInsn(NEW, lambdaClassName);
         m.visitInsn(Opcodes.DUP);
@@ -262,6 +352,51 @@ public final class LambdaCodegen implements Opcodes {
         ctor.visitEnd();
     }
 
+    /**
+     * Generate a writeReplace method that supports serialization
+     */
+    private void generateSerializationFriendlyMethods() {
+        TypeConvertingMethodAdapter mv = new TypeConvertingMethodAdapter(ASM5,
+                cw.visitMethod(ACC_PRIVATE + ACC_FINAL,
+                        NAME_METHOD_WRITE_REPLACE, DESCR_METHOD_WRITE_REPLACE,
+                        null, null));
+
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, NAME_SERIALIZED_LAMBDA);
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn(Type.getObjectType(targetClass));
+        mv.visitLdcInsn(samBase);
+        mv.visitLdcInsn(samMethodName);
+        mv.visitLdcInsn(samMethodDesc);
+        mv.visitLdcInsn(implInfo.getTag());
+        mv.visitLdcInsn(implInfo.getOwner());
+        mv.visitLdcInsn(implInfo.getName());
+        mv.visitLdcInsn(implInfo.getDesc());
+        mv.visitLdcInsn(instantiatedMethodType);
+        mv.visitLdcInsn(argDescs.length);
+        mv.visitTypeInsn(ANEWARRAY, JAVA_LANG_OBJECT);
+        for (int i = 0; i < argDescs.length; i++) {
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(i);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, lambdaClassName, argNames[i], argDescs[i]);
+
+            Type argType = Type.getType(argDescs[i]);
+
+            if (isPrimitive(argType)) {
+                mv.box(TypeWrapper.forPrimitiveType(argType));
+            }
+
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitMethodInsn(INVOKESPECIAL, NAME_SERIALIZED_LAMBDA, NAME_CTOR,
+                DESCR_CTOR_SERIALIZED_LAMBDA, false);
+        mv.visitInsn(ARETURN);
+        // Maxs computed by ClassWriter.COMPUTE_MAXS, these arguments ignored
+        mv.visitMaxs(-1, -1);
+        mv.visitEnd();
+    }
+
     /**
      * Generate a readObject/writeObject method that is hostile to serialization
      */
@@ -370,7 +505,7 @@ public final class LambdaCodegen implements Opcodes {
                 } else {
                     // Primitive argument to reference target
                     String dTarget = target.getInternalName();
-                    TypeWrapper wPrimTarget = wrapperOrNullFromDescriptor(dTarget);
+                    TypeWrapper wPrimTarget = wrapperOrNullFromDescriptor(target.getDescriptor());
 
                     if (wPrimTarget != null) {
                         // The target is a boxed primitive type, widen to get there before boxing
@@ -399,7 +534,7 @@ public final class LambdaCodegen implements Opcodes {
                 if (isPrimitive(target)) {
                     TypeWrapper wTarget = toWrapper(dTarget);
                     // Reference argument to primitive target
-                    TypeWrapper wps = wrapperOrNullFromDescriptor(dSrc);
+                    TypeWrapper wps = wrapperOrNullFromDescriptor(Type.getObjectType(dSrc).getDescriptor());
                     if (wps != null) {
                         if (wps.isSigned() || wps.isFloating()) {
                             // Boxed number to primitive
@@ -6,6 +6,51 @@ import org.bytedeco.llvm.global.LLVM;
 public enum LLVMIntrinsic {
     LIFETIME_START("llvm.lifetime.start", new LLVMTypeRef[]{LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0)}),
     LIFETIME_END("llvm.lifetime.end", new LLVMTypeRef[]{LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0)}),
+    FRAME_ADDRESS("llvm.frameaddress", new LLVMTypeRef[]{LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0)}),
+    MEMCPY("llvm.memcpy", new LLVMTypeRef[]{LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), LLVM.LLVMInt64Type()}),
+    MEMMOVE("llvm.memmove", new LLVMTypeRef[]{LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), LLVM.LLVMInt64Type()}),
+    MEMSET("llvm.memset", new LLVMTypeRef[]{LLVM.LLVMPointerType(LLVM.LLVMInt8Type(), 0), LLVM.LLVMInt64Type()}),
+    SQRT_FLOAT("llvm.sqrt", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    SQRT_DOUBLE("llvm.sqrt", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    FABS_FLOAT("llvm.fabs", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    FABS_DOUBLE("llvm.fabs", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    FLOOR_FLOAT("llvm.floor", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    FLOOR_DOUBLE("llvm.floor", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    CEIL_FLOAT("llvm.ceil", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    CEIL_DOUBLE("llvm.ceil", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    RINT_FLOAT("llvm.rint", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    RINT_DOUBLE("llvm.rint", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    FMA_FLOAT("llvm.fma", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    FMA_DOUBLE("llvm.fma", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    COPYSIGN_FLOAT("llvm.copysign", new LLVMTypeRef[]{LLVM.LLVMFloatType()}),
+    COPYSIGN_DOUBLE("llvm.copysign", new LLVMTypeRef[]{LLVM.LLVMDoubleType()}),
+    ABS_INT("llvm.abs", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    ABS_LONG("llvm.abs", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    SMIN_INT("llvm.smin", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    SMIN_LONG("llvm.smin", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    SMAX_INT("llvm.smax", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    SMAX_LONG("llvm.smax", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    SADD_WITH_OVERFLOW_INT("llvm.sadd.with.overflow", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    SADD_WITH_OVERFLOW_LONG("llvm.sadd.with.overflow", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    SSUB_WITH_OVERFLOW_INT("llvm.ssub.with.overflow", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    SSUB_WITH_OVERFLOW_LONG("llvm.ssub.with.overflow", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    SMUL_WITH_OVERFLOW_INT("llvm.smul.with.overflow", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    SMUL_WITH_OVERFLOW_LONG("llvm.smul.with.overflow", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    CTPOP_INT("llvm.ctpop", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    CTPOP_LONG("llvm.ctpop", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    CTLZ_INT("llvm.ctlz", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    CTLZ_LONG("llvm.ctlz", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    CTTZ_INT("llvm.cttz", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    CTTZ_LONG("llvm.cttz", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    FSHL_INT("llvm.fshl", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    FSHL_LONG("llvm.fshl", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    FSHR_INT("llvm.fshr", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    FSHR_LONG("llvm.fshr", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    BITREVERSE_INT("llvm.bitreverse", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    BITREVERSE_LONG("llvm.bitreverse", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
+    BSWAP_SHORT("llvm.bswap", new LLVMTypeRef[]{LLVM.LLVMInt16Type()}),
+    BSWAP_INT("llvm.bswap", new LLVMTypeRef[]{LLVM.LLVMInt32Type()}),
+    BSWAP_LONG("llvm.bswap", new LLVMTypeRef[]{LLVM.LLVMInt64Type()}),
     ;
 
     private final String intrinsicName;
@@ -2,12 +2,19 @@ package net.superblaubeere27.masxinlingvaj.utils;
 
 import net.superblaubeere27.masxinlingvaj.compiler.MLVCompiler;
 import net.superblaubeere27.masxinlingvaj.compiler.TranslatedMethod;
+import net.superblaubeere27.masxinlingvaj.compiler.jni.JNIType;
 import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.llvm.LLVM.LLVMBasicBlockRef;
 import org.bytedeco.llvm.LLVM.LLVMBuilderRef;
+import org.bytedeco.llvm.LLVM.LLVMTypeRef;
 import org.bytedeco.llvm.LLVM.LLVMValueRef;
 import org.bytedeco.llvm.global.LLVM;
 
 public class LLVMUtils {
+    /**
+     * The length of the longest decimal representation of a long (<code>Long.MIN_VALUE</code>)
+     */
+    public static final int MAX_DECIMAL_LENGTH = 20;
 
     public static LLVMValueRef generateIntrinsicCall(MLVCompiler compiler, LLVMBuilderRef builder, LLVMIntrinsic intrinsic, LLVMValueRef... values) {
         var decl = LLVM.LLVMGetIntrinsicDeclaration(compiler.getModule(),
@@ -18,6 +25,154 @@ public class LLVMUtils {
         return LLVM.LLVMBuildCall(builder, decl, new PointerPointer<>(values), values.length, "");
     }
 
+    /**
+     * Creates a constant UTF-16 string (without a null terminator) which can be passed to NewString
+     *
+     * @return a jchar* pointing to the first char
+     */
+    public static LLVMValueRef buildUTF16Constant(MLVCompiler compiler, String value) {
+        var chars = new LLVMValueRef[value.length()];
+
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = LLVM.LLVMConstInt(JNIType.CHAR.getLLVMType(), value.charAt(i), 0);
+        }
+
+        var array = LLVM.LLVMConstArray(JNIType.CHAR.getLLVMType(), new PointerPointer<>(chars), chars.length);
+
+        var global = LLVM.LLVMAddGlobal(compiler.getModule(), LLVM.LLVMTypeOf(array), "utf16");
+
+        LLVM.LLVMSetInitializer(global, array);
+        LLVM.LLVMSetGlobalConstant(global, 1);
+        LLVM.LLVMSetLinkage(global, LLVM.LLVMPrivateLinkage);
+        LLVM.LLVMSetUnnamedAddr(global, 1);
+
+        return LLVM.LLVMConstBitCast(global, LLVM.LLVMPointerType(JNIType.CHAR.getLLVMType(), 0));
+    }
+
+    /**
+     * Builds code that writes the decimal representation of an int or long to <code>destination</code>, which needs
+     * space for {@link #MAX_DECIMAL_LENGTH} chars. No null terminator is written.
+     *
+     * @param charType    the type of the chars, <code>i8</code> for ASCII or <code>i16</code> for UTF-16
+     *                    (<code>jchar</code>)
+     * @param destination a pointer to <code>charType</code>
+     * @return a pointer behind the last written char
+     */
+    public static LLVMValueRef buildWriteDecimal(MLVCompiler compiler, LLVMBuilderRef builder, LLVMTypeRef charType, LLVMValueRef destination, LLVMValueRef value) {
+        var name = "write_decimal_i" + LLVM.LLVMGetIntTypeWidth(charType);
+        var function = LLVM.LLVMGetNamedFunction(compiler.getModule(), name);
+
+        if (function == null)
+            function = createWriteDecimalFunction(compiler, name, charType);
+
+        var arguments = new LLVMValueRef[]{destination, LLVM.LLVMBuildSExt(builder, value, LLVM.LLVMInt64Type(), "")};
+
+        return LLVM.LLVMBuildCall(builder, function, new PointerPointer<>(arguments), arguments.length, "");
+    }
+
+    /**
+     * <code>charType* write_decimal_iN(charType* destination, i64 value)</code>, see
+     * {@link #buildWriteDecimal(MLVCompiler, LLVMBuilderRef, LLVMTypeRef, LLVMValueRef, LLVMValueRef)}
+     */
+    private static LLVMValueRef createWriteDecimalFunction(MLVCompiler compiler, String name, LLVMTypeRef charType) {
+        var i64 = LLVM.LLVMInt64Type();
+        var charPointerType = LLVM.LLVMPointerType(charType, 0);
+
+        var function = LLVM.LLVMAddFunction(compiler.getModule(), name, LLVM.LLVMFunctionType(charPointerType,
+                new PointerPointer<>(new LLVMTypeRef[]{charPointerType, i64}),
+                2,
+                0));
+
+        // Used by exception messages and string concatenations, neither of them is worth a copy of the loops
+        LLVM.LLVMSetLinkage(function, LLVM.LLVMInternalLinkage);
+        addFunctionAttribute(function, "noinline");
+
+        var builder = LLVM.LLVMCreateBuilder();
+
+        var entryBlock = LLVM.LLVMAppendBasicBlock(function, "entry");
+        var countBlock = LLVM.LLVMAppendBasicBlock(function, "count_digits");
+        var writeBlock = LLVM.LLVMAppendBasicBlock(function, "write_digits");
+        var endBlock = LLVM.LLVMAppendBasicBlock(function, "end");
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, entryBlock);
+
+        var destination = LLVM.LLVMGetParam(function, 0);
+        var value = LLVM.LLVMGetParam(function, 1);
+        var ten = LLVM.LLVMConstInt(i64, 10, 0);
+
+        var negative = LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntSLT, value, LLVM.LLVMConstInt(i64, 0, 0), "negative");
+
+        // Long.MIN_VALUE doesn't have a positive counterpart, but its magnitude fits into an unsigned long
+        var magnitude = LLVM.LLVMBuildSelect(builder, negative, LLVM.LLVMBuildNeg(builder, value, ""), value, "magnitude");
+
+        // The sign is written in any case, it is overwritten by the first digit if the value is positive
+        LLVM.LLVMBuildStore(builder, LLVM.LLVMConstInt(charType, '-', 0), destination);
+
+        var start = LLVM.LLVMBuildGEP(builder, destination, new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMBuildZExt(builder, negative, i64, "")}), 1, "start");
+
+        LLVM.LLVMBuildBr(builder, countBlock);
+
+        // do { digits++; remaining /= 10; } while (remaining != 0);
+        LLVM.LLVMPositionBuilderAtEnd(builder, countBlock);
+
+        var countRemaining = LLVM.LLVMBuildPhi(builder, i64, "remaining");
+        var digits = LLVM.LLVMBuildPhi(builder, i64, "digits");
+
+        var nextDigits = LLVM.LLVMBuildNUWAdd(builder, digits, LLVM.LLVMConstInt(i64, 1, 0), "");
+        var nextCountRemaining = LLVM.LLVMBuildUDiv(builder, countRemaining, ten, "");
+
+        addIncoming(countRemaining, new LLVMValueRef[]{magnitude, nextCountRemaining}, new LLVMBasicBlockRef[]{entryBlock, countBlock});
+        addIncoming(digits, new LLVMValueRef[]{LLVM.LLVMConstInt(i64, 0, 0), nextDigits}, new LLVMBasicBlockRef[]{entryBlock, countBlock});
+
+        var end = LLVM.LLVMBuildGEP(builder, start, new PointerPointer<>(new LLVMValueRef[]{nextDigits}), 1, "end");
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, nextCountRemaining, LLVM.LLVMConstInt(i64, 0, 0), ""), countBlock, writeBlock);
+
+        // The digits are written backwards, starting at the last one
+        LLVM.LLVMPositionBuilderAtEnd(builder, writeBlock);
+
+        var writeRemaining = LLVM.LLVMBuildPhi(builder, i64, "remaining");
+        var position = LLVM.LLVMBuildPhi(builder, charPointerType, "position");
+
+        var nextPosition = LLVM.LLVMBuildGEP(builder, position, new PointerPointer<>(new LLVMValueRef[]{LLVM.LLVMConstInt(i64, -1, 1)}), 1, "");
+        var digit = LLVM.LLVMBuildTrunc(builder, LLVM.LLVMBuildURem(builder, writeRemaining, ten, ""), charType, "");
+
+        LLVM.LLVMBuildStore(builder, LLVM.LLVMBuildAdd(builder, digit, LLVM.LLVMConstInt(charType, '0', 0), ""), nextPosition);
+
+        var nextWriteRemaining = LLVM.LLVMBuildUDiv(builder, writeRemaining, ten, "");
+
+        addIncoming(writeRemaining, new LLVMValueRef[]{magnitude, nextWriteRemaining}, new LLVMBasicBlockRef[]{countBlock, writeBlock});
+        addIncoming(position, new LLVMValueRef[]{end, nextPosition}, new LLVMBasicBlockRef[]{countBlock, writeBlock});
+
+        LLVM.LLVMBuildCondBr(builder, LLVM.LLVMBuildICmp(builder, LLVM.LLVMIntNE, nextWriteRemaining, LLVM.LLVMConstInt(i64, 0, 0), ""), writeBlock, endBlock);
+
+        LLVM.LLVMPositionBuilderAtEnd(builder, endBlock);
+
+        LLVM.LLVMBuildRet(builder, end);
+
+        LLVM.LLVMDisposeBuilder(builder);
+
+        return function;
+    }
+
+    /**
+     * Adds the incoming values of a phi node, <code>values[i]</code> comes from <code>blocks[i]</code>
+     */
+    public static void addIncoming(LLVMValueRef phi, LLVMValueRef[] values, LLVMBasicBlockRef[] blocks) {
+        LLVM.LLVMAddIncoming(phi, new PointerPointer<>(values), new PointerPointer<>(blocks), values.length);
+    }
+
+    /**
+     * Adds an enum attribute without a value (e.g. <code>noinline</code>) to a function
+     */
+    public static void addFunctionAttribute(LLVMValueRef function, String attributeName) {
+        var attribute = LLVM.LLVMCreateEnumAttribute(LLVM.LLVMGetGlobalContext(),
+                LLVM.LLVMGetEnumAttributeKindForName(attributeName, attributeName.length()),
+                0);
+
+        LLVM.LLVMAddAttributeAtIndex(function, LLVM.LLVMAttributeFunctionIndex, attribute);
+    }
+
     /**
      * Creates an if-block in LLVM
      *
@@ -25,12 +180,19 @@ public class LLVMUtils {
      * @param callback  builds the inside of the if-block. If this callback doesn't terminate the basic block, it is terminated with a jump to the next block
      */
     public static void buildIf(TranslatedMethod translatedMethod, LLVMValueRef condition, Runnable callback) {
-        var builder = translatedMethod.getLlvmBuilder();
+        buildIf(translatedMethod.getLlvmBuilder(), translatedMethod.getLlvmFunction(), condition, callback);
+    }
 
+    /**
+     * Creates an if-block in a function which is not a translated method
+     *
+     * @see #buildIf(TranslatedMethod, LLVMValueRef, Runnable)
+     */
+    public static void buildIf(LLVMBuilderRef builder, LLVMValueRef function, LLVMValueRef condition, Runnable callback) {
         var lastBlock = LLVM.LLVMGetInsertBlock(builder);
 
-        var ifBlock = LLVM.LLVMAppendBasicBlock(translatedMethod.getLlvmFunction(), "if");
-        var elseBlock = LLVM.LLVMAppendBasicBlock(translatedMethod.getLlvmFunction(), "else");
+        var ifBlock = LLVM.LLVMAppendBasicBlock(function, "if");
+        var elseBlock = LLVM.LLVMAppendBasicBlock(function, "else");
 
         // Rearrange the blocks...
         LLVM.LLVMMoveBasicBlockAfter(ifBlock, lastBlock);
@@ -43,8 +205,9 @@ public class LLVMUtils {
 
         callback.run();
 
-        // If the callback doesn't produce a terminator, jump to the next block
-        if (LLVM.LLVMGetBasicBlockTerminator(ifBlock) == null)
+        // If the callback doesn't produce a terminator, jump to the next block. The callback might have created blocks
+        // on its own, so the block it ended in is checked instead of ifBlock
+        if (LLVM.LLVMGetBasicBlockTerminator(LLVM.LLVMGetInsertBlock(builder)) == null)
             LLVM.LLVMBuildBr(builder, elseBlock);
 
         LLVM.LLVMPositionBuilderAtEnd(builder, elseBlock);
@@ -272,12 +272,46 @@ public class OpcodeUtils implements Opcodes {
         }
     }
 
+    /**
+     * @return the number the instruction pushes if it is a numeric constant (<code>xCONST_n</code>, <code>BIPUSH</code>,
+     * <code>SIPUSH</code> or <code>LDC</code>), <code>null</code> otherwise
+     */
+    public static Number getConstantNumber(AbstractInsnNode insn) {
+        var opcode = insn.getOpcode();
+
+        if (opcode >= ICONST_M1 && opcode <= ICONST_5)
+            return opcode - ICONST_0;
+
+        switch (opcode) {
+            case LCONST_0:
+            case LCONST_1:
+                return (long) (opcode - LCONST_0);
+            case FCONST_0:
+            case FCONST_1:
+            case FCONST_2:
+                return (float) (opcode - FCONST_0);
+            case DCONST_0:
+            case DCONST_1:
+                return (double) (opcode - DCONST_0);
+            case BIPUSH:
+            case SIPUSH:
+                return ((IntInsnNode) insn).operand;
+            case LDC:
+                return ((LdcInsnNode) insn).cst instanceof Number ? (Number) ((LdcInsnNode) insn).cst : null;
+            default:
+                return null;
+        }
+    }
+
     public static Type getReturnType(AbstractInsnNode insn) {
         if (insn instanceof FieldInsnNode) {
             return Type.getType(((FieldInsnNode) insn).desc);
         } else if (insn instanceof MethodInsnNode) {
             return Type.getReturnType(((MethodInsnNode) insn).desc);
         } else if (insn instanceof IntInsnNode) {
+            if (insn.getOpcode() == NEWARRAY)
+                return Type.getType("[" + getNewArrayType((IntInsnNode) insn).getDescriptor());
+
             return Type.INT_TYPE;
         } else if (insn instanceof MultiANewArrayInsnNode) {
             return Type.getType(((MultiANewArrayInsnNode) insn).desc);
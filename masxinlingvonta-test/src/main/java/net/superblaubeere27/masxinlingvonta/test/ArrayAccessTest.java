@@ -0,0 +1,91 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.util.Arrays;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Array accesses which aren't pinned (the methods have exception handlers) use temporaries on the stack. They are
+ * reused, so long loops must not use more stack and values which are live at the same time must not share one.
+ */
+public class ArrayAccessTest {
+    private static final int ITERATIONS = 1_000_000;
+
+    public static void test() {
+        var ints = new int[]{1, 2, 3, 4, 5, 6, 7, 8};
+        var expectedInts = ints.clone();
+
+        assertTrue(sumNeighbours(ints, ITERATIONS) == referenceSumNeighbours(expectedInts, ITERATIONS));
+        assertTrue(Arrays.equals(ints, expectedInts));
+
+        var bytes = new byte[256];
+        var chars = new char[256];
+        var longs = new long[256];
+        var doubles = new double[256];
+
+        assertTrue(mixTypes(bytes, chars, longs, doubles, ITERATIONS) == ITERATIONS);
+
+        for (int i = 0; i < 256; i++) {
+            assertTrue(bytes[i] == (byte) (ITERATIONS / 256 * i));
+            assertTrue(chars[i] == (char) (ITERATIONS / 256 * i * 1000));
+            assertTrue(longs[i] == (long) ITERATIONS / 256 * i * 1_000_000_000L);
+            assertTrue(doubles[i] == ITERATIONS / 256 * (i + 0.5));
+        }
+    }
+
+    private static long referenceSumNeighbours(int[] array, int iterations) {
+        long sum = 0;
+
+        for (int n = 0; n < iterations; n++) {
+            int i = n % (array.length - 2);
+
+            array[i] = array[i + 1] - array[i + 2] + n;
+            sum += array[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Two loads of the same type are live at the same time
+     */
+    @Outsource
+    public static long sumNeighbours(int[] array, int iterations) {
+        long sum = 0;
+
+        try {
+            for (int n = 0; n < iterations; n++) {
+                int i = n % (array.length - 2);
+
+                array[i] = array[i + 1] - array[i + 2] + n;
+                sum += array[i];
+            }
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static int mixTypes(byte[] bytes, char[] chars, long[] longs, double[] doubles, int iterations) {
+        int n = 0;
+
+        try {
+            for (; n < iterations - iterations % 256; n++) {
+                int i = n & 255;
+
+                bytes[i] += (byte) i;
+                chars[i] += (char) (i * 1000);
+                longs[i] += i * 1_000_000_000L;
+                doubles[i] += i + 0.5;
+            }
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+
+        return n + iterations % 256;
+    }
+}
@@ -0,0 +1,95 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.util.Arrays;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Array initializers with constant elements are copied from a constant global. Every execution has to create a new
+ * array with exactly the elements of the initializer.
+ */
+public class ArrayInitializerTest {
+    public static void test() {
+        assertTrue(Arrays.equals(ints(), new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x12345678}));
+        assertTrue(Arrays.equals(longs(), new long[]{0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x123456789ABCDEFL}));
+        assertTrue(Arrays.equals(doubles(), new double[]{0.0, -0.0, Double.NaN, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, 0.1}));
+        assertTrue(Arrays.equals(floats(), new float[]{-0.0f, Float.NaN, Float.MAX_VALUE, 0.1f}));
+        assertTrue(Arrays.equals(bytes(), new byte[]{-128, -1, 0, 127}));
+        assertTrue(Arrays.equals(shorts(), new short[]{Short.MIN_VALUE, -1, Short.MAX_VALUE}));
+        assertTrue(Arrays.equals(chars(), new char[]{'a', 0, 0xFFFF, '\u00e9'}));
+        assertTrue(Arrays.equals(booleans(), new boolean[]{true, false, true, true}));
+        assertTrue(Arrays.equals(mixed(42), new int[]{1, 42, 3, 0, 5}));
+        assertTrue(Arrays.equals(mixed(-1), new int[]{1, -1, 3, 0, 5}));
+        assertTrue(Arrays.equals(longArray(), new int[]{3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5, 8, 9, 7, 9, 3, 2, 3, 8, 4, 6, 2, 6,
+                4, 3, 3, 8, 3, 2, 7, 9, 5, 0, 2, 8, 8, 4, 1, 9, 7}));
+        assertTrue(empty().length == 0);
+
+        // The constant global must not be modified through the array
+        var array = ints();
+
+        array[0] = 42;
+        assertTrue(ints()[0] == 0);
+        assertTrue(ints() != ints());
+    }
+
+    @Outsource
+    public static int[] ints() {
+        return new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x12345678};
+    }
+
+    @Outsource
+    public static long[] longs() {
+        return new long[]{0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x123456789ABCDEFL};
+    }
+
+    @Outsource
+    public static double[] doubles() {
+        return new double[]{0.0, -0.0, Double.NaN, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, 0.1};
+    }
+
+    @Outsource
+    public static float[] floats() {
+        return new float[]{-0.0f, Float.NaN, Float.MAX_VALUE, 0.1f};
+    }
+
+    @Outsource
+    public static byte[] bytes() {
+        return new byte[]{-128, -1, 0, 127};
+    }
+
+    @Outsource
+    public static short[] shorts() {
+        return new short[]{Short.MIN_VALUE, -1, Short.MAX_VALUE};
+    }
+
+    @Outsource
+    public static char[] chars() {
+        return new char[]{'a', 0, 0xFFFF, '\u00e9'};
+    }
+
+    @Outsource
+    public static boolean[] booleans() {
+        return new boolean[]{true, false, true, true};
+    }
+
+    /**
+     * Only the constant elements before the first non-constant one are copied
+     */
+    @Outsource
+    public static int[] mixed(int value) {
+        return new int[]{1, value, 3, 0, 5};
+    }
+
+    @Outsource
+    public static int[] longArray() {
+        return new int[]{3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5, 8, 9, 7, 9, 3, 2, 3, 8, 4, 6, 2, 6, 4, 3, 3, 8, 3, 2, 7, 9, 5, 0,
+                2, 8, 8, 4, 1, 9, 7};
+    }
+
+    @Outsource
+    public static int[] empty() {
+        return new int[]{};
+    }
+}
@@ -0,0 +1,177 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.util.Arrays;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compares the intrinsics of <code>System.arraycopy</code> and <code>java.util.Arrays</code> and pinned array
+ * accesses with the methods the VM calls, including the messages of the exceptions
+ */
+public class ArrayIntrinsicsTest {
+    private static final int[] POSITIONS = {-1, 0, 1, 2, 3, 4, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    public static void test() {
+        testArraycopy();
+        testFill();
+        testCopyOf();
+        testPinnedAccess();
+    }
+
+    private static void testArraycopy() {
+        for (int srcPos : POSITIONS) {
+            for (int dstPos : POSITIONS) {
+                for (int length : POSITIONS) {
+                    assertSameBehavior(() -> {
+                        var dst = new int[3];
+
+                        System.arraycopy(new int[]{1, 2, 3, 4}, srcPos, dst, dstPos, length);
+
+                        return Arrays.toString(dst);
+                    }, () -> {
+                        var dst = new int[3];
+
+                        arraycopy(new int[]{1, 2, 3, 4}, srcPos, dst, dstPos, length);
+
+                        return Arrays.toString(dst);
+                    });
+                }
+            }
+        }
+
+        // Overlapping copies within the same array
+        assertSameBehavior(() -> {
+            var array = new long[]{1, 2, 3, 4, 5};
+
+            System.arraycopy(array, 0, array, 1, 4);
+
+            return Arrays.toString(array);
+        }, () -> {
+            var array = new long[]{1, 2, 3, 4, 5};
+
+            arraycopy(array, 0, array, 1, 4);
+
+            return Arrays.toString(array);
+        });
+
+        assertSameBehavior(() -> {
+            System.arraycopy(null, 0, new int[1], 0, 1);
+
+            return null;
+        }, () -> {
+            arraycopy(null, 0, new int[1], 0, 1);
+
+            return null;
+        });
+        assertSameBehavior(() -> {
+            System.arraycopy(new int[1], 0, null, 0, 1);
+
+            return null;
+        }, () -> {
+            arraycopy(new int[1], 0, null, 0, 1);
+
+            return null;
+        });
+    }
+
+    private static void testFill() {
+        for (int fromIndex : POSITIONS) {
+            for (int toIndex : POSITIONS) {
+                assertSameBehavior(() -> {
+                    var array = new int[3];
+
+                    Arrays.fill(array, fromIndex, toIndex, 42);
+
+                    return Arrays.toString(array);
+                }, () -> {
+                    var array = new int[3];
+
+                    fill(array, fromIndex, toIndex, 42);
+
+                    return Arrays.toString(array);
+                });
+            }
+        }
+
+        assertSameBehavior(() -> {
+            var array = new boolean[3];
+
+            Arrays.fill(array, true);
+
+            return Arrays.toString(array);
+        }, () -> {
+            var array = new boolean[3];
+
+            fill(array, true);
+
+            return Arrays.toString(array);
+        });
+
+        assertThrows(NullPointerException.class, () -> fill(null, 0, 0, 42));
+    }
+
+    private static void testCopyOf() {
+        for (int newLength : new int[]{-1, 0, 2, 3, 5}) {
+            assertSameBehavior(() -> Arrays.toString(Arrays.copyOf(new double[]{1, 2, 3}, newLength)),
+                               () -> Arrays.toString(copyOf(new double[]{1, 2, 3}, newLength)));
+        }
+
+        assertThrows(NullPointerException.class, () -> copyOf(null, 1));
+    }
+
+    private static void testPinnedAccess() {
+        var array = new int[]{1, 2, 3};
+
+        for (int index : new int[]{-1, 0, 2, 3, Integer.MIN_VALUE, Integer.MAX_VALUE - 1}) {
+            assertSameBehavior(() -> {
+                if (index < 0 || index >= array.length)
+                    throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + array.length);
+
+                return array[index];
+            }, () -> sum(array, index, index + 1));
+        }
+
+        assertThrows(NullPointerException.class, () -> sum(null, 0, 1));
+    }
+
+    @Outsource
+    public static void arraycopy(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+        System.arraycopy(src, srcPos, dst, dstPos, length);
+    }
+
+    @Outsource
+    public static void arraycopy(long[] src, int srcPos, long[] dst, int dstPos, int length) {
+        System.arraycopy(src, srcPos, dst, dstPos, length);
+    }
+
+    @Outsource
+    public static void fill(int[] array, int fromIndex, int toIndex, int value) {
+        Arrays.fill(array, fromIndex, toIndex, value);
+    }
+
+    @Outsource
+    public static void fill(boolean[] array, boolean value) {
+        Arrays.fill(array, value);
+    }
+
+    @Outsource
+    public static double[] copyOf(double[] original, int newLength) {
+        return Arrays.copyOf(original, newLength);
+    }
+
+    /**
+     * The array is pinned since it is only accessed in a loop
+     */
+    @Outsource
+    public static int sum(int[] array, int fromIndex, int toIndex) {
+        int sum = 0;
+
+        for (int i = fromIndex; i < toIndex; i++) {
+            sum += array[i];
+        }
+
+        return sum;
+    }
+}
@@ -1,5 +1,8 @@
 package net.superblaubeere27.masxinlingvonta.test;
 
+import java.util.Objects;
+import java.util.function.Supplier;
+
 public class Assertions {
 
     public static void assertTrue(boolean flag) {
@@ -12,6 +15,64 @@ public class Assertions {
         throw new AssertionError();
     }
 
+    /**
+     * Checks that the compiled code behaves like the VM: Both suppliers have to return equal values or throw
+     * exceptions of the same class with the same message
+     */
+    public static void assertSameBehavior(Supplier<?> expected, Supplier<?> actual) {
+        var expectedResult = run(expected);
+        var actualResult = run(actual);
+
+        if (!Objects.equals(expectedResult, actualResult))
+            throw new AssertionError("Expected " + expectedResult + ", got " + actualResult);
+    }
+
+    /**
+     * Checks that the runnable throws an exception of the given class, the message isn't checked
+     */
+    public static void assertThrows(Class<? extends Throwable> expected, Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (Throwable e) {
+            if (e.getClass() != expected)
+                throw new AssertionError("Expected " + expected.getName() + ", got " + e);
+
+            return;
+        }
+
+        throw new AssertionError("Expected " + expected.getName());
+    }
+
+    /**
+     * Checks that the runnable throws a NullPointerException because the method is invoked on <code>null</code>. The
+     * message of the VM also describes the null value, so only its start is compared.
+     *
+     * @param method the method like in the message, e.g. <code>java.lang.Integer.intValue()</code>
+     */
+    public static void assertNullReceiver(String method, Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (NullPointerException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("Cannot invoke \"" + method + "\""))
+                throw new AssertionError("Expected a NullPointerException for " + method + ", got " + e);
+
+            return;
+        }
+
+        throw new AssertionError("Expected a NullPointerException for " + method);
+    }
+
+    /**
+     * @return the result or a description of the thrown exception
+     */
+    private static Object run(Supplier<?> supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            return "thrown " + e;
+        }
+    }
+
     public static boolean supplyTrue() {
         return true;
     }
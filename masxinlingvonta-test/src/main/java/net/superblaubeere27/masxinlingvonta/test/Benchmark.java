@@ -0,0 +1,63 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import java.util.StringJoiner;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Runs the benchmarks of the compiled code and prints the average time per iteration of every case. The benchmarks
+ * aren't part of {@link TestMain}, the behavior they measure is checked by the tests.
+ */
+public class Benchmark {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int ITERATIONS = 2_000_000;
+
+    public static void main(String[] args) {
+        System.loadLibrary("test-native");
+
+        InvokeBenchmark.run();
+        DevirtualizationBenchmark.run();
+        StringBenchmark.run();
+        BufferBenchmark.run();
+    }
+
+    /**
+     * Warms all cases up before any of them is timed, then runs them one after another and prints one line for the
+     * group
+     */
+    static void measure(String group, Case... cases) {
+        for (Case benchmarkCase : cases) {
+            benchmarkCase.kernel.applyAsLong(WARMUP_ITERATIONS);
+        }
+
+        var results = new StringJoiner(", ", group + ": ", "");
+
+        for (Case benchmarkCase : cases) {
+            long start = System.nanoTime();
+
+            benchmarkCase.kernel.applyAsLong(ITERATIONS);
+
+            long time = System.nanoTime() - start;
+
+            results.add(String.format("%s %.1f ns", benchmarkCase.name, (double) time / ITERATIONS));
+        }
+
+        System.out.println(results);
+    }
+
+    /**
+     * @param kernel runs the measured operation the given number of times
+     */
+    static Case of(String name, IntToLongFunction kernel) {
+        return new Case(name, kernel);
+    }
+
+    static final class Case {
+        private final String name;
+        private final IntToLongFunction kernel;
+
+        private Case(String name, IntToLongFunction kernel) {
+            this.name = name;
+            this.kernel = kernel;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compares the bit manipulation intrinsics of <code>Integer</code> and <code>Long</code> and the bit conversions of
+ * <code>Float</code> and <code>Double</code> with the methods the VM calls
+ */
+public class BitIntrinsicsTest {
+    private static final int[] INTS = {0, 1, -1, 0x80, 0x12345678, 0xF0000000, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    private static final long[] LONGS = {0, 1, -1, 0x80, 0x123456789ABCDEF0L, 0xF000000000000000L, Long.MIN_VALUE,
+            Long.MAX_VALUE};
+    private static final int[] DISTANCES = {0, 1, 7, 31, 32, 33, 63, 64, 65, -1, Integer.MIN_VALUE};
+    /**
+     * Includes quiet NaNs with payloads, which only the raw conversions preserve
+     */
+    private static final int[] FLOAT_BITS = {0, 0x80000000, 0x3F800000, 0x7F800000, 0xFF800000, 0x7FC00000, 0x7FC00001,
+            0xFFC12345, 0x00000001};
+    private static final long[] DOUBLE_BITS = {0, 0x8000000000000000L, 0x3FF0000000000000L, 0x7FF0000000000000L,
+            0x7FF8000000000000L, 0x7FF8000000000001L, 0xFFF8123456789ABCL, 0x0000000000000001L};
+
+    public static void test() {
+        testInts();
+        testLongs();
+        testFloatBits();
+        testDoubleBits();
+    }
+
+    private static void testInts() {
+        for (int value : INTS) {
+            assertTrue(bitCount(value) == Integer.bitCount(value));
+            assertTrue(numberOfLeadingZeros(value) == Integer.numberOfLeadingZeros(value));
+            assertTrue(numberOfTrailingZeros(value) == Integer.numberOfTrailingZeros(value));
+            assertTrue(reverse(value) == Integer.reverse(value));
+            assertTrue(reverseBytes(value) == Integer.reverseBytes(value));
+
+            for (int distance : DISTANCES) {
+                assertTrue(rotateLeft(value, distance) == Integer.rotateLeft(value, distance));
+                assertTrue(rotateRight(value, distance) == Integer.rotateRight(value, distance));
+            }
+        }
+    }
+
+    private static void testLongs() {
+        for (long value : LONGS) {
+            assertTrue(bitCount(value) == Long.bitCount(value));
+            assertTrue(numberOfLeadingZeros(value) == Long.numberOfLeadingZeros(value));
+            assertTrue(numberOfTrailingZeros(value) == Long.numberOfTrailingZeros(value));
+            assertTrue(reverse(value) == Long.reverse(value));
+            assertTrue(reverseBytes(value) == Long.reverseBytes(value));
+
+            for (int distance : DISTANCES) {
+                assertTrue(rotateLeft(value, distance) == Long.rotateLeft(value, distance));
+                assertTrue(rotateRight(value, distance) == Long.rotateRight(value, distance));
+            }
+        }
+    }
+
+    private static void testFloatBits() {
+        for (int bits : FLOAT_BITS) {
+            var value = Float.intBitsToFloat(bits);
+
+            assertTrue(Float.floatToRawIntBits(intBitsToFloat(bits)) == Float.floatToRawIntBits(value));
+            assertTrue(floatToRawIntBits(value) == Float.floatToRawIntBits(value));
+            assertTrue(floatToIntBits(value) == Float.floatToIntBits(value));
+        }
+    }
+
+    private static void testDoubleBits() {
+        for (long bits : DOUBLE_BITS) {
+            var value = Double.longBitsToDouble(bits);
+
+            assertTrue(Double.doubleToRawLongBits(longBitsToDouble(bits)) == Double.doubleToRawLongBits(value));
+            assertTrue(doubleToRawLongBits(value) == Double.doubleToRawLongBits(value));
+            assertTrue(doubleToLongBits(value) == Double.doubleToLongBits(value));
+        }
+    }
+
+    @Outsource
+    public static int bitCount(int value) {
+        return Integer.bitCount(value);
+    }
+
+    @Outsource
+    public static int numberOfLeadingZeros(int value) {
+        return Integer.numberOfLeadingZeros(value);
+    }
+
+    @Outsource
+    public static int numberOfTrailingZeros(int value) {
+        return Integer.numberOfTrailingZeros(value);
+    }
+
+    @Outsource
+    public static int reverse(int value) {
+        return Integer.reverse(value);
+    }
+
+    @Outsource
+    public static int reverseBytes(int value) {
+        return Integer.reverseBytes(value);
+    }
+
+    @Outsource
+    public static int rotateLeft(int value, int distance) {
+        return Integer.rotateLeft(value, distance);
+    }
+
+    @Outsource
+    public static int rotateRight(int value, int distance) {
+        return Integer.rotateRight(value, distance);
+    }
+
+    @Outsource
+    public static int bitCount(long value) {
+        return Long.bitCount(value);
+    }
+
+    @Outsource
+    public static int numberOfLeadingZeros(long value) {
+        return Long.numberOfLeadingZeros(value);
+    }
+
+    @Outsource
+    public static int numberOfTrailingZeros(long value) {
+        return Long.numberOfTrailingZeros(value);
+    }
+
+    @Outsource
+    public static long reverse(long value) {
+        return Long.reverse(value);
+    }
+
+    @Outsource
+    public static long reverseBytes(long value) {
+        return Long.reverseBytes(value);
+    }
+
+    @Outsource
+    public static long rotateLeft(long value, int distance) {
+        return Long.rotateLeft(value, distance);
+    }
+
+    @Outsource
+    public static long rotateRight(long value, int distance) {
+        return Long.rotateRight(value, distance);
+    }
+
+    @Outsource
+    public static float intBitsToFloat(int bits) {
+        return Float.intBitsToFloat(bits);
+    }
+
+    @Outsource
+    public static int floatToRawIntBits(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    @Outsource
+    public static int floatToIntBits(float value) {
+        return Float.floatToIntBits(value);
+    }
+
+    @Outsource
+    public static double longBitsToDouble(long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    @Outsource
+    public static long doubleToRawLongBits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+
+    @Outsource
+    public static long doubleToLongBits(double value) {
+        return Double.doubleToLongBits(value);
+    }
+}
@@ -0,0 +1,128 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Checks that the boxing intrinsics return the instances of the VM's box caches and fresh boxes outside of them
+ */
+public class BoxIntrinsicsTest {
+    private static final int[] INTS = {-129, -128, -1, 0, 1, 127, 128, 1000, Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    public static void test() {
+        testCacheIdentity();
+        testUnboxing();
+    }
+
+    private static void testCacheIdentity() {
+        for (int value : INTS) {
+            boolean cached = value >= -128 && value <= 127;
+
+            assertTrue(box(value).equals(value));
+            assertTrue((box(value) == Integer.valueOf(value)) == cached);
+            assertTrue((box(value) == box(value)) == cached);
+            assertTrue((box((long) value) == Long.valueOf(value)) == cached);
+            assertTrue(box((byte) value) == Byte.valueOf((byte) value));
+
+            var shortValue = (short) value;
+
+            assertTrue((box(shortValue) == Short.valueOf(shortValue)) == (shortValue >= -128 && shortValue <= 127));
+        }
+
+        for (char value : new char[]{0, 'a', 127, 128, 0xFFFF}) {
+            assertTrue(box(value).equals(value));
+            assertTrue((box(value) == Character.valueOf(value)) == (value <= 127));
+        }
+
+        assertTrue(box(true) == Boolean.TRUE);
+        assertTrue(box(false) == Boolean.FALSE);
+
+        // Floats and doubles aren't cached
+        assertTrue(box(-0.0).equals(-0.0) && !box(-0.0).equals(0.0));
+        assertTrue(box(Float.NaN).equals(Float.NaN));
+        assertTrue(box(1.0f) != box(1.0f));
+    }
+
+    private static void testUnboxing() {
+        for (int value : INTS) {
+            assertTrue(unbox(Integer.valueOf(value)) == value);
+            assertTrue(unbox(Long.valueOf(value)) == value);
+        }
+
+        assertTrue(Double.doubleToRawLongBits(unbox(Double.valueOf(-0.0))) == Double.doubleToRawLongBits(-0.0));
+        assertTrue(unbox('x') == 'x');
+        assertTrue(unbox(Boolean.TRUE));
+
+        assertNullReceiver("java.lang.Integer.intValue()", () -> unbox((Integer) null));
+        assertNullReceiver("java.lang.Long.longValue()", () -> unbox((Long) null));
+        assertNullReceiver("java.lang.Double.doubleValue()", () -> unbox((Double) null));
+        assertNullReceiver("java.lang.Character.charValue()", () -> unbox((Character) null));
+        assertNullReceiver("java.lang.Boolean.booleanValue()", () -> unbox((Boolean) null));
+    }
+
+    @Outsource
+    public static Integer box(int value) {
+        return value;
+    }
+
+    @Outsource
+    public static Long box(long value) {
+        return Long.valueOf(value);
+    }
+
+    @Outsource
+    public static Short box(short value) {
+        return value;
+    }
+
+    @Outsource
+    public static Byte box(byte value) {
+        return value;
+    }
+
+    @Outsource
+    public static Character box(char value) {
+        return value;
+    }
+
+    @Outsource
+    public static Boolean box(boolean value) {
+        return value;
+    }
+
+    @Outsource
+    public static Double box(double value) {
+        return value;
+    }
+
+    @Outsource
+    public static Float box(float value) {
+        return value;
+    }
+
+    @Outsource
+    public static int unbox(Integer value) {
+        return value;
+    }
+
+    @Outsource
+    public static long unbox(Long value) {
+        return value.longValue();
+    }
+
+    @Outsource
+    public static double unbox(Double value) {
+        return value;
+    }
+
+    @Outsource
+    public static char unbox(Character value) {
+        return value;
+    }
+
+    @Outsource
+    public static boolean unbox(Boolean value) {
+        return value;
+    }
+}
@@ -0,0 +1,78 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Measures direct <code>ByteBuffer</code> accesses in compiled code. If the method calls nothing else, the buffer's
+ * address, limit and byte order are looked up once per invocation. If it may call other code, limit and byte order
+ * are read with <code>GetIntField</code> and <code>GetBooleanField</code> on every access. A buffer which isn't a
+ * parameter also looks its address up on every access.
+ */
+public class BufferBenchmark {
+    private static final int INTS = 64;
+
+    static void run() {
+        var buffer = createBuffer();
+
+        Benchmark.measure("buffer",
+                Benchmark.of("cached state", iterations -> sumCached(buffer, iterations)),
+                Benchmark.of("uncached state", iterations -> sumUncached(buffer, iterations)),
+                Benchmark.of("without region", iterations -> sumWithoutRegion(buffer, iterations)));
+    }
+
+    private static ByteBuffer createBuffer() {
+        var buffer = ByteBuffer.allocateDirect(INTS * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < INTS; i++) {
+            buffer.putInt(i * 4, i * 0x01010101);
+        }
+
+        return buffer;
+    }
+
+    @Outsource
+    public static long sumCached(ByteBuffer buffer, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += buffer.getInt((i & (INTS - 1)) * 4);
+        }
+
+        return sum;
+    }
+
+    /**
+     * Like {@link #sumCached(ByteBuffer, int)}, but the call which is never made could change the buffer's limit
+     */
+    @Outsource
+    public static long sumUncached(ByteBuffer buffer, int iterations) {
+        if (iterations < 0)
+            buffer.limit(0);
+
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += buffer.getInt((i & (INTS - 1)) * 4);
+        }
+
+        return sum;
+    }
+
+    /**
+     * The buffer is accessed through a local which isn't a parameter, so it has no region
+     */
+    @Outsource
+    public static long sumWithoutRegion(ByteBuffer parameter, int iterations) {
+        var buffer = parameter;
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += buffer.getInt((i & (INTS - 1)) * 4);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,223 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compares the <code>ByteBuffer</code> intrinsics with the methods the VM calls. Every access is done on two equal
+ * buffers, one by the VM and one by the compiled code, afterwards both buffers have to be equal again.
+ */
+public class BufferIntrinsicsTest {
+    private static final int CAPACITY = 16;
+    private static final int LIMIT = 10;
+    private static final int[] INDICES = {-1, 0, 1, LIMIT - 8, LIMIT - 4, LIMIT - 2, LIMIT - 1, LIMIT, CAPACITY,
+            Integer.MIN_VALUE, Integer.MAX_VALUE};
+
+    public static void test() {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            testAccesses(() -> ByteBuffer.allocateDirect(CAPACITY).order(order));
+            testAccesses(() -> ByteBuffer.allocate(CAPACITY).order(order));
+            testAccesses(() -> ByteBuffer.allocateDirect(CAPACITY).asReadOnlyBuffer().order(order));
+            testAccesses(() -> ByteBuffer.allocateDirect(CAPACITY + 3).position(3).slice().order(order));
+        }
+
+        assertNullReceiver("java.nio.ByteBuffer.getInt(int)", () -> getInt(null, 0));
+        assertNullReceiver("java.nio.ByteBuffer.putLong(long)", () -> putLong(null, 0));
+    }
+
+    /**
+     * @param factory creates an empty buffer, the test sets its content, position and limit
+     */
+    private static void testAccesses(Supplier<ByteBuffer> factory) {
+        for (int index : INDICES) {
+            compare(factory, index, buffer -> buffer.get(index), buffer -> get(buffer, index));
+            compare(factory, index, buffer -> buffer.getShort(index), buffer -> getShort(buffer, index));
+            compare(factory, index, buffer -> buffer.getChar(index), buffer -> getChar(buffer, index));
+            compare(factory, index, buffer -> buffer.getInt(index), buffer -> getInt(buffer, index));
+            compare(factory, index, buffer -> buffer.getFloat(index), buffer -> getFloat(buffer, index));
+            compare(factory, index, buffer -> buffer.getLong(), BufferIntrinsicsTest::getLong);
+            compare(factory, index, ByteBuffer::getDouble, BufferIntrinsicsTest::getDouble);
+
+            compare(factory, index, buffer -> buffer.put(index, (byte) -2), buffer -> put(buffer, index, (byte) -2));
+            compare(factory, index, buffer -> buffer.putChar(index, '\ufffe'), buffer -> putChar(buffer, index, '\ufffe'));
+            compare(factory, index, buffer -> buffer.putInt(index, 0x12345678), buffer -> putInt(buffer, index, 0x12345678));
+            compare(factory, index, buffer -> buffer.putDouble(index, -0.0), buffer -> putDouble(buffer, index, -0.0));
+            compare(factory, index, buffer -> buffer.putShort((short) 0x8001), buffer -> putShort(buffer, (short) 0x8001));
+            compare(factory, index, buffer -> buffer.putLong(0x0102030405060708L), buffer -> putLong(buffer, 0x0102030405060708L));
+            compare(factory, index, buffer -> {
+                long sum = 0;
+
+                for (int i = 0; i < 3; i++) {
+                    sum += buffer.getShort();
+                }
+
+                buffer.putShort(0, (short) sum);
+
+                return sum;
+            }, buffer -> sumShorts(buffer, 3));
+            compare(factory, index, buffer -> {
+                if (index == Integer.MIN_VALUE)
+                    buffer.limit(0);
+
+                return buffer.getInt(index) + buffer.getInt(0);
+            }, buffer -> sumIntsAfterCall(buffer, index));
+            compare(factory, index, buffer -> buffer.getInt(index) + buffer.getInt(0), buffer -> sumIntsWithoutRegion(buffer, index));
+        }
+    }
+
+    /**
+     * Runs the access of the VM and the compiled one on equal buffers. The position of the buffers is the index if
+     * it is valid.
+     */
+    private static void compare(Supplier<ByteBuffer> factory, int index, Function<ByteBuffer, Object> expected, Function<ByteBuffer, Object> actual) {
+        var expectedBuffer = createBuffer(factory, index);
+        var actualBuffer = createBuffer(factory, index);
+
+        assertSameBehavior(() -> access(expectedBuffer, expected), () -> access(actualBuffer, actual));
+    }
+
+    /**
+     * Describes the result or the class of the exception and the state of the buffer afterwards. The messages of the
+     * VM's IndexOutOfBoundsExceptions depend on whether the method was JIT-compiled, so they aren't compared.
+     */
+    private static String access(ByteBuffer buffer, Function<ByteBuffer, Object> access) {
+        Object result;
+
+        try {
+            result = access.apply(buffer);
+        } catch (RuntimeException e) {
+            result = e.getClass().getName();
+        }
+
+        // put returns the buffer itself
+        if (result instanceof ByteBuffer)
+            result = result == buffer ? "this" : "other";
+
+        var content = new byte[buffer.capacity()];
+
+        buffer.duplicate().clear().get(content);
+
+        return result + " " + buffer + " " + Arrays.toString(content);
+    }
+
+    private static ByteBuffer createBuffer(Supplier<ByteBuffer> factory, int position) {
+        var buffer = factory.get();
+
+        if (!buffer.isReadOnly()) {
+            for (int i = 0; i < CAPACITY; i++) {
+                buffer.put(i, (byte) (i * 37 + 1));
+            }
+        }
+
+        return buffer.limit(LIMIT).position(position >= 0 && position <= LIMIT ? position : 0);
+    }
+
+    @Outsource
+    public static byte get(ByteBuffer buffer, int index) {
+        return buffer.get(index);
+    }
+
+    @Outsource
+    public static short getShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index);
+    }
+
+    @Outsource
+    public static char getChar(ByteBuffer buffer, int index) {
+        return buffer.getChar(index);
+    }
+
+    @Outsource
+    public static int getInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index);
+    }
+
+    @Outsource
+    public static float getFloat(ByteBuffer buffer, int index) {
+        return buffer.getFloat(index);
+    }
+
+    @Outsource
+    public static long getLong(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+
+    @Outsource
+    public static double getDouble(ByteBuffer buffer) {
+        return buffer.getDouble();
+    }
+
+    @Outsource
+    public static ByteBuffer put(ByteBuffer buffer, int index, byte value) {
+        return buffer.put(index, value);
+    }
+
+    @Outsource
+    public static ByteBuffer putChar(ByteBuffer buffer, int index, char value) {
+        return buffer.putChar(index, value);
+    }
+
+    @Outsource
+    public static ByteBuffer putInt(ByteBuffer buffer, int index, int value) {
+        return buffer.putInt(index, value);
+    }
+
+    @Outsource
+    public static ByteBuffer putDouble(ByteBuffer buffer, int index, double value) {
+        return buffer.putDouble(index, value);
+    }
+
+    @Outsource
+    public static ByteBuffer putShort(ByteBuffer buffer, short value) {
+        return buffer.putShort(value);
+    }
+
+    @Outsource
+    public static ByteBuffer putLong(ByteBuffer buffer, long value) {
+        return buffer.putLong(value);
+    }
+
+    /**
+     * Several accesses to the same buffer, they share its address, limit and byte order
+     */
+    @Outsource
+    public static long sumShorts(ByteBuffer buffer, int count) {
+        long sum = 0;
+
+        for (int i = 0; i < count; i++) {
+            sum += buffer.getShort();
+        }
+
+        buffer.putShort(0, (short) sum);
+
+        return sum;
+    }
+
+    /**
+     * The call may change the buffer's limit, so it is read again by both accesses
+     */
+    @Outsource
+    public static int sumIntsAfterCall(ByteBuffer buffer, int index) {
+        if (index == Integer.MIN_VALUE)
+            buffer.limit(0);
+
+        return buffer.getInt(index) + buffer.getInt(0);
+    }
+
+    /**
+     * The buffer is accessed through a local which isn't a parameter, so the accesses don't share its state
+     */
+    @Outsource
+    public static int sumIntsWithoutRegion(ByteBuffer parameter, int index) {
+        var buffer = parameter;
+
+        return buffer.getInt(index) + buffer.getInt(0);
+    }
+}
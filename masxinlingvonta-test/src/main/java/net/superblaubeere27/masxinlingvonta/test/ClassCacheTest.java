@@ -0,0 +1,107 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Classes are looked up once and kept in module slots. Classes with the same simple name must get different slots and
+ * a failed lookup must not be cached.
+ */
+public class ClassCacheTest {
+
+    public static void test() {
+        testDistinctClasses();
+        testRepeatedLookups();
+        testFailedInitialization();
+    }
+
+    private static void testDistinctClasses() {
+        assertTrue(createFirst() instanceof First.Inner);
+        assertTrue(createSecond() instanceof Second.Inner);
+        assertTrue(isFirst(new First.Inner()));
+        assertTrue(!isFirst(new Second.Inner()));
+        assertTrue(getClassConstant() == First.Inner.class);
+        assertTrue(createFirstArray(3).getClass() == First.Inner[].class);
+    }
+
+    private static void testRepeatedLookups() {
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(isFirst(i % 2 == 0 ? new First.Inner() : new Second.Inner()) == (i % 2 == 0));
+        }
+    }
+
+    private static void testFailedInitialization() {
+        // The VM's behaviour: The first access fails with the initializer's exception, every later one with
+        // NoClassDefFoundError
+        try {
+            getFailingVM();
+            fail();
+        } catch (ExceptionInInitializerError ignored) {
+        }
+
+        assertThrows(NoClassDefFoundError.class, () -> getFailingVM());
+
+        // With the eager resolution strategy the initializer already failed while the library was loaded
+        try {
+            getFailing();
+            fail();
+        } catch (ExceptionInInitializerError | NoClassDefFoundError ignored) {
+        }
+
+        assertThrows(NoClassDefFoundError.class, () -> getFailing());
+        assertThrows(NoClassDefFoundError.class, () -> getFailing());
+    }
+
+    @Outsource
+    public static Object createFirst() {
+        return new First.Inner();
+    }
+
+    @Outsource
+    public static Object createSecond() {
+        return new Second.Inner();
+    }
+
+    @Outsource
+    public static boolean isFirst(Object o) {
+        return o instanceof First.Inner;
+    }
+
+    @Outsource
+    public static Class<?> getClassConstant() {
+        return First.Inner.class;
+    }
+
+    @Outsource
+    public static Object[] createFirstArray(int length) {
+        return new First.Inner[length];
+    }
+
+    @Outsource
+    public static int getFailing() {
+        return FailingInitializer.VALUE;
+    }
+
+    public static int getFailingVM() {
+        return OtherFailingInitializer.VALUE;
+    }
+
+    private static class First {
+        private static class Inner {
+        }
+    }
+
+    private static class Second {
+        private static class Inner {
+        }
+    }
+
+    private static class FailingInitializer {
+        private static final int VALUE = Integer.parseInt("not a number");
+    }
+
+    private static class OtherFailingInitializer {
+        private static final int VALUE = Integer.parseInt("not a number");
+    }
+}
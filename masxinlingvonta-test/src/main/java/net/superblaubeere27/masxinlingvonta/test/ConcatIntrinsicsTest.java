@@ -0,0 +1,149 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compares the native string concatenation with the one of the VM
+ */
+public class ConcatIntrinsicsTest {
+    private static final String[] STRINGS = {"", "a", "\u00e9t\u00e9", "\ud83d\ude00", null, "x".repeat(1000)};
+    private static final Object[] OBJECTS = {null, 42, new StringBuilder("builder"), new Object() {
+        @Override
+        public String toString() {
+            return null;
+        }
+    }};
+
+    public static void test() {
+        for (String string : STRINGS) {
+            for (Object object : OBJECTS) {
+                assertSameBehavior(() -> "[" + string + "|" + object + "]", () -> concat(string, object));
+            }
+
+            assertSameBehavior(() -> string + string, () -> concat(string, string));
+        }
+
+        for (double value : new double[]{0.0, -0.0, 1.5, 1e10, 1e-10, Double.NaN, Double.NEGATIVE_INFINITY}) {
+            assertSameBehavior(() -> value + ", " + (float) value, () -> concat(value, (float) value));
+        }
+
+        for (long value : new long[]{0, -1, Long.MIN_VALUE, Long.MAX_VALUE}) {
+            var intValue = (int) value;
+
+            assertSameBehavior(() -> "l" + value + "i" + intValue + (char) value + true + (byte) value + (short) value,
+                               () -> concat(value, intValue, (char) value, true, (byte) value, (short) value));
+        }
+
+        // The recipe of makeConcatWithConstants uses \1 and \2 as tags
+        assertSameBehavior(() -> "\u0001" + STRINGS[1] + "\u0002", () -> concatTags(STRINGS[1]));
+
+        assertThrows(IllegalStateException.class, () -> concat("", new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException();
+            }
+        }));
+
+        testBuilderChains();
+    }
+
+    /**
+     * javac 8 style chains are rewritten to concatenations if that doesn't change when the arguments are converted
+     */
+    private static void testBuilderChains() {
+        for (Object object : OBJECTS) {
+            assertSameBehavior(() -> new StringBuilder().append("[").append(object).append(1.5).append('x').toString(),
+                               () -> appendPure(object, 1));
+        }
+
+        // The counter is converted before the later argument increments it
+        assertSameBehavior(() -> {
+            var counter = new Counter();
+
+            return new StringBuilder().append(counter).append(counter.increment()).toString();
+        }, () -> appendBeforeIncrement(new Counter()));
+
+        // append(CharSequence) copies the chars instead of calling toString()
+        assertSameBehavior(() -> new StringBuilder().append("a").append(new Chars()).toString(), () -> appendChars(new Chars()));
+    }
+
+    @Outsource
+    public static String appendPure(Object object, int i) {
+        return new StringBuilder().append("[").append(object).append(i + 0.5).append((char) ('w' + i)).toString();
+    }
+
+    @Outsource
+    public static String appendBeforeIncrement(Counter counter) {
+        return new StringBuilder().append(counter).append(counter.increment()).toString();
+    }
+
+    @Outsource
+    public static String appendChars(CharSequence chars) {
+        return new StringBuilder().append("a").append(chars).toString();
+    }
+
+    public static class Counter {
+        private int value;
+
+        public int increment() {
+            return ++this.value;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.value);
+        }
+    }
+
+    /**
+     * A CharSequence whose toString() differs from its chars
+     */
+    public static class Chars implements CharSequence {
+        @Override
+        public int length() {
+            return 2;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return "bc".charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return "bc".subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return "toString";
+        }
+    }
+
+    @Outsource
+    public static String concat(String string, Object object) {
+        return "[" + string + "|" + object + "]";
+    }
+
+    @Outsource
+    public static String concat(String a, String b) {
+        return a + b;
+    }
+
+    @Outsource
+    public static String concat(double a, float b) {
+        return a + ", " + b;
+    }
+
+    @Outsource
+    public static String concat(long a, int b, char c, boolean d, byte e, short f) {
+        return "l" + a + "i" + b + c + d + e + f;
+    }
+
+    @Outsource
+    public static String concatTags(String string) {
+        return "\u0001" + string + "\u0002";
+    }
+}
@@ -0,0 +1,80 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Depending on the resolution strategy, the module caches are filled by the first caller, by JNI_OnLoad or by a
+ * background thread which races the program. Threads which resolve the same entries at the same time have to get the
+ * same classes, ids and strings.
+ */
+public class ConcurrentResolutionTest {
+    private static final int THREADS = 8;
+
+    public static void test() {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            var barrier = new CyclicBarrier(THREADS);
+            var results = new ArrayList<Future<Object[]>>();
+
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    barrier.await();
+
+                    return resolveAll(new Payload(3));
+                }));
+            }
+
+            Object[] first = null;
+
+            for (Future<Object[]> result : results) {
+                var values = result.get(30, TimeUnit.SECONDS);
+
+                assertTrue(values[0] == Payload.class);
+                assertTrue(values[1].equals(6));
+                assertTrue(values[2].equals(3));
+                assertTrue(values[3] == "concurrently resolved literal");
+
+                if (first != null)
+                    assertTrue(first[3] == values[3]);
+
+                first = values;
+            }
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Needs a class, a method id, a field id and a string literal which no other test uses
+     */
+    @Outsource
+    public static Object[] resolveAll(Object object) {
+        var payload = (Payload) object;
+
+        return new Object[]{Payload.class, payload.doubled(), payload.value, "concurrently resolved literal"};
+    }
+
+    private static class Payload {
+        private final int value;
+
+        private Payload(int value) {
+            this.value = value;
+        }
+
+        private int doubled() {
+            return this.value * 2;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+/**
+ * Compares devirtualized calls with plain virtual calls through the VM. The exact call needs no check, the guarded call
+ * compares the receiver's class (<code>GetObjectClass</code>, <code>IsSameObject</code> and <code>DeleteLocalRef</code>)
+ * before it calls the compiled method directly. The virtual call goes through <code>Call&lt;Type&gt;MethodA</code>
+ * since its target isn't compiled.
+ */
+public class DevirtualizationBenchmark {
+    static void run() {
+        Benchmark.measure("devirtualization",
+                Benchmark.of("exact call", iterations -> callExact(new ExactTarget(), iterations)),
+                Benchmark.of("guarded call", iterations -> callGuarded(new GuardedTarget(), iterations)),
+                Benchmark.of("virtual call", iterations -> callVirtual(new VirtualTarget(), iterations)));
+    }
+
+    @Outsource
+    public static long callExact(ExactTarget target, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += target.value();
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static long callGuarded(GuardedBase target, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += target.value();
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static long callVirtual(VirtualBase target, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += target.value();
+        }
+
+        return sum;
+    }
+
+    public static final class ExactTarget {
+        @Outsource
+        public int value() {
+            return 1;
+        }
+    }
+
+    public abstract static class GuardedBase {
+        public abstract int value();
+    }
+
+    public static class GuardedTarget extends GuardedBase {
+        @Outsource
+        @Override
+        public int value() {
+            return 2;
+        }
+    }
+
+    public abstract static class VirtualBase {
+        public abstract int value();
+    }
+
+    /**
+     * Not compiled, so the call can't be devirtualized
+     */
+    public static class VirtualTarget extends VirtualBase {
+        @Override
+        public int value() {
+            return 3;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+import net.superblaubeere27.masxinlingvonta.test.other.OtherPackageAnimal;
+
+import java.lang.reflect.Proxy;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Virtual calls are devirtualized if the class hierarchy of the input shows that the receiver can only select one
+ * compiled method. Every call has to end up in the method the VM would select.
+ */
+public class DevirtualizationTest {
+    private static boolean subclassInitialized;
+    private static boolean interfaceInitialized;
+
+    public static void test() {
+        testExactTargets();
+        testGuardedTargets();
+        testOverriddenTargets();
+        testPackagePrivateMethods();
+        testDefaultMethods();
+        testUnknownReceivers();
+        testNullReceivers();
+        testGuardsDontInitialize();
+    }
+
+    private static void testExactTargets() {
+        assertTrue(callFinalClass(new FinalClass()) == 1);
+        assertTrue(callFinalMethod(new FinalMethodSub()) == 2);
+    }
+
+    private static void testGuardedTargets() {
+        assertTrue(callAbstract(new Square(3)) == 9);
+        assertTrue(callNotOverridden(new Counter()) == 1);
+        assertTrue(callNotOverridden(new CounterSub()) == 1);
+    }
+
+    private static void testOverriddenTargets() {
+        assertTrue(callOverridden(new Speaker()).equals("speaker"));
+        assertTrue(callOverridden(new LoudSpeaker()).equals("LOUD SPEAKER"));
+    }
+
+    private static void testPackagePrivateMethods() {
+        // OtherPackageAnimal.sound() can't override Animal.sound() since it is declared in another package
+        assertTrue(callPackagePrivate(new Animal()).equals("animal"));
+        assertTrue(callPackagePrivate(new OtherPackageAnimal()).equals("animal"));
+        assertTrue(new OtherPackageAnimal().callOwnSound().equals("other package"));
+    }
+
+    private static void testDefaultMethods() {
+        assertTrue(callDefault(new WithDefault()).equals("default"));
+        assertTrue(callDefault(new OverridingDefault()).equals("overridden"));
+    }
+
+    private static void testUnknownReceivers() {
+        // The proxy class isn't part of the input, so the guard has to fall back to a virtual call
+        Greeter proxy = (Greeter) Proxy.newProxyInstance(Greeter.class.getClassLoader(),
+                                                         new Class[]{Greeter.class},
+                                                         (instance, method, args) -> "proxy");
+
+        assertTrue(callInterface(new OnlyGreeter()).equals("greeter"));
+        assertTrue(callInterface(proxy).equals("proxy"));
+
+        // Depending on the configuration, the lambda's class is generated at compile time and added to the hierarchy
+        // or spun at runtime
+        assertTrue(callInterface(() -> "lambda").equals("lambda"));
+    }
+
+    private static void testNullReceivers() {
+        assertNullReceiver(FinalClass.class.getName() + ".value()", () -> callFinalClass(null));
+        assertNullReceiver(Shape.class.getName() + ".area()", () -> callAbstract(null));
+        assertNullReceiver(Greeter.class.getName() + ".greet()", () -> callInterface(null));
+    }
+
+    private static void testGuardsDontInitialize() {
+        assertTrue(callInitializing(new InitializingBase()) == 5);
+
+        // Checking the receiver must not initialize the other possible receivers
+        assertTrue(!subclassInitialized);
+
+        assertTrue(callInitializing(new InitializingSub()) == 5);
+        assertTrue(subclassInitialized);
+
+        // Initializing the subclass would also initialize its interface since it declares a default method
+        assertTrue(callInitializingInterface(new InterfaceInitializingBase()) == 6);
+        assertTrue(!interfaceInitialized);
+
+        assertTrue(callInitializingInterface(new InterfaceInitializingSub()) == 6);
+        assertTrue(interfaceInitialized);
+    }
+
+    @Outsource
+    public static int callFinalClass(FinalClass instance) {
+        return instance.value();
+    }
+
+    @Outsource
+    public static int callFinalMethod(FinalMethodSub instance) {
+        return instance.value();
+    }
+
+    @Outsource
+    public static int callAbstract(Shape shape) {
+        return shape.area();
+    }
+
+    @Outsource
+    public static int callNotOverridden(Counter counter) {
+        return counter.next();
+    }
+
+    @Outsource
+    public static String callOverridden(Speaker speaker) {
+        return speaker.speak();
+    }
+
+    @Outsource
+    public static String callPackagePrivate(Animal animal) {
+        return animal.sound();
+    }
+
+    @Outsource
+    public static String callDefault(Defaulting defaulting) {
+        return defaulting.name();
+    }
+
+    @Outsource
+    public static String callInterface(Greeter greeter) {
+        return greeter.greet();
+    }
+
+    @Outsource
+    public static int callInitializing(InitializingBase instance) {
+        return instance.value();
+    }
+
+    @Outsource
+    public static int callInitializingInterface(InterfaceInitializingBase instance) {
+        return instance.value();
+    }
+
+    static boolean markInterfaceInitialized() {
+        interfaceInitialized = true;
+
+        return true;
+    }
+
+    public static final class FinalClass {
+        @Outsource
+        public int value() {
+            return 1;
+        }
+    }
+
+    public static class FinalMethodBase {
+        @Outsource
+        public final int value() {
+            return 2;
+        }
+    }
+
+    public static class FinalMethodSub extends FinalMethodBase {
+    }
+
+    public abstract static class Shape {
+        public abstract int area();
+    }
+
+    public static class Square extends Shape {
+        private final int side;
+
+        public Square(int side) {
+            this.side = side;
+        }
+
+        @Outsource
+        @Override
+        public int area() {
+            return this.side * this.side;
+        }
+    }
+
+    public static class Counter {
+        private int count;
+
+        @Outsource
+        public int next() {
+            return ++this.count;
+        }
+    }
+
+    public static class CounterSub extends Counter {
+    }
+
+    public static class Speaker {
+        @Outsource
+        public String speak() {
+            return "speaker";
+        }
+    }
+
+    public static class LoudSpeaker extends Speaker {
+        @Outsource
+        @Override
+        public String speak() {
+            return "LOUD SPEAKER";
+        }
+    }
+
+    public static class Animal {
+        @Outsource
+        String sound() {
+            return "animal";
+        }
+    }
+
+    public interface Defaulting {
+        default String name() {
+            return "default";
+        }
+    }
+
+    public static class WithDefault implements Defaulting {
+    }
+
+    public static class OverridingDefault implements Defaulting {
+        @Outsource
+        @Override
+        public String name() {
+            return "overridden";
+        }
+    }
+
+    public interface Greeter {
+        String greet();
+    }
+
+    public static class OnlyGreeter implements Greeter {
+        @Outsource
+        @Override
+        public String greet() {
+            return "greeter";
+        }
+    }
+
+    public static class InitializingBase {
+        @Outsource
+        public int value() {
+            return 5;
+        }
+    }
+
+    public static class InitializingSub extends InitializingBase {
+        static {
+            subclassInitialized = true;
+        }
+    }
+
+    public interface InitializingDefaults {
+        boolean INITIALIZED = markInterfaceInitialized();
+
+        default int defaultValue() {
+            return 6;
+        }
+    }
+
+    public static class InterfaceInitializingBase {
+        @Outsource
+        public int value() {
+            return 6;
+        }
+    }
+
+    public static class InterfaceInitializingSub extends InterfaceInitializingBase implements InitializingDefaults {
+    }
+}
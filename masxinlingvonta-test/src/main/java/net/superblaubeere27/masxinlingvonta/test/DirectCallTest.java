@@ -0,0 +1,51 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Static methods of other classes are only called directly if the VM wouldn't run a static initializer when calling
+ * them
+ */
+public class DirectCallTest {
+    private static boolean interfaceInitialized;
+
+    public static void test() {
+        testInterfaceInitialization();
+    }
+
+    private static void testInterfaceInitialization() {
+        assertTrue(!interfaceInitialized);
+        assertTrue(callImplementor() == 3);
+
+        // Initializing a class initializes its superinterfaces which declare default methods
+        assertTrue(interfaceInitialized);
+    }
+
+    @Outsource
+    public static int callImplementor() {
+        return DefaultingImplementor.value();
+    }
+
+    static boolean markInterfaceInitialized() {
+        interfaceInitialized = true;
+
+        return true;
+    }
+
+    public interface InitializingDefaults {
+        boolean INITIALIZED = markInterfaceInitialized();
+
+        default int defaultValue() {
+            return 3;
+        }
+    }
+
+    public static class DefaultingImplementor implements InitializingDefaults {
+        @Outsource
+        public static int value() {
+            return 3;
+        }
+    }
+}
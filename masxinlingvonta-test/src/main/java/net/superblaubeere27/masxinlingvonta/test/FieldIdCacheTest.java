@@ -0,0 +1,113 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Field ids are cached per owner, name and descriptor. Hidden fields and fields with the same name in other classes
+ * need their own ids.
+ */
+public class FieldIdCacheTest {
+
+    public static void test() {
+        testHiddenFields();
+        testSameNameInOtherClasses();
+        testAllTypes();
+    }
+
+    private static void testHiddenFields() {
+        var sub = new Sub();
+
+        writeHidden(sub, 1, 2);
+
+        assertTrue(((Super) sub).value == 1);
+        assertTrue(sub.value == 2);
+        assertTrue(readHidden(sub) == 1 * 10 + 2);
+    }
+
+    private static void testSameNameInOtherClasses() {
+        var holder = new Holder();
+
+        writeSameName(holder, 5, 7);
+
+        assertTrue(holder.value == 5);
+        assertTrue(StaticHolder.value == 7);
+        assertTrue(readSameName(holder) == 5 * 10 + 7);
+    }
+
+    private static void testAllTypes() {
+        var holder = new Holder();
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(incrementAll(holder) == i + 1);
+        }
+
+        assertTrue(holder.z && holder.b == (byte) 1_000 && holder.c == 1_000 && holder.s == 1_000);
+        assertTrue(holder.i == 1_000 && holder.j == 1_000 && holder.f == 1_000.0f && holder.d == 1_000.0);
+        assertTrue(holder.l.equals("1000"));
+    }
+
+    @Outsource
+    public static void writeHidden(Sub sub, int superValue, int subValue) {
+        ((Super) sub).value = superValue;
+        sub.value = subValue;
+    }
+
+    @Outsource
+    public static int readHidden(Sub sub) {
+        return ((Super) sub).value * 10 + sub.value;
+    }
+
+    @Outsource
+    public static void writeSameName(Holder holder, int value, int staticValue) {
+        holder.value = value;
+        StaticHolder.value = staticValue;
+    }
+
+    @Outsource
+    public static int readSameName(Holder holder) {
+        return holder.value * 10 + StaticHolder.value;
+    }
+
+    @Outsource
+    public static int incrementAll(Holder holder) {
+        holder.z = true;
+        holder.b++;
+        holder.c++;
+        holder.s++;
+        holder.i++;
+        holder.j++;
+        holder.f++;
+        holder.d++;
+        holder.l = String.valueOf(holder.i);
+
+        return holder.i;
+    }
+
+    public static class Super {
+        public int value;
+    }
+
+    public static class Sub extends Super {
+        public int value;
+    }
+
+    public static class StaticHolder {
+        public static int value;
+    }
+
+    public static class Holder {
+        public int value;
+
+        public boolean z;
+        public byte b;
+        public char c;
+        public short s;
+        public int i;
+        public long j;
+        public float f;
+        public double d;
+        public String l;
+    }
+}
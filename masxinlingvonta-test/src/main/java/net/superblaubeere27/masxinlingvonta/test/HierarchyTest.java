@@ -0,0 +1,176 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+import net.superblaubeere27.masxinlingvonta.test.other.ProtectedOverride;
+
+import java.util.AbstractList;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Virtual calls are devirtualized with the class hierarchy of the input. Methods have to be resolved and selected like
+ * the VM does, no matter how deep or wide the hierarchy is.
+ */
+public class HierarchyTest {
+
+    public static void test() {
+        testInheritedMethods();
+        testInterfaceDiamonds();
+        testProtectedOverrides();
+        testExternalSupertypes();
+    }
+
+    private static void testInheritedMethods() {
+        assertTrue(callMiddle(new Middle()) == 1);
+        assertTrue(callMiddle(new Leaf()) == 3);
+        assertTrue(callLeaf(new Leaf()) == 3);
+
+        // InheritingLeaf has no subclasses, Leaf overriding the method doesn't matter for calls on it
+        assertTrue(callInheritedOnly(new InheritingLeaf()) == 1);
+
+        // Both receivers of the branch select Root.value()
+        assertTrue(callInheritingMiddle(new InheritingMiddle()) == 1);
+        assertTrue(callInheritingMiddle(new InheritingLeaf()) == 1);
+    }
+
+    private static void testInterfaceDiamonds() {
+        assertTrue(callTop(new Both()).equals("both"));
+        assertTrue(callLeft(new Both()).equals("both"));
+    }
+
+    private static void testProtectedOverrides() {
+        // Protected methods can be overridden from other packages
+        assertTrue(callLevel(new ProtectedBase()) == 1);
+        assertTrue(callLevel(new ProtectedOverride()) == 2);
+    }
+
+    private static void testExternalSupertypes() {
+        // Object and AbstractList aren't part of the input, their methods are called through the VM
+        assertTrue(callToString(new Named()).equals("named"));
+        assertTrue(callSize(new SingletonList()) == 1);
+        assertTrue(callSize(new EmptyList()) == 0);
+    }
+
+    @Outsource
+    public static int callMiddle(Middle middle) {
+        return middle.value();
+    }
+
+    @Outsource
+    public static int callLeaf(Leaf leaf) {
+        return leaf.value();
+    }
+
+    @Outsource
+    public static int callInheritedOnly(InheritingLeaf leaf) {
+        return leaf.value();
+    }
+
+    @Outsource
+    public static int callInheritingMiddle(InheritingMiddle middle) {
+        return middle.value();
+    }
+
+    @Outsource
+    public static String callTop(Top top) {
+        return top.name();
+    }
+
+    @Outsource
+    public static String callLeft(Left left) {
+        return left.name();
+    }
+
+    @Outsource
+    public static int callLevel(ProtectedBase base) {
+        return base.level();
+    }
+
+    @Outsource
+    public static String callToString(Object object) {
+        return object.toString();
+    }
+
+    @Outsource
+    public static int callSize(SingletonList list) {
+        return list.size();
+    }
+
+    public static class Root {
+        @Outsource
+        public int value() {
+            return 1;
+        }
+    }
+
+    public static class Middle extends Root {
+    }
+
+    public static class Leaf extends Middle {
+        @Outsource
+        @Override
+        public int value() {
+            return 3;
+        }
+    }
+
+    public static class InheritingMiddle extends Root {
+    }
+
+    public static class InheritingLeaf extends InheritingMiddle {
+    }
+
+    public interface Top {
+        String name();
+    }
+
+    public interface Left extends Top {
+    }
+
+    public interface Right extends Top {
+    }
+
+    public static class Both implements Left, Right {
+        @Outsource
+        @Override
+        public String name() {
+            return "both";
+        }
+    }
+
+    public static class ProtectedBase {
+        @Outsource
+        protected int level() {
+            return 1;
+        }
+    }
+
+    public static class Named {
+        @Outsource
+        @Override
+        public String toString() {
+            return "named";
+        }
+    }
+
+    public static class SingletonList extends AbstractList<String> {
+        @Override
+        public String get(int index) {
+            return "element";
+        }
+
+        @Outsource
+        @Override
+        public int size() {
+            return 1;
+        }
+    }
+
+    public static class EmptyList extends SingletonList {
+        @Outsource
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
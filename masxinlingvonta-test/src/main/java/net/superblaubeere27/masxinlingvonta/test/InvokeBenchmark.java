@@ -0,0 +1,37 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+/**
+ * Calls from compiled code back into the VM. The callees are JDK methods, so every call goes through
+ * <code>Call&lt;Type&gt;MethodA</code>.
+ */
+public class InvokeBenchmark {
+    static void run() {
+        Benchmark.measure("invoke",
+                Benchmark.of("static call", InvokeBenchmark::callStatic),
+                Benchmark.of("virtual call", iterations -> callVirtual("benchmark", iterations)));
+    }
+
+    @Outsource
+    public static long callStatic(int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += Float.compare(1.0F, 2.0F);
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static long callVirtual(String instance, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += instance.indexOf('h', 1);
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,182 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.io.*;
+import java.util.function.*;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Lambdas and method references in compiled code. They are bootstrapped at runtime unless the compiler generates their
+ * classes (<code>-precompileLambdas</code>), both have to behave the same. The test has to be run with the system
+ * property <code>masxinlingvonta.precompileLambdas</code> if the classes were generated.
+ */
+public class LambdaTest {
+    private static final boolean PRECOMPILED = Boolean.getBoolean("masxinlingvonta.precompileLambdas");
+
+    public static void test() {
+        testCapturingLambdas();
+        testMethodReferences();
+        testSingletons();
+        testMarkers();
+
+        try {
+            testSerializableLambdas();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Outsource
+    public static void testCapturingLambdas() {
+        int i = getInt();
+        long l = 1L << 40;
+        String s = "ab";
+
+        IntSupplier intSupplier = () -> i + 1;
+        LongSupplier longSupplier = () -> l + i;
+        Supplier<String> stringSupplier = () -> s + i;
+
+        assertTrue(intSupplier.getAsInt() == 13);
+        assertTrue(longSupplier.getAsLong() == (1L << 40) + 12);
+        assertTrue(stringSupplier.get().equals("ab12"));
+
+        assertTrue(new Adder(5).adder().applyAsInt(2) == 7);
+
+        assertOrigin(intSupplier);
+        assertOrigin(stringSupplier);
+    }
+
+    @Outsource
+    public static void testMethodReferences() {
+        Function<String, String> bound = "ab"::concat;
+        ToIntFunction<String> unbound = String::length;
+        ToIntFunction<String> staticReference = Integer::parseInt;
+        Supplier<StringBuilder> constructor = StringBuilder::new;
+        IntFunction<int[]> arrayConstructor = int[]::new;
+        Function<Integer, Integer> unboxing = Math::abs;
+        IntFunction<Long> widening = Long::valueOf;
+        Supplier<Integer> privateReference = LambdaTest::getInt;
+
+        assertTrue(bound.apply("c").equals("abc"));
+        assertTrue(unbound.applyAsInt("abcd") == 4);
+        assertTrue(staticReference.applyAsInt("-12") == -12);
+        assertTrue(constructor.get().append(1).toString().equals("1"));
+        assertTrue(arrayConstructor.apply(5).length == 5);
+        assertTrue(unboxing.apply(-7) == 7);
+        assertTrue(widening.apply(-2) == -2L);
+        assertTrue(privateReference.get() == 12);
+
+        assertOrigin(bound);
+        assertOrigin(privateReference);
+    }
+
+    @Outsource
+    public static void testSingletons() {
+        assertTrue(nonCapturing() == nonCapturing());
+        assertTrue(capturing(1) != capturing(1));
+
+        assertOrigin(nonCapturing());
+        assertOrigin(capturing(1));
+    }
+
+    @Outsource
+    public static void testMarkers() {
+        int i = getInt();
+
+        Supplier<Integer> marked = (Supplier<Integer> & Marker) () -> i;
+        Bridged bridged = () -> "bridged";
+        Bridge bridge = bridged;
+
+        assertTrue(marked instanceof Marker && marked.get() == 12);
+        assertTrue(bridge.get().equals("bridged"));
+    }
+
+    @Outsource
+    @SuppressWarnings("unchecked")
+    public static void testSerializableLambdas() throws IOException, ClassNotFoundException {
+        String s = "ab";
+
+        Supplier<String> serializable = (Supplier<String> & Serializable) () -> s + getInt();
+
+        assertTrue(((Supplier<String>) deserialize(serialize(serializable))).get().equals("ab12"));
+
+        IntSupplier notSerializable = () -> s.length();
+
+        try {
+            serialize(notSerializable);
+
+            fail();
+        } catch (NotSerializableException ignored) {
+        }
+    }
+
+    @Outsource
+    private static Supplier<String> nonCapturing() {
+        return () -> "x";
+    }
+
+    @Outsource
+    private static Supplier<String> capturing(int i) {
+        return () -> "x" + i;
+    }
+
+    /**
+     * Checks that the class of a lambda created in this class was generated by the compiler if the lambdas are
+     * precompiled, and spun by the <code>LambdaMetafactory</code> otherwise
+     */
+    private static void assertOrigin(Object lambda) {
+        var name = lambda.getClass().getName();
+
+        if (PRECOMPILED) {
+            assertTrue(name.startsWith(LambdaTest.class.getName() + "$Lambda") && !name.contains("$$Lambda"));
+        } else {
+            assertTrue(name.contains("$$Lambda"));
+        }
+    }
+
+    private static byte[] serialize(Object obj) throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        try (var objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(obj);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (var objectIn = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return objectIn.readObject();
+        }
+    }
+
+    private static int getInt() {
+        return 12;
+    }
+
+    interface Marker {
+    }
+
+    interface Bridge {
+        Object get();
+    }
+
+    interface Bridged extends Bridge {
+        String get();
+    }
+
+    private static class Adder {
+        private final int value;
+
+        private Adder(int value) {
+            this.value = value;
+        }
+
+        IntUnaryOperator adder() {
+            return x -> x + this.value;
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compares the intrinsics of <code>java.lang.Math</code> and <code>java.lang.StrictMath</code> with the methods the
+ * VM calls. The results are compared as boxes, so <code>-0.0</code> and <code>0.0</code> differ and NaN equals NaN.
+ */
+public class MathIntrinsicsTest {
+    private static final double[] DOUBLES = {0.0, -0.0, 0.5, -0.5, 1.5, -1.5, 2.5, -3.5, 0.49999999999999994, 1e300,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY};
+    private static final float[] FLOATS = {0.0f, -0.0f, 0.5f, -1.5f, 2.5f, Float.MIN_VALUE, Float.MAX_VALUE, Float.NaN,
+            Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+    private static final int[] INTS = {0, 1, -1, 2, 46341, -46341, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    private static final long[] LONGS = {0, 1, -1, 2, 3037000500L, -3037000500L, Integer.MIN_VALUE, Long.MIN_VALUE,
+            Long.MAX_VALUE};
+
+    public static void test() {
+        testDoubles();
+        testFloats();
+        testInts();
+        testLongs();
+    }
+
+    private static void testDoubles() {
+        for (double a : DOUBLES) {
+            assertSameBehavior(() -> Math.sqrt(a), () -> sqrt(a));
+            assertSameBehavior(() -> Math.floor(a), () -> floor(a));
+            assertSameBehavior(() -> Math.ceil(a), () -> ceil(a));
+            assertSameBehavior(() -> Math.rint(a), () -> rint(a));
+            assertSameBehavior(() -> Math.abs(a), () -> abs(a));
+            assertSameBehavior(() -> StrictMath.abs(a), () -> strictAbs(a));
+
+            for (double b : DOUBLES) {
+                assertSameBehavior(() -> Math.min(a, b), () -> min(a, b));
+                assertSameBehavior(() -> Math.max(a, b), () -> max(a, b));
+                assertSameBehavior(() -> StrictMath.min(a, b), () -> strictMin(a, b));
+                assertSameBehavior(() -> StrictMath.max(a, b), () -> strictMax(a, b));
+                assertSameBehavior(() -> Math.copySign(a, b), () -> copySign(a, b));
+                assertSameBehavior(() -> Math.fma(a, b, 1.0), () -> fma(a, b, 1.0));
+                assertSameBehavior(() -> Math.fma(a, b, -0.0), () -> fma(a, b, -0.0));
+            }
+        }
+    }
+
+    private static void testFloats() {
+        for (float a : FLOATS) {
+            assertSameBehavior(() -> Math.abs(a), () -> abs(a));
+
+            for (float b : FLOATS) {
+                assertSameBehavior(() -> Math.min(a, b), () -> min(a, b));
+                assertSameBehavior(() -> Math.max(a, b), () -> max(a, b));
+                assertSameBehavior(() -> Math.copySign(a, b), () -> copySign(a, b));
+                assertSameBehavior(() -> Math.fma(a, b, 1.0f), () -> fma(a, b, 1.0f));
+            }
+        }
+    }
+
+    private static void testInts() {
+        for (int a : INTS) {
+            assertSameBehavior(() -> Math.abs(a), () -> abs(a));
+            assertSameBehavior(() -> Math.negateExact(a), () -> negateExact(a));
+            assertSameBehavior(() -> Math.incrementExact(a), () -> incrementExact(a));
+            assertSameBehavior(() -> Math.decrementExact(a), () -> decrementExact(a));
+
+            for (int b : INTS) {
+                assertSameBehavior(() -> Math.min(a, b), () -> min(a, b));
+                assertSameBehavior(() -> Math.max(a, b), () -> max(a, b));
+                assertSameBehavior(() -> Math.addExact(a, b), () -> addExact(a, b));
+                assertSameBehavior(() -> Math.subtractExact(a, b), () -> subtractExact(a, b));
+                assertSameBehavior(() -> Math.multiplyExact(a, b), () -> multiplyExact(a, b));
+            }
+        }
+    }
+
+    private static void testLongs() {
+        for (long a : LONGS) {
+            assertSameBehavior(() -> Math.abs(a), () -> abs(a));
+            assertSameBehavior(() -> Math.negateExact(a), () -> negateExact(a));
+            assertSameBehavior(() -> Math.incrementExact(a), () -> incrementExact(a));
+            assertSameBehavior(() -> Math.decrementExact(a), () -> decrementExact(a));
+
+            for (long b : LONGS) {
+                assertSameBehavior(() -> Math.min(a, b), () -> min(a, b));
+                assertSameBehavior(() -> Math.max(a, b), () -> max(a, b));
+                assertSameBehavior(() -> Math.addExact(a, b), () -> addExact(a, b));
+                assertSameBehavior(() -> Math.subtractExact(a, b), () -> subtractExact(a, b));
+                assertSameBehavior(() -> Math.multiplyExact(a, b), () -> multiplyExact(a, b));
+            }
+        }
+    }
+
+    @Outsource
+    public static double sqrt(double a) {
+        return Math.sqrt(a);
+    }
+
+    @Outsource
+    public static double floor(double a) {
+        return Math.floor(a);
+    }
+
+    @Outsource
+    public static double ceil(double a) {
+        return Math.ceil(a);
+    }
+
+    @Outsource
+    public static double rint(double a) {
+        return Math.rint(a);
+    }
+
+    @Outsource
+    public static double abs(double a) {
+        return Math.abs(a);
+    }
+
+    @Outsource
+    public static double strictAbs(double a) {
+        return StrictMath.abs(a);
+    }
+
+    @Outsource
+    public static float abs(float a) {
+        return Math.abs(a);
+    }
+
+    @Outsource
+    public static int abs(int a) {
+        return Math.abs(a);
+    }
+
+    @Outsource
+    public static long abs(long a) {
+        return Math.abs(a);
+    }
+
+    @Outsource
+    public static double min(double a, double b) {
+        return Math.min(a, b);
+    }
+
+    @Outsource
+    public static double max(double a, double b) {
+        return Math.max(a, b);
+    }
+
+    @Outsource
+    public static double strictMin(double a, double b) {
+        return StrictMath.min(a, b);
+    }
+
+    @Outsource
+    public static double strictMax(double a, double b) {
+        return StrictMath.max(a, b);
+    }
+
+    @Outsource
+    public static float min(float a, float b) {
+        return Math.min(a, b);
+    }
+
+    @Outsource
+    public static float max(float a, float b) {
+        return Math.max(a, b);
+    }
+
+    @Outsource
+    public static int min(int a, int b) {
+        return Math.min(a, b);
+    }
+
+    @Outsource
+    public static int max(int a, int b) {
+        return Math.max(a, b);
+    }
+
+    @Outsource
+    public static long min(long a, long b) {
+        return Math.min(a, b);
+    }
+
+    @Outsource
+    public static long max(long a, long b) {
+        return Math.max(a, b);
+    }
+
+    @Outsource
+    public static double copySign(double magnitude, double sign) {
+        return Math.copySign(magnitude, sign);
+    }
+
+    @Outsource
+    public static float copySign(float magnitude, float sign) {
+        return Math.copySign(magnitude, sign);
+    }
+
+    @Outsource
+    public static double fma(double a, double b, double c) {
+        return Math.fma(a, b, c);
+    }
+
+    @Outsource
+    public static float fma(float a, float b, float c) {
+        return Math.fma(a, b, c);
+    }
+
+    @Outsource
+    public static int addExact(int a, int b) {
+        return Math.addExact(a, b);
+    }
+
+    @Outsource
+    public static int subtractExact(int a, int b) {
+        return Math.subtractExact(a, b);
+    }
+
+    @Outsource
+    public static int multiplyExact(int a, int b) {
+        return Math.multiplyExact(a, b);
+    }
+
+    @Outsource
+    public static int negateExact(int a) {
+        return Math.negateExact(a);
+    }
+
+    @Outsource
+    public static int incrementExact(int a) {
+        return Math.incrementExact(a);
+    }
+
+    @Outsource
+    public static int decrementExact(int a) {
+        return Math.decrementExact(a);
+    }
+
+    @Outsource
+    public static long addExact(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    @Outsource
+    public static long subtractExact(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    @Outsource
+    public static long multiplyExact(long a, long b) {
+        return Math.multiplyExact(a, b);
+    }
+
+    @Outsource
+    public static long negateExact(long a) {
+        return Math.negateExact(a);
+    }
+
+    @Outsource
+    public static long incrementExact(long a) {
+        return Math.incrementExact(a);
+    }
+
+    @Outsource
+    public static long decrementExact(long a) {
+        return Math.decrementExact(a);
+    }
+}
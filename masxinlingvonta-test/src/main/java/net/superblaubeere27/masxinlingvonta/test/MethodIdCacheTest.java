@@ -0,0 +1,126 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Method ids are cached per owner, name, descriptor and kind (static or not). Every call site has to end up in the
+ * method it names, even if other methods only differ in one of them.
+ */
+public class MethodIdCacheTest {
+
+    public static void test() {
+        testOverloads();
+        testSameNameInOtherClasses();
+        testInheritedMethods();
+        testRepeatedCalls();
+    }
+
+    private static void testOverloads() {
+        assertTrue(callOverloads(new Overloads()).equals("int long Object String"));
+    }
+
+    private static void testSameNameInOtherClasses() {
+        assertTrue(callSameName(new Base(), new Other()).equals("Base.name Other.name static Base.describe static Other.describe"));
+    }
+
+    private static void testInheritedMethods() {
+        assertTrue(callInherited(new Derived()).equals("Derived.name Derived.name"));
+        assertTrue(callInherited(new Base()).equals("Base.name Base.name"));
+    }
+
+    private static void testRepeatedCalls() {
+        assertTrue(sumOverloads(new Overloads(), 10_000) == 10_000L * 4);
+    }
+
+    @Outsource
+    public static String callOverloads(Overloads overloads) {
+        return overloads.value(1) + " " + overloads.value(1L) + " " + overloads.value((Object) "") + " " + overloads.value("");
+    }
+
+    @Outsource
+    public static String callSameName(Base base, Other other) {
+        return base.name() + " " + other.name() + " " + Base.describe() + " " + Other.describe();
+    }
+
+    @Outsource
+    public static String callInherited(Base base) {
+        // The first call names Base.name, the second one Derived.name if the receiver is a Derived
+        var inherited = base.name();
+
+        return inherited + " " + (base instanceof Derived ? ((Derived) base).name() : base.name());
+    }
+
+    @Outsource
+    public static long sumOverloads(Overloads overloads, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += overloads.count(i) + overloads.count((long) i) + overloads.count((Object) null) + overloads.count((String) null);
+        }
+
+        return sum;
+    }
+
+    public static class Overloads {
+        public String value(int i) {
+            return "int";
+        }
+
+        public String value(long l) {
+            return "long";
+        }
+
+        public String value(Object o) {
+            return "Object";
+        }
+
+        public String value(String s) {
+            return "String";
+        }
+
+        public int count(int i) {
+            return 1;
+        }
+
+        public int count(long l) {
+            return 1;
+        }
+
+        public int count(Object o) {
+            return 1;
+        }
+
+        public int count(String s) {
+            return 1;
+        }
+    }
+
+    public static class Base {
+        public static String describe() {
+            return "static Base.describe";
+        }
+
+        public String name() {
+            return "Base.name";
+        }
+    }
+
+    public static class Derived extends Base {
+        @Override
+        public String name() {
+            return "Derived.name";
+        }
+    }
+
+    public static class Other {
+        public static String describe() {
+            return "static Other.describe";
+        }
+
+        public String name() {
+            return "Other.name";
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * The compiled methods are bound with RegisterNatives while the library is loaded. Overloads have to be bound to their
+ * own functions and static initializers have to be able to call compiled methods of their class.
+ */
+public class NativeBindingTest {
+
+    public static void test() {
+        testOverloads();
+        testInitializer();
+        testNestedClasses();
+    }
+
+    private static void testOverloads() {
+        assertTrue(overloaded() == 0);
+        assertTrue(overloaded(1) == 1);
+        assertTrue(overloaded(1L) == 2);
+        assertTrue(overloaded("") == 3);
+        assertTrue(new NativeBindingTest().overloaded(1.0) == 4);
+    }
+
+    private static void testInitializer() {
+        assertTrue(CallingInitializer.VALUE == 42);
+        assertTrue(CallingInitializer.compute() == 42);
+    }
+
+    private static void testNestedClasses() {
+        assertTrue(new Outer().value() == 1);
+        assertTrue(new Outer.Inner().value() == 2);
+        assertTrue(new Outer().new Member().value() == 3);
+    }
+
+    @Outsource
+    public static int overloaded() {
+        return 0;
+    }
+
+    @Outsource
+    public static int overloaded(int i) {
+        return 1;
+    }
+
+    @Outsource
+    public static int overloaded(long l) {
+        return 2;
+    }
+
+    @Outsource
+    public static int overloaded(String s) {
+        return 3;
+    }
+
+    @Outsource
+    public int overloaded(double d) {
+        return 4;
+    }
+
+    /**
+     * The class isn't initialized while the library is loaded, so its initializer runs after the natives were bound
+     */
+    private static class CallingInitializer {
+        private static final int VALUE = compute();
+
+        @Outsource
+        private static int compute() {
+            return 42;
+        }
+    }
+
+    private static class Outer {
+        @Outsource
+        public int value() {
+            return 1;
+        }
+
+        private static class Inner {
+            @Outsource
+            public int value() {
+                return 2;
+            }
+        }
+
+        private class Member {
+            @Outsource
+            public int value() {
+                return 3;
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Object creations (<code>NEW</code>, <code>DUP</code>, <code>INVOKESPECIAL &lt;init&gt;</code>) are fused into a
+ * single <code>NewObject</code> call when the order of class initialization and argument evaluation can't be observed
+ */
+public class ObjectCreationTest {
+    private static final StringBuilder LOG = new StringBuilder();
+
+    public static void test() {
+        testArguments();
+        testInitializationOrder();
+        testExceptions();
+        testManyObjects();
+    }
+
+    private static void testArguments() {
+        assertTrue(createValues(1, 2.5, 3, "x").equals(new Values(1, 2.5, 3, "x").toString()));
+        assertTrue(createValues(Long.MIN_VALUE, -0.0, -1, null).equals(new Values(Long.MIN_VALUE, -0.0, -1, null).toString()));
+        assertTrue(createNested().equals("Values(1, 0.0, 2, Values(3, 0.0, 4, null))"));
+    }
+
+    private static void testInitializationOrder() {
+        // NEW initializes the class before the arguments are evaluated
+        LOG.setLength(0);
+        new LoggingInitializer(log("argument"));
+        var expected = LOG.toString();
+
+        LOG.setLength(0);
+        createLoggingInitializer();
+        assertTrue(LOG.toString().equals(expected.replace("LoggingInitializer", "OtherLoggingInitializer")));
+
+        // Initializing the class also initializes its interface since it declares a default method
+        LOG.setLength(0);
+        createLoggingInterfaceImplementor();
+        assertTrue(LOG.toString().equals("LoggingDefaults;argument;constructor;"));
+    }
+
+    private static void testExceptions() {
+        assertTrue(createThrowing(1) == 1);
+        assertTrue(createThrowing(-1) == -1);
+        assertThrows(IllegalStateException.class, () -> createWithThrowingArgument());
+    }
+
+    private static void testManyObjects() {
+        // Would overflow the local reference table if the references were leaked
+        assertTrue(sumObjects(100_000) == 100_000L * (100_000 - 1) / 2);
+    }
+
+    private static String log(String message) {
+        LOG.append(message).append(';');
+
+        return message;
+    }
+
+    @Outsource
+    public static String createValues(long a, double b, int c, Object d) {
+        return new Values(a, b, c, d).toString();
+    }
+
+    @Outsource
+    public static String createNested() {
+        return new Values(1, 0.0, 2, new Values(3, 0.0, 4, null)).toString();
+    }
+
+    @Outsource
+    public static void createLoggingInitializer() {
+        new OtherLoggingInitializer(log("argument"));
+    }
+
+    @Outsource
+    public static void createLoggingInterfaceImplementor() {
+        new LoggingInterfaceImplementor(log("argument"));
+    }
+
+    @Outsource
+    public static int createThrowing(int value) {
+        try {
+            return new Checked(value).value;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    @Outsource
+    public static Object createWithThrowingArgument() {
+        return new Values(1, 2, 3, fail("argument"));
+    }
+
+    @Outsource
+    public static long sumObjects(int count) {
+        long sum = 0;
+
+        for (int i = 0; i < count; i++) {
+            sum += new Checked(i).value;
+        }
+
+        return sum;
+    }
+
+    private static Object fail(String message) {
+        throw new IllegalStateException(message);
+    }
+
+    private static class Values {
+        private final long a;
+        private final double b;
+        private final int c;
+        private final Object d;
+
+        private Values(long a, double b, int c, Object d) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+        }
+
+        @Override
+        public String toString() {
+            return "Values(" + this.a + ", " + this.b + ", " + this.c + ", " + this.d + ")";
+        }
+    }
+
+    private static class Checked {
+        private final int value;
+
+        private Checked(int value) {
+            if (value < 0)
+                throw new IllegalArgumentException();
+
+            this.value = value;
+        }
+    }
+
+    private static class LoggingInitializer {
+        static {
+            log("LoggingInitializer");
+        }
+
+        private LoggingInitializer(String argument) {
+            log("constructor");
+        }
+    }
+
+    private static class OtherLoggingInitializer {
+        static {
+            log("OtherLoggingInitializer");
+        }
+
+        private OtherLoggingInitializer(String argument) {
+            log("constructor");
+        }
+    }
+
+    private interface LoggingDefaults {
+        String LOGGED = log("LoggingDefaults");
+
+        default String name() {
+            return "defaults";
+        }
+    }
+
+    private static class LoggingInterfaceImplementor implements LoggingDefaults {
+        private LoggingInterfaceImplementor(String argument) {
+            log("constructor");
+        }
+    }
+}
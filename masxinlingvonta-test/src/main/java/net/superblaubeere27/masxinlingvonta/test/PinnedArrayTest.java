@@ -0,0 +1,136 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import java.util.Arrays;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * The array parameters of these methods are pinned since they are only accessed in loops of pure instructions. The
+ * stores have to be visible to the caller, even if the method throws, and parameters may alias each other.
+ */
+public class PinnedArrayTest {
+    public static void test() {
+        testAliasing();
+        testStoresBeforeException();
+        testNullArrays();
+        testElementTypes();
+    }
+
+    private static void testAliasing() {
+        var array = new int[]{1, 2, 3, 4};
+
+        shift(array, array);
+        assertTrue(Arrays.equals(array, new int[]{1, 1, 1, 1}));
+
+        var source = new int[]{1, 2, 3, 4};
+        var destination = new int[4];
+
+        shift(source, destination);
+        assertTrue(Arrays.equals(destination, new int[]{0, 1, 2, 3}));
+    }
+
+    private static void testStoresBeforeException() {
+        var array = new int[3];
+
+        assertSameBehavior(() -> {
+            throw new ArrayIndexOutOfBoundsException("Index 3 out of bounds for length 3");
+        }, () -> fillIndices(array, 4));
+        assertTrue(Arrays.equals(array, new int[]{0, 1, 2}));
+
+        var values = new long[]{10, 20, 30};
+
+        assertThrows(ArithmeticException.class, () -> divide(values, 0));
+        assertTrue(Arrays.equals(values, new long[]{10, 20, 30}));
+
+        assertTrue(divide(values, 10) == 6);
+        assertTrue(Arrays.equals(values, new long[]{1, 2, 3}));
+    }
+
+    private static void testNullArrays() {
+        // Nothing is accessed, so there is no NullPointerException
+        assertTrue(fillIndices(null, 0) == 0);
+        assertThrows(NullPointerException.class, () -> fillIndices(null, 1));
+        assertThrows(NullPointerException.class, () -> length(null));
+    }
+
+    private static void testElementTypes() {
+        var flags = new boolean[]{true, false, true};
+
+        invert(flags);
+        assertTrue(Arrays.equals(flags, new boolean[]{false, true, false}));
+
+        assertTrue(dot(new byte[]{-1, 2, -3}, new double[]{0.5, -0.0, 2.0}) == -6.5);
+        assertTrue(sum(new char[]{'a', 0xFFFF}, new short[]{-1, Short.MIN_VALUE}) == 'a' + 0xFFFF - 1 + Short.MIN_VALUE);
+        assertTrue(length(new float[7]) == 7);
+    }
+
+    @Outsource
+    public static void shift(int[] source, int[] destination) {
+        for (int i = 0; i < source.length - 1; i++) {
+            destination[i + 1] = source[i];
+        }
+    }
+
+    @Outsource
+    public static int fillIndices(int[] array, int count) {
+        for (int i = 0; i < count; i++) {
+            array[i] = i;
+        }
+
+        return count;
+    }
+
+    @Outsource
+    public static long divide(long[] values, long divisor) {
+        long sum = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i] / divisor;
+            sum += values[i];
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static void invert(boolean[] flags) {
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = !flags[i];
+        }
+    }
+
+    @Outsource
+    public static double dot(byte[] a, double[] b) {
+        double result = 0;
+
+        for (int i = 0; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+
+        return result;
+    }
+
+    @Outsource
+    public static int sum(char[] a, short[] b) {
+        int sum = 0;
+
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] + b[i];
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static int length(float[] array) {
+        int length = 0;
+
+        for (int i = 0; i < array.length; i++) {
+            length++;
+        }
+
+        return length;
+    }
+}
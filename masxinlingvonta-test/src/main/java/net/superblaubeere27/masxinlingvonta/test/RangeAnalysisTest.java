@@ -0,0 +1,147 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Checks that the facts derived by the range analysis don't remove exceptions the VM would throw
+ */
+public class RangeAnalysisTest {
+
+    public static void test() {
+        testDivisionByComputedZero();
+        testDivisionByNonZero();
+        testDivisionOverflow();
+    }
+
+    @Outsource
+    public static void testDivisionByComputedZero() {
+        try {
+            divideByZeroOr(7);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+
+        try {
+            remainderByZeroXor(7);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+
+        try {
+            divideByOr(7, 0);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+
+        try {
+            remainderByXor(7, 0);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+
+        try {
+            divideByOrLong(7, 0);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+
+        try {
+            remainderByXorLong(7, 0);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+
+        try {
+            divideByAnd(7, 0);
+            fail();
+        } catch (ArithmeticException ignored) {
+        }
+    }
+
+    @Outsource
+    public static void testDivisionByNonZero() {
+        assertTrue(divideByOr(7, 1) == 7);
+        assertTrue(remainderByXor(7, 2) == 1);
+        assertTrue(divideByOrLong(-8, 2) == -4);
+        assertTrue(remainderByXorLong(9, 4) == 1);
+        assertTrue(divideByAnd(9, 3) == 3);
+    }
+
+    @Outsource
+    public static void testDivisionOverflow() {
+        assertTrue(divide(Integer.MIN_VALUE, -1) == Integer.MIN_VALUE);
+        assertTrue(remainder(Integer.MIN_VALUE, -1) == 0);
+        assertTrue(divideLong(Long.MIN_VALUE, -1) == Long.MIN_VALUE);
+    }
+
+    @Outsource
+    private static int divideByZeroOr(int x) {
+        int a = 0;
+        int z = a | a;
+
+        return x / z;
+    }
+
+    @Outsource
+    private static int remainderByZeroXor(int x) {
+        int a = 0;
+
+        return x % (a ^ a);
+    }
+
+    /**
+     * x / (b | b) with b in [0, 1], the divisor is 0 for b = 0
+     */
+    @Outsource
+    private static int divideByOr(int x, int b) {
+        int a = b & 1;
+
+        return x / (a | a);
+    }
+
+    @Outsource
+    private static int remainderByXor(int x, int b) {
+        int a = b & 3;
+        int zero = a ^ a;
+
+        return x % (zero | a);
+    }
+
+    @Outsource
+    private static long divideByOrLong(long x, long b) {
+        long a = b & 3;
+
+        return x / (a | a);
+    }
+
+    @Outsource
+    private static long remainderByXorLong(long x, long b) {
+        long a = b & 7;
+        long zero = a ^ a;
+
+        return x % (zero ^ a);
+    }
+
+    @Outsource
+    private static int divideByAnd(int x, int b) {
+        return x / (b & 3);
+    }
+
+    @Outsource
+    private static int divide(int x, int y) {
+        return x / y;
+    }
+
+    @Outsource
+    private static int remainder(int x, int y) {
+        return x % y;
+    }
+
+    @Outsource
+    private static long divideLong(long x, long y) {
+        return x / y;
+    }
+
+}
@@ -0,0 +1,107 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compiled methods call each other directly, these calls have to overflow the stack like calls through the VM do
+ */
+public class RecursionTest {
+    private static final int DEPTH = 5_000;
+
+    private final int step;
+
+    private RecursionTest(int step) {
+        this.step = step;
+    }
+
+    public static void test() {
+        testDeepRecursion();
+        testStackOverflow();
+    }
+
+    @Outsource
+    public static void testDeepRecursion() {
+        assertTrue(sum(DEPTH) == DEPTH * (DEPTH + 1L) / 2);
+        assertTrue(new RecursionTest(2).count(DEPTH) == DEPTH * 2);
+        assertTrue(isEven(DEPTH));
+        assertTrue(!isEven(DEPTH + 1));
+
+        // Deep enough to pass the stack limit, so the calls behind it return local references from the VM
+        var value = new Object();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(passThrough(value, DEPTH) == value);
+        }
+    }
+
+    @Outsource
+    public static void testStackOverflow() {
+        try {
+            recurse(0);
+            fail();
+        } catch (StackOverflowError ignored) {
+        }
+
+        try {
+            new RecursionTest(1).recurseVirtual(0);
+            fail();
+        } catch (StackOverflowError ignored) {
+        }
+
+        try {
+            recurseMutually(0);
+            fail();
+        } catch (StackOverflowError ignored) {
+        }
+
+        // The stack has to be usable again
+        assertTrue(sum(DEPTH) == DEPTH * (DEPTH + 1L) / 2);
+    }
+
+    @Outsource
+    private static long sum(int n) {
+        return n == 0 ? 0 : n + sum(n - 1);
+    }
+
+    @Outsource
+    private static Object passThrough(Object value, int n) {
+        return n == 0 ? value : passThrough(value, n - 1);
+    }
+
+    @Outsource
+    private int count(int n) {
+        return n == 0 ? 0 : this.step + count(n - 1);
+    }
+
+    @Outsource
+    private static boolean isEven(int n) {
+        return n == 0 || isOdd(n - 1);
+    }
+
+    @Outsource
+    private static boolean isOdd(int n) {
+        return n != 0 && isEven(n - 1);
+    }
+
+    @Outsource
+    private static int recurse(int depth) {
+        return recurse(depth + 1) + 1;
+    }
+
+    @Outsource
+    private int recurseVirtual(int depth) {
+        return recurseVirtual(depth + this.step) + 1;
+    }
+
+    @Outsource
+    private static int recurseMutually(int depth) {
+        return recurseMutuallyInner(depth + 1) + 1;
+    }
+
+    @Outsource
+    private static int recurseMutuallyInner(int depth) {
+        return recurseMutually(depth + 1) + 1;
+    }
+}
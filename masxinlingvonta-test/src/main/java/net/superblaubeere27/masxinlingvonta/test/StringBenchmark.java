@@ -0,0 +1,80 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+/**
+ * Measures the <code>java.lang.String</code> methods in compiled code. <code>length</code> and <code>charAt</code> are
+ * single JNI calls, <code>hashCode</code> reads the cached hash with <code>GetIntField</code> and <code>equals</code>
+ * is a normal call through <code>CallBooleanMethodA</code>.
+ */
+public class StringBenchmark {
+    private static final String STRING = "masxinlingvonta";
+    private static final String EQUAL_STRING = new String(STRING);
+
+    static void run() {
+        Benchmark.measure("string",
+                Benchmark.of("length", iterations -> callLength(STRING, iterations)),
+                Benchmark.of("charAt", iterations -> callCharAt(STRING, iterations)),
+                Benchmark.of("hashCode", iterations -> callHashCode(STRING, iterations)),
+                Benchmark.of("equals", iterations -> callEquals(STRING, EQUAL_STRING, iterations)));
+    }
+
+    /**
+     * Has an exception handler, so the string isn't pinned and every <code>length</code> is a JNI call
+     */
+    @Outsource
+    public static long callLength(String string, int iterations) {
+        long sum = 0;
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                sum += string.length();
+            }
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Has an exception handler, so the string isn't pinned and every <code>charAt</code> is a JNI call
+     */
+    @Outsource
+    public static long callCharAt(String string, int iterations) {
+        long sum = 0;
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                sum += string.charAt(3);
+            }
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static long callHashCode(String string, int iterations) {
+        long sum = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            sum += string.hashCode();
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static long callEquals(String string, Object other, int iterations) {
+        long count = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            if (string.equals(other))
+                count++;
+        }
+
+        return count;
+    }
+}
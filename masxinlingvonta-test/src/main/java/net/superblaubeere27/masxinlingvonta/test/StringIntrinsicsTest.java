@@ -0,0 +1,190 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * Compares the intrinsics of <code>java.lang.String</code> with the methods the VM calls
+ */
+public class StringIntrinsicsTest {
+    private static final String[] STRINGS = {"", "a", "masxinlingvonta", "Masxinlingvonta", "\u00e9t\u00e9", "\u0109u \u0109i tio", "\ud83d\ude00"};
+
+    public static void test() {
+        testLength();
+        testCharAt();
+        testEquals();
+        testHashCode();
+        testNullReceiver();
+    }
+
+    private static void testLength() {
+        for (String string : STRINGS) {
+            assertTrue(length(string) == string.length());
+            assertTrue(isEmpty(string) == string.isEmpty());
+        }
+    }
+
+    private static void testCharAt() {
+        for (String string : STRINGS) {
+            for (int i = 0; i < string.length(); i++) {
+                final int index = i;
+
+                assertTrue(charAt(string, index) == string.charAt(index));
+            }
+
+            // The message differs for UTF-16 strings, see the other loop
+            for (int index : new int[]{-2, -1, string.length(), string.length() + 1}) {
+                assertThrows(StringIndexOutOfBoundsException.class, () -> charAt(string, index));
+                assertThrows(StringIndexOutOfBoundsException.class, () -> sumCharsPinned(string, index, index + 1));
+            }
+
+            assertSameBehavior(() -> string.chars().sum(), () -> sumChars(string, 0, string.length()));
+            assertSameBehavior(() -> string.chars().sum(), () -> sumCharsPinned(string, 0, string.length()));
+        }
+
+        // Both paths throw the exception charAt throws for Latin-1 strings
+        var string = "masxinlingvonta";
+
+        for (int index : new int[]{-1, string.length(), string.length() + 5, Integer.MIN_VALUE, Integer.MAX_VALUE - 1}) {
+            assertSameBehavior(() -> (int) string.charAt(index), () -> sumChars(string, index, index + 1));
+            assertSameBehavior(() -> (int) string.charAt(index), () -> sumCharsPinned(string, index, index + 1));
+        }
+    }
+
+    private static void testEquals() {
+        for (String a : STRINGS) {
+            for (String b : STRINGS) {
+                assertTrue(equals(a, b) == a.equals(b));
+                assertTrue(equals(a, new String(b)) == a.equals(b));
+            }
+
+            assertTrue(!equals(a, null));
+            assertTrue(!equals(a, new StringBuilder(a)));
+        }
+
+        for (String a : STRINGS) {
+            for (String b : STRINGS) {
+                assertSameBehavior(() -> a.equals(b) ? 3 : 0, () -> countEqualPinned(a, b, 3));
+                assertSameBehavior(() -> a.equals(b) ? 3 : 0, () -> countEqualPinned(a, new String(b), 3));
+            }
+
+            assertSameBehavior(() -> 0, () -> countEqualPinned(a, null, 3));
+        }
+    }
+
+    private static void testHashCode() {
+        for (String string : STRINGS) {
+            assertTrue(hashCode(string) == string.hashCode());
+            assertTrue(hashCode(new String(string)) == string.hashCode());
+
+            // The hash of a new string isn't cached yet
+            assertTrue(hashCode(new StringBuilder(string).toString()) == string.hashCode());
+        }
+
+        // The hash of this string is 0, so it is computed on every call
+        assertTrue(hashCode("f5a5a608") == 0);
+        assertTrue(hashCode("f5a5a608") == 0);
+
+        for (String string : STRINGS) {
+            assertSameBehavior(() -> string.hashCode() * 3, () -> sumHashCodesPinned(new StringBuilder(string).toString(), 3));
+        }
+    }
+
+    private static void testNullReceiver() {
+        assertNullReceiver("String.length()", () -> length(null));
+        assertNullReceiver("String.isEmpty()", () -> isEmpty(null));
+        assertNullReceiver("String.charAt(int)", () -> charAt(null, 0));
+        assertNullReceiver("String.charAt(int)", () -> sumCharsPinned(null, 0, 1));
+        assertNullReceiver("String.equals(Object)", () -> equals(null, "a"));
+        assertNullReceiver("String.equals(Object)", () -> countEqualPinned(null, "a", 1));
+        assertNullReceiver("String.hashCode()", () -> hashCode(null));
+        assertNullReceiver("String.hashCode()", () -> sumHashCodesPinned(null, 1));
+    }
+
+    @Outsource
+    public static int length(String string) {
+        return string.length();
+    }
+
+    @Outsource
+    public static boolean isEmpty(String string) {
+        return string.isEmpty();
+    }
+
+    @Outsource
+    public static char charAt(String string, int index) {
+        return string.charAt(index);
+    }
+
+    /**
+     * Calls <code>charAt</code> in a loop in a method with an exception handler, so the string isn't pinned
+     */
+    @Outsource
+    public static int sumChars(String string, int from, int to) {
+        int sum = 0;
+
+        try {
+            for (int i = from; i < to; i++) {
+                sum += string.charAt(i);
+            }
+        } catch (IllegalStateException e) {
+            return -1;
+        }
+
+        return sum;
+    }
+
+    /**
+     * The string is pinned (if pinning is enabled) since it is only accessed in a loop
+     */
+    @Outsource
+    public static int sumCharsPinned(String string, int from, int to) {
+        int sum = 0;
+
+        for (int i = from; i < to; i++) {
+            sum += string.charAt(i);
+        }
+
+        return sum;
+    }
+
+    @Outsource
+    public static boolean equals(String string, Object other) {
+        return string.equals(other);
+    }
+
+    /**
+     * Both strings are pinned (if pinning is enabled), so they are compared without a JNI call
+     */
+    @Outsource
+    public static int countEqualPinned(String string, String other, int times) {
+        int count = 0;
+
+        for (int i = 0; i < times; i++) {
+            if (string.equals(other))
+                count++;
+        }
+
+        return count;
+    }
+
+    @Outsource
+    public static int hashCode(String string) {
+        return string.hashCode();
+    }
+
+    /**
+     * The string is pinned (if pinning is enabled), so its hash is computed from its chars
+     */
+    @Outsource
+    public static int sumHashCodesPinned(String string, int times) {
+        int sum = 0;
+
+        for (int i = 0; i < times; i++) {
+            sum += string.hashCode();
+        }
+
+        return sum;
+    }
+}
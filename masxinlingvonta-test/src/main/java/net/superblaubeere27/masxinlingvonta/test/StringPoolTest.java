@@ -0,0 +1,62 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * String literals of compiled code are pooled and interned, so they have to be identical to the literals of the VM
+ */
+public class StringPoolTest {
+
+    public static void test() {
+        testIdentity();
+        testContents();
+    }
+
+    private static void testIdentity() {
+        assertTrue(ascii() == "masxinlingvonta");
+        assertTrue(ascii() == ascii());
+        assertTrue(ascii() == new String("masxinlingvonta").intern());
+        assertTrue(empty() == "");
+        assertTrue(nonAscii() == "\u0109u \u0109i tio \ud83d\ude00");
+        assertTrue(withNul() == "a\u0000b");
+    }
+
+    private static void testContents() {
+        assertTrue(nonAscii().equals("\u0109u \u0109i tio \ud83d\ude00"));
+        assertTrue(nonAscii().length() == 12);
+        assertTrue(withNul().length() == 3 && withNul().charAt(1) == 0);
+        assertTrue(loneSurrogate().length() == 1 && loneSurrogate().charAt(0) == '\ud800');
+        assertTrue(loneSurrogate() == "\ud800");
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(ascii() == "masxinlingvonta");
+        }
+    }
+
+    @Outsource
+    public static String ascii() {
+        return "masxinlingvonta";
+    }
+
+    @Outsource
+    public static String empty() {
+        return "";
+    }
+
+    @Outsource
+    public static String nonAscii() {
+        return "\u0109u \u0109i tio \ud83d\ude00";
+    }
+
+    @Outsource
+    public static String withNul() {
+        return "a\u0000b";
+    }
+
+    @Outsource
+    public static String loneSurrogate() {
+        return "\ud800";
+    }
+}
@@ -6,6 +6,30 @@ public class TestMain {
         System.loadLibrary("test-native");
 
         BranchTest.test();
+        ClassCacheTest.test();
+        MethodIdCacheTest.test();
+        FieldIdCacheTest.test();
+        StringPoolTest.test();
+        NativeBindingTest.test();
+        ConcurrentResolutionTest.test();
+        RecursionTest.test();
+        DirectCallTest.test();
+        DevirtualizationTest.test();
+        HierarchyTest.test();
+        TypeCheckTest.test();
+        ObjectCreationTest.test();
+        PinnedArrayTest.test();
+        RangeAnalysisTest.test();
+        ArrayAccessTest.test();
+        ArrayInitializerTest.test();
+        ArrayIntrinsicsTest.test();
+        MathIntrinsicsTest.test();
+        BitIntrinsicsTest.test();
+        StringIntrinsicsTest.test();
+        ConcatIntrinsicsTest.test();
+        BoxIntrinsicsTest.test();
+        BufferIntrinsicsTest.test();
+        LambdaTest.test();
     }
 
 }
@@ -0,0 +1,113 @@
+package net.superblaubeere27.masxinlingvonta.test;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+
+import static net.superblaubeere27.masxinlingvonta.test.Assertions.*;
+
+/**
+ * <code>CHECKCAST</code> and <code>INSTANCEOF</code> skip the VM for null and for <code>java.lang.Object</code>. The
+ * results have to be the ones of the VM.
+ */
+public class TypeCheckTest {
+    private static final Object[] VALUES = {null, "string", 1, new int[0], new String[0], new Object(), new TypeCheckTest()};
+
+    private static boolean initialized;
+
+    public static void test() {
+        testInstanceOf();
+        testCheckCast();
+        testNullCastDoesNotInitialize();
+    }
+
+    private static void testInstanceOf() {
+        for (Object value : VALUES) {
+            assertTrue(isObject(value) == (value instanceof Object));
+            assertTrue(isString(value) == (value instanceof String));
+            assertTrue(isIntArray(value) == (value instanceof int[]));
+            assertTrue(isObjectArray(value) == (value instanceof Object[]));
+        }
+    }
+
+    private static void testCheckCast() {
+        for (Object value : VALUES) {
+            assertTrue(castToObject(value) == value);
+            assertSameBehavior(() -> value == null || value instanceof String, () -> castsToString(value));
+            assertSameBehavior(() -> value == null || value instanceof Object[], () -> castsToObjectArray(value));
+        }
+    }
+
+    private static boolean castsToString(Object value) {
+        try {
+            castToString(value);
+
+            return true;
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    private static boolean castsToObjectArray(Object value) {
+        try {
+            castToObjectArray(value);
+
+            return true;
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    private static void testNullCastDoesNotInitialize() {
+        castNullToInitializing();
+
+        // The VM doesn't initialize the class of a CHECKCAST either
+        assertTrue(!initialized);
+    }
+
+    @Outsource
+    public static boolean isObject(Object o) {
+        return o instanceof Object;
+    }
+
+    @Outsource
+    public static boolean isString(Object o) {
+        return o instanceof String;
+    }
+
+    @Outsource
+    public static boolean isIntArray(Object o) {
+        return o instanceof int[];
+    }
+
+    @Outsource
+    public static boolean isObjectArray(Object o) {
+        return o instanceof Object[];
+    }
+
+    @Outsource
+    public static Object castToObject(Object o) {
+        return (Object) o;
+    }
+
+    @Outsource
+    public static String castToString(Object o) {
+        return (String) o;
+    }
+
+    @Outsource
+    public static Object[] castToObjectArray(Object o) {
+        return (Object[]) o;
+    }
+
+    @Outsource
+    public static Object castNullToInitializing() {
+        Object o = null;
+
+        return (Initializing) o;
+    }
+
+    private static class Initializing {
+        static {
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package net.superblaubeere27.masxinlingvonta.test.other;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+import net.superblaubeere27.masxinlingvonta.test.DevirtualizationTest;
+
+/**
+ * Declares a method with the signature of the package-private {@link DevirtualizationTest.Animal}<code>.sound()</code>
+ * which doesn't override it
+ */
+public class OtherPackageAnimal extends DevirtualizationTest.Animal {
+
+    @Outsource
+    String sound() {
+        return "other package";
+    }
+
+    @Outsource
+    public String callOwnSound() {
+        return sound();
+    }
+}
@@ -0,0 +1,16 @@
+package net.superblaubeere27.masxinlingvonta.test.other;
+
+import net.superblaubeere27.masxinlingvonta.annotation.Outsource;
+import net.superblaubeere27.masxinlingvonta.test.HierarchyTest;
+
+/**
+ * Overrides the protected {@link HierarchyTest.ProtectedBase}<code>.level()</code> from another package
+ */
+public class ProtectedOverride extends HierarchyTest.ProtectedBase {
+
+    @Outsource
+    @Override
+    protected int level() {
+        return 2;
+    }
+}